@@ -0,0 +1,45 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.api;
+
+import org.apache.hadoop.classification.InterfaceStability;
+
+/**
+ * A {@link Sink} which can accept a run of tuples in a single call. Producers that have several tuples at hand hand
+ * them over with {@link #putAll(Object[], int, int)} instead of calling {@link #put(Object)} once per tuple, which
+ * saves the per tuple dispatch through the chain of sinks between two operators. Producers are not required to batch,
+ * so {@link #put(Object)} remains the primary method of the sink.
+ *
+ * @param <T> type of the tuples accepted by the sink
+ * @since 3.7.0
+ */
+@InterfaceStability.Evolving
+public interface BatchSink<T> extends Sink<T>
+{
+  /**
+   * Process the tuples tuples[from] to tuples[to - 1] in that order. The effect must be the same as calling
+   * {@link #put(Object)} with each of them. The sink must neither modify the array nor keep a reference to it
+   * after the call returns, the caller is free to reuse it.
+   *
+   * @param tuples array holding the tuples
+   * @param from index of the first tuple, inclusive
+   * @param to index of the last tuple, exclusive
+   */
+  void putAll(T[] tuples, int from, int to);
+}
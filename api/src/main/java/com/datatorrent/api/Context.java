@@ -118,6 +118,22 @@ public interface Context
     ENABLE, FOLLOW_HADOOP_AUTH, FOLLOW_HADOOP_HTTP_AUTH, DISABLE
   }
 
+  /**
+   * The way an operator thread waits while none of its input ports has data and it did not emit anything.<br/><br/>
+   * SLEEP - Sleep, ramping the period up from 0 to {@link OperatorContext#SPIN_MILLIS} milliseconds in 1 millisecond
+   *                steps.<br/>
+   * BUSY_SPIN - Poll continuously. Lowest latency at the cost of a fully used core per operator.<br/>
+   * SPIN_YIELD - Poll continuously for a short while, then yield the processor between the polls.<br/>
+   * PARK - Spin, then yield, then park the thread for periods doubling from 1 microsecond up to
+   *                {@link OperatorContext#SPIN_MILLIS} milliseconds.<br/>
+   * WAKE_ON_DATA - Spin, then yield, then park the thread until one of the input ports receives data, at most for
+   *                {@link OperatorContext#SPIN_MILLIS} milliseconds.
+   */
+  enum IdleStrategy
+  {
+    SLEEP, BUSY_SPIN, SPIN_YIELD, PARK, WAKE_ON_DATA
+  }
+
   interface PortContext extends Context
   {
     /**
@@ -130,6 +146,22 @@ public interface Context
      * not be adhered to.
      */
     Attribute<Integer> BUFFER_MEMORY_MB = new Attribute<>(8 * 64);
+    /**
+     * Input port attribute. The amount of memory in MB the buffer server may hold for the subscriber of the port. Once
+     * the buffer server runs out of memory, the blocks only needed by subscribers that fell further behind the
+     * publisher than their credit are spooled and such subscribers are served from the spooled blocks, so they do not
+     * throttle the publisher. 0, the default, keeps the blocks in memory until the subscriber reads them.
+     */
+    Attribute<Integer> BUFFER_SERVER_CREDIT_MB = new Attribute<>(0);
+    /**
+     * Input port attribute. The share of the stream the subscriber of the port takes relative to the other subscribers
+     * of the port that read the same upstream partition with the same partition keys. The buffer server sends each
+     * payload tuple to only one of the subscribers with a positive weight, the least loaded relative to its weight,
+     * while all of them receive the control tuples. A subscriber that joins the group while the stream runs receives
+     * the tuples from the next window on, the tuples of the earlier windows are not replayed to it. 0, the default,
+     * sends all tuples to every subscriber.
+     */
+    Attribute<Integer> BUFFER_SERVER_WEIGHT = new Attribute<>(0);
     /**
      * Poll period in milliseconds when the port buffer reaches its limits.
      */
@@ -202,6 +234,11 @@ public interface Context
      * Default value is 10 milliseconds.
      */
     Attribute<Integer> SPIN_MILLIS = new Attribute<>(10);
+    /**
+     * The way the operator thread waits when there are no tuples available on any of the input ports of the operator,
+     * see {@link IdleStrategy}. Default value is SLEEP.
+     */
+    Attribute<IdleStrategy> IDLE_STRATEGY = new Attribute<>(IdleStrategy.SLEEP);
     /**
      * The maximum number of attempts to restart a failing operator before shutting down the application.
      * Until this number is reached, when an operator fails to start it is re-spawned in a new container. Once all the
@@ -407,6 +444,30 @@ public interface Context
      * Where to spool the data once the buffer server capacity is reached.
      */
     Attribute<Boolean> BUFFER_SPOOLING = new Attribute<>(true);
+    /**
+     * Whether the buffer server appends the spooled data to pre-allocated, memory-mapped segment files instead of
+     * writing a file per spooled block. Only used when BUFFER_SPOOLING is enabled. Default value is false.
+     */
+    Attribute<Boolean> BUFFER_SPOOLING_SEGMENTED = new Attribute<>(false);
+    /**
+     * Whether the buffer server compresses the data it spools, trading CPU for disk bandwidth. Only used when
+     * BUFFER_SPOOLING is enabled. Default value is false.
+     */
+    Attribute<Boolean> BUFFER_SPOOLING_COMPRESSED = new Attribute<>(false);
+    /**
+     * The number of operators of a container which process tuples at the same time. Operators with input ports take
+     * turns on that many workers, an operator keeps its worker until it runs out of tuples, until it waits for room
+     * in a full stream to a downstream operator of the container or until it used up its time slice of
+     * NODE_SCHEDULER_QUANTUM_MILLIS while other operators are waiting for a worker. A negative value stands for one
+     * worker per available core. Default value is 0, which lets each of the operators process tuples
+     * whenever they are available.
+     */
+    Attribute<Integer> NODE_SCHEDULER_WORKERS = new Attribute<>(0);
+    /**
+     * The time slice in milliseconds an operator gets to process tuples when the operators of a container take turns
+     * on NODE_SCHEDULER_WORKERS workers. Default value is 10 milliseconds.
+     */
+    Attribute<Integer> NODE_SCHEDULER_QUANTUM_MILLIS = new Attribute<>(10);
     /**
      * The streaming window size to use for the application. It is specified in milliseconds. Default value is 500ms.
      */
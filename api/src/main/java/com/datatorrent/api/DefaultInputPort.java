@@ -29,7 +29,7 @@ import com.datatorrent.api.Operator.InputPort;
  * @param <T>
  * @since 0.3.2
  */
-public abstract class DefaultInputPort<T> implements InputPort<T>, Sink<T>
+public abstract class DefaultInputPort<T> implements InputPort<T>, BatchSink<T>
 {
   protected int count;
   protected boolean connected = false;
@@ -79,6 +79,17 @@ public abstract class DefaultInputPort<T> implements InputPort<T>, Sink<T>
     process(tuple);
   }
 
+  /**
+   * Processes the tuples one by one through {@link #put(Object)}, so that ports overriding it see every tuple.
+   */
+  @Override
+  public void putAll(T[] tuples, int from, int to)
+  {
+    for (int i = from; i < to; i++) {
+      put(tuples[i]);
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public int getCount(boolean reset)
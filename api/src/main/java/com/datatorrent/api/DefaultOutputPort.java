@@ -59,6 +59,29 @@ public class DefaultOutputPort<T> implements Operator.OutputPort<T>
     sink.put(tuple);
   }
 
+  /**
+   * Emit the tuples tuples[from] to tuples[to - 1] as payloads for downstream operators interested in this port.
+   * The tuples are handed over to the downstream sink in a single call when it is a {@link BatchSink} and one by one
+   * otherwise. The array is not retained and can be reused once the call returns.
+   *
+   * @param tuples array holding the payloads which need to be emitted.
+   * @param from index of the first payload, inclusive
+   * @param to index of the last payload, exclusive
+   * @since 3.7.0
+   */
+  public void emitAll(T[] tuples, int from, int to)
+  {
+    verifyOperatorThread();
+    final Sink<Object> sink = this.sink;
+    if (sink instanceof BatchSink) {
+      ((BatchSink<Object>)sink).putAll(tuples, from, to);
+    } else {
+      for (int i = from; i < to; i++) {
+        sink.put(tuples[i]);
+      }
+    }
+  }
+
   protected void verifyOperatorThread()
   {
     // operatorThread could be null if setup() never got called.
@@ -18,6 +18,8 @@
  */
 package com.datatorrent.api;
 
+import org.apache.hadoop.classification.InterfaceStability;
+
 import com.datatorrent.api.Context.OperatorContext;
 import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.DAG.GenericOperator;
@@ -316,4 +318,30 @@ public interface Operator extends Component<OperatorContext>, GenericOperator
     void beforeCheckpoint(long windowId);
   }
 
+  /**
+   * Operators with a large state may implement this interface to keep processing tuples while their state is
+   * checkpointed. When the checkpoint is saved asynchronously, see {@link Context.OperatorContext#STORAGE_AGENT}, the
+   * engine asks the operator for a snapshot of its state at the checkpoint and serializes the snapshot on a background
+   * thread instead of serializing the operator on the operator thread.
+   *
+   * The snapshot is taken outside the window boundaries, after
+   * {@link CheckpointNotificationListener#beforeCheckpoint(long)} if the operator implements it.
+   *
+   * @since 3.7.0
+   */
+  @InterfaceStability.Evolving
+  interface SnapshotProvider
+  {
+    /**
+     * Returns a frozen view of the operator which is saved in its place. The view is loaded back as the operator on
+     * recovery, so it is typically a copy of the operator sharing the state through copy-on-write or persistent
+     * structures. The operator must not modify anything reachable from the view after it returned it and it has to be
+     * cheap to take, as the operator does not process tuples until it returns.
+     *
+     * @param windowId The window id of the window preceding the checkpoint
+     * @return object to save as the state of the operator
+     */
+    Object snapshot(long windowId);
+  }
+
 }
@@ -75,6 +75,10 @@ public interface Stats extends Serializable
       public int tupleCount;
       public long endWindowTimestamp;
       public long bufferServerBytes;
+      /**
+       * Nanoseconds the output port waited for its buffer server connection to accept data
+       */
+      public long bufferServerStallNanos;
       public int queueSize;
       /**
        * If there is a recording on the port, this contains the recording id, otherwise null
@@ -89,7 +93,7 @@ public interface Stats extends Serializable
       @Override
       public String toString()
       {
-        return "PortStats{" + "portname=" + id + ", processedCount=" + tupleCount + ", bufferServerBytes = " + bufferServerBytes + ", queueSize = " + queueSize + ", endWindowTimestamp=" + endWindowTimestamp + '}';
+        return "PortStats{" + "portname=" + id + ", processedCount=" + tupleCount + ", bufferServerBytes = " + bufferServerBytes + ", bufferServerStallNanos = " + bufferServerStallNanos + ", queueSize = " + queueSize + ", endWindowTimestamp=" + endWindowTimestamp + '}';
       }
 
     }
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.benchmark;
+
+import com.datatorrent.bufferserver.client.Publisher;
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+
+/**
+ * Publisher that writes whole windows of payload tuples, retrying while the send buffer is full.
+ */
+public class BenchmarkPublisher extends Publisher
+{
+  public static final int BASE_SECONDS = 0x5a5a5a5a;
+  private final byte[][] payloads;
+
+  /**
+   * @param id identifier of the publisher
+   * @param tupleSize size of the payload of each tuple
+   * @param partitions number of partitions the payload tuples are spread over, 0 for no partitioning
+   */
+  public BenchmarkPublisher(String id, int tupleSize, int partitions)
+  {
+    super(id, 64 * 1024);
+    payloads = new byte[Math.max(partitions, 1)][];
+    for (int i = payloads.length; i-- > 0;) {
+      payloads[i] = PayloadTuple.getSerializedTuple(i, tupleSize);
+    }
+  }
+
+  public void activate()
+  {
+    activate(null, (long)BASE_SECONDS << 32);
+    publish(ResetWindowTuple.getSerializedTuple(BASE_SECONDS, 500));
+  }
+
+  public void publishWindow(int windowId, int tupleCount)
+  {
+    publish(BeginWindowTuple.getSerializedTuple(windowId));
+    for (int i = 0; i < tupleCount; i++) {
+      publish(payloads[i % payloads.length]);
+    }
+    publish(EndWindowTuple.getSerializedTuple(windowId));
+  }
+
+  private void publish(byte[] tuple)
+  {
+    while (!write(tuple)) {
+      Thread.yield();
+    }
+  }
+
+  @Override
+  public void onMessage(byte[] buffer, int offset, int size)
+  {
+  }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.datatorrent.bufferserver.client.Subscriber;
+import com.datatorrent.bufferserver.packet.MessageType;
+
+/**
+ * Subscriber that counts the payload tuples and the windows it receives.
+ */
+public class BenchmarkSubscriber extends Subscriber
+{
+  private static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private volatile long payloadCount;
+  private volatile long endWindowCount;
+
+  public BenchmarkSubscriber(String id)
+  {
+    super(id);
+  }
+
+  @Override
+  public void onMessage(byte[] buffer, int offset, int size)
+  {
+    switch (buffer[offset]) {
+      case MessageType.PAYLOAD_VALUE:
+        payloadCount++;
+        break;
+
+      case MessageType.END_WINDOW_VALUE:
+        endWindowCount++;
+        break;
+
+      default:
+        break;
+    }
+  }
+
+  public long getPayloadCount()
+  {
+    return payloadCount;
+  }
+
+  public long getEndWindowCount()
+  {
+    return endWindowCount;
+  }
+
+  /**
+   * Waits until the subscriber received the given number of windows.
+   *
+   * @param count number of windows to wait for
+   * @throws TimeoutException if the windows do not arrive within a minute
+   */
+  public void awaitEndWindowCount(long count) throws TimeoutException
+  {
+    final long start = System.nanoTime();
+    while (endWindowCount < count) {
+      if (System.nanoTime() - start > TIMEOUT_NANOS) {
+        throw new TimeoutException(this + " received " + endWindowCount + " of " + count + " windows");
+      }
+      Thread.yield();
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.datatorrent.bufferserver.server.Server;
+import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.netlet.DefaultEventLoop;
+
+/**
+ * Measures how long a subscriber that connects late takes to catch up with the data already published.
+ * <br>
+ * The publisher fills the data list with more blocks than the server keeps in memory, so with spooling enabled the
+ * catch up also reloads spooled blocks. Each invocation connects a new subscriber that asks for the windows after
+ * the first or the middle window, which makes the server rewind an iterator to the first block and skip the payload
+ * tuples of the windows the subscriber already processed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CatchUpBenchmark
+{
+  public static final int WINDOW_COUNT = 64;
+  public static final int TUPLES_PER_WINDOW = 1000;
+
+  @Param({"0", "32"})
+  public int fromWindow;
+
+  @Param({"false", "true"})
+  public boolean spooling;
+
+  @Param({"256", "4096"})
+  public int tupleSize;
+
+  private DefaultEventLoop serverEventloop;
+  private DefaultEventLoop clientEventloop;
+  private InetSocketAddress address;
+  private Server server;
+  private BenchmarkPublisher publisher;
+  private BenchmarkSubscriber subscriber;
+  private int subscriberCount;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, TimeoutException
+  {
+    serverEventloop = DefaultEventLoop.createEventLoop("server");
+    clientEventloop = DefaultEventLoop.createEventLoop("client");
+    serverEventloop.start();
+    clientEventloop.start();
+
+    server = new Server(serverEventloop, 0, 1024 * 1024, 8);
+    if (spooling) {
+      server.setSpoolStorage(new DiskStorage());
+    }
+    address = server.run();
+
+    publisher = new BenchmarkPublisher("BenchmarkPublisher", tupleSize, 0);
+    clientEventloop.connect(address, publisher);
+    publisher.activate();
+
+    /* a subscriber that keeps up lets the publisher fill the data list while the blocks are spooled or kept */
+    BenchmarkSubscriber tail = new BenchmarkSubscriber("TailSubscriber");
+    clientEventloop.connect(address, tail);
+    tail.activate(null, "TailSubscriber", "BenchmarkPublisher", 0, null, 0L, 0);
+    for (int i = 0; i < WINDOW_COUNT; i++) {
+      publisher.publishWindow(i, TUPLES_PER_WINDOW);
+    }
+    tail.awaitEndWindowCount(WINDOW_COUNT);
+    clientEventloop.disconnect(tail);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown()
+  {
+    clientEventloop.disconnect(publisher);
+    clientEventloop.stop();
+    server.stop();
+    serverEventloop.stop();
+  }
+
+  @Setup(Level.Invocation)
+  public void connect()
+  {
+    subscriber = new BenchmarkSubscriber("CatchUpSubscriber" + subscriberCount);
+    clientEventloop.connect(address, subscriber);
+  }
+
+  @TearDown(Level.Invocation)
+  public void disconnect()
+  {
+    clientEventloop.disconnect(subscriber);
+  }
+
+  @Benchmark
+  public long catchUp() throws TimeoutException
+  {
+    subscriber.activate(null, "CatchUpSubscriber" + subscriberCount++, "BenchmarkPublisher", 0, null,
+        (long)BenchmarkPublisher.BASE_SECONDS << 32 | fromWindow, 0);
+    subscriber.awaitEndWindowCount(WINDOW_COUNT - 1 - fromWindow);
+    return subscriber.getPayloadCount();
+  }
+
+}
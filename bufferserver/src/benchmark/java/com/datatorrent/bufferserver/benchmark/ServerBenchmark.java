@@ -0,0 +1,128 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.datatorrent.bufferserver.server.Server;
+import com.datatorrent.netlet.DefaultEventLoop;
+
+/**
+ * Publishes windows of payload tuples through an in-process server and waits until every subscriber received them.
+ * <br>
+ * With a single subscriber and no partitions it measures the publish throughput, more subscribers measure the fan
+ * out and partitions measure the delivery of partition filtered streams, where subscriber i receives partition
+ * i modulo the number of partitions. The score is the number of published tuples per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ServerBenchmark
+{
+  public static final int TUPLES_PER_WINDOW = 10000;
+
+  @Param({"1", "4", "16"})
+  public int subscriberCount;
+
+  @Param({"0", "4"})
+  public int partitionCount;
+
+  @Param({"64", "1024"})
+  public int tupleSize;
+
+  @Param({"65536"})
+  public int blockSize;
+
+  private DefaultEventLoop serverEventloop;
+  private DefaultEventLoop clientEventloop;
+  private Server server;
+  private BenchmarkPublisher publisher;
+  private BenchmarkSubscriber[] subscribers;
+  private int windowId;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, TimeoutException
+  {
+    serverEventloop = DefaultEventLoop.createEventLoop("server");
+    clientEventloop = DefaultEventLoop.createEventLoop("client");
+    serverEventloop.start();
+    clientEventloop.start();
+
+    server = new Server(serverEventloop, 0, blockSize, 8);
+    InetSocketAddress address = server.run();
+
+    publisher = new BenchmarkPublisher("BenchmarkPublisher", tupleSize, partitionCount);
+    clientEventloop.connect(address, publisher);
+    publisher.activate();
+
+    subscribers = new BenchmarkSubscriber[subscriberCount];
+    for (int i = 0; i < subscriberCount; i++) {
+      subscribers[i] = new BenchmarkSubscriber("BenchmarkSubscriber" + i);
+      clientEventloop.connect(address, subscribers[i]);
+      if (partitionCount == 0) {
+        subscribers[i].activate(null, "BenchmarkSubscriber" + i, "BenchmarkPublisher", 0, null, 0L, 0);
+      } else {
+        subscribers[i].activate(null, "BenchmarkSubscriber" + i, "BenchmarkPublisher", partitionCount - 1,
+            Collections.singleton(i % partitionCount), 0L, 0);
+      }
+    }
+
+    /* the first window completes the connections before the measurement starts */
+    publishWindow();
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown()
+  {
+    for (BenchmarkSubscriber subscriber : subscribers) {
+      clientEventloop.disconnect(subscriber);
+    }
+    clientEventloop.disconnect(publisher);
+    clientEventloop.stop();
+    server.stop();
+    serverEventloop.stop();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TUPLES_PER_WINDOW)
+  public void publishWindow() throws TimeoutException
+  {
+    publisher.publishWindow(windowId++, TUPLES_PER_WINDOW);
+    for (BenchmarkSubscriber subscriber : subscribers) {
+      subscriber.awaitEndWindowCount(windowId);
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.io.Files;
+
+import com.datatorrent.bufferserver.storage.CompressingStorage;
+import com.datatorrent.bufferserver.storage.DeflateBlockCodec;
+import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.bufferserver.storage.SegmentedDiskStorage;
+import com.datatorrent.bufferserver.storage.Storage;
+
+/**
+ * Measures the latency of spooling a block to the storage and reloading it, as the data list does for a block that
+ * is evicted from memory and later read by a lagging subscriber.
+ * <br>
+ * The block is filled with serialized looking data: runs of repeated tuple headers with random payload bytes, so the
+ * compressing storage neither sees incompressible noise nor trivially compressible zeros.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpoolBenchmark
+{
+  private static final String IDENTIFIER = "BenchmarkPublisher";
+
+  @Param({"disk", "segmented", "compressed"})
+  public String storageType;
+
+  @Param({"65536", "8388608"})
+  public int blockSize;
+
+  private Storage storage;
+  private byte[] block;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException
+  {
+    final String directory = Files.createTempDir().getPath();
+    switch (storageType) {
+      case "disk":
+        storage = new DiskStorage(directory);
+        break;
+
+      case "segmented":
+        storage = new SegmentedDiskStorage(directory);
+        break;
+
+      case "compressed":
+        storage = new CompressingStorage(new SegmentedDiskStorage(directory), new DeflateBlockCodec());
+        break;
+
+      default:
+        throw new IllegalArgumentException("Unknown storage " + storageType);
+    }
+
+    block = new byte[blockSize];
+    final Random random = new Random(0);
+    for (int i = 0; i < blockSize; i += 64) {
+      block[i] = 1;
+      for (int j = i + 5; j < Math.min(i + 32, blockSize); j++) {
+        block[j] = (byte)random.nextInt(16);
+      }
+    }
+  }
+
+  @Benchmark
+  public byte[] spoolAndReload()
+  {
+    final int id = storage.store(IDENTIFIER, block, 0, block.length);
+    final byte[] reloaded = storage.retrieve(IDENTIFIER, id);
+    storage.discard(IDENTIFIER, id);
+    return reloaded;
+  }
+
+}
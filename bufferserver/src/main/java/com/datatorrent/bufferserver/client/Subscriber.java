@@ -48,9 +48,30 @@ public abstract class Subscriber extends AuthClient
 
   public void activate(final String version, final String type, final String sourceId, final int mask,
       final Collection<Integer> partitions, final long windowId, final int bufferSize)
+  {
+    activate(version, type, sourceId, mask, partitions, windowId, bufferSize, 0);
+  }
+
+  /**
+   * Subscribes with a credit: the number of bytes the server may hold in memory for this subscriber. A subscriber
+   * that falls further behind is served from spooled blocks instead of throttling the publisher.
+   */
+  public void activate(final String version, final String type, final String sourceId, final int mask,
+      final Collection<Integer> partitions, final long windowId, final int bufferSize, final int credit)
+  {
+    activate(version, type, sourceId, mask, partitions, windowId, bufferSize, credit, 0);
+  }
+
+  /**
+   * Subscribes with a weight: subscribers of the same type with a positive weight share the payload tuples of the
+   * stream in proportion to their weights while each of them receives all control tuples from the next window on.
+   */
+  public void activate(final String version, final String type, final String sourceId, final int mask,
+      final Collection<Integer> partitions, final long windowId, final int bufferSize, final int credit,
+      final int weight)
   {
     sendAuthenticate();
-    write(getSerializedRequest(version, id, type, sourceId, mask, partitions, windowId, bufferSize));
+    write(getSerializedRequest(version, id, type, sourceId, mask, partitions, windowId, bufferSize, credit, weight));
   }
 
   @Override
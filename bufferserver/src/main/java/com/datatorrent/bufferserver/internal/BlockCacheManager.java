@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the blocks of all data lists of a server within a global memory budget<p>
+ * <br>
+ * When the blocks held in memory by all data lists exceed the budget, unreferenced blocks are spooled starting with
+ * the block that is farthest ahead of the closest reader behind it, and among equally distant blocks the one that was
+ * accessed least recently. Blocks that are ahead of a single slow reader are therefore spooled before the blocks
+ * other readers are about to consume. The manager also decides whether there is room to prefetch a spooled block
+ * ahead of a lagging reader.<p>
+ * <br>
+ * Unless a fixed budget is set, each registered data list contributes the same share to the budget, so a data list
+ * may on average keep as many bytes in memory as it could without the manager. The blocks are spooled on the given
+ * executor as the budget is enforced whenever a publisher adds a block on the event loop.
+ *
+ * @since 3.7.0
+ */
+public class BlockCacheManager
+{
+  private final long dataListBudget;
+  private final Executor executor;
+  private final CopyOnWriteArraySet<DataList> dataLists = new CopyOnWriteArraySet<>();
+  private final AtomicBoolean enforcementScheduled = new AtomicBoolean();
+  private volatile long budget;
+
+  /**
+   * @param dataListBudget number of bytes each registered data list adds to the budget
+   * @param executor executor to spool the blocks on
+   */
+  public BlockCacheManager(long dataListBudget, Executor executor)
+  {
+    this.dataListBudget = dataListBudget;
+    this.executor = executor;
+  }
+
+  /**
+   * @return number of bytes all data lists may keep in memory before blocks are spooled
+   */
+  public long getBudget()
+  {
+    final long budget = this.budget;
+    return budget > 0 ? budget : dataListBudget * Math.max(1, dataLists.size());
+  }
+
+  /**
+   * @param budget number of bytes all data lists may keep in memory regardless of their number, 0 to scale the budget
+   * with the number of data lists
+   */
+  public void setBudget(long budget)
+  {
+    this.budget = budget;
+  }
+
+  public void register(DataList dataList)
+  {
+    dataLists.add(dataList);
+  }
+
+  public void unregister(DataList dataList)
+  {
+    dataLists.remove(dataList);
+  }
+
+  /**
+   * @return number of bytes held in memory by the blocks of all data lists, summed up from the running counts of the
+   * data lists rather than from their blocks
+   */
+  public long getInMemoryBytes()
+  {
+    long inMemoryBytes = 0;
+    for (DataList dataList : dataLists) {
+      inMemoryBytes += dataList.getInMemoryBytes();
+    }
+    return inMemoryBytes;
+  }
+
+  /**
+   * @param size size of the block to load
+   * @return true if a block of the given size can be loaded ahead of its reader without exceeding the budget
+   */
+  public boolean canPrefetch(int size)
+  {
+    return getInMemoryBytes() + size <= getBudget();
+  }
+
+  /**
+   * Schedules spooling of unreferenced blocks until the blocks held in memory fit into the budget again. Requests
+   * made while spooling is pending are served by the pending run.
+   */
+  public void enforceBudget()
+  {
+    if (enforcementScheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(enforcer);
+      } catch (RejectedExecutionException e) {
+        enforcementScheduled.set(false);
+        logger.debug("Skipping enforcement of budget {} as the executor is shut down", getBudget(), e);
+      }
+    }
+  }
+
+  synchronized void spoolOverBudget()
+  {
+    final long budget = getBudget();
+    final ArrayList<Candidate> candidates = new ArrayList<>();
+    long inMemoryBytes = 0;
+    for (DataList dataList : dataLists) {
+      inMemoryBytes += dataList.collectEvictionCandidates(candidates);
+    }
+    if (inMemoryBytes <= budget) {
+      return;
+    }
+
+    Collections.sort(candidates, EVICTION_ORDER);
+    for (Candidate candidate : candidates) {
+      if (inMemoryBytes <= budget) {
+        break;
+      }
+      if (candidate.block.spool()) {
+        inMemoryBytes -= candidate.size;
+        logger.debug("Spooling {} at distance {} from its reader to stay within budget {}", candidate.block,
+            candidate.distance, budget);
+      }
+    }
+  }
+
+  private final Runnable enforcer = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      enforcementScheduled.set(false);
+      spoolOverBudget();
+    }
+  };
+
+  static class Candidate
+  {
+    final DataList.Block block;
+    final int size;
+    final int distance;
+    final long lastAccessTime;
+
+    Candidate(DataList.Block block, int size, int distance, long lastAccessTime)
+    {
+      this.block = block;
+      this.size = size;
+      this.distance = distance;
+      this.lastAccessTime = lastAccessTime;
+    }
+
+  }
+
+  private static final Comparator<Candidate> EVICTION_ORDER = new Comparator<Candidate>()
+  {
+    @Override
+    public int compare(Candidate c1, Candidate c2)
+    {
+      if (c1.distance != c2.distance) {
+        return c1.distance > c2.distance ? -1 : 1;
+      }
+      return c1.lastAccessTime < c2.lastAccessTime ? -1 : c1.lastAccessTime == c2.lastAccessTime ? 0 : 1;
+    }
+  };
+
+  private static final Logger logger = LoggerFactory.getLogger(BlockCacheManager.class);
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of recycled data list block buffers<p>
+ * <br>
+ * Block buffers are large (64MB by default) and live long enough to be promoted, so letting the garbage collector
+ * reclaim them after a block is purged or spooled causes long old generation pauses. The pool keeps up to
+ * {@code capacity} buffers of exactly {@code blockSize} bytes for reuse by any {@link DataList} of the same
+ * server. Buffers of any other size are never pooled.
+ *
+ * @since 3.7.0
+ */
+public class BlockPool
+{
+  private final int blockSize;
+  private final ArrayBlockingQueue<byte[]> buffers;
+  private final AtomicLong allocated = new AtomicLong();
+  private final AtomicLong reused = new AtomicLong();
+
+  public BlockPool(int blockSize, int capacity)
+  {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid block pool capacity " + capacity);
+    }
+    this.blockSize = blockSize;
+    buffers = new ArrayBlockingQueue<>(capacity);
+  }
+
+  public int getBlockSize()
+  {
+    return blockSize;
+  }
+
+  /**
+   * Returns a pooled buffer of {@link #getBlockSize()} bytes or allocates a new one when the pool is empty. The
+   * content of a pooled buffer is not cleared.
+   *
+   * @return buffer of {@link #getBlockSize()} bytes
+   */
+  public byte[] acquire()
+  {
+    final byte[] buffer = buffers.poll();
+    if (buffer == null) {
+      allocated.incrementAndGet();
+      return new byte[blockSize];
+    }
+    reused.incrementAndGet();
+    return buffer;
+  }
+
+  /**
+   * Returns the buffer to the pool. The caller must guarantee that no block, iterator, serialized data or client send
+   * queue references the buffer anymore. Buffers that do not match the block size or that do not fit into the pool
+   * are left to the garbage collector.
+   *
+   * @param buffer the buffer to recycle, may be null
+   * @return true if the buffer was pooled
+   */
+  public boolean release(byte[] buffer)
+  {
+    return buffer != null && buffer.length == blockSize && buffers.offer(buffer);
+  }
+
+  public int getAvailableCount()
+  {
+    return buffers.size();
+  }
+
+  public long getAllocatedCount()
+  {
+    return allocated.get();
+  }
+
+  public long getReusedCount()
+  {
+    return reused.get();
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "{blockSize=" + blockSize + ", available=" + buffers.size() +
+        ", allocated=" + allocated + ", reused=" + reused + '}';
+  }
+
+}
@@ -20,22 +20,29 @@ package com.datatorrent.bufferserver.internal;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.MapMaker;
+
 import com.datatorrent.bufferserver.packet.BeginWindowTuple;
 import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.ResetWindowTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.storage.CompressingStorage;
 import com.datatorrent.bufferserver.storage.Storage;
 import com.datatorrent.bufferserver.util.BitVector;
 import com.datatorrent.bufferserver.util.Codec;
@@ -50,6 +57,11 @@ import static com.google.common.collect.Sets.newHashSet;
 /**
  * Maintains list of data and manages addition and deletion of the data<p>
  * <br>
+ * A single publisher appends data and blocks. It publishes data with volatile writes of the block writing offset
+ * and of the block links, which iterators read without locking. Only purge, rewind and reset, which unlink blocks
+ * and move the volatile block reading offset, synchronize on the data list, and only loading and spooling of blocks
+ * synchronize on the block.
+ * <br>
  *
  * @since 0.3.2
  */
@@ -60,17 +72,30 @@ public class DataList
   private final int blockSize;
   private final HashMap<BitVector, HashSet<DataListener>> listeners = newHashMap();
   protected final HashSet<DataListener> all_listeners = newHashSet();
-  protected Block first;
-  protected Block last;
+  protected volatile Block first;
+  protected volatile Block last;
   protected Storage storage;
+  protected BlockPool blockPool;
+  protected BlockCacheManager blockCacheManager;
   protected ExecutorService autoFlushExecutor;
   protected ExecutorService storageExecutor;
   protected int size;
   protected int processingOffset;
   protected long baseSeconds;
   private final Set<AbstractClient> suspendedClients = newHashSet();
+  /**
+   * physical nodes sending out of the blocks, held weakly as a logical node may be dropped along with its nodes.
+   */
+  private final Set<PhysicalNode> senders =
+      Collections.newSetFromMap(new MapMaker().weakKeys().<PhysicalNode, Boolean>makeMap());
   private final AtomicInteger numberOfInMemBlockPermits;
+  /**
+   * number of bytes held in memory by the blocks, kept up to date as the data of the blocks is set and released.
+   */
+  private final AtomicLong inMemoryBytes = new AtomicLong();
   private MutableInt nextOffset = new MutableInt();
+  private int tupleOffset;
+  private int partitionedListenerCount;
   private final ListenersNotifier listenersNotifier = new ListenersNotifier();
   private final boolean backPressureEnabled;
 
@@ -123,7 +148,7 @@ public class DataList
                   throw new IllegalStateException("Discarded block " + temp + " has positive reference count!");
                 }
                 if (temp.data != null) {
-                  temp.data = null;
+                  temp.setData(null);
                   numberOfInMemBlockRewound++;
                 }
               }
@@ -168,7 +193,8 @@ public class DataList
             if (temp.refCount.get() != 0) {
               throw new IllegalStateException("Discarded block " + temp + " not zero reference count!");
             }
-            temp.data = null;
+            recycle(temp.data);
+            temp.setData(null);
             temp = temp.next;
           }
         }
@@ -176,6 +202,18 @@ public class DataList
       first = last;
       first.prev = null;
     }
+    if (storage instanceof Storage.IdentifierDiscardingStorage) {
+      /* runs after the discarders of the blocks submitted above */
+      final Storage.IdentifierDiscardingStorage storage = (Storage.IdentifierDiscardingStorage)this.storage;
+      storageExecutor.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          storage.discard(identifier);
+        }
+      });
+    }
     numberOfInMemBlockPermits.set(MAX_COUNT_OF_INMEM_BLOCKS - 1);
   }
 
@@ -203,7 +241,8 @@ public class DataList
             throw new IllegalStateException("Discarded block " + temp + " has positive reference count!");
           }
           if (temp.data != null) {
-            temp.data = null;
+            recycle(temp.data);
+            temp.setData(null);
             numberOfInMemBlockPurged++;
           }
         }
@@ -234,6 +273,7 @@ public class DataList
     flush:
     do {
       while (size == 0) {
+        tupleOffset = processingOffset;
         size = VarInt.read(last.data, processingOffset, writeOffset, nextOffset);
         if (nextOffset.integer > -5 && nextOffset.integer < 1) {
           if (writeOffset == last.data.length) {
@@ -250,6 +290,14 @@ public class DataList
       processingOffset = nextOffset.integer;
 
       if (processingOffset + size <= writeOffset) {
+        final PartitionIndex index = last.index;
+        if (index != null) {
+          if (last.data[processingOffset] == MessageType.PAYLOAD_VALUE) {
+            index.addPayload(tupleOffset, PayloadTuple.getPartition(last.data, processingOffset));
+          } else {
+            index.addControl(tupleOffset);
+          }
+        }
         switch (last.data[processingOffset]) {
           case MessageType.BEGIN_WINDOW_VALUE:
             Tuple bwt = Tuple.getTuple(last.data, processingOffset, size);
@@ -305,6 +353,86 @@ public class DataList
     storageExecutor = es;
   }
 
+  public void setBlockCacheManager(BlockCacheManager blockCacheManager)
+  {
+    this.blockCacheManager = blockCacheManager;
+    blockCacheManager.register(this);
+  }
+
+  /**
+   * @return number of bytes held in memory by the blocks of this data list
+   */
+  long getInMemoryBytes()
+  {
+    return inMemoryBytes.get();
+  }
+
+  /**
+   * Collects the blocks that can be spooled to make room in memory, along with their distance to the closest reader
+   * behind them. Blocks no reader is behind of have the largest distance.
+   *
+   * @param candidates list to add the candidates to, null if only the number of bytes in memory is of interest
+   * @return number of bytes held in memory by the blocks of this data list
+   */
+  long collectEvictionCandidates(final List<BlockCacheManager.Candidate> candidates)
+  {
+    long inMemoryBytes = 0;
+    int distance = Integer.MAX_VALUE;
+    final Block last = this.last;
+    for (Block temp = first; temp != null; temp = temp.next) {
+      final boolean referenced = temp.refCount.get() != 0;
+      if (referenced) {
+        distance = 0;
+      } else if (distance != Integer.MAX_VALUE) {
+        distance++;
+      }
+
+      final byte[] data = temp.data;
+      if (data != null) {
+        inMemoryBytes += data.length;
+        if (candidates != null && storage != null && temp != last && !referenced) {
+          candidates.add(new BlockCacheManager.Candidate(temp, data.length, distance, temp.lastAccessTime));
+        }
+      }
+    }
+    return inMemoryBytes;
+  }
+
+  public void setBlockPool(BlockPool blockPool)
+  {
+    this.blockPool = blockPool.getBlockSize() == blockSize ? blockPool : null;
+  }
+
+  void addSender(PhysicalNode node)
+  {
+    senders.add(node);
+  }
+
+  void removeSender(PhysicalNode node)
+  {
+    senders.remove(node);
+  }
+
+  /*
+   * Hands the buffer of a block that no iterator and no publisher references anymore back to the block pool.
+   * Rewind does not recycle as the publisher that is being replaced may still write into the last block. The clients
+   * of the physical nodes queue the data sent out of the blocks without copying it, so while any of them may still
+   * reference it the buffer is left to the garbage collector.
+   */
+  private void recycle(final byte[] buffer)
+  {
+    final BlockPool blockPool = this.blockPool;
+    if (blockPool != null) {
+      for (PhysicalNode node : senders) {
+        if (node.isSending()) {
+          logger.debug("Not recycling a buffer of {} while {} is sending.", this, node);
+          return;
+        }
+      }
+      blockPool.release(buffer);
+    }
+  }
+
   /*
    * Iterator related functions.
    */
@@ -313,7 +441,7 @@ public class DataList
     return new DataListIterator(block);
   }
 
-  private synchronized Block getNextBlock(final Block block)
+  private Block getNextBlock(final Block block)
   {
     return block.next;
   }
@@ -338,6 +466,7 @@ public class DataList
     //logger.debug("total {} listeners {} -> {}", all_listeners.size(), dl, this);
     ArrayList<BitVector> partitions = new ArrayList<>();
     if (dl.getPartitions(partitions) > 0) {
+      partitionedListenerCount++;
       for (BitVector partition : partitions) {
         HashSet<DataListener> set;
         if (listeners.containsKey(partition)) {
@@ -365,6 +494,9 @@ public class DataList
   {
     ArrayList<BitVector> partitions = new ArrayList<>();
     if (dl.getPartitions(partitions) > 0) {
+      if (all_listeners.contains(dl)) {
+        partitionedListenerCount--;
+      }
       for (BitVector partition : partitions) {
         if (listeners.containsKey(partition)) {
           listeners.get(partition).remove(dl);
@@ -382,10 +514,59 @@ public class DataList
   public boolean suspendRead(final AbstractClient client)
   {
     synchronized (suspendedClients) {
-      return suspendedClients.add(client) && client.suspendReadIfResumed();
+      /* a client that resumed on its own may still be registered, it has to be suspended again nevertheless */
+      suspendedClients.add(client);
+      return client.suspendReadIfResumed();
     }
   }
 
+  /**
+   * Schedules spooling of the in memory blocks that are needed only by listeners that fell further behind the
+   * publisher than their credit allows. Such listeners are served from the storage and no longer hold back the
+   * publisher, while the blocks of listeners without credit or within their credit stay in memory. The storer
+   * resumes the suspended publisher once the blocks are spooled.
+   */
+  public void spoolForLaggingListeners()
+  {
+    if (storage == null || autoFlushExecutor == null) {
+      return;
+    }
+    autoFlushExecutor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        final HashSet<Block> retainedBlocks = new HashSet<>();
+        for (DataListener dl : all_listeners) {
+          final LogicalNode ln = (LogicalNode)dl;
+          final DataListIterator dli = ln.getIterator();
+          final Block block = dli.da;
+          if (block == null) {
+            continue;
+          }
+          if (ln.getCredit() <= 0) {
+            retainedBlocks.add(block);
+            continue;
+          }
+          long lag = block.writingOffset - dli.getReadOffset();
+          for (Block temp = block.next; temp != null && lag <= ln.getCredit(); temp = temp.next) {
+            lag += temp.writingOffset - temp.readingOffset;
+          }
+          if (lag <= ln.getCredit()) {
+            retainedBlocks.add(block);
+          }
+        }
+
+        final Block last = DataList.this.last;
+        for (Block temp = first; temp != null && temp != last && !retainedBlocks.contains(temp); temp = temp.next) {
+          if (temp.spool()) {
+            logger.debug("Spooling {} for listeners that exhausted their credit", temp);
+          }
+        }
+      }
+    });
+  }
+
   public boolean resumeSuspendedClients(final int numberOfInMemBlockPermits)
   {
     boolean resumedSuspendedClients = false;
@@ -421,20 +602,18 @@ public class DataList
     if (backPressureEnabled) {
       // Seek to max blocks and see if any block is in use beyond that
       int count = 0;
-      synchronized (this) {
-        Block curr = last.prev;
-        // go back the max number of blocks
-        while ((curr != null) && (++count < (MAX_COUNT_OF_INMEM_BLOCKS - 2))) {
-          curr = curr.prev;
-        }
-        // check if any block is in use
-        while (!behind && (curr != null)) {
-          // Since acquire happens before release, because of concurrency, in a corner case scenario we might still count a
-          // subscriber as being max behind when it is transitioning over to the next block but that is ok as it will only
-          // result in publisher blocking for some time and resuming
-          behind = (curr.refCount.get() != 0);
-          curr = curr.prev;
-        }
+      Block curr = last.prev;
+      // go back the max number of blocks
+      while ((curr != null) && (++count < (MAX_COUNT_OF_INMEM_BLOCKS - 2))) {
+        curr = curr.prev;
+      }
+      // check if any block is in use
+      while (!behind && (curr != null)) {
+        // Since acquire happens before release, because of concurrency, in a corner case scenario we might still count a
+        // subscriber as being max behind when it is transitioning over to the next block but that is ok as it will only
+        // result in publisher blocking for some time and resuming
+        behind = (curr.refCount.get() != 0);
+        curr = curr.prev;
       }
     }
     return behind;
@@ -447,19 +626,37 @@ public class DataList
           "Proceeding with allocating larger block that may cause out of memory exception.", size, blockSize);
       return new byte[size];
     }
-    return new byte[blockSize];
+    final BlockPool blockPool = this.blockPool;
+    return blockPool == null ? new byte[blockSize] : blockPool.acquire();
   }
 
-  public synchronized void addBuffer(byte[] array)
+  public void addBuffer(byte[] array)
   {
     final int numberOfInMemBlockPermits = this.numberOfInMemBlockPermits.decrementAndGet();
     if (numberOfInMemBlockPermits < 0) {
       logger.warn("Exceeded allowed memory block allocation by {}", -numberOfInMemBlockPermits);
     }
-    last.next = new Block(identifier, array, last.ending_window, last.ending_window);
-    last.next.prev = last;
+    final Block last = this.last;
+    final Block block = new Block(identifier, array, last.ending_window, last.ending_window);
+    block.prev = last;
+    block.index = newPartitionIndex();
+    /* the block is fully initialized before iterators can reach it through the volatile link */
+    last.next = block;
     last.release(false, true);
-    last = last.next;
+    this.last = block;
+    if (blockCacheManager != null) {
+      blockCacheManager.enforceBudget();
+    }
+  }
+
+  /**
+   * Blocks are indexed by partition only while there are partitioned subscribers as the index costs a long per tuple.
+   *
+   * @return index for a new block or null
+   */
+  PartitionIndex newPartitionIndex()
+  {
+    return partitionedListenerCount > 0 ? new PartitionIndex() : null;
   }
 
   public byte[] getBuffer(long windowId)
@@ -483,6 +680,13 @@ public class DataList
     public long numBytesWaiting = 0;
     public long numBytesAllocated = 0;
     public String slowestConsumer;
+    /*
+     * spooling statistics, available when the blocks are spooled to a compressing storage
+     */
+    public long numBytesSpooled = 0;
+    public long numBytesSpooledCompressed = 0;
+    public long compressionNanos = 0;
+    public long decompressionNanos = 0;
   }
 
   public Status getStatus()
@@ -530,6 +734,15 @@ public class DataList
       b = b.next;
       ++i;
     }
+
+    final Storage storage = this.storage;
+    if (storage instanceof CompressingStorage) {
+      CompressingStorage.Statistics statistics = ((CompressingStorage)storage).getStatistics(identifier);
+      status.numBytesSpooled = statistics.getStoredBytes();
+      status.numBytesSpooledCompressed = statistics.getStoredCompressedBytes();
+      status.compressionNanos = statistics.getCompressionNanos();
+      status.decompressionNanos = statistics.getDecompressionNanos();
+    }
     return status;
   }
 
@@ -550,15 +763,17 @@ public class DataList
     /**
      * actual data - stored as length followed by actual data.
      */
-    byte[] data;
+    volatile byte[] data;
     /**
-     * readingOffset is the offset of the first valid byte in the array.
+     * readingOffset is the offset of the first valid byte in the array. Purge and loading of the block write it under
+     * a lock, while iterators and the lag computations read it without one.
      */
-    int readingOffset;
+    volatile int readingOffset;
     /**
-     * writingOffset is the offset of the first available byte to write into.
+     * writingOffset is the offset of the first available byte to write into. The publisher writes it after the data,
+     * so an iterator that reads it sees all the data up to it.
      */
-    int writingOffset;
+    volatile int writingOffset;
     /**
      * The starting window which is available in this data array.
      */
@@ -574,16 +789,28 @@ public class DataList
     /**
      * the next in the chain.
      */
-    Block next;
+    volatile Block next;
     /**
      * the previous in the chain
      */
-    Block prev;
+    volatile Block prev;
+    /**
+     * index of the tuples in this block, null when the block is not indexed or was modified after it was written.
+     */
+    volatile PartitionIndex index;
     /**
      * how count of references to this block.
      */
     private final AtomicInteger refCount;
-    private Future<?> future;
+    /**
+     * task that loads, spools or discards the block. It is written by the readers, the publisher and the spooling
+     * and prefetching threads, prefetch and spool check and schedule it under the lock of the block.
+     */
+    private volatile Future<?> future;
+    /**
+     * time of the last acquire used to order blocks for spooling.
+     */
+    volatile long lastAccessTime;
 
     public Block(String id, int size)
     {
@@ -599,12 +826,24 @@ public class DataList
     {
       identifier = id;
       data = array;
+      inMemoryBytes.addAndGet(array.length);
       refCount = new AtomicInteger(1);
       this.starting_window = starting_window;
       this.ending_window = ending_window;
       //logger.debug("Allocated new {}", this);
     }
 
+    /**
+     * Sets the data of the block and accounts for it in the bytes held in memory by the data list. Called under the
+     * lock of the block.
+     */
+    void setData(byte[] data)
+    {
+      final byte[] previous = this.data;
+      this.data = data;
+      inMemoryBytes.addAndGet((data == null ? 0 : data.length) - (previous == null ? 0 : previous.length));
+    }
+
     void getNextData(SerializedData current)
     {
       if (current.offset < writingOffset) {
@@ -649,6 +888,7 @@ public class DataList
         }
       }
 
+      index = null;
       if (starting_window == -1) {
         starting_window = windowId;
         ending_window = windowId;
@@ -671,6 +911,7 @@ public class DataList
       boolean found = false;
       long bs = starting_window & 0xffffffff00000000L;
       SerializedData lastReset = null;
+      index = null;
 
       try (DataListIterator dli = getIterator(this)) {
         done:
@@ -763,10 +1004,18 @@ public class DataList
         @Override
         public void run()
         {
+          if (Block.this.data != null) {
+            logger.debug("Block {} is already in memory", Block.this);
+            return;
+          }
           byte[] data = storage.retrieve(identifier, uniqueIdentifier);
           synchronized (Block.this) {
             if (Block.this.data == null) {
-              Block.this.data = data;
+              setData(data);
+              if (readingOffset != 0) {
+                /* the retrieved data starts at the former reading offset */
+                index = null;
+              }
               readingOffset = 0;
               writingOffset = data.length;
               Block.this.notifyAll();
@@ -778,13 +1027,61 @@ public class DataList
               logger.debug("Block {} was already loaded into memory", Block.this);
             }
           }
+          final BlockCacheManager blockCacheManager = DataList.this.blockCacheManager;
+          if (blockCacheManager != null) {
+            blockCacheManager.enforceBudget();
+          }
         }
       };
     }
 
+    /**
+     * Schedules loading of the spooled block ahead of the reader that is going to need it, provided that neither the
+     * data list permits nor the memory budget of the server are exhausted.
+     */
+    void prefetch()
+    {
+      if (storage == null || data != null || uniqueIdentifier == 0 || numberOfInMemBlockPermits.get() <= 1 ||
+          (blockCacheManager != null && !blockCacheManager.canPrefetch(blockSize))) {
+        return;
+      }
+      synchronized (this) {
+        if (data == null && (future == null || future.isDone())) {
+          logger.debug("Prefetching {}", this);
+          future = storageExecutor.submit(getRetriever());
+        }
+      }
+    }
+
+    /**
+     * Schedules spooling of the block if it is in memory, not referenced and no other task such as a prefetch is
+     * pending for it.
+     *
+     * @return true if the block is going to be spooled
+     */
+    boolean spool()
+    {
+      if (storage == null) {
+        return false;
+      }
+      synchronized (this) {
+        final byte[] data = this.data;
+        if (data == null || refCount.get() != 0 || future != null && !future.isDone()) {
+          return false;
+        }
+        future = storageExecutor.submit(getStorer(data, readingOffset, writingOffset, storage));
+        return true;
+      }
+    }
+
     protected void acquire(boolean wait)
     {
       int refCount = this.refCount.getAndIncrement();
+      lastAccessTime = System.nanoTime();
+      /*
+       * The storer checks the reference count and releases the data under the same lock, so once the reference is
+       * counted the data seen here is not released underneath the reader.
+       */
       synchronized (Block.this) {
         if (data != null) {
           return;
@@ -834,7 +1131,8 @@ public class DataList
             int numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.get();
             synchronized (Block.this) {
               if (refCount.get() == 0 && Block.this.data != null) {
-                Block.this.data = null;
+                recycle(Block.this.data);
+                setData(null);
                 numberOfInMemBlockPermits = DataList.this.numberOfInMemBlockPermits.incrementAndGet();
               } else {
                 logger.debug("Keeping Block {} unchanged", Block.this);
@@ -888,12 +1186,10 @@ public class DataList
             boolean evict = true;
             // Search backwards from current block as opposed to searching forward from first block till current block as
             // it is more likely to find the match quicker.
-            synchronized (this) {
-              for (Block temp = this.prev; temp != null; temp = temp.prev) {
-                if (temp.refCount.get() != 0) {
-                  evict = false;
-                  break;
-                }
+            for (Block temp = this.prev; temp != null; temp = temp.prev) {
+              if (temp.refCount.get() != 0) {
+                evict = false;
+                break;
               }
             }
             logger.debug("Block {} evict {}", this, evict);
@@ -914,17 +1210,15 @@ public class DataList
       boolean ahead = false;
       if (backPressureEnabled) {
         int blocks = MAX_COUNT_OF_INMEM_BLOCKS;
-        synchronized (DataList.this) {
-          Block curr = this.next;
-          // seek till the next block that is in use to determine possible active subscriber
-          while ((curr != null) && (curr.refCount.get() == 0)) {
-            curr = curr.next;
-          }
-          // find if publisher is ahead by max
-          while (!ahead && (curr != null)) {
-            ahead = (--blocks == 0);
-            curr = curr.next;
-          }
+        Block curr = this.next;
+        // seek till the next block that is in use to determine possible active subscriber
+        while ((curr != null) && (curr.refCount.get() == 0)) {
+          curr = curr.next;
+        }
+        // find if publisher is ahead by max
+        while (!ahead && (curr != null)) {
+          ahead = (--blocks == 0);
+          curr = curr.next;
         }
       }
       return ahead;
@@ -990,6 +1284,8 @@ public class DataList
     protected int readOffset;
     MutableInt nextOffset = new MutableInt();
     int size;
+    Block indexedBlock;
+    int indexPosition;
 
     /**
      *
@@ -1014,6 +1310,26 @@ public class DataList
       return readOffset;
     }
 
+    DataList getDataList()
+    {
+      return DataList.this;
+    }
+
+    /**
+     * Frames a tuple the same way as the tuples the iterator returns, so it can be sent along with them.
+     *
+     * @param tuple serialized tuple
+     * @return the framed tuple
+     */
+    SerializedData frame(byte[] tuple)
+    {
+      final int length = VarInt.getSize(tuple.length) + tuple.length;
+      final SerializedData frame = new SerializedData(new byte[length], 0, length);
+      frame.dataOffset = VarInt.write(tuple.length, frame.buffer, 0);
+      System.arraycopy(tuple, 0, frame.buffer, frame.dataOffset, tuple.length);
+      return frame;
+    }
+
     protected boolean switchToNextBlock()
     {
       Block next = getNextBlock(da);
@@ -1027,6 +1343,10 @@ public class DataList
       size = 0;
       buffer = da.data;
       readOffset = da.readingOffset;
+      final Block ahead = next.next;
+      if (ahead != null && ahead.data == null) {
+        ahead.prefetch();
+      }
       return true;
     }
 
@@ -1060,7 +1380,7 @@ public class DataList
         //}
         return true;
       } else if (da.writingOffset == buffer.length && switchToNextBlock()) {
-        nextOffset.integer = da.readingOffset;
+        nextOffset.integer = readOffset;
         return hasNext();
       }
       return false;
@@ -1103,6 +1423,30 @@ public class DataList
     {
       readOffset = processingOffset;
       size = 0;
+      indexedBlock = null;
+    }
+
+    /**
+     * Moves the iterator past the payload tuples that none of the partitions accepts using the index of the current
+     * block. Does nothing when the block is not indexed or when the next tuple was already read by {@link #hasNext()}.
+     *
+     * @param partitions partitions of the subscriber
+     */
+    void skipRejectedPayloadTuples(final BitVector[] partitions)
+    {
+      final PartitionIndex index = da.index;
+      if (index == null || size != 0) {
+        return;
+      }
+      if (indexedBlock != da) {
+        indexedBlock = da;
+        indexPosition = 0;
+      }
+      final int position = index.seek(indexPosition, readOffset, partitions);
+      if (position >= 0) {
+        indexPosition = position;
+        readOffset = index.getOffset(position);
+      }
     }
 
     @Override
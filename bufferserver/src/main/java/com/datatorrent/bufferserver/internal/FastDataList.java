@@ -102,6 +102,15 @@ public class FastDataList extends DataList
 
   }
 
+  /**
+   * The partition index is built by the flush of the variable length framing only.
+   */
+  @Override
+  PartitionIndex newPartitionIndex()
+  {
+    return null;
+  }
+
   @Override
   protected FastDataListIterator getIterator(Block block)
   {
@@ -174,6 +183,17 @@ public class FastDataList extends DataList
       super(da);
     }
 
+    @Override
+    SerializedData frame(byte[] tuple)
+    {
+      final SerializedData frame = new SerializedData(new byte[tuple.length + 2], 0, tuple.length + 2);
+      frame.buffer[0] = (byte)tuple.length;
+      frame.buffer[1] = (byte)(tuple.length >> 8);
+      frame.dataOffset = 2;
+      System.arraycopy(tuple, 0, frame.buffer, 2, tuple.length);
+      return frame;
+    }
+
     @Override
     public boolean hasNext()
     {
@@ -26,6 +26,8 @@ import org.slf4j.LoggerFactory;
 
 import com.datatorrent.bufferserver.internal.DataList.DataListIterator;
 import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
 import com.datatorrent.bufferserver.policy.GiveAll;
 import com.datatorrent.bufferserver.policy.Policy;
@@ -50,13 +52,21 @@ public class LogicalNode implements DataListener
   private final String upstream;
   private final String group;
   private final HashSet<PhysicalNode> physicalNodes;
+  private final HashSet<PhysicalNode> joiningNodes = new HashSet<>();
   private final HashSet<BitVector> partitions;
-  private final Policy policy = GiveAll.getInstance();
+  private BitVector[] partitionVectors = new BitVector[0];
+  /**
+   * upper bound on the number of bytes sent to a physical node with a single send, well below the client buffer size.
+   */
+  private static final int MAX_RANGE_LENGTH = 64 * 1024;
+  private Policy policy = GiveAll.getInstance();
   private final DataListIterator iterator;
   private final long skipWindowId;
   private final EventLoop eventloop;
   private long baseSeconds;
+  private int windowWidth;
   private boolean caughtup;
+  private int credit;
 
   /**
    *
@@ -87,6 +97,30 @@ public class LogicalNode implements DataListener
     return group;
   }
 
+  /**
+   * Sets the policy that distributes the payload tuples among the physical nodes. Control tuples always go to all
+   * the physical nodes.
+   *
+   * @param policy
+   */
+  public void setPolicy(Policy policy)
+  {
+    this.policy = policy;
+  }
+
+  /**
+   * @return number of bytes the subscribers allow to be held in memory for them, 0 if unlimited
+   */
+  public int getCredit()
+  {
+    return credit;
+  }
+
+  public void setCredit(int credit)
+  {
+    this.credit = credit;
+  }
+
   /**
    *
    * @return DataListIterator
@@ -106,7 +140,49 @@ public class LogicalNode implements DataListener
     PhysicalNode pn = new PhysicalNode(connection);
     if (!physicalNodes.contains(pn)) {
       physicalNodes.add(pn);
+      iterator.getDataList().addSender(pn);
+    }
+  }
+
+  /**
+   * Adds a physical node that shares the payload tuples with the other physical nodes according to the policy. A node
+   * that joins a logical node which is already caught up receives the tuples from the next window on.
+   *
+   * @param connection
+   * @param weight relative share of the payload tuples
+   */
+  public void addConnection(WriteOnlyClient connection, int weight)
+  {
+    PhysicalNode pn = new PhysicalNode(connection);
+    pn.setWeight(weight);
+    if (!physicalNodes.contains(pn)) {
+      if (caughtup && !physicalNodes.isEmpty()) {
+        joiningNodes.add(pn);
+      } else {
+        physicalNodes.add(pn);
+      }
+      iterator.getDataList().addSender(pn);
+    }
+  }
+
+  /**
+   * @param upstream
+   * @param mask
+   * @param partitions
+   * @return true if a subscriber to the given upstream and partitions can join the physical nodes of this logical node
+   */
+  public boolean canJoin(String upstream, int mask, int[] partitions)
+  {
+    if (policy == GiveAll.getInstance() || !this.upstream.equals(upstream)) {
+      return false;
+    }
+    final HashSet<BitVector> requested = new HashSet<>();
+    if (mask != 0) {
+      for (int partition : partitions) {
+        requested.add(new BitVector(partition, mask));
+      }
     }
+    return requested.equals(this.partitions);
   }
 
   /**
@@ -118,7 +194,15 @@ public class LogicalNode implements DataListener
     for (PhysicalNode pn : physicalNodes) {
       if (pn.getClient() == client) {
         physicalNodes.remove(pn);
-        break;
+        iterator.getDataList().removeSender(pn);
+        return;
+      }
+    }
+    for (PhysicalNode pn : joiningNodes) {
+      if (pn.getClient() == client) {
+        joiningNodes.remove(pn);
+        iterator.getDataList().removeSender(pn);
+        return;
       }
     }
   }
@@ -131,6 +215,7 @@ public class LogicalNode implements DataListener
   public void addPartition(int partition, int mask)
   {
     partitions.add(new BitVector(partition, mask));
+    partitionVectors = partitions.toArray(new BitVector[partitions.size()]);
   }
 
   boolean ready = true;
@@ -164,7 +249,6 @@ public class LogicalNode implements DataListener
         baseSeconds = lBaseSeconds;
       }
       logger.debug("Set the base seconds to {}", Codec.getStringWindowId(baseSeconds));
-      int intervalMillis;
 
       int skippedPayloadTuples = 0;
 
@@ -184,9 +268,9 @@ public class LogicalNode implements DataListener
             case MessageType.RESET_WINDOW_VALUE:
               Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, data.length - data.dataOffset + data.offset);
               baseSeconds = (long)tuple.getBaseSeconds() << 32;
-              intervalMillis = tuple.getWindowWidth();
-              if (intervalMillis <= 0) {
-                logger.warn("Interval value set to non positive value = {}", intervalMillis);
+              windowWidth = tuple.getWindowWidth();
+              if (windowWidth <= 0) {
+                logger.warn("Interval value set to non positive value = {}", windowWidth);
               }
               ready = GiveAll.getInstance().distribute(physicalNodes, data);
               break;
@@ -237,39 +321,23 @@ public class LogicalNode implements DataListener
           /*
            * consume as much data as you can before running out of steam
            */
-          if (partitions.isEmpty()) {
-            while (ready && iterator.hasNext()) {
-              SerializedData data = iterator.next();
-              switch (data.buffer[data.dataOffset]) {
-                case MessageType.PAYLOAD_VALUE:
-                  ready = policy.distribute(physicalNodes, data);
-                  break;
-
-                case MessageType.NO_MESSAGE_VALUE:
-                case MessageType.NO_MESSAGE_ODD_VALUE:
-                  break;
-
-                case MessageType.RESET_WINDOW_VALUE:
-                  final int length = data.length - data.dataOffset + data.offset;
-                  Tuple resetWindow = Tuple.getTuple(data.buffer, data.dataOffset, length);
-                  baseSeconds = (long)resetWindow.getBaseSeconds() << 32;
-                  ready = GiveAll.getInstance().distribute(physicalNodes, data);
-                  break;
-
-                default:
-                  //logger.debug("sending data of type {}", MessageType.valueOf(data.buffer[data.dataOffset]));
-                  ready = GiveAll.getInstance().distribute(physicalNodes, data);
-                  break;
-              }
-            }
+          if (partitions.isEmpty() && policy == GiveAll.getInstance()) {
+            distributeRanges();
           } else {
+            final BitVector[] partitions = partitionVectors;
+            final boolean partitioned = partitions.length > 0;
+            if (partitioned) {
+              iterator.skipRejectedPayloadTuples(partitions);
+            }
             while (ready && iterator.hasNext()) {
               SerializedData data = iterator.next();
-              final int length = data.length - data.dataOffset + data.offset;
               switch (data.buffer[data.dataOffset]) {
                 case MessageType.PAYLOAD_VALUE:
-                  Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
-                  int value = tuple.getPartition();
+                  if (!partitioned) {
+                    ready = policy.distribute(physicalNodes, data);
+                    break;
+                  }
+                  int value = PayloadTuple.getPartition(data.buffer, data.dataOffset);
                   for (BitVector bv : partitions) {
                     if (bv.matches(value)) {
                       ready = policy.distribute(physicalNodes, data);
@@ -283,15 +351,27 @@ public class LogicalNode implements DataListener
                   break;
 
                 case MessageType.RESET_WINDOW_VALUE:
-                  tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
+                  final int length = data.length - data.dataOffset + data.offset;
+                  Tuple tuple = Tuple.getTuple(data.buffer, data.dataOffset, length);
                   baseSeconds = (long)tuple.getBaseSeconds() << 32;
+                  windowWidth = tuple.getWindowWidth();
+                  ready = GiveAll.getInstance().distribute(physicalNodes, data);
+                  break;
+
+                case MessageType.BEGIN_WINDOW_VALUE:
                   ready = GiveAll.getInstance().distribute(physicalNodes, data);
+                  if (!joiningNodes.isEmpty()) {
+                    ready = admitJoiningNodes(data) & ready;
+                  }
                   break;
 
                 default:
                   ready = GiveAll.getInstance().distribute(physicalNodes, data);
                   break;
               }
+              if (partitioned) {
+                iterator.skipRejectedPayloadTuples(partitions);
+              }
             }
           }
         } catch (Exception e) {
@@ -305,6 +385,90 @@ public class LogicalNode implements DataListener
     return iterator.hasNext();
   }
 
+  /**
+   * Admits the physical nodes that joined since the last window. They did not receive the reset window tuple the
+   * other nodes received, so it is sent to them ahead of the begin window tuple, framed like the tuples of the data
+   * list.
+   *
+   * @param beginWindow the framed begin window tuple
+   * @return true if the joining nodes accepted the data
+   * @throws InterruptedException
+   */
+  private boolean admitJoiningNodes(SerializedData beginWindow) throws InterruptedException
+  {
+    final SerializedData resetWindow = iterator.frame(
+        ResetWindowTuple.getSerializedTuple((int)(baseSeconds >> 32), windowWidth));
+    final byte[] buffer = new byte[resetWindow.length + beginWindow.length];
+    System.arraycopy(resetWindow.buffer, 0, buffer, 0, resetWindow.length);
+    System.arraycopy(beginWindow.buffer, beginWindow.offset, buffer, resetWindow.length, beginWindow.length);
+
+    final boolean ready = GiveAll.getInstance().distribute(joiningNodes, new SerializedData(buffer, 0, buffer.length));
+    logger.debug("Admitted {} to {}", joiningNodes, this);
+    physicalNodes.addAll(joiningNodes);
+    joiningNodes.clear();
+    return ready;
+  }
+
+  /**
+   * Sends runs of consecutive tuples of a block to all physical nodes with a single send per run. Used when every
+   * tuple goes to every physical node, so a run needs no per tuple decision. The block of the pending run is
+   * acquired as the iterator may switch to the next block and release it before the run is sent.
+   *
+   * @throws InterruptedException
+   */
+  private void distributeRanges() throws InterruptedException
+  {
+    SerializedData range = null;
+    DataList.Block rangeBlock = null;
+    try {
+      while (ready && iterator.hasNext()) {
+        final SerializedData data = iterator.current;
+        final byte messageType = data.buffer[data.dataOffset];
+        if (range != null && (messageType == MessageType.NO_MESSAGE_VALUE ||
+            messageType == MessageType.NO_MESSAGE_ODD_VALUE || data.buffer != range.buffer ||
+            range.offset + range.length != data.offset || range.length + data.length > MAX_RANGE_LENGTH)) {
+          ready = GiveAll.getInstance().distribute(physicalNodes, range);
+          range = null;
+          rangeBlock.release(false, false);
+          rangeBlock = null;
+          continue;
+        }
+
+        iterator.next();
+        switch (messageType) {
+          case MessageType.NO_MESSAGE_VALUE:
+          case MessageType.NO_MESSAGE_ODD_VALUE:
+            break;
+
+          case MessageType.RESET_WINDOW_VALUE:
+            final int length = data.length - data.dataOffset + data.offset;
+            Tuple resetWindow = Tuple.getTuple(data.buffer, data.dataOffset, length);
+            baseSeconds = (long)resetWindow.getBaseSeconds() << 32;
+            /* fall through */
+
+          default:
+            if (range == null) {
+              rangeBlock = iterator.da;
+              rangeBlock.acquire(false);
+              range = new SerializedData(data.buffer, data.offset, data.length);
+              range.dataOffset = data.dataOffset;
+            } else {
+              range.length += data.length;
+            }
+            break;
+        }
+      }
+
+      if (range != null) {
+        ready = GiveAll.getInstance().distribute(physicalNodes, range);
+      }
+    } finally {
+      if (rangeBlock != null) {
+        rangeBlock.release(false, false);
+      }
+    }
+  }
+
   /**
    *
    * @param partitions
@@ -323,7 +487,7 @@ public class LogicalNode implements DataListener
    */
   public final int getPhysicalNodeCount()
   {
-    return physicalNodes.size();
+    return physicalNodes.size() + joiningNodes.size();
   }
 
   /**
@@ -349,6 +513,10 @@ public class LogicalNode implements DataListener
       eventloop.disconnect(pn.getClient());
     }
     physicalNodes.clear();
+    for (PhysicalNode pn : joiningNodes) {
+      eventloop.disconnect(pn.getClient());
+    }
+    joiningNodes.clear();
   }
 
   @Override
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.Arrays;
+
+import com.datatorrent.bufferserver.util.BitVector;
+
+/**
+ * Index of the tuples in a data list block<p>
+ * <br>
+ * The publisher side flush appends one entry per complete tuple: the offset at which the tuple starts and either the
+ * partition of a payload tuple or a marker for a control tuple. Iterators of partitioned subscribers use it to jump
+ * over the payload tuples of other partitions without reading or decoding them. The index is written by a single
+ * thread. Entries are published by the volatile write of the count and a grown array by the volatile write of the
+ * array itself, so a reader that takes the count first and the array second sees every counted entry.
+ *
+ * @since 3.7.0
+ */
+class PartitionIndex
+{
+  private static final long CONTROL = 0x80000000L;
+  private volatile long[] entries = new long[4096];
+  private volatile int count;
+
+  void addPayload(int offset, int partition)
+  {
+    add((long)partition << 32 | offset);
+  }
+
+  void addControl(int offset)
+  {
+    add(CONTROL | offset);
+  }
+
+  private void add(long entry)
+  {
+    final int count = this.count;
+    long[] entries = this.entries;
+    if (count == entries.length) {
+      entries = Arrays.copyOf(entries, count << 1);
+      this.entries = entries;
+    }
+    entries[count] = entry;
+    this.count = count + 1;
+  }
+
+  /**
+   * Finds the first tuple at or after the given offset that is either a control tuple or a payload tuple that
+   * matches one of the partitions. When all indexed tuples are rejected, the last indexed tuple is returned so the
+   * caller never skips tuples that are not indexed yet.
+   *
+   * @param position index position to start the search from, must not be past the tuple at offset
+   * @param offset offset of the tuple the iterator is about to read
+   * @param partitions partitions of the subscriber
+   * @return index position of the tuple to read next or -1 if the offset is not indexed
+   */
+  int seek(int position, final int offset, final BitVector[] partitions)
+  {
+    final int count = this.count;
+    final long[] entries = this.entries;
+    while (position < count && (int)(entries[position] & 0x7fffffffL) < offset) {
+      position++;
+    }
+    if (position == count || (int)(entries[position] & 0x7fffffffL) != offset) {
+      return -1;
+    }
+
+    final int last = count - 1;
+    skip:
+    while (position < last) {
+      final long entry = entries[position];
+      if ((entry & CONTROL) != 0) {
+        break;
+      }
+      final int partition = (int)(entry >>> 32);
+      for (BitVector bv : partitions) {
+        if (bv.matches(partition)) {
+          break skip;
+        }
+      }
+      position++;
+    }
+    return position;
+  }
+
+  int getOffset(int position)
+  {
+    return (int)(entries[position] & 0x7fffffffL);
+  }
+
+  int getCount()
+  {
+    return count;
+  }
+
+}
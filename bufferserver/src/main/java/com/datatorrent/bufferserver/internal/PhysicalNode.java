@@ -18,6 +18,7 @@
  */
 package com.datatorrent.bufferserver.internal;
 
+import java.nio.channels.CancelledKeyException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +36,9 @@ public class PhysicalNode
   private final long starttime;
   private final WriteOnlyClient client;
   private long processedMessageCount;
+  private int weight = 1;
   private SerializedData blocker;
+  private SerializedData blockerCopy;
 
   /**
    *
@@ -67,17 +70,26 @@ public class PhysicalNode
   }
 
   /**
+   * Sends the framed data, i.e. one or more consecutive length prepended tuples as stored in the data list.
    *
    * @param d
    * @throws InterruptedException
    */
   public boolean send(SerializedData d)
   {
-    if (client.send(d.buffer, d.dataOffset, d.length - (d.dataOffset - d.offset))) {
+    if (client.send(d.buffer, d.offset, d.length)) {
+      processedMessageCount++;
       return true;
     }
     if (blocker == null) {
+      /*
+       * The data list iterator may move past the block d points into before the client drains. The block buffer can
+       * then be recycled, so keep a private copy of the pending tuple.
+       */
+      final byte[] copy = new byte[d.length];
+      System.arraycopy(d.buffer, d.offset, copy, 0, d.length);
       blocker = d;
+      blockerCopy = new SerializedData(copy, 0, d.length);
     } else if (blocker != d) {
       throw new IllegalStateException(String.format("Can't send data %s while blocker %s is pending on %s", d, blocker, this));
     }
@@ -90,14 +102,56 @@ public class PhysicalNode
       return true;
     }
 
-    if (client.send(blocker.buffer, blocker.dataOffset, blocker.length - (blocker.dataOffset - blocker.offset))) {
+    if (client.send(blockerCopy.buffer, blockerCopy.offset, blockerCopy.length)) {
+      processedMessageCount++;
       blocker = null;
+      blockerCopy = null;
       return true;
     }
 
     return false;
   }
 
+  /**
+   * @return true if data is pending because the client could not accept it, false otherwise
+   */
+  public boolean isBlocked()
+  {
+    return blocker != null;
+  }
+
+  /**
+   * The client queues the data it is sent without copying it and drops the write interest only once it wrote all of
+   * its queue, so the data sent out of a block may be referenced by the client for as long as the write interest is
+   * set. A client whose key is cancelled does not write anymore.
+   *
+   * @return true if the client may still reference data it was sent, false otherwise
+   */
+  public boolean isSending()
+  {
+    try {
+      return !client.isWriteSuspended();
+    } catch (CancelledKeyException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return the relative share of the load that weighted policies assign to this node
+   */
+  public int getWeight()
+  {
+    return weight;
+  }
+
+  public void setWeight(int weight)
+  {
+    if (weight < 1) {
+      throw new IllegalArgumentException("Invalid weight " + weight);
+    }
+    this.weight = weight;
+  }
+
   /**
    *
    * @return long
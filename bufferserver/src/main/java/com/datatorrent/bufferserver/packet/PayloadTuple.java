@@ -58,6 +58,19 @@ public class PayloadTuple extends Tuple
     return "PayloadTuple{" + getPartition() + ", " + getData() + '}';
   }
 
+  /**
+   * Reads the partition of a serialized payload tuple without creating a tuple object.
+   *
+   * @param buffer the buffer holding the tuple
+   * @param offset offset of the message type of the tuple
+   * @return the partition
+   */
+  public static int getPartition(byte[] buffer, int offset)
+  {
+    return buffer[offset + 1] << 24 | (buffer[offset + 2] & 0xff) << 16 | (buffer[offset + 3] & 0xff) << 8 |
+        (buffer[offset + 4] & 0xff);
+  }
+
   public static byte[] getSerializedTuple(int partition, int size)
   {
     byte[] array = new byte[size + 5];
@@ -44,6 +44,8 @@ public class SubscribeRequestTuple extends RequestTuple
   private int mask;
   private int[] partitions;
   private int bufferSize;
+  private int credit;
+  private int weight;
 
   @Override
   public MessageType getType()
@@ -132,6 +134,26 @@ public class SubscribeRequestTuple extends RequestTuple
         return;
       }
 
+      /*
+       * read the optional credit
+       */
+      if (offset < limit) {
+        credit = readVarInt();
+        if (credit == -1) {
+          return;
+        }
+      }
+
+      /*
+       * read the optional weight
+       */
+      if (offset < limit) {
+        weight = readVarInt();
+        if (weight == -1) {
+          return;
+        }
+      }
+
       valid = true;
     } catch (NumberFormatException nfe) {
       logger.warn("Unparseable Tuple", nfe);
@@ -213,9 +235,43 @@ public class SubscribeRequestTuple extends RequestTuple
     return bufferSize;
   }
 
+  /**
+   * @return number of bytes the subscriber allows the server to hold in memory for it before its data is spooled,
+   * 0 if the server has to keep its data in memory and throttle the publisher instead
+   */
+  public int getCredit()
+  {
+    return credit;
+  }
+
   public static byte[] getSerializedRequest(final String version, final String id, final String down_type,
       final String upstream_id, final int mask, final Collection<Integer> partitions, final long startingWindowId,
       final int bufferSize)
+  {
+    return getSerializedRequest(version, id, down_type, upstream_id, mask, partitions, startingWindowId, bufferSize,
+        0);
+  }
+
+  /**
+   * @return share of the payload tuples of its group the subscriber receives relative to the other subscribers of
+   * the group, 0 if the subscriber receives all tuples and replaces any other subscriber of the group
+   */
+  public int getWeight()
+  {
+    return weight;
+  }
+
+  public static byte[] getSerializedRequest(final String version, final String id, final String down_type,
+      final String upstream_id, final int mask, final Collection<Integer> partitions, final long startingWindowId,
+      final int bufferSize, final int credit)
+  {
+    return getSerializedRequest(version, id, down_type, upstream_id, mask, partitions, startingWindowId, bufferSize,
+        credit, 0);
+  }
+
+  public static byte[] getSerializedRequest(final String version, final String id, final String down_type,
+      final String upstream_id, final int mask, final Collection<Integer> partitions, final long startingWindowId,
+      final int bufferSize, final int credit, final int weight)
   {
     byte[] array = new byte[4096];
     int offset = 0;
@@ -257,6 +313,14 @@ public class SubscribeRequestTuple extends RequestTuple
     /* write the buffer size */
     offset = VarInt.write(bufferSize, array, offset);
 
+    /* write the credit and the weight, omitted when 0 so that the request can be parsed by older servers */
+    if (credit > 0 || weight > 0) {
+      offset = VarInt.write(credit, array, offset);
+    }
+    if (weight > 0) {
+      offset = VarInt.write(weight, array, offset);
+    }
+
     return Arrays.copyOfRange(array, 0, offset);
   }
 
@@ -267,7 +331,7 @@ public class SubscribeRequestTuple extends RequestTuple
         ", windowId=" + Codec.getStringWindowId((long)baseSeconds << 32 | windowId) + ", type=" + streamType +
         ", upstreamIdentifier=" + upstreamIdentifier + ", mask=" + mask +
         ", partitions=" + (partitions == null ? "null" : Arrays.toString(partitions)) +
-        ", bufferSize=" + bufferSize + '}';
+        ", bufferSize=" + bufferSize + ", credit=" + credit + ", weight=" + weight + '}';
   }
 
   private static final Logger logger = LoggerFactory.getLogger(SubscribeRequestTuple.class);
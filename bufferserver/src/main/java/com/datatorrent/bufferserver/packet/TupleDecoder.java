@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+import java.util.Arrays;
+
+import com.datatorrent.netlet.util.Slice;
+
+/**
+ * Reusable decoder of serialized data tuples<p>
+ * <br>
+ * {@link Tuple#getTuple(byte[], int, int)} creates a tuple object for every message and a new slice for every call
+ * to {@link Tuple#getData()}. The decoder is instead pointed at one message after another with {@link #wrap} and
+ * decodes the fields on demand, so decoding a stream of control tuples does not allocate. {@link #getData()} still
+ * returns a new slice, as it is handed over to stream codecs that may keep it past the next call to {@link #wrap}.
+ *
+ * @since 3.7.0
+ */
+public class TupleDecoder
+{
+  private byte[] buffer;
+  private int offset;
+  private int limit;
+  private int position;
+
+  /**
+   * Points the decoder at the message in the given buffer.
+   *
+   * @param buffer buffer holding the message
+   * @param offset offset of the message type
+   * @param length length of the message
+   * @return this decoder
+   */
+  public TupleDecoder wrap(byte[] buffer, int offset, int length)
+  {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.limit = offset + length;
+    return this;
+  }
+
+  public MessageType getType()
+  {
+    return MessageType.valueOf(buffer[offset]);
+  }
+
+  /**
+   * @return window id of a begin window, end window, checkpoint or end stream tuple
+   */
+  public int getWindowId()
+  {
+    position = offset + 1;
+    return readVarInt();
+  }
+
+  /**
+   * @return base seconds of a reset window tuple
+   */
+  public int getBaseSeconds()
+  {
+    position = offset + 1;
+    return readVarInt();
+  }
+
+  /**
+   * @return window width of a reset window tuple
+   */
+  public int getWindowWidth()
+  {
+    position = offset + 1;
+    readVarInt();
+    return readVarInt();
+  }
+
+  /**
+   * @return partition of a payload tuple
+   */
+  public int getPartition()
+  {
+    return PayloadTuple.getPartition(buffer, offset);
+  }
+
+  /**
+   * @return new slice over the data of a payload, codec state or custom control tuple
+   */
+  public Slice getData()
+  {
+    final int dataOffset = offset + (buffer[offset] == MessageType.PAYLOAD_VALUE ? 5 : 1);
+    return new Slice(buffer, dataOffset, limit - dataOffset);
+  }
+
+  private int readVarInt()
+  {
+    int integer = 0;
+    for (int shift = 0; shift < 32 && position < limit; shift += 7) {
+      final byte tmp = buffer[position++];
+      integer |= (tmp & 0x7f) << shift;
+      if (tmp >= 0) {
+        return integer;
+      }
+    }
+
+    throw new NumberFormatException("Invalid varint at location " + position + " => "
+        + Arrays.toString(Arrays.copyOfRange(buffer, position, limit)));
+  }
+
+  @Override
+  public String toString()
+  {
+    return "TupleDecoder{" + (buffer == null ? "unwrapped" : getType()) + '}';
+  }
+
+}
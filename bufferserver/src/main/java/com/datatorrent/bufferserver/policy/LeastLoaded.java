@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.policy;
+
+import java.util.HashMap;
+import java.util.Set;
+
+import com.datatorrent.bufferserver.internal.PhysicalNode;
+import com.datatorrent.bufferserver.util.SerializedData;
+
+/**
+ * Distributes to the downstream node with the least recent load relative to its weight<p>
+ * <br>
+ * The load of a node is the number of bytes sent to it, halved every half life so that it follows the recent send
+ * rate rather than the lifetime total. A node whose socket could not accept the data has its load doubled, so it is
+ * avoided until it drains, and a node that still has data pending is not chosen unless all nodes have. A node that
+ * joins the group starts with the least load among the existing nodes instead of zero, so it is not flooded. The
+ * load saturates, so neither the doubling for a node that stays blocked nor the weighting overflows it. The
+ * chosen node is kept for a batch of tuples, so the nodes are compared once per batch instead of once per tuple.<br>
+ * <br>
+ * An instance keeps state per node and must not be shared between logical nodes.
+ *
+ * @since 3.7.0
+ */
+public class LeastLoaded extends AbstractPolicy
+{
+  public static final int DEFAULT_BATCH_SIZE = 256;
+  public static final long DEFAULT_HALF_LIFE_MILLIS = 100;
+  /**
+   * largest load of a node, such that the load multiplied by a weight does not overflow.
+   */
+  static final long MAX_LOAD = Long.MAX_VALUE / Integer.MAX_VALUE;
+  private final int batchSize;
+  private final long halfLifeNanos;
+  private final HashMap<PhysicalNode, Load> loads = new HashMap<>();
+  private Load chosen;
+  private int remaining;
+  private long decayTime = System.nanoTime();
+
+  public LeastLoaded()
+  {
+    this(DEFAULT_BATCH_SIZE, DEFAULT_HALF_LIFE_MILLIS);
+  }
+
+  /**
+   * @param batchSize number of consecutive tuples sent to the chosen node before the nodes are compared again
+   * @param halfLifeMillis period after which the load of a node is halved
+   */
+  public LeastLoaded(int batchSize, long halfLifeMillis)
+  {
+    if (batchSize < 1 || halfLifeMillis < 1) {
+      throw new IllegalArgumentException("Invalid batch size " + batchSize + " or half life " + halfLifeMillis);
+    }
+    this.batchSize = batchSize;
+    this.halfLifeNanos = halfLifeMillis * 1000000L;
+  }
+
+  @Override
+  public boolean distribute(Set<PhysicalNode> nodes, SerializedData data) throws InterruptedException
+  {
+    Load load = chosen;
+    if (load == null || --remaining < 0 || load.node.isBlocked() || !nodes.contains(load.node)) {
+      load = choose(nodes);
+      if (load == null) {
+        return false;
+      }
+    }
+
+    if (load.node.send(data)) {
+      load.bytes = Math.min(load.bytes + data.length, MAX_LOAD);
+      return true;
+    }
+
+    load.bytes = Math.min((load.bytes << 1) + data.length, MAX_LOAD);
+    chosen = null;
+    return false;
+  }
+
+  private Load choose(Set<PhysicalNode> nodes)
+  {
+    final long now = System.nanoTime();
+    final long halfLives = (now - decayTime) / halfLifeNanos;
+    if (halfLives > 0) {
+      decayTime += halfLives * halfLifeNanos;
+      for (Load load : loads.values()) {
+        load.bytes = halfLives < Long.SIZE ? load.bytes >>> halfLives : 0;
+      }
+    }
+
+    loads.keySet().retainAll(nodes);
+    long leastLoad = 0;
+    boolean first = true;
+    for (Load load : loads.values()) {
+      if (first || load.bytes < leastLoad) {
+        leastLoad = load.bytes;
+        first = false;
+      }
+    }
+
+    Load best = null;
+    for (PhysicalNode node : nodes) {
+      Load load = loads.get(node);
+      if (load == null) {
+        load = new Load(node, leastLoad);
+        loads.put(node, load);
+      }
+      if (best == null || isLessLoaded(load, best)) {
+        best = load;
+      }
+    }
+
+    chosen = best;
+    remaining = batchSize - 1;
+    return best;
+  }
+
+  private static boolean isLessLoaded(Load load, Load other)
+  {
+    final boolean blocked = load.node.isBlocked();
+    if (blocked != other.node.isBlocked()) {
+      return !blocked;
+    }
+    return load.bytes * other.node.getWeight() < other.bytes * load.node.getWeight();
+  }
+
+  private static class Load
+  {
+    final PhysicalNode node;
+    long bytes;
+
+    Load(PhysicalNode node, long bytes)
+    {
+      this.node = node;
+      this.bytes = bytes;
+    }
+
+  }
+
+}
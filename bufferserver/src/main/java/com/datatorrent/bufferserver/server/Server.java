@@ -39,6 +39,8 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.bufferserver.internal.BlockCacheManager;
+import com.datatorrent.bufferserver.internal.BlockPool;
 import com.datatorrent.bufferserver.internal.DataList;
 import com.datatorrent.bufferserver.internal.FastDataList;
 import com.datatorrent.bufferserver.internal.LogicalNode;
@@ -48,13 +50,14 @@ import com.datatorrent.bufferserver.packet.PurgeRequestTuple;
 import com.datatorrent.bufferserver.packet.ResetRequestTuple;
 import com.datatorrent.bufferserver.packet.SubscribeRequestTuple;
 import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.policy.LeastLoaded;
 import com.datatorrent.bufferserver.storage.Storage;
 import com.datatorrent.common.util.NameableThreadFactory;
 import com.datatorrent.netlet.AbstractLengthPrependerClient;
 import com.datatorrent.netlet.AbstractServer;
 import com.datatorrent.netlet.DefaultEventLoop;
 import com.datatorrent.netlet.EventLoop;
-import com.datatorrent.netlet.WriteOnlyLengthPrependerClient;
+import com.datatorrent.netlet.WriteOnlyClient;
 import com.datatorrent.netlet.util.VarInt;
 
 /**
@@ -73,6 +76,8 @@ public class Server extends AbstractServer
   private final EventLoop eventloop;
   private final ExecutorService serverHelperExecutor;
   private final ExecutorService storageHelperExecutor;
+  private final BlockPool blockPool;
+  private final BlockCacheManager blockCacheManager;
   private volatile CountDownLatch latch;
 
   private byte[] authToken;
@@ -93,7 +98,9 @@ public class Server extends AbstractServer
     this.port = port;
     this.blockSize = blocksize;
     this.numberOfCacheBlocks = numberOfCacheBlocks;
+    blockPool = new BlockPool(blocksize, numberOfCacheBlocks);
     serverHelperExecutor = Executors.newSingleThreadExecutor(new NameableThreadFactory("ServerHelper"));
+    blockCacheManager = new BlockCacheManager((long)blocksize * numberOfCacheBlocks, serverHelperExecutor);
     final ArrayBlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<>(numberOfCacheBlocks);
     final NameableThreadFactory threadFactory = new NameableThreadFactory("StorageHelper");
     storageHelperExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, workQueue, threadFactory,
@@ -105,6 +112,15 @@ public class Server extends AbstractServer
     this.storage = storage;
   }
 
+  /**
+   * @param budget number of bytes the blocks of all data lists may keep in memory, 0 (the default) for block size
+   * times the number of cache blocks per data list
+   */
+  public void setBlockCacheBudget(long budget)
+  {
+    blockCacheManager.setBudget(budget);
+  }
+
   @Override
   public void registered(SelectionKey key)
   {
@@ -309,6 +325,7 @@ public class Server extends AbstractServer
         eventloop.disconnect(channel);
       }
       dl.reset();
+      blockCacheManager.unregister(dl);
       message = ("Request sent for processing: " + request).getBytes();
     }
 
@@ -355,21 +372,34 @@ public class Server extends AbstractServer
 
           final String identifier = request.getIdentifier();
           final String type = request.getStreamType();
-          final long skipWindowId = (long)request.getBaseSeconds() << 32 | request.getWindowId();
-          final LogicalNode ln = new LogicalNode(identifier, upstream_identifier, type, dl
-              .newIterator(skipWindowId), skipWindowId, eventloop);
-
-          int mask = request.getMask();
-          if (mask != 0) {
-            for (Integer bs : request.getPartitions()) {
-              ln.addPartition(bs, mask);
+          final int mask = request.getMask();
+          final int weight = request.getWeight();
+          /*
+           * subscribers with a weight share the logical node of their group, any other subscriber replaces it.
+           */
+          LogicalNode ln = subscriberGroups.get(type);
+          final boolean joined = weight > 0 && ln != null && ln.canJoin(upstream_identifier, mask,
+              request.getPartitions());
+          if (!joined) {
+            final long skipWindowId = (long)request.getBaseSeconds() << 32 | request.getWindowId();
+            ln = new LogicalNode(identifier, upstream_identifier, type, dl.newIterator(skipWindowId), skipWindowId,
+                eventloop);
+
+            ln.setCredit(request.getCredit());
+            if (weight > 0) {
+              ln.setPolicy(new LeastLoaded());
+            }
+            if (mask != 0) {
+              for (Integer bs : request.getPartitions()) {
+                ln.addPartition(bs, mask);
+              }
+            }
+            final LogicalNode oln = subscriberGroups.put(type, ln);
+            if (oln != null) {
+              oln.boot();
             }
           }
-          final LogicalNode oln = subscriberGroups.put(type, ln);
-          if (oln != null) {
-            oln.boot();
-          }
-          final Subscriber subscriber = new Subscriber(ln, request.getBufferSize());
+          final Subscriber subscriber = new Subscriber(ln, request.getBufferSize(), weight, joined);
           eventloop.submit(new Runnable()
           {
             @Override
@@ -476,6 +506,8 @@ public class Server extends AbstractServer
       }
     }
     dl.setSecondaryStorage(storage, storageHelperExecutor);
+    dl.setBlockPool(blockPool);
+    dl.setBlockCacheManager(blockCacheManager);
 
     return dl;
   }
@@ -626,21 +658,35 @@ public class Server extends AbstractServer
 
   }
 
-  private class Subscriber extends WriteOnlyLengthPrependerClient
+  /**
+   * Subscribers receive the tuples in the framing in which the publisher sent them and the data list stores them, so
+   * the server writes the stored frames as they are instead of stripping and prepending the length again.
+   */
+  private class Subscriber extends WriteOnlyClient
   {
     private LogicalNode ln;
+    private final boolean joined;
 
-    Subscriber(LogicalNode ln, int bufferSize)
+    Subscriber(LogicalNode ln, int bufferSize, int weight, boolean joined)
     {
       super(1024 * 1024, bufferSize == 0 ? 256 * 1024 : bufferSize);
       this.ln = ln;
-      ln.addConnection(this);
+      this.joined = joined;
+      if (weight > 0) {
+        ln.addConnection(this, weight);
+      } else {
+        ln.addConnection(this);
+      }
     }
 
     @Override
     public void connected()
     {
       super.connected();
+      if (joined) {
+        /* the logical node is already listening and admits the subscriber at the next window */
+        return;
+      }
       serverHelperExecutor.submit(new Runnable()
       {
         @Override
@@ -802,6 +848,15 @@ public class Server extends AbstractServer
         return true;
       }
       datalist.suspendRead(this);
+      /*
+       * the listeners may have released the blocks holding the publisher back after the check, but before it got
+       * suspended, in which case none of them is going to resume it.
+       */
+      if (switchToNewBuffer(array, offset, size)) {
+        resumeRead();
+        return true;
+      }
+      datalist.spoolForLaggingListeners();
       return false;
     }
 
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+/**
+ * Codec used by {@link CompressingStorage} to compress blocks before they are spooled.
+ *
+ * The implementation of the codec needs to be threadsafe.
+ *
+ * @since 3.7.0
+ */
+public interface BlockCodec
+{
+  /**
+   * Compresses the input into the output.
+   *
+   * @param input the bytes to compress
+   * @param inputOffset the offset of the first byte to compress
+   * @param inputLength the number of bytes to compress
+   * @param output the array to write the compressed bytes into
+   * @param outputOffset the offset of the first byte to write
+   * @param outputLength the number of bytes available in the output
+   * @return the number of compressed bytes or -1 if they do not fit into outputLength bytes
+   */
+  int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int outputLength);
+
+  /**
+   * Decompresses bytes written by {@link #compress(byte[], int, int, byte[], int, int)}.
+   *
+   * @param input the compressed bytes
+   * @param inputOffset the offset of the first compressed byte
+   * @param inputLength the number of compressed bytes
+   * @param output the array to write the decompressed bytes into
+   * @param outputOffset the offset of the first byte to write
+   * @param outputLength the number of bytes the input decompresses into
+   */
+  void decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int outputLength);
+}
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Storage decorator that compresses blocks with a {@link BlockCodec} before handing them to the underlying storage
+ * and decompresses them on retrieval.<p>
+ * <br>
+ * Every stored block starts with a 5 byte header: the uncompressed length and a flag telling whether the block is
+ * compressed. Blocks that do not shrink are stored uncompressed. Statistics are kept per identifier until they are
+ * discarded with {@link #discard(String)}.<p>
+ * <br>
+ * The blocks are compressed into a scratch buffer that is kept by the instance and reused for every block, so each
+ * instance from {@link #getInstance()} holds one buffer of the block size once it stored a block.
+ *
+ * @since 3.7.0
+ */
+public class CompressingStorage implements Storage.IdentifierDiscardingStorage
+{
+  private static final int HEADER_SIZE = 5;
+  private static final byte RAW = 0;
+  private static final byte COMPRESSED = 1;
+  private final Storage storage;
+  private final BlockCodec codec;
+  private final ConcurrentHashMap<String, Statistics> statistics;
+  private byte[] scratch;
+
+  public CompressingStorage(Storage storage, BlockCodec codec)
+  {
+    this(storage, codec, new ConcurrentHashMap<String, Statistics>());
+  }
+
+  private CompressingStorage(Storage storage, BlockCodec codec, ConcurrentHashMap<String, Statistics> statistics)
+  {
+    this.storage = storage;
+    this.codec = codec;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public Storage getInstance() throws IOException
+  {
+    return new CompressingStorage(storage.getInstance(), codec, statistics);
+  }
+
+  @Override
+  public synchronized int store(String identifier, byte[] bytes, int start, int end)
+  {
+    final int length = end - start;
+    if (scratch == null || scratch.length < HEADER_SIZE + length) {
+      scratch = new byte[HEADER_SIZE + length];
+    }
+    final long startTime = System.nanoTime();
+    int compressedLength = codec.compress(bytes, start, length, scratch, HEADER_SIZE, length);
+    final long elapsed = System.nanoTime() - startTime;
+    if (compressedLength < 0) {
+      System.arraycopy(bytes, start, scratch, HEADER_SIZE, length);
+      compressedLength = length;
+      scratch[4] = RAW;
+    } else {
+      scratch[4] = COMPRESSED;
+    }
+    scratch[0] = (byte)(length >>> 24);
+    scratch[1] = (byte)(length >>> 16);
+    scratch[2] = (byte)(length >>> 8);
+    scratch[3] = (byte)length;
+
+    Statistics stats = statistics.get(identifier);
+    if (stats == null) {
+      stats = new Statistics();
+      final Statistics existing = statistics.putIfAbsent(identifier, stats);
+      if (existing != null) {
+        stats = existing;
+      }
+    }
+    stats.storedBytes.addAndGet(length);
+    stats.storedCompressedBytes.addAndGet(compressedLength);
+    stats.compressionNanos.addAndGet(elapsed);
+    return storage.store(identifier, scratch, 0, HEADER_SIZE + compressedLength);
+  }
+
+  @Override
+  public byte[] retrieve(String identifier, int uniqueIdentifier)
+  {
+    final byte[] stored = storage.retrieve(identifier, uniqueIdentifier);
+    final int length = (stored[0] & 0xff) << 24 | (stored[1] & 0xff) << 16 | (stored[2] & 0xff) << 8 |
+        (stored[3] & 0xff);
+    final byte[] bytes = new byte[length];
+    if (stored[4] == COMPRESSED) {
+      final long startTime = System.nanoTime();
+      codec.decompress(stored, HEADER_SIZE, stored.length - HEADER_SIZE, bytes, 0, length);
+      final Statistics stats = statistics.get(identifier);
+      if (stats != null) {
+        stats.decompressionNanos.addAndGet(System.nanoTime() - startTime);
+      }
+    } else {
+      System.arraycopy(stored, HEADER_SIZE, bytes, 0, length);
+    }
+    return bytes;
+  }
+
+  @Override
+  public void discard(String identifier, int uniqueIdentifier)
+  {
+    storage.discard(identifier, uniqueIdentifier);
+  }
+
+  /**
+   * Discards the blocks of the identifier along with their statistics, the blocks only if the wrapped storage can.
+   */
+  @Override
+  public void discard(String identifier)
+  {
+    if (storage instanceof IdentifierDiscardingStorage) {
+      ((IdentifierDiscardingStorage)storage).discard(identifier);
+    }
+    statistics.remove(identifier);
+  }
+
+  /**
+   * @param identifier the identifier the blocks were stored with
+   * @return statistics of the blocks stored for the identifier, empty ones if none were stored
+   */
+  public Statistics getStatistics(String identifier)
+  {
+    final Statistics stats = statistics.get(identifier);
+    return stats == null ? new Statistics() : stats;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "{storage=" + storage + ", codec=" + codec + '}';
+  }
+
+  public static class Statistics
+  {
+    final AtomicLong storedBytes = new AtomicLong();
+    final AtomicLong storedCompressedBytes = new AtomicLong();
+    final AtomicLong compressionNanos = new AtomicLong();
+    final AtomicLong decompressionNanos = new AtomicLong();
+
+    public long getStoredBytes()
+    {
+      return storedBytes.get();
+    }
+
+    public long getStoredCompressedBytes()
+    {
+      return storedCompressedBytes.get();
+    }
+
+    public long getCompressionNanos()
+    {
+      return compressionNanos.get();
+    }
+
+    public long getDecompressionNanos()
+    {
+      return decompressionNanos.get();
+    }
+
+  }
+
+}
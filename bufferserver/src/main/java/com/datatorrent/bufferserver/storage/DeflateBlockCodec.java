@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * {@link BlockCodec} based on the deflate implementation of the JDK, tuned for speed rather than ratio.
+ *
+ * @since 3.7.0
+ */
+public class DeflateBlockCodec implements BlockCodec
+{
+  private final int level;
+
+  public DeflateBlockCodec()
+  {
+    this(Deflater.BEST_SPEED);
+  }
+
+  public DeflateBlockCodec(int level)
+  {
+    this.level = level;
+  }
+
+  @Override
+  public int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset,
+      int outputLength)
+  {
+    final Deflater deflater = new Deflater(level, true);
+    try {
+      deflater.setInput(input, inputOffset, inputLength);
+      deflater.finish();
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == outputLength) {
+          return -1;
+        }
+        length += deflater.deflate(output, outputOffset + length, outputLength - length);
+      }
+      return length;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  @Override
+  public void decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset,
+      int outputLength)
+  {
+    final Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(input, inputOffset, inputLength);
+      int length = 0;
+      while (length < outputLength) {
+        final int inflated = inflater.inflate(output, outputOffset + length, outputLength - length);
+        if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalStateException("Compressed block is truncated after " + length + " of " + outputLength +
+              " bytes");
+        }
+        length += inflated;
+      }
+    } catch (DataFormatException ex) {
+      throw new RuntimeException(ex);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "{level=" + level + '}';
+  }
+
+}
@@ -33,7 +33,7 @@ import com.google.common.io.Files;
  *
  * @since 0.3.2
  */
-public class DiskStorage implements Storage
+public class DiskStorage implements Storage.IdentifierDiscardingStorage
 {
   private static final Logger logger = LoggerFactory.getLogger(DiskStorage.class);
   final String basePath;
@@ -155,6 +155,36 @@ public class DiskStorage implements Storage
     }
   }
 
+  /**
+   * Deletes the directory of the identifier. The platform discards the blocks in the background, so a failure is
+   * logged rather than thrown.
+   */
+  @Override
+  public void discard(String identifier)
+  {
+    File directory = new File(basePath, normalizeFileName(identifier));
+    if (directory.exists()) {
+      File identityFile = new File(directory, "identity");
+      try {
+        if (!identityFile.isFile() || !Arrays.equals(Files.toByteArray(identityFile), identifier.getBytes())) {
+          logger.warn("Collision in the identifier name {}, not discarding {}", identifier, directory.getPath());
+          return;
+        }
+      } catch (IOException ex) {
+        logger.warn("Could not read {}, not discarding {}", identityFile.getPath(), directory.getPath(), ex);
+        return;
+      }
+      for (File file : directory.listFiles()) {
+        if (!file.delete()) {
+          logger.warn("File {} could not be deleted!", file.getPath());
+        }
+      }
+      if (!directory.delete()) {
+        logger.warn("directory {} could not be deleted!", directory.getPath());
+      }
+    }
+  }
+
   @Override
   public byte[] retrieve(String identifier, int uniqueIdentifier)
   {
@@ -0,0 +1,312 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * Storage that appends spooled blocks into pre-allocated, memory-mapped segment files.<p>
+ * <br>
+ * Each identifier gets its own directory with an identity file that is verified once, when the identifier is first
+ * seen. Blocks are appended to the active segment of the identifier and located through an in-memory index, so
+ * neither store nor retrieve creates, opens or deletes files per block. A segment file is deleted as a whole once it
+ * is full and every block stored in it has been discarded, which matches the order in which the buffer server
+ * purges its blocks. All the segments of an identifier and its directory are deleted when its data list is torn
+ * down. The mapping of a reclaimed segment is released right away rather than when the buffer is garbage collected,
+ * so that the address space and the disk space of the segment are returned together.
+ *
+ * @since 3.7.0
+ */
+public class SegmentedDiskStorage implements Storage.IdentifierDiscardingStorage
+{
+  public static final int DEFAULT_SEGMENT_SIZE = 256 * 1024 * 1024;
+  private static final Logger logger = LoggerFactory.getLogger(SegmentedDiskStorage.class);
+  private static final AtomicBoolean unmapUnsupported = new AtomicBoolean();
+  final String basePath;
+  final int segmentSize;
+  private final HashMap<String, Spool> spools = new HashMap<>();
+  private int uniqueIdentifier;
+
+  public SegmentedDiskStorage(String baseDirectory, int segmentSize)
+  {
+    if (segmentSize < 1) {
+      throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+    }
+    basePath = baseDirectory;
+    this.segmentSize = segmentSize;
+    logger.info("Using {} as the basepath for spooling with segments of {} bytes.", basePath, segmentSize);
+  }
+
+  public SegmentedDiskStorage(String baseDirectory)
+  {
+    this(baseDirectory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  public SegmentedDiskStorage() throws IOException
+  {
+    File tempFile = File.createTempFile("msp", "msp");
+    basePath = tempFile.getParent();
+    segmentSize = DEFAULT_SEGMENT_SIZE;
+    tempFile.delete();
+    logger.info("using {} as the basepath for spooling.", basePath);
+  }
+
+  @Override
+  public Storage getInstance() throws IOException
+  {
+    return new SegmentedDiskStorage(basePath, segmentSize);
+  }
+
+  @Override
+  public synchronized int store(String identifier, byte[] bytes, int startingOffset, int endingOffset)
+  {
+    final int length = endingOffset - startingOffset;
+    final Spool spool = getSpool(identifier);
+    Segment segment = spool.active;
+    try {
+      if (segment == null || segment.buffer.capacity() - segment.writingOffset < length) {
+        if (segment != null) {
+          segment.sealed = true;
+          spool.reclaim(segment);
+        }
+        segment = spool.newSegment(Math.max(segmentSize, length));
+      }
+    } catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
+
+    segment.buffer.position(segment.writingOffset);
+    segment.buffer.put(bytes, startingOffset, length);
+
+    final int lUniqueIdentifier = ++uniqueIdentifier;
+    spool.index.put(lUniqueIdentifier, new Location(segment, segment.writingOffset, length));
+    segment.writingOffset += length;
+    segment.liveBlocks++;
+    return lUniqueIdentifier;
+  }
+
+  @Override
+  public synchronized byte[] retrieve(String identifier, int uniqueIdentifier)
+  {
+    final Location location = getLocation(identifier, uniqueIdentifier);
+    final byte[] bytes = new byte[location.length];
+    location.segment.buffer.position(location.offset);
+    location.segment.buffer.get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public synchronized void discard(String identifier, int uniqueIdentifier)
+  {
+    final Location location = getLocation(identifier, uniqueIdentifier);
+    spools.get(identifier).index.remove(uniqueIdentifier);
+    location.segment.liveBlocks--;
+    spools.get(identifier).reclaim(location.segment);
+  }
+
+  @Override
+  public synchronized void discard(String identifier)
+  {
+    final Spool spool = spools.remove(identifier);
+    if (spool == null) {
+      return;
+    }
+    final Set<Segment> segments = Sets.newSetFromMap(new IdentityHashMap<Segment, Boolean>());
+    for (Location location : spool.index.values()) {
+      segments.add(location.segment);
+    }
+    if (spool.active != null) {
+      segments.add(spool.active);
+    }
+    for (Segment segment : segments) {
+      unmap(segment.buffer);
+      if (!segment.file.delete()) {
+        logger.warn("File {} could not be deleted!", segment.file.getPath());
+      }
+    }
+    if (!new File(spool.directory, "identity").delete() || !spool.directory.delete()) {
+      logger.warn("directory {} could not be deleted!", spool.directory.getPath());
+    }
+    logger.debug("Discarded {} segments of {}", segments.size(), identifier);
+  }
+
+  private Location getLocation(String identifier, int uniqueIdentifier)
+  {
+    final Spool spool = spools.get(identifier);
+    if (spool == null) {
+      throw new RuntimeException("No blocks are spooled for identifier " + identifier);
+    }
+    final Location location = spool.index.get(uniqueIdentifier);
+    if (location == null) {
+      throw new RuntimeException("Block " + uniqueIdentifier + " does not exist in " + spool.directory.getPath());
+    }
+    return location;
+  }
+
+  private Spool getSpool(String identifier)
+  {
+    Spool spool = spools.get(identifier);
+    if (spool == null) {
+      final File directory = new File(basePath, DiskStorage.normalizeFileName(identifier));
+      final File identityFile = new File(directory, "identity");
+      try {
+        if (directory.exists()) {
+          if (!identityFile.isFile()) {
+            throw new IllegalStateException("Identity file is hijacked!");
+          }
+          if (!Arrays.equals(Files.toByteArray(identityFile), identifier.getBytes())) {
+            throw new IllegalStateException("Collision in identifier name, please ensure that the slug for " +
+                "the identifiers is different");
+          }
+        } else if (directory.mkdir()) {
+          Files.write(identifier.getBytes(), identityFile);
+        } else {
+          throw new RuntimeException("directory " + directory.getAbsolutePath() + " could not be created!");
+        }
+      } catch (IOException ex) {
+        throw new RuntimeException(ex);
+      }
+      spool = new Spool(directory);
+      spools.put(identifier, spool);
+    }
+    return spool;
+  }
+
+  /**
+   * Releases the mapping of the buffer through its cleaner, the buffer must not be accessed afterwards. Falls back to
+   * leaving the mapping to the garbage collector if the cleaner is not accessible on this JVM, as on Java 9 and later.
+   *
+   * @param buffer mapped buffer to release
+   * @return true if the mapping was released, false otherwise
+   */
+  static boolean unmap(MappedByteBuffer buffer)
+  {
+    if (unmapUnsupported.get()) {
+      return false;
+    }
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+        return true;
+      }
+    } catch (Exception ex) {
+      if (unmapUnsupported.compareAndSet(false, true)) {
+        logger.info("Mappings of the segments are left to the garbage collector on this JVM: {}", ex.toString());
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Segment files and block index of a single identifier.
+   */
+  private static class Spool
+  {
+    final File directory;
+    final HashMap<Integer, Location> index = new HashMap<>();
+    Segment active;
+    int segmentCount;
+
+    Spool(File directory)
+    {
+      this.directory = directory;
+    }
+
+    Segment newSegment(int size) throws IOException
+    {
+      final File file = new File(directory, "segment-" + segmentCount++);
+      if (file.exists() && !file.delete()) {
+        throw new IOException("Stale segment " + file.getPath() + " could not be deleted!");
+      }
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(size);
+        /* the mapping stays valid after the channel is closed */
+        active = new Segment(file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+      }
+      logger.debug("Allocated segment {} of {} bytes", file, size);
+      return active;
+    }
+
+    void reclaim(Segment segment)
+    {
+      if (segment.sealed && segment.liveBlocks == 0) {
+        if (segment == active) {
+          active = null;
+        }
+        unmap(segment.buffer);
+        if (!segment.file.delete()) {
+          throw new RuntimeException("File " + segment.file.getPath() + " could not be deleted!");
+        }
+        logger.debug("Reclaimed segment {}", segment.file);
+      }
+    }
+
+  }
+
+  private static class Segment
+  {
+    final File file;
+    final MappedByteBuffer buffer;
+    int writingOffset;
+    int liveBlocks;
+    boolean sealed;
+
+    Segment(File file, MappedByteBuffer buffer)
+    {
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+  }
+
+  private static class Location
+  {
+    final Segment segment;
+    final int offset;
+    final int length;
+
+    Location(Segment segment, int offset, int length)
+    {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+  }
+
+}
@@ -77,4 +77,21 @@ public interface Storage
    * @param uniqueIdentifier
    */
   void discard(String identifier, int uniqueIdentifier);
+
+  /**
+   * Storage which can discard all the blocks of an identifier at once. The platform discards the blocks of a storage
+   * which does not implement this interface one at a time only.
+   *
+   * @since 3.7.0
+   */
+  interface IdentifierDiscardingStorage extends Storage
+  {
+    /**
+     * Discard all the blocks stored for the identifier along with the resources held for it. The platform calls this
+     * method once the data source identified by it is torn down.
+     *
+     * @param identifier primary identifier of the blocks which typically identifies the data source.
+     */
+    void discard(String identifier);
+  }
 }
@@ -0,0 +1,320 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.util.SerializedData;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class BlockCacheManagerTest
+{
+  private static final int BLOCK_SIZE = 64;
+  private final QueueingExecutor executor = new QueueingExecutor();
+  private MemoryStorage storage;
+  private ExecutorService autoFlushExecutor;
+  private ExecutorService storageExecutor;
+
+  @BeforeMethod
+  public void setup()
+  {
+    executor.tasks.clear();
+    storage = new MemoryStorage();
+    autoFlushExecutor = Executors.newSingleThreadExecutor();
+    storageExecutor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterMethod
+  public void teardown()
+  {
+    autoFlushExecutor.shutdownNow();
+    storageExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testBudget()
+  {
+    BlockCacheManager manager = new BlockCacheManager(BLOCK_SIZE * 2, executor);
+    assertEquals(manager.getBudget(), BLOCK_SIZE * 2);
+    DataList first = newDataList("first", manager);
+    newDataList("second", manager);
+    newDataList("third", manager);
+    assertEquals(manager.getBudget(), BLOCK_SIZE * 6, "budget scales with the number of data lists");
+
+    manager.unregister(first);
+    assertEquals(manager.getBudget(), BLOCK_SIZE * 4);
+
+    manager.setBudget(BLOCK_SIZE * 3);
+    assertEquals(manager.getBudget(), BLOCK_SIZE * 3, "fixed budget");
+    manager.setBudget(0);
+    assertEquals(manager.getBudget(), BLOCK_SIZE * 4);
+  }
+
+  @Test
+  public void testEnforceBudgetOnExecutor() throws InterruptedException
+  {
+    BlockCacheManager manager = new BlockCacheManager(BLOCK_SIZE * 2, executor);
+    DataList first = newDataList("first", manager);
+    DataList second = newDataList("second", manager);
+    publish(first, 1, 10);
+    publish(second, 1, 10);
+
+    assertTrue(manager.getInMemoryBytes() > manager.getBudget(), "in memory " + manager.getInMemoryBytes());
+    assertEquals(executor.tasks.size(), 1, "publishers schedule a single enforcement");
+    assertTrue(storage.storingThreads.isEmpty(), "publishers do not spool");
+
+    executor.runAll();
+    awaitStorage();
+    assertTrue(manager.getInMemoryBytes() <= manager.getBudget(), "in memory " + manager.getInMemoryBytes());
+    assertFalse(storage.storingThreads.isEmpty());
+    assertFalse(storage.storingThreads.contains(Thread.currentThread()), "spooled on the calling thread");
+
+    manager.enforceBudget();
+    assertEquals(executor.tasks.size(), 1, "enforcement is scheduled again once the previous run started");
+  }
+
+  @Test
+  public void testEvictionOrder() throws InterruptedException
+  {
+    BlockCacheManager manager = new BlockCacheManager(BLOCK_SIZE, executor);
+    DataList dataList = newDataList("dataList", manager);
+    manager.setBudget(Long.MAX_VALUE);
+    publish(dataList, 1, 10);
+    executor.runAll();
+
+    List<DataList.Block> blocks = new ArrayList<>();
+    for (DataList.Block block = dataList.first; block != null; block = block.next) {
+      blocks.add(block);
+    }
+    assertTrue(blocks.size() > 4, "blocks " + blocks);
+
+    try (DataList.DataListIterator iterator = dataList.newIterator(0)) {
+      assertTrue(iterator.hasNext());
+      manager.setBudget(manager.getInMemoryBytes() - 2 * BLOCK_SIZE);
+      manager.enforceBudget();
+      executor.runAll();
+      awaitStorage();
+    }
+
+    final int last = blocks.size() - 1;
+    for (int i = 0; i < blocks.size(); i++) {
+      if (i == last - 1 || i == last - 2) {
+        assertNull(blocks.get(i).data, "block farthest ahead of the reader is spooled " + i);
+      } else {
+        assertNotNull(blocks.get(i).data, "block closer to the reader is kept " + i);
+      }
+    }
+  }
+
+  @Test
+  public void testInMemoryBytes() throws Exception
+  {
+    BlockCacheManager manager = new BlockCacheManager(BLOCK_SIZE * 2, executor);
+    DataList first = newDataList("first", manager);
+    DataList second = newDataList("second", manager);
+    publish(first, 1, 10);
+    publish(second, 1, 10);
+    assertEquals(manager.getInMemoryBytes(), getInMemoryBytes(first) + getInMemoryBytes(second));
+
+    executor.runAll();
+    awaitPendingTasks();
+    assertEquals(manager.getInMemoryBytes(), getInMemoryBytes(first) + getInMemoryBytes(second), "after spooling");
+
+    first.purge(5);
+    assertEquals(manager.getInMemoryBytes(), getInMemoryBytes(first) + getInMemoryBytes(second), "after purge");
+    second.reset();
+    assertEquals(manager.getInMemoryBytes(), getInMemoryBytes(first) + getInMemoryBytes(second), "after reset");
+  }
+
+  @Test
+  public void testSpoolDoesNotCancelPendingTask() throws Exception
+  {
+    BlockCacheManager manager = new BlockCacheManager(BLOCK_SIZE, executor);
+    manager.setBudget(Long.MAX_VALUE);
+    DataList dataList = newDataList("dataList", manager);
+    publish(dataList, 1, 10);
+    final DataList.Block block = dataList.first.next;
+
+    CountDownLatch latch = blockStorageExecutor();
+    assertTrue(block.spool());
+    assertFalse(block.spool(), "spooling is pending");
+    latch.countDown();
+    awaitPendingTasks();
+    assertNull(block.data, "block is spooled");
+
+    latch = blockStorageExecutor();
+    block.prefetch();
+    assertFalse(block.spool(), "prefetch is pending");
+    latch.countDown();
+    awaitPendingTasks();
+    assertNotNull(block.data, "prefetch is not cancelled");
+  }
+
+  @Test
+  public void testSpoolRacesPrefetch() throws Exception
+  {
+    BlockCacheManager manager = new BlockCacheManager(BLOCK_SIZE, executor);
+    manager.setBudget(Long.MAX_VALUE);
+    final DataList dataList = newDataList("dataList", manager);
+    publish(dataList, 1, 10);
+    final DataList.Block block = dataList.first.next;
+
+    Thread prefetcher = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        for (int i = 0; i < 10000; i++) {
+          block.prefetch();
+        }
+      }
+    };
+    prefetcher.start();
+    for (int i = 0; i < 10000; i++) {
+      block.spool();
+    }
+    prefetcher.join();
+    awaitStorage();
+    assertEquals(manager.getInMemoryBytes(), getInMemoryBytes(dataList));
+
+    int payloads = 0;
+    try (DataList.DataListIterator iterator = dataList.newIterator(0)) {
+      while (iterator.hasNext()) {
+        SerializedData data = iterator.next();
+        if (data.buffer[data.dataOffset] == MessageType.PAYLOAD_VALUE) {
+          payloads++;
+        }
+      }
+    }
+    assertEquals(payloads, 40, "payload tuples");
+  }
+
+  private static long getInMemoryBytes(DataList dataList)
+  {
+    long inMemoryBytes = 0;
+    for (DataList.Block block = dataList.first; block != null; block = block.next) {
+      if (block.data != null) {
+        inMemoryBytes += block.data.length;
+      }
+    }
+    return inMemoryBytes;
+  }
+
+  /**
+   * Occupies the storage thread until the returned latch is counted down, so the tasks scheduled meanwhile are
+   * pending.
+   */
+  private CountDownLatch blockStorageExecutor()
+  {
+    final CountDownLatch latch = new CountDownLatch(1);
+    storageExecutor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    return latch;
+  }
+
+  private void awaitPendingTasks() throws Exception
+  {
+    storageExecutor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+      }
+    }).get();
+  }
+
+  private DataList newDataList(String identifier, BlockCacheManager manager)
+  {
+    DataList dataList = new DataList(identifier, BLOCK_SIZE, 100, false);
+    dataList.setAutoFlushExecutor(autoFlushExecutor);
+    dataList.setSecondaryStorage(storage, storageExecutor);
+    dataList.setBlockCacheManager(manager);
+    return dataList;
+  }
+
+  private void awaitStorage() throws InterruptedException
+  {
+    storageExecutor.shutdown();
+    assertTrue(storageExecutor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  private static void publish(DataList dataList, int fromWindowId, int toWindowId)
+  {
+    DataListPublisher publisher = new DataListPublisher(dataList, fromWindowId);
+    publisher.resetWindow(0);
+    for (int windowId = fromWindowId; windowId <= toWindowId; windowId++) {
+      publisher.beginWindow(windowId);
+      for (int i = 0; i < 4; i++) {
+        publisher.payload(0, windowId);
+      }
+      publisher.endWindow(windowId);
+    }
+  }
+
+  private static class QueueingExecutor implements Executor
+  {
+    final List<Runnable> tasks = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable command)
+    {
+      tasks.add(command);
+    }
+
+    void runAll()
+    {
+      final List<Runnable> tasks = new ArrayList<>(this.tasks);
+      this.tasks.clear();
+      for (Runnable task : tasks) {
+        task.run();
+      }
+    }
+
+  }
+
+}
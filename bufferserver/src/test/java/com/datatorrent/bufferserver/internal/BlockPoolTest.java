@@ -0,0 +1,249 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.util.SerializedData;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ *
+ */
+public class BlockPoolTest
+{
+  private static final int BLOCK_SIZE = 64;
+  private static final int PAYLOADS_PER_WINDOW = 4;
+  private ExecutorService executor;
+
+  @BeforeClass
+  public void setup()
+  {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterClass
+  public void teardown()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testReuse()
+  {
+    BlockPool pool = new BlockPool(BLOCK_SIZE, 2);
+    byte[] first = pool.acquire();
+    byte[] second = pool.acquire();
+    assertEquals(first.length, BLOCK_SIZE);
+    assertNotSame(first, second);
+    assertEquals(pool.getAllocatedCount(), 2);
+    assertEquals(pool.getReusedCount(), 0);
+
+    assertTrue(pool.release(first));
+    assertEquals(pool.getAvailableCount(), 1);
+    assertSame(pool.acquire(), first);
+    assertEquals(pool.getAvailableCount(), 0);
+    assertEquals(pool.getAllocatedCount(), 2);
+    assertEquals(pool.getReusedCount(), 1);
+  }
+
+  @Test
+  public void testSizeLimits()
+  {
+    BlockPool pool = new BlockPool(BLOCK_SIZE, 2);
+    assertFalse(pool.release(null));
+    assertFalse(pool.release(new byte[BLOCK_SIZE - 1]));
+    assertFalse(pool.release(new byte[BLOCK_SIZE + 1]));
+    assertEquals(pool.getAvailableCount(), 0);
+
+    assertTrue(pool.release(new byte[BLOCK_SIZE]));
+    assertTrue(pool.release(new byte[BLOCK_SIZE]));
+    assertFalse(pool.release(new byte[BLOCK_SIZE]), "release beyond capacity");
+    assertEquals(pool.getAvailableCount(), 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidCapacity()
+  {
+    new BlockPool(BLOCK_SIZE, 0);
+  }
+
+  @Test
+  public void testBlockSizeMismatch()
+  {
+    DataList dataList = new DataList("testBlockSizeMismatch", BLOCK_SIZE, 100, false);
+    dataList.setAutoFlushExecutor(executor);
+    BlockPool pool = new BlockPool(BLOCK_SIZE * 2, 2);
+    dataList.setBlockPool(pool);
+    publish(dataList, 1, 4);
+    assertEquals(pool.getAllocatedCount(), 0, "pool of a different block size is not used");
+  }
+
+  @Test
+  public void testDataListRecycle()
+  {
+    DataList dataList = new DataList("testDataListRecycle", BLOCK_SIZE, 100, false);
+    dataList.setAutoFlushExecutor(executor);
+    BlockPool pool = new BlockPool(BLOCK_SIZE, 100);
+    dataList.setBlockPool(pool);
+
+    publish(dataList, 1, 10);
+    final long allocated = pool.getAllocatedCount();
+    assertTrue(allocated > 2, "blocks allocated " + allocated);
+    assertEquals(pool.getAvailableCount(), 0);
+    assertWindows(dataList, 1, 10);
+
+    dataList.purge(5);
+    final int available = pool.getAvailableCount();
+    assertTrue(available > 0, "purged blocks are recycled");
+    assertWindows(dataList, 6, 10);
+
+    /* recycled buffers hold stale data that must be overwritten without corrupting the retained blocks */
+    publish(dataList, 11, 20);
+    assertTrue(pool.getReusedCount() > 0, "recycled blocks are reused");
+    assertTrue(pool.getAvailableCount() < available);
+    assertWindows(dataList, 6, 20);
+
+    final int reusable = pool.getAvailableCount();
+    dataList.purge(15);
+    assertTrue(pool.getAvailableCount() > reusable, "purged blocks are recycled");
+    assertWindows(dataList, 16, 20);
+  }
+
+  @Test
+  public void testReferencedBlockNotRecycled()
+  {
+    DataList dataList = new DataList("testReferencedBlockNotRecycled", BLOCK_SIZE, 100, false);
+    dataList.setAutoFlushExecutor(executor);
+    BlockPool pool = new BlockPool(BLOCK_SIZE, 100);
+    dataList.setBlockPool(pool);
+    publish(dataList, 1, 10);
+
+    try (DataList.DataListIterator iterator = dataList.newIterator(0)) {
+      try {
+        dataList.purge(5);
+        fail("purged a block referenced by an iterator");
+      } catch (IllegalStateException e) {
+        assertEquals(pool.getAvailableCount(), 0, "block referenced by an iterator is recycled");
+      }
+      assertTrue(iterator.hasNext());
+    }
+  }
+
+  @Test
+  public void testSendingNodeBlocksRecycle()
+  {
+    DataList dataList = new DataList("testSendingNodeBlocksRecycle", BLOCK_SIZE, 100, false);
+    dataList.setAutoFlushExecutor(executor);
+    BlockPool pool = new BlockPool(BLOCK_SIZE, 100);
+    dataList.setBlockPool(pool);
+    publish(dataList, 1, 10);
+
+    LogicalNode ln = new LogicalNode("subscriber", "publisher", "subscriber/type", dataList.newIterator(0), 0, null);
+    RecordingClient client = new RecordingClient();
+    client.slow = true;
+    ln.addConnection(client);
+    ln.catchUp();
+    ln.addedData(false);
+    assertFalse(client.isWriteSuspended(), "data is queued");
+
+    /* the slow client still queues data out of the purged blocks, which must not be overwritten by new blocks */
+    dataList.purge(5);
+    assertEquals(pool.getAvailableCount(), 0, "block queued by a client is recycled");
+    publish(dataList, 11, 20);
+    client.drain();
+    List<String> expected = new ArrayList<>();
+    for (int windowId = 1; windowId <= 10; windowId++) {
+      for (int i = 0; i < PAYLOADS_PER_WINDOW; i++) {
+        expected.add("P" + (windowId * PAYLOADS_PER_WINDOW + i));
+      }
+    }
+    assertEquals(client.getPayloads(), expected);
+
+    client.slow = false;
+    ln.addedData(false);
+    dataList.purge(15);
+    assertTrue(pool.getAvailableCount() > 0, "blocks are recycled once the client drained");
+  }
+
+  private static void publish(DataList dataList, int fromWindowId, int toWindowId)
+  {
+    DataListPublisher publisher = new DataListPublisher(dataList, fromWindowId);
+    if (fromWindowId == 1) {
+      publisher.resetWindow(0);
+    }
+    for (int windowId = fromWindowId; windowId <= toWindowId; windowId++) {
+      publisher.beginWindow(windowId);
+      for (int i = 0; i < PAYLOADS_PER_WINDOW; i++) {
+        publisher.payload(0, windowId * PAYLOADS_PER_WINDOW + i);
+      }
+      publisher.endWindow(windowId);
+    }
+  }
+
+  private static void assertWindows(DataList dataList, int fromWindowId, int toWindowId)
+  {
+    List<Integer> expected = new ArrayList<>();
+    for (int windowId = fromWindowId; windowId <= toWindowId; windowId++) {
+      expected.add(-windowId);
+      for (int i = 0; i < PAYLOADS_PER_WINDOW; i++) {
+        expected.add(windowId * PAYLOADS_PER_WINDOW + i);
+      }
+    }
+
+    List<Integer> actual = new ArrayList<>();
+    try (DataList.DataListIterator iterator = dataList.newIterator(0)) {
+      while (iterator.hasNext()) {
+        SerializedData sd = iterator.next();
+        switch (sd.buffer[sd.dataOffset]) {
+          case MessageType.BEGIN_WINDOW_VALUE:
+            actual.add(-((BeginWindowTuple)Tuple.getTuple(sd.buffer, sd.dataOffset,
+                sd.length - sd.dataOffset + sd.offset)).getWindowId());
+            break;
+
+          case MessageType.PAYLOAD_VALUE:
+            actual.add(DataListPublisher.getValue(sd.buffer, sd.dataOffset));
+            break;
+
+          default:
+            break;
+        }
+      }
+    }
+    /* purge keeps the tail of the last purged window in the first block */
+    assertEquals(actual.subList(actual.indexOf(-fromWindowId), actual.size()), expected);
+  }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import com.datatorrent.bufferserver.packet.BeginWindowTuple;
+import com.datatorrent.bufferserver.packet.EndWindowTuple;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.ResetWindowTuple;
+import com.datatorrent.bufferserver.util.VarInt;
+
+/**
+ * Writes serialized tuples into a data list the same way the server publisher does: tuples are flushed as they are
+ * written and a tuple that does not fit into the current block is moved to a new block together with its size. The
+ * tuples are framed with a two byte size for a {@link FastDataList}.
+ */
+class DataListPublisher
+{
+  private final DataList dataList;
+  private byte[] buffer;
+  private int writeOffset;
+
+  DataListPublisher(DataList dataList, long windowId)
+  {
+    this.dataList = dataList;
+    buffer = dataList.getBuffer(windowId);
+    writeOffset = dataList.getPosition();
+  }
+
+  void resetWindow(int baseSeconds)
+  {
+    publish(ResetWindowTuple.getSerializedTuple(baseSeconds, 500));
+  }
+
+  void beginWindow(int windowId)
+  {
+    publish(BeginWindowTuple.getSerializedTuple(windowId));
+  }
+
+  void endWindow(int windowId)
+  {
+    publish(EndWindowTuple.getSerializedTuple(windowId));
+  }
+
+  void payload(int partition, int value)
+  {
+    final byte[] tuple = PayloadTuple.getSerializedTuple(partition, 4);
+    tuple[5] = (byte)(value >>> 24);
+    tuple[6] = (byte)(value >>> 16);
+    tuple[7] = (byte)(value >>> 8);
+    tuple[8] = (byte)value;
+    publish(tuple);
+  }
+
+  void publish(byte[] tuple)
+  {
+    final byte[] frame;
+    if (dataList instanceof FastDataList) {
+      frame = new byte[tuple.length + 2];
+      frame[0] = (byte)tuple.length;
+      frame[1] = (byte)(tuple.length >> 8);
+      System.arraycopy(tuple, 0, frame, 2, tuple.length);
+    } else {
+      frame = new byte[VarInt.getSize(tuple.length) + tuple.length];
+      System.arraycopy(tuple, 0, frame, VarInt.write(tuple.length, frame, 0), tuple.length);
+    }
+
+    final int length = Math.min(frame.length, buffer.length - writeOffset);
+    System.arraycopy(frame, 0, buffer, writeOffset, length);
+    writeOffset += length;
+    if (length < frame.length) {
+      dataList.flush(writeOffset);
+      final byte[] newBuffer = dataList.newBuffer(frame.length);
+      System.arraycopy(frame, 0, newBuffer, 0, frame.length);
+      buffer = newBuffer;
+      writeOffset = frame.length;
+      dataList.addBuffer(newBuffer);
+    }
+    dataList.flush(writeOffset);
+  }
+
+  /**
+   * @param buffer the buffer holding the tuple
+   * @param offset offset of the message type of a payload tuple written by {@link #payload(int, int)}
+   * @return the value of the payload
+   */
+  static int getValue(byte[] buffer, int offset)
+  {
+    return buffer[offset + 5] << 24 | (buffer[offset + 6] & 0xff) << 16 | (buffer[offset + 7] & 0xff) << 8 |
+        (buffer[offset + 8] & 0xff);
+  }
+
+}
@@ -0,0 +1,516 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.util.BitVector;
+import com.datatorrent.bufferserver.util.SerializedData;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests the partition index of the data list blocks and the iteration of partitioned subscribers over it.
+ */
+public class DataListTest
+{
+  private static final int BLOCK_SIZE = 64;
+  private static final int WINDOWS = 4;
+  private static final int TUPLES_PER_WINDOW = 20;
+  private static final BitVector[] PARTITIONS = {new BitVector(1, 3)};
+  private ExecutorService executor;
+  private DataList dataList;
+  private DataListPublisher publisher;
+
+  @BeforeMethod
+  public void setup()
+  {
+    executor = Executors.newSingleThreadExecutor();
+    dataList = new DataList("publisher", BLOCK_SIZE, 100, false);
+    dataList.setAutoFlushExecutor(executor);
+    publisher = new DataListPublisher(dataList, 1);
+  }
+
+  @AfterMethod
+  public void teardown()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testSeek()
+  {
+    PartitionIndex index = new PartitionIndex();
+    index.addControl(0);
+    index.addPayload(10, 1);
+    index.addPayload(20, 2);
+    index.addPayload(30, 1);
+    index.addControl(40);
+    index.addPayload(50, 2);
+    BitVector[] two = {new BitVector(2, 3)};
+
+    assertEquals(index.seek(0, 0, two), 0, "control tuple");
+    assertEquals(index.seek(0, 10, two), 2, "payload of another partition is skipped");
+    assertEquals(index.getOffset(2), 20);
+    assertEquals(index.seek(2, 30, two), 4, "skipping stops at a control tuple");
+    assertEquals(index.seek(0, 50, PARTITIONS), 5, "last indexed tuple is returned even when rejected");
+    assertEquals(index.seek(0, 15, two), -1, "offset between tuples");
+    assertEquals(index.seek(0, 60, two), -1, "offset not indexed yet");
+  }
+
+  @Test
+  public void testSeekWhileGrowing() throws Exception
+  {
+    final PartitionIndex index = new PartitionIndex();
+    final int entries = 1 << 20;
+    Future<?> writer = executor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        for (int i = 0; i < entries; i++) {
+          index.addControl(i * 10);
+        }
+      }
+    });
+
+    int count;
+    do {
+      count = index.getCount();
+      if (count > 0) {
+        assertEquals(index.seek(count - 1, (count - 1) * 10, PARTITIONS), count - 1, "counted entry of a grown index");
+      }
+    } while (count < entries);
+    writer.get();
+  }
+
+  /**
+   * Publishes and purges on one thread, as the server does, while another thread reads. The purge moves the reading
+   * offset of the blocks the reader is in, and the reader has to see every tuple published after the purged windows.
+   */
+  @Test
+  public void testPurgeWhileReading() throws Exception
+  {
+    final int windows = 2000;
+    dataList = new DataList("publisher", 1024, 100, false);
+    dataList.setAutoFlushExecutor(executor);
+    publisher = new DataListPublisher(dataList, 1);
+    final DataList.DataListIterator iterator = dataList.newIterator(0);
+    final RecordingClient client = new RecordingClient();
+    final AtomicInteger endedWindow = new AtomicInteger();
+    final ExecutorService reader = Executors.newSingleThreadExecutor();
+    try {
+      final Future<?> reading = reader.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          while (endedWindow.get() < windows) {
+            while (iterator.hasNext()) {
+              final SerializedData data = iterator.next();
+              client.send(data.buffer, data.offset, data.length);
+              if (data.buffer[data.dataOffset] == MessageType.END_WINDOW_VALUE) {
+                endedWindow.incrementAndGet();
+              }
+            }
+            Thread.yield();
+          }
+        }
+      });
+
+      publisher.resetWindow(7);
+      int purgedWindow = 0;
+      for (int windowId = 1; windowId <= windows; windowId++) {
+        publisher.beginWindow(windowId);
+        for (int i = 0; i < TUPLES_PER_WINDOW; i++) {
+          publisher.payload(i % 4, windowId * 100 + i);
+        }
+        publisher.endWindow(windowId);
+        final int readWindow = endedWindow.get();
+        if (readWindow - 1 > purgedWindow) {
+          purgedWindow = readWindow - 1;
+          dataList.purge(7L << 32 | purgedWindow);
+        }
+      }
+      reading.get();
+      assertTrue(purgedWindow > 0, "purged while reading");
+    } finally {
+      reader.shutdownNow();
+    }
+
+    final List<String> expected = new ArrayList<>();
+    expected.add("R7");
+    for (int windowId = 1; windowId <= windows; windowId++) {
+      expected.add("B" + windowId);
+      for (int i = 0; i < TUPLES_PER_WINDOW; i++) {
+        expected.add("P" + (windowId * 100 + i));
+      }
+      expected.add("E" + windowId);
+    }
+    assertEquals(client.tuples, expected);
+  }
+
+  @Test
+  public void testIndexedOnlyForPartitionedListeners()
+  {
+    assertNull(dataList.newPartitionIndex());
+    dataList.addDataListener(new PartitionedListener());
+    assertNull(dataList.newPartitionIndex(), "listener without partitions");
+
+    PartitionedListener partitioned = new PartitionedListener(PARTITIONS);
+    dataList.addDataListener(partitioned);
+    assertNotNull(dataList.newPartitionIndex());
+    dataList.removeDataListener(partitioned);
+    assertNull(dataList.newPartitionIndex());
+  }
+
+  @Test
+  public void testIteratorWithIndex()
+  {
+    dataList.addDataListener(new PartitionedListener(PARTITIONS));
+    testIterator(true);
+  }
+
+  @Test
+  public void testIteratorWithoutIndex()
+  {
+    testIterator(false);
+  }
+
+  @Test
+  public void testLogicalNodeWithIndex()
+  {
+    dataList.addDataListener(new PartitionedListener(PARTITIONS));
+    testLogicalNode();
+  }
+
+  @Test
+  public void testLogicalNodeWithoutIndex()
+  {
+    testLogicalNode();
+  }
+
+  /**
+   * Reads the tuples while they are published one by one and again once all are published. The iterator of a
+   * partitioned subscriber has to return the same tuples with and without the index, the index only saves reading the
+   * rejected ones.
+   */
+  private void testIterator(boolean indexed)
+  {
+    PartitionedReader tailing = new PartitionedReader(dataList.newIterator(0));
+    publisher.resetWindow(7);
+    tailing.read();
+    for (int windowId = 1; windowId <= WINDOWS; windowId++) {
+      publisher.beginWindow(windowId);
+      tailing.read();
+      for (int i = 0; i < TUPLES_PER_WINDOW; i++) {
+        publisher.payload(i % 4, windowId * 100 + i);
+        tailing.read();
+      }
+      publisher.endWindow(windowId);
+      tailing.read();
+    }
+    PartitionedReader catchingUp = new PartitionedReader(dataList.newIterator(0));
+    catchingUp.read();
+
+    final List<String> expected = getExpectedTuples();
+    assertEquals(tailing.client.tuples, expected, "tailing");
+    assertEquals(catchingUp.client.tuples, expected, "catching up");
+
+    final int published = 1 + WINDOWS * (TUPLES_PER_WINDOW + 2);
+    assertTrue(dataList.first.next != null, "tuples span several blocks");
+    if (indexed) {
+      assertTrue(catchingUp.reads < published, "rejected tuples are skipped, read " + catchingUp.reads);
+    } else {
+      assertEquals(catchingUp.reads, published, "all tuples are read");
+    }
+  }
+
+  private void testLogicalNode()
+  {
+    LogicalNode ln = new LogicalNode("subscriber", "publisher", "subscriber/type", dataList.newIterator(0), 0, null);
+    ln.addPartition(1, 3);
+    RecordingClient client = new RecordingClient();
+    ln.addConnection(client);
+
+    publisher.resetWindow(7);
+    ln.catchUp();
+    for (int windowId = 1; windowId <= WINDOWS; windowId++) {
+      publisher.beginWindow(windowId);
+      for (int i = 0; i < TUPLES_PER_WINDOW; i++) {
+        publisher.payload(i % 4, windowId * 100 + i);
+        if (i % 7 == 0) {
+          ln.addedData(false);
+        }
+      }
+      publisher.endWindow(windowId);
+      ln.addedData(false);
+    }
+
+    assertEquals(client.tuples, getExpectedTuples());
+  }
+
+  /**
+   * The connection of the lagging subscriber stays full while the tuples are published, so the flushes do not let it
+   * read ahead.
+   */
+  @Test
+  public void testSpoolForLaggingListeners() throws Exception
+  {
+    final MemoryStorage storage = new MemoryStorage();
+    setSecondaryStorage(storage);
+    final RecordingClient laggingClient = new RecordingClient();
+    final LogicalNode lagging = newLogicalNode("lagging", BLOCK_SIZE, laggingClient);
+    final LogicalNode fast = newLogicalNode("fast", BLOCK_SIZE, new RecordingClient());
+
+    laggingClient.full = true;
+    publish(fast);
+    spoolForLaggingListeners();
+    final DataList.Block laggingBlock = lagging.getIterator().da;
+    final DataList.Block fastBlock = fast.getIterator().da;
+    assertTrue(laggingBlock.next != fastBlock, "fast listener is several blocks ahead");
+    assertNotNull(laggingBlock.data, "block in use by the lagging listener");
+    assertNotNull(fastBlock.data, "block of the listener within its credit");
+    for (DataList.Block block = laggingBlock.next; block != fastBlock; block = block.next) {
+      assertNull(block.data, "block needed only by the lagging listener");
+    }
+    for (DataList.Block block = fastBlock; block != null; block = block.next) {
+      assertNotNull(block.data, "block ahead of the listener within its credit");
+    }
+    assertTrue(!storage.blocks.isEmpty(), "spooled blocks");
+
+    laggingClient.full = false;
+    addedData(lagging);
+    assertEquals(laggingClient.tuples, getAllTuples(), "lagging listener is served from the storage");
+  }
+
+  @Test
+  public void testResetDiscardsSpooledBlocks() throws Exception
+  {
+    final MemoryStorage storage = new MemoryStorage();
+    setSecondaryStorage(storage);
+    final RecordingClient laggingClient = new RecordingClient();
+    final LogicalNode lagging = newLogicalNode("lagging", BLOCK_SIZE, laggingClient);
+    final LogicalNode fast = newLogicalNode("fast", BLOCK_SIZE, new RecordingClient());
+
+    laggingClient.full = true;
+    publish(fast);
+    spoolForLaggingListeners();
+    assertTrue(!storage.blocks.isEmpty(), "spooled blocks");
+
+    dataList.removeDataListener(lagging);
+    dataList.removeDataListener(fast);
+    awaitExecutor();
+    lagging.getIterator().close();
+    fast.getIterator().close();
+    dataList.reset();
+    awaitExecutor();
+    assertTrue(storage.blocks.isEmpty(), "spooled blocks are discarded");
+    assertTrue(storage.discardedIdentifiers.contains("publisher"), "identifier is discarded");
+  }
+
+  @Test
+  public void testNoSpoolingWithoutCredit() throws Exception
+  {
+    setSecondaryStorage(new MemoryStorage());
+    final RecordingClient laggingClient = new RecordingClient();
+    newLogicalNode("lagging", 0, laggingClient);
+    final LogicalNode fast = newLogicalNode("fast", 0, new RecordingClient());
+
+    laggingClient.full = true;
+    publish(fast);
+    spoolForLaggingListeners();
+    for (DataList.Block block = dataList.first; block != null; block = block.next) {
+      assertNotNull(block.data, "listeners without credit hold the blocks in memory");
+    }
+  }
+
+  /**
+   * Replaces the data list with one that keeps the blocks in memory until all listeners read them.
+   */
+  private void setSecondaryStorage(MemoryStorage storage)
+  {
+    dataList = new DataList("publisher", BLOCK_SIZE, 100, true);
+    dataList.setAutoFlushExecutor(executor);
+    dataList.setSecondaryStorage(storage, executor);
+    publisher = new DataListPublisher(dataList, 1);
+  }
+
+  private LogicalNode newLogicalNode(String identifier, int credit, RecordingClient client)
+  {
+    final LogicalNode ln = new LogicalNode(identifier, "publisher", identifier + "/type", dataList.newIterator(0), 0,
+        null);
+    ln.setCredit(credit);
+    ln.addConnection(client);
+    dataList.addDataListener(ln);
+    return ln;
+  }
+
+  /**
+   * Publishes all windows while only the given node reads them.
+   */
+  private void publish(LogicalNode reading) throws Exception
+  {
+    publisher.resetWindow(7);
+    for (int windowId = 1; windowId <= WINDOWS; windowId++) {
+      publisher.beginWindow(windowId);
+      for (int i = 0; i < TUPLES_PER_WINDOW; i++) {
+        publisher.payload(i % 4, windowId * 100 + i);
+      }
+      publisher.endWindow(windowId);
+      addedData(reading);
+    }
+  }
+
+  /**
+   * Lets the node read on the executor, the thread the data list notifies its listeners on, and waits for it.
+   */
+  private void addedData(final LogicalNode ln) throws Exception
+  {
+    executor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        ln.addedData(false);
+      }
+    }).get();
+  }
+
+  /**
+   * Spools and waits for the spooling task and the storers it schedules on the single thread executor.
+   */
+  private void spoolForLaggingListeners() throws Exception
+  {
+    dataList.spoolForLaggingListeners();
+    awaitExecutor();
+    awaitExecutor();
+  }
+
+  private void awaitExecutor() throws Exception
+  {
+    executor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+      }
+    }).get();
+  }
+
+  private static List<String> getAllTuples()
+  {
+    final List<String> expected = new ArrayList<>();
+    expected.add("R7");
+    for (int windowId = 1; windowId <= WINDOWS; windowId++) {
+      expected.add("B" + windowId);
+      for (int i = 0; i < TUPLES_PER_WINDOW; i++) {
+        expected.add("P" + (windowId * 100 + i));
+      }
+      expected.add("E" + windowId);
+    }
+    return expected;
+  }
+
+  private static List<String> getExpectedTuples()
+  {
+    final List<String> expected = new ArrayList<>();
+    expected.add("R7");
+    for (int windowId = 1; windowId <= WINDOWS; windowId++) {
+      expected.add("B" + windowId);
+      for (int i = 1; i < TUPLES_PER_WINDOW; i += 4) {
+        expected.add("P" + (windowId * 100 + i));
+      }
+      expected.add("E" + windowId);
+    }
+    return expected;
+  }
+
+  /**
+   * Iterates the way the logical node of a partitioned subscriber does and records the accepted tuples.
+   */
+  private static class PartitionedReader
+  {
+    final DataList.DataListIterator iterator;
+    final RecordingClient client = new RecordingClient();
+    int reads;
+
+    PartitionedReader(DataList.DataListIterator iterator)
+    {
+      this.iterator = iterator;
+    }
+
+    void read()
+    {
+      iterator.skipRejectedPayloadTuples(PARTITIONS);
+      while (iterator.hasNext()) {
+        SerializedData data = iterator.next();
+        reads++;
+        if (data.buffer[data.dataOffset] != MessageType.PAYLOAD_VALUE
+            || PARTITIONS[0].matches(PayloadTuple.getPartition(data.buffer, data.dataOffset))) {
+          client.send(data.buffer, data.offset, data.length);
+        }
+        iterator.skipRejectedPayloadTuples(PARTITIONS);
+      }
+    }
+
+  }
+
+  private static class PartitionedListener implements DataListener
+  {
+    private final BitVector[] partitions;
+
+    PartitionedListener(BitVector... partitions)
+    {
+      this.partitions = partitions;
+    }
+
+    @Override
+    public boolean addedData(boolean checkIfListenerHaveDataToSendOnly)
+    {
+      return false;
+    }
+
+    @Override
+    public int getPartitions(Collection<BitVector> partitions)
+    {
+      for (BitVector partition : this.partitions) {
+        partitions.add(partition);
+      }
+      return this.partitions.length;
+    }
+
+  }
+
+}
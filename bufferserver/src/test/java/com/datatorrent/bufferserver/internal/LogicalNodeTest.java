@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.policy.LeastLoaded;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class LogicalNodeTest
+{
+  private static final int BLOCK_SIZE = 64;
+  private ExecutorService executor;
+  private DataList dataList;
+  private DataListPublisher publisher;
+
+  @BeforeMethod
+  public void setup()
+  {
+    executor = Executors.newSingleThreadExecutor();
+    dataList = new DataList("publisher", BLOCK_SIZE, 100, false);
+    dataList.setAutoFlushExecutor(executor);
+    publisher = new DataListPublisher(dataList, 1);
+  }
+
+  @AfterMethod
+  public void teardown()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testJoinAtNextWindow() throws InterruptedException
+  {
+    testJoinAtNextWindow(false);
+  }
+
+  /**
+   * The reset window tuple sent to a joining node is framed like the tuples of the fast data list.
+   */
+  @Test
+  public void testJoinAtNextWindowFast() throws InterruptedException
+  {
+    dataList = new FastDataList("publisher", BLOCK_SIZE, 100, false);
+    dataList.setAutoFlushExecutor(executor);
+    publisher = new DataListPublisher(dataList, 1);
+    testJoinAtNextWindow(true);
+  }
+
+  private void testJoinAtNextWindow(boolean fast) throws InterruptedException
+  {
+    LogicalNode ln = newLogicalNode();
+    ln.setPolicy(new LeastLoaded(1, 3600000));
+    RecordingClient first = new RecordingClient(fast);
+    ln.addConnection(first, 1);
+
+    publisher.resetWindow(7);
+    publishWindow(1, 1, 2, 3, 4);
+    publisher.beginWindow(2);
+    publisher.payload(0, 5);
+    ln.catchUp();
+    ln.addedData(false);
+
+    RecordingClient joining = new RecordingClient(fast);
+    ln.addConnection(joining, 1);
+    assertEquals(ln.getPhysicalNodeCount(), 2);
+    publisher.payload(0, 6);
+    publisher.endWindow(2);
+    publishWindow(3, 7, 8, 9, 10);
+    ln.addedData(false);
+
+    assertEquals(first.tuples.subList(0, 9), Arrays.asList("R7", "B1", "P1", "P2", "P3", "P4", "E1", "B2", "P5"));
+    assertTrue(first.tuples.containsAll(Arrays.asList("P6", "E2", "B3", "E3")), "first " + first.tuples);
+    assertEquals(joining.tuples.subList(0, 2), Arrays.asList("R7", "B3"), "joins at the next window");
+    assertEquals(joining.tuples.get(joining.tuples.size() - 1), "E3");
+    assertFalse(joining.tuples.contains("P6"), "joining " + joining.tuples);
+
+    /* the payload tuples of the window are shared, control tuples go to both */
+    assertEquals(joining.getPayloads().size(), 2, "joining " + joining.tuples);
+    assertTrue(first.getPayloads().containsAll(Arrays.asList("P1", "P2", "P3", "P4", "P5", "P6")));
+    assertEquals(first.getPayloads().size() + joining.getPayloads().size(), 10);
+
+    ln.removeChannel(first);
+    assertEquals(ln.getPhysicalNodeCount(), 1);
+    publishWindow(4, 11, 12);
+    ln.addedData(false);
+    assertEquals(joining.tuples.subList(joining.tuples.size() - 4, joining.tuples.size()),
+        Arrays.asList("B4", "P11", "P12", "E4"));
+  }
+
+  @Test
+  public void testCanJoin()
+  {
+    LogicalNode ln = newLogicalNode();
+    assertFalse(ln.canJoin("publisher", 0, null), "logical node that gives all to its only node");
+
+    ln.setPolicy(new LeastLoaded());
+    assertTrue(ln.canJoin("publisher", 0, null));
+    assertFalse(ln.canJoin("other", 0, null), "different upstream");
+    assertFalse(ln.canJoin("publisher", 1, new int[] {1}), "different partitions");
+
+    ln.addPartition(1, 1);
+    assertTrue(ln.canJoin("publisher", 1, new int[] {1}));
+    assertFalse(ln.canJoin("publisher", 1, new int[] {0}));
+  }
+
+  /**
+   * A caught up logical node without partitions that gives all tuples to its nodes sends runs of tuples rather than
+   * one tuple at a time, the nodes still receive the tuples as published.
+   */
+  @Test
+  public void testGiveAllRanges()
+  {
+    LogicalNode ln = newLogicalNode();
+    RecordingClient first = new RecordingClient();
+    RecordingClient second = new RecordingClient();
+    ln.addConnection(first);
+    ln.addConnection(second);
+
+    publisher.resetWindow(7);
+    ln.catchUp();
+    List<String> expected = new ArrayList<>(Arrays.asList("R7"));
+    for (int windowId = 1; windowId <= 6; windowId++) {
+      publishWindow(windowId, expected, windowId * 10 + 1, windowId * 10 + 2, windowId * 10 + 3, windowId * 10 + 4);
+      if (windowId % 2 == 0) {
+        ln.addedData(false);
+      }
+    }
+    ln.addedData(false);
+
+    assertTrue(dataList.first.next != null, "tuples span several blocks");
+    assertEquals(first.tuples, expected);
+    assertEquals(second.tuples, expected);
+    assertTrue(first.sends < expected.size(), "runs of tuples are sent at once, sends " + first.sends);
+  }
+
+  @Test
+  public void testGiveAllRangesWhileBlocked()
+  {
+    LogicalNode ln = newLogicalNode();
+    RecordingClient first = new RecordingClient();
+    RecordingClient second = new RecordingClient();
+    ln.addConnection(first);
+    ln.addConnection(second);
+
+    publisher.resetWindow(7);
+    ln.catchUp();
+    List<String> expected = new ArrayList<>(Arrays.asList("R7"));
+    for (int windowId = 1; windowId <= 8; windowId++) {
+      publishWindow(windowId, expected, windowId * 10 + 1, windowId * 10 + 2, windowId * 10 + 3);
+      second.full = windowId % 2 == 1;
+      ln.addedData(false);
+      if (second.full) {
+        assertFalse(ln.isReady(), "blocked in window " + windowId);
+      }
+      assertEquals(first.tuples, expected.subList(0, first.tuples.size()), "window " + windowId);
+      assertEquals(second.tuples, expected.subList(0, second.tuples.size()), "window " + windowId);
+    }
+
+    second.full = false;
+    for (int i = 0; i < 10 && second.tuples.size() < expected.size(); i++) {
+      ln.addedData(false);
+    }
+    assertEquals(first.tuples, expected);
+    assertEquals(second.tuples, expected);
+  }
+
+  private LogicalNode newLogicalNode()
+  {
+    return new LogicalNode("subscriber", "publisher", "subscriber/type", dataList.newIterator(0), 0, null);
+  }
+
+  private void publishWindow(int windowId, int... values)
+  {
+    publisher.beginWindow(windowId);
+    for (int value : values) {
+      publisher.payload(0, value);
+    }
+    publisher.endWindow(windowId);
+  }
+
+  private void publishWindow(int windowId, List<String> published, int... values)
+  {
+    publishWindow(windowId, values);
+    published.add("B" + windowId);
+    for (int value : values) {
+      published.add("P" + value);
+    }
+    published.add("E" + windowId);
+  }
+
+}
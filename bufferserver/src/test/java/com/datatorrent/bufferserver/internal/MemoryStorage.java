@@ -0,0 +1,72 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.datatorrent.bufferserver.storage.Storage;
+
+/**
+ * Keeps the spooled blocks in memory and records the threads that spool them.
+ */
+class MemoryStorage implements Storage.IdentifierDiscardingStorage
+{
+  final Map<Integer, byte[]> blocks = new ConcurrentHashMap<>();
+  final CopyOnWriteArraySet<Thread> storingThreads = new CopyOnWriteArraySet<>();
+  final AtomicInteger uniqueIdentifier = new AtomicInteger();
+  final CopyOnWriteArraySet<String> discardedIdentifiers = new CopyOnWriteArraySet<>();
+
+  @Override
+  public Storage getInstance()
+  {
+    return this;
+  }
+
+  @Override
+  public int store(String identifier, byte[] bytes, int start, int end)
+  {
+    storingThreads.add(Thread.currentThread());
+    final int uniqueIdentifier = this.uniqueIdentifier.incrementAndGet();
+    blocks.put(uniqueIdentifier, Arrays.copyOfRange(bytes, start, end));
+    return uniqueIdentifier;
+  }
+
+  @Override
+  public byte[] retrieve(String identifier, int uniqueIdentifier)
+  {
+    return blocks.get(uniqueIdentifier);
+  }
+
+  @Override
+  public void discard(String identifier, int uniqueIdentifier)
+  {
+    blocks.remove(uniqueIdentifier);
+  }
+
+  @Override
+  public void discard(String identifier)
+  {
+    discardedIdentifiers.add(identifier);
+  }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.bufferserver.util.VarInt;
+import com.datatorrent.netlet.WriteOnlyClient;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt.MutableInt;
+
+/**
+ * Subscriber connection that records the tuples a logical node sends to it instead of writing them to a socket. The
+ * tuples are recorded as R(eset), B(egin) and E(nd) window with the window id and P(ayload) with its value as
+ * written by {@link DataListPublisher}. The connection rejects data while it is full. While it is slow, it queues
+ * the data without copying it as a client does until it writes the data to its socket, and records it once drained.
+ */
+class RecordingClient extends WriteOnlyClient
+{
+  final List<String> tuples = new ArrayList<>();
+  int sends;
+  volatile boolean full;
+  volatile boolean slow;
+  private final List<Slice> queue = new ArrayList<>();
+  private final boolean fast;
+
+  RecordingClient()
+  {
+    this(false);
+  }
+
+  /**
+   * @param fast whether the tuples are framed with a two byte size as in a {@link FastDataList}
+   */
+  RecordingClient(boolean fast)
+  {
+    this.fast = fast;
+  }
+
+  @Override
+  public boolean send(byte[] array, int offset, int len)
+  {
+    if (full) {
+      return false;
+    }
+    sends++;
+    if (slow) {
+      queue.add(new Slice(array, offset, len));
+      return true;
+    }
+    record(array, offset, len);
+    return true;
+  }
+
+  @Override
+  public boolean isWriteSuspended()
+  {
+    return queue.isEmpty();
+  }
+
+  /**
+   * Records the queued data.
+   */
+  void drain()
+  {
+    for (Slice slice : queue) {
+      record(slice.buffer, slice.offset, slice.length);
+    }
+    queue.clear();
+  }
+
+  private void record(byte[] array, int offset, int len)
+  {
+    final MutableInt nextOffset = new MutableInt();
+    final int limit = offset + len;
+    while (offset < limit) {
+      final int size;
+      final int dataOffset;
+      if (fast) {
+        size = (array[offset] & 0xff) | (array[offset + 1] & 0xff) << 8;
+        dataOffset = offset + 2;
+      } else {
+        size = VarInt.read(array, offset, limit, nextOffset);
+        dataOffset = nextOffset.integer;
+      }
+      switch (array[dataOffset]) {
+        case MessageType.RESET_WINDOW_VALUE:
+          tuples.add("R" + Tuple.getTuple(array, dataOffset, size).getBaseSeconds());
+          break;
+
+        case MessageType.BEGIN_WINDOW_VALUE:
+          tuples.add("B" + Tuple.getTuple(array, dataOffset, size).getWindowId());
+          break;
+
+        case MessageType.END_WINDOW_VALUE:
+          tuples.add("E" + Tuple.getTuple(array, dataOffset, size).getWindowId());
+          break;
+
+        case MessageType.PAYLOAD_VALUE:
+          tuples.add("P" + DataListPublisher.getValue(array, dataOffset));
+          break;
+
+        default:
+          tuples.add(MessageType.valueOf(array[dataOffset]).toString());
+          break;
+      }
+      offset = dataOffset + size;
+    }
+  }
+
+  List<String> getPayloads()
+  {
+    final List<String> payloads = new ArrayList<>();
+    for (String tuple : tuples) {
+      if (tuple.startsWith("P")) {
+        payloads.add(tuple);
+      }
+    }
+    return payloads;
+  }
+
+}
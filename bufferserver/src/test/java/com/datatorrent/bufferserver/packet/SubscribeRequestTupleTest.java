@@ -70,5 +70,22 @@ public class SubscribeRequestTupleTest
     assertEquals(tuple.getBufferSize(), 32 * 1024, "BufferSize");
     assertNull(tuple.getPartitions());
     assertEquals((long)tuple.getBaseSeconds() << 32 | tuple.getWindowId(), startingWindowId, "Window");
+    assertEquals(tuple.getCredit(), 0, "Credit");
+
+    serial = getSerializedRequest(null, id, down_type, upstream_id, mask, partitions, startingWindowId, 32 * 1024,
+        1024 * 1024);
+    tuple = (SubscribeRequestTuple)Tuple.getTuple(serial, 0, serial.length);
+
+    assertEquals(tuple.getBufferSize(), 32 * 1024, "BufferSize");
+    assertEquals(tuple.getCredit(), 1024 * 1024, "Credit");
+    assertEquals(tuple.getWeight(), 0, "Weight");
+    assertEquals((long)tuple.getBaseSeconds() << 32 | tuple.getWindowId(), startingWindowId, "Window");
+
+    serial = getSerializedRequest(null, id, down_type, upstream_id, 0, null, startingWindowId, 32 * 1024, 0, 3);
+    tuple = (SubscribeRequestTuple)Tuple.getTuple(serial, 0, serial.length);
+
+    assertEquals(tuple.getCredit(), 0, "Credit");
+    assertEquals(tuple.getWeight(), 3, "Weight");
+    assertEquals((long)tuple.getBaseSeconds() << 32 | tuple.getWindowId(), startingWindowId, "Window");
   }
 }
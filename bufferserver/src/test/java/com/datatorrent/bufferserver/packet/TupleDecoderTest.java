@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.packet;
+
+import org.testng.annotations.Test;
+
+import com.datatorrent.netlet.util.Slice;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+/**
+ *
+ */
+public class TupleDecoderTest
+{
+  @Test
+  public void testDecode()
+  {
+    TupleDecoder decoder = new TupleDecoder();
+
+    byte[] serial = ResetWindowTuple.getSerializedTuple(0x7afebabe, 500);
+    decoder.wrap(serial, 0, serial.length);
+    assertEquals(decoder.getType(), MessageType.RESET_WINDOW);
+    assertEquals(decoder.getBaseSeconds(), 0x7afebabe, "base seconds");
+    assertEquals(decoder.getWindowWidth(), 500, "window width");
+
+    serial = EndWindowTuple.getSerializedTuple(1000);
+    decoder.wrap(serial, 0, serial.length);
+    assertEquals(decoder.getType(), MessageType.END_WINDOW);
+    assertEquals(decoder.getWindowId(), 1000, "window id");
+
+    serial = WindowIdTuple.getSerializedTuple(0x7fffffff);
+    serial[0] = MessageType.CHECKPOINT_VALUE;
+    decoder.wrap(serial, 0, serial.length);
+    assertEquals(decoder.getType(), MessageType.CHECKPOINT);
+    assertEquals(decoder.getWindowId(), 0x7fffffff, "window id");
+
+    byte[] bytes = new byte[] {1, 2, 3};
+    serial = PayloadTuple.getSerializedTuple(0xcafe, new Slice(bytes));
+    byte[] framed = new byte[serial.length + 2];
+    System.arraycopy(serial, 0, framed, 2, serial.length);
+    decoder.wrap(framed, 2, serial.length);
+    assertEquals(decoder.getType(), MessageType.PAYLOAD);
+    assertEquals(decoder.getPartition(), 0xcafe, "partition");
+    Slice data = decoder.getData();
+    assertEquals(data.offset, 7, "data offset");
+    assertEquals(data.length, 3, "data length");
+    assertEquals(data.buffer[data.offset + 2], (byte)3);
+
+    serial = DataTuple.getSerializedTuple(MessageType.CODEC_STATE_VALUE, new Slice(bytes));
+    decoder.wrap(serial, 0, serial.length);
+    assertEquals(decoder.getType(), MessageType.CODEC_STATE);
+    Slice state = decoder.getData();
+    assertNotSame(state, data, "new slice");
+    assertEquals(state.offset, 1, "data offset");
+    assertEquals(state.length, 3, "data length");
+    assertSame(data.buffer, framed, "slice kept across wraps");
+    assertEquals(data.offset, 7, "slice kept across wraps");
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.policy;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.datatorrent.bufferserver.internal.PhysicalNode;
+import com.datatorrent.bufferserver.util.SerializedData;
+import com.datatorrent.netlet.WriteOnlyClient;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class LeastLoadedTest
+{
+  private static final long HALF_LIFE_MILLIS = 3600 * 1000;
+  private final SerializedData data = new SerializedData(new byte[10], 0, 10);
+
+  @Test
+  public void testWeights() throws InterruptedException
+  {
+    LeastLoaded policy = new LeastLoaded(1, HALF_LIFE_MILLIS);
+    CountingClient light = new CountingClient();
+    CountingClient heavy = new CountingClient();
+    Set<PhysicalNode> nodes = nodes(node(light, 1), node(heavy, 3));
+
+    for (int i = 0; i < 400; i++) {
+      assertTrue(policy.distribute(nodes, data));
+    }
+    assertEquals(light.count + heavy.count, 400);
+    assertTrue(Math.abs(heavy.count - 300) <= 1, "heavy " + heavy.count);
+  }
+
+  @Test
+  public void testBatch() throws InterruptedException
+  {
+    LeastLoaded policy = new LeastLoaded(8, HALF_LIFE_MILLIS);
+    CountingClient first = new CountingClient();
+    CountingClient second = new CountingClient();
+    Set<PhysicalNode> nodes = nodes(node(first, 1), node(second, 1));
+
+    for (int i = 0; i < 8; i++) {
+      assertTrue(policy.distribute(nodes, data));
+    }
+    assertTrue(first.count == 8 ^ second.count == 8, "a batch goes to a single node");
+    for (int i = 0; i < 8; i++) {
+      assertTrue(policy.distribute(nodes, data));
+    }
+    assertEquals(first.count, 8);
+    assertEquals(second.count, 8);
+  }
+
+  @Test
+  public void testBlockedNodeAvoided() throws InterruptedException
+  {
+    LeastLoaded policy = new LeastLoaded(1000, HALF_LIFE_MILLIS);
+    CountingClient first = new CountingClient();
+    CountingClient second = new CountingClient();
+    PhysicalNode firstNode = node(first, 1);
+    PhysicalNode secondNode = node(second, 1);
+    Set<PhysicalNode> nodes = nodes(firstNode, secondNode);
+
+    assertTrue(policy.distribute(nodes, data));
+    final CountingClient chosen = first.count == 1 ? first : second;
+    final CountingClient other = chosen == first ? second : first;
+    final PhysicalNode chosenNode = chosen == first ? firstNode : secondNode;
+
+    chosen.full = true;
+    assertFalse(policy.distribute(nodes, data), "send to a full node");
+    assertTrue(chosenNode.isBlocked());
+
+    /* the data pending on the blocked node is not overwritten, the batch moves to the other node */
+    for (int i = 0; i < 10; i++) {
+      assertTrue(policy.distribute(nodes, data));
+    }
+    assertEquals(other.count, 10);
+
+    chosen.full = false;
+    assertTrue(chosenNode.unblock());
+    assertFalse(chosenNode.isBlocked());
+    assertEquals(chosen.count, 2);
+  }
+
+  @Test
+  public void testLeftNodesArePruned() throws InterruptedException
+  {
+    LeastLoaded policy = new LeastLoaded(1, HALF_LIFE_MILLIS);
+    CountingClient busy = new CountingClient();
+    PhysicalNode busyNode = node(busy, 1000);
+    CountingClient idle = new CountingClient();
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(policy.distribute(nodes(busyNode, node(idle, 1)), data));
+    }
+    assertTrue(idle.count <= 2, "idle " + idle.count);
+
+    /*
+     * the idle node leaves as a new node joins, so the number of nodes does not change. The new node starts at the
+     * load of the busy node and the two share the tuples instead of the new node receiving all of them.
+     */
+    CountingClient joining = new CountingClient();
+    Set<PhysicalNode> nodes = nodes(busyNode, node(joining, 1000));
+    busy.count = 0;
+    for (int i = 0; i < 100; i++) {
+      assertTrue(policy.distribute(nodes, data));
+    }
+    assertTrue(Math.abs(joining.count - 50) <= 1, "joining " + joining.count);
+    assertEquals(busy.count + joining.count, 100);
+  }
+
+  @Test
+  public void testRepeatedFailedSends() throws InterruptedException
+  {
+    LeastLoaded policy = new LeastLoaded(1, HALF_LIFE_MILLIS);
+    CountingClient blocked = new CountingClient();
+    PhysicalNode blockedNode = node(blocked, 1);
+
+    blocked.full = true;
+    for (int i = 0; i < 200; i++) {
+      assertFalse(policy.distribute(nodes(blockedNode), data));
+    }
+    blocked.full = false;
+    assertTrue(blockedNode.unblock());
+
+    /*
+     * the joining node starts at the saturated load of the node that was blocked, which is still the higher load
+     * relative to the weights.
+     */
+    CountingClient joining = new CountingClient();
+    Set<PhysicalNode> nodes = nodes(blockedNode, node(joining, Integer.MAX_VALUE));
+    for (int i = 0; i < 100; i++) {
+      assertTrue(policy.distribute(nodes, data));
+    }
+    assertEquals(joining.count, 100);
+    assertEquals(blocked.count, 1);
+  }
+
+  private static PhysicalNode node(WriteOnlyClient client, int weight)
+  {
+    PhysicalNode node = new PhysicalNode(client);
+    node.setWeight(weight);
+    return node;
+  }
+
+  private static Set<PhysicalNode> nodes(PhysicalNode... nodes)
+  {
+    Set<PhysicalNode> set = new LinkedHashSet<>();
+    for (PhysicalNode node : nodes) {
+      set.add(node);
+    }
+    return set;
+  }
+
+  private static class CountingClient extends WriteOnlyClient
+  {
+    int count;
+    boolean full;
+
+    @Override
+    public boolean send(byte[] array, int offset, int len)
+    {
+      if (full) {
+        return false;
+      }
+      count++;
+      return true;
+    }
+
+  }
+
+}
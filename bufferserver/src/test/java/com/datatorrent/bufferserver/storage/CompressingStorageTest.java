@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class CompressingStorageTest
+{
+  @Test
+  public void testCompressibleBlock()
+  {
+    CompressingStorage storage = new CompressingStorage(new SegmentedDiskStorage(Files.createTempDir().getPath()),
+        new DeflateBlockCodec());
+
+    byte[] bytes = new byte[64 * 1024];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte)(i % 17);
+    }
+
+    int id = storage.store("MyPublisher/out", bytes, 100, 60000);
+    assertEquals(storage.retrieve("MyPublisher/out", id), Arrays.copyOfRange(bytes, 100, 60000));
+
+    CompressingStorage.Statistics statistics = storage.getStatistics("MyPublisher/out");
+    assertEquals(statistics.getStoredBytes(), 59900);
+    assertTrue(statistics.getStoredCompressedBytes() < statistics.getStoredBytes() / 4);
+  }
+
+  @Test
+  public void testIncompressibleBlock()
+  {
+    CompressingStorage storage = new CompressingStorage(new SegmentedDiskStorage(Files.createTempDir().getPath()),
+        new DeflateBlockCodec());
+
+    byte[] bytes = new byte[4096];
+    new Random(0).nextBytes(bytes);
+
+    int id = storage.store("MyPublisher/out", bytes, 0, bytes.length);
+    assertEquals(storage.retrieve("MyPublisher/out", id), bytes);
+    assertEquals(storage.getStatistics("MyPublisher/out").getStoredCompressedBytes(), bytes.length);
+  }
+
+  @Test
+  public void testLargeBlock()
+  {
+    CompressingStorage storage = new CompressingStorage(new SegmentedDiskStorage(Files.createTempDir().getPath()),
+        new DeflateBlockCodec());
+
+    byte[] large = new byte[4 * 1024 * 1024];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte)(i % 13);
+    }
+    byte[] small = Arrays.copyOf(large, 1024);
+
+    int largeId = storage.store("MyPublisher/out", large, 0, large.length);
+    int smallId = storage.store("MyPublisher/out", small, 0, small.length);
+    assertEquals(storage.retrieve("MyPublisher/out", largeId), large);
+    assertEquals(storage.retrieve("MyPublisher/out", smallId), small);
+    assertEquals(storage.getStatistics("MyPublisher/out").getStoredBytes(), large.length + small.length);
+  }
+
+  @Test
+  public void testDiscardIdentifier()
+  {
+    CompressingStorage storage = new CompressingStorage(new SegmentedDiskStorage(Files.createTempDir().getPath()),
+        new DeflateBlockCodec());
+    assertEquals(storage.getStatistics("MyPublisher/out").getStoredBytes(), 0);
+
+    byte[] bytes = new byte[1024];
+    int id = storage.store("MyPublisher/out", bytes, 0, bytes.length);
+    assertEquals(storage.getStatistics("MyPublisher/out").getStoredBytes(), bytes.length);
+
+    storage.store("MyPublisher/out", bytes, 0, bytes.length);
+    storage.discard("MyPublisher/out", id);
+    storage.discard("MyPublisher/out");
+    assertEquals(storage.getStatistics("MyPublisher/out").getStoredBytes(), 0);
+  }
+
+  @Test
+  public void testScratchReused()
+  {
+    RecordingStorage recording = new RecordingStorage(new SegmentedDiskStorage(Files.createTempDir().getPath()));
+    CompressingStorage storage = new CompressingStorage(recording, new DeflateBlockCodec());
+
+    byte[] large = new byte[4 * 1024 * 1024];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte)(i % 13);
+    }
+    byte[] small = Arrays.copyOf(large, 1024);
+    int[] ids = new int[] {
+        storage.store("MyPublisher/out", large, 0, large.length),
+        storage.store("MyPublisher/out", small, 0, small.length),
+        storage.store("MyPublisher/out", large, 0, large.length)
+    };
+
+    assertSame(recording.buffers.get(1), recording.buffers.get(0), "scratch reused for a smaller block");
+    assertSame(recording.buffers.get(2), recording.buffers.get(0), "scratch reused for a block of the same size");
+    assertEquals(storage.retrieve("MyPublisher/out", ids[0]), large);
+    assertEquals(storage.retrieve("MyPublisher/out", ids[1]), small);
+    assertEquals(storage.retrieve("MyPublisher/out", ids[2]), large);
+  }
+
+  /**
+   * Storage that records the arrays it is handed to store.
+   */
+  private static class RecordingStorage implements Storage
+  {
+    final List<byte[]> buffers = new ArrayList<>();
+    private final Storage storage;
+
+    RecordingStorage(Storage storage)
+    {
+      this.storage = storage;
+    }
+
+    @Override
+    public Storage getInstance() throws IOException
+    {
+      return new RecordingStorage(storage.getInstance());
+    }
+
+    @Override
+    public int store(String identifier, byte[] bytes, int start, int end)
+    {
+      buffers.add(bytes);
+      return storage.store(identifier, bytes, start, end);
+    }
+
+    @Override
+    public byte[] retrieve(String identifier, int uniqueIdentifier)
+    {
+      return storage.retrieve(identifier, uniqueIdentifier);
+    }
+
+    @Override
+    public void discard(String identifier, int uniqueIdentifier)
+    {
+      storage.discard(identifier, uniqueIdentifier);
+    }
+
+  }
+
+}
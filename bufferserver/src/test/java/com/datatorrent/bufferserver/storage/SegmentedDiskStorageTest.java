@@ -0,0 +1,153 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.bufferserver.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.testng.annotations.Test;
+
+import com.google.common.io.Files;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class SegmentedDiskStorageTest
+{
+  @Test
+  public void testStoreRetrieveDiscard() throws IOException
+  {
+    File baseDirectory = Files.createTempDir();
+    Storage storage = new SegmentedDiskStorage(baseDirectory.getPath(), 100);
+
+    byte[] bytes = new byte[60];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte)i;
+    }
+
+    int first = storage.store("MyPublisher/out", bytes, 10, 50);
+    int second = storage.store("MyPublisher/out", bytes, 0, 60);
+    int third = storage.store("MyPublisher/out", bytes, 0, 30);
+
+    byte[] retrieved = storage.retrieve("MyPublisher/out", first);
+    assertEquals(retrieved.length, 40);
+    assertEquals(retrieved[0], 10);
+    assertEquals(storage.retrieve("MyPublisher/out", second), bytes);
+    assertEquals(storage.retrieve("MyPublisher/out", third).length, 30);
+
+    File directory = new File(baseDirectory, DiskStorage.normalizeFileName("MyPublisher/out"));
+    File firstSegment = new File(directory, "segment-0");
+    File secondSegment = new File(directory, "segment-1");
+    assertTrue(firstSegment.isFile());
+    assertTrue(secondSegment.isFile());
+
+    storage.discard("MyPublisher/out", first);
+    assertTrue(firstSegment.isFile(), "segment is reclaimed only when all its blocks are discarded");
+    storage.discard("MyPublisher/out", second);
+    assertFalse(firstSegment.exists());
+    assertTrue(secondSegment.isFile(), "active segment is not reclaimed");
+  }
+
+  @Test
+  public void testBlockLargerThanSegment() throws IOException
+  {
+    File baseDirectory = Files.createTempDir();
+    Storage storage = new SegmentedDiskStorage(baseDirectory.getPath(), 16);
+
+    byte[] bytes = new byte[64];
+    bytes[63] = 63;
+    int id = storage.store("MyPublisher/out", bytes, 0, bytes.length);
+    assertEquals(storage.retrieve("MyPublisher/out", id), bytes);
+  }
+
+  @Test
+  public void testUnmap() throws IOException
+  {
+    File file = new File(Files.createTempDir(), "segment");
+    MappedByteBuffer buffer;
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(4096);
+      buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 4096);
+    }
+    buffer.put(0, (byte)1);
+
+    assertTrue(SegmentedDiskStorage.unmap(buffer), "mapping is released");
+    assertTrue(file.delete());
+  }
+
+  @Test
+  public void testReclaimManySegments() throws IOException
+  {
+    File baseDirectory = Files.createTempDir();
+    Storage storage = new SegmentedDiskStorage(baseDirectory.getPath(), 1024);
+    File directory = new File(baseDirectory, DiskStorage.normalizeFileName("MyPublisher/out"));
+
+    byte[] bytes = new byte[1024];
+    int previous = storage.store("MyPublisher/out", bytes, 0, bytes.length);
+    for (int i = 1; i < 1000; i++) {
+      bytes[0] = (byte)i;
+      int id = storage.store("MyPublisher/out", bytes, 0, bytes.length);
+      storage.discard("MyPublisher/out", previous);
+      assertEquals(storage.retrieve("MyPublisher/out", id)[0], (byte)i);
+      previous = id;
+    }
+    assertEquals(directory.list().length, 2, "only the identity file and the active segment are left");
+  }
+
+  @Test
+  public void testDiscardIdentifier() throws IOException
+  {
+    File baseDirectory = Files.createTempDir();
+    SegmentedDiskStorage storage = new SegmentedDiskStorage(baseDirectory.getPath(), 100);
+    File directory = new File(baseDirectory, DiskStorage.normalizeFileName("MyPublisher/out"));
+
+    byte[] bytes = new byte[60];
+    for (int i = 0; i < 5; i++) {
+      storage.store("MyPublisher/out", bytes, 0, bytes.length);
+    }
+    storage.store("OtherPublisher/out", bytes, 0, bytes.length);
+    assertEquals(directory.list().length, 6, "identity file and a segment per block");
+
+    storage.discard("MyPublisher/out");
+    assertFalse(directory.exists(), "segments and directory are deleted");
+    assertEquals(baseDirectory.list().length, 1, "other identifiers are kept");
+    storage.discard("MyPublisher/out");
+
+    bytes[0] = 1;
+    int id = storage.store("MyPublisher/out", bytes, 0, bytes.length);
+    assertEquals(storage.retrieve("MyPublisher/out", id), bytes);
+  }
+
+  @Test(expectedExceptions = RuntimeException.class)
+  public void testRetrieveDiscarded() throws IOException
+  {
+    Storage storage = new SegmentedDiskStorage(Files.createTempDir().getPath(), 100);
+    int id = storage.store("MyPublisher/out", new byte[10], 0, 10);
+    storage.discard("MyPublisher/out", id);
+    storage.retrieve("MyPublisher/out", id);
+  }
+
+}
@@ -53,8 +53,7 @@ public class AsyncFSStorageAgent extends FSStorageAgent implements AsyncStorageA
 
   private boolean syncCheckpoint = false;
 
-  @SuppressWarnings("unused")
-  private AsyncFSStorageAgent()
+  protected AsyncFSStorageAgent()
   {
     super();
     conf = null;
@@ -92,26 +91,35 @@ public class AsyncFSStorageAgent extends FSStorageAgent implements AsyncStorageA
         }
       }
     }
-    String operatorIdStr = String.valueOf(operatorId);
-    File directory = new File(localBasePath, operatorIdStr);
+    File file = getLocalFile(operatorId, windowId);
+    File directory = file.getParentFile();
     if (!directory.exists()) {
       directory.mkdirs();
     }
-    try (FileOutputStream stream = new FileOutputStream(new File(directory, String.valueOf(windowId)))) {
+    try (FileOutputStream stream = new FileOutputStream(file)) {
       store(stream, object);
     }
   }
 
+  /**
+   * @param operatorId
+   * @param windowId
+   * @return local file the checkpoint is saved to before it is copied to the DFS
+   */
+  protected File getLocalFile(int operatorId, long windowId)
+  {
+    return new File(new File(localBasePath, String.valueOf(operatorId)), String.valueOf(windowId));
+  }
+
   public void copyToHDFS(final int operatorId, final long windowId) throws IOException
   {
     if (this.localBasePath == null) {
       throw new AssertionError("save() was not called before copyToHDFS");
     }
     String operatorIdStr = String.valueOf(operatorId);
-    File directory = new File(localBasePath, operatorIdStr);
     String window = Long.toHexString(windowId);
     Path lPath = new Path(path + Path.SEPARATOR + operatorIdStr + Path.SEPARATOR + TMP_FILE);
-    File srcFile = new File(directory, String.valueOf(windowId));
+    File srcFile = getLocalFile(operatorId, windowId);
     FSDataOutputStream stream = null;
     boolean stateSaved = false;
     try {
@@ -0,0 +1,652 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.IOUtils;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.MapMaker;
+import com.google.common.primitives.Longs;
+
+import com.datatorrent.api.annotation.Stateless;
+
+/**
+ * Asynchronous storage agent which writes the checkpoints of all the operators of a container checkpointing on the
+ * same window into a single file of the DFS, with one create and one rename, instead of a file per operator. The file
+ * is kept in the {@link #BATCHES} directory, named after the window, and ends with an index of the offsets of the
+ * checkpoints of the operators in it.
+ *
+ * A batch is written once all the operators which saved a checkpoint for its window flushed it and as many operators
+ * as in the previous batch joined it, or once {@link #getBatchLingerMillis()} passed since it was started. An operator
+ * which saved a checkpoint but did not flush it by then, because its node was torn down or its flush is late, does not
+ * hold up the others: a late flush writes the checkpoint to a batch of its own. So is a checkpoint flushed by the
+ * thread which saved it, the caller waits for it and there is nothing to batch it with.
+ *
+ * The window ids of an operator are served from the indexes of the batches, which are read once, and the batch
+ * directory is listed again only after it changed. The directory of the operator is listed only if none of the
+ * batches has a checkpoint of it, for checkpoints saved by {@link AsyncFSStorageAgent}. The application master
+ * deletes the checkpoints of an operator oldest first, so the deletion of a checkpoint in a batch is recorded as the
+ * latest window deleted for the operator, in a file of the {@link #PURGED} directory renamed as the window advances.
+ * A batch is deleted once the latest deleted windows of all the operators in it reached its window.
+ *
+ * Each operator gets an agent of its own, so the agents saving to the same path share the writer of the batches and
+ * the index. Both are held by the agents and are dropped along with the last agent of the path.
+ *
+ * @since 3.7.0
+ */
+public class BatchedFSStorageAgent extends AsyncFSStorageAgent
+{
+  /**
+   * Directory of the application path in which the batches are kept.
+   */
+  public static final String BATCHES = "_batches";
+  /**
+   * Directory of the batch directory in which the latest window deleted for each operator is kept.
+   */
+  public static final String PURGED = "_purged";
+  private static final int MAGIC = 0x42415443;
+  private static final Map<String, BatchWriter> writers = new MapMaker().weakValues().makeMap();
+  private static final Map<String, BatchIndex> indexes = new MapMaker().weakValues().makeMap();
+  private int batchLingerMillis = 1000;
+  private transient BatchWriter writer;
+  private transient BatchIndex index;
+
+  @SuppressWarnings("unused")
+  private BatchedFSStorageAgent()
+  {
+    super();
+  }
+
+  public BatchedFSStorageAgent(String path, Configuration conf)
+  {
+    super(path, conf);
+  }
+
+  @Override
+  public void save(Object object, int operatorId, long windowId) throws IOException
+  {
+    super.save(object, operatorId, windowId);
+    if (!isSyncCheckpoint()) {
+      getWriter().saved(operatorId, windowId, TimeUnit.MILLISECONDS.toNanos(batchLingerMillis));
+    }
+  }
+
+  @Override
+  public void flush(int operatorId, long windowId) throws IOException
+  {
+    if (isSyncCheckpoint()) {
+      return;
+    }
+    if (!getWriter().flushed(this, operatorId, windowId)) {
+      Batch batch = new Batch(windowId);
+      batch.operators.put(operatorId, getLocalFile(operatorId, windowId));
+      write(batch);
+    }
+  }
+
+  private BatchWriter getWriter()
+  {
+    BatchWriter writer = this.writer;
+    if (writer == null) {
+      synchronized (writers) {
+        writer = writers.get(path);
+        if (writer == null) {
+          writer = new BatchWriter();
+          writers.put(path, writer);
+        }
+      }
+      this.writer = writer;
+    }
+    return writer;
+  }
+
+  /**
+   * Writes the checkpoints of the batch to a single file and renames it into place.
+   */
+  private void write(Batch batch) throws IOException
+  {
+    String name = Long.toHexString(batch.windowId) + '-' + UUID.randomUUID().toString();
+    Path tmpPath = getBatchPath(TMP_FILE + name);
+    List<long[]> entries = new ArrayList<>();
+    try (FSDataOutputStream stream = fileContext.create(tmpPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+        Options.CreateOpts.CreateParent.createParent())) {
+      for (Map.Entry<Integer, File> entry : batch.operators.entrySet()) {
+        long offset = stream.getPos();
+        try (InputStream in = new FileInputStream(entry.getValue())) {
+          IOUtils.copyBytes(in, stream, 64 * 1024, false);
+        }
+        entries.add(new long[] {entry.getKey(), offset, stream.getPos() - offset});
+      }
+
+      long indexOffset = stream.getPos();
+      DataOutputStream out = new DataOutputStream(stream);
+      out.writeInt(entries.size());
+      for (long[] entry : entries) {
+        out.writeInt((int)entry[0]);
+        out.writeLong(entry[1]);
+        out.writeLong(entry[2]);
+      }
+      out.writeLong(indexOffset);
+      out.writeInt(MAGIC);
+      out.flush();
+    }
+    fileContext.rename(tmpPath, getBatchPath(name));
+    logger.debug("Saved batch {} of operators {}", name, batch.operators.keySet());
+
+    for (File file : batch.operators.values()) {
+      FileUtil.fullyDelete(file);
+    }
+  }
+
+  @Override
+  public Object load(int operatorId, long windowId) throws IOException
+  {
+    if (!isSyncCheckpoint()) {
+      BatchIndex index = getIndex();
+      String name;
+      long offset = 0;
+      synchronized (index) {
+        name = index.find(operatorId, windowId);
+        if (name != null) {
+          offset = index.batches.get(name).get(operatorId)[0];
+        }
+      }
+      if (name != null) {
+        Path lPath = getBatchPath(name);
+        logger.debug("Loading: {} from {}", operatorId, lPath);
+        try (FSDataInputStream stream = fileContext.open(lPath)) {
+          stream.seek(offset);
+          return retrieve(stream);
+        }
+      }
+    }
+    return super.load(operatorId, windowId);
+  }
+
+  @Override
+  public long[] getWindowIds(int operatorId) throws IOException
+  {
+    if (!isSyncCheckpoint()) {
+      long[] windowIds = getIndex().getWindowIds(operatorId);
+      if (windowIds != null) {
+        return windowIds;
+      }
+    }
+    return super.getWindowIds(operatorId);
+  }
+
+  @Override
+  public void delete(int operatorId, long windowId) throws IOException
+  {
+    BatchIndex index = isSyncCheckpoint() ? null : getIndex();
+    if (index == null || index.find(operatorId, windowId) == null) {
+      super.delete(operatorId, windowId);
+      if (index == null) {
+        return;
+      }
+    }
+
+    List<String> names;
+    synchronized (index) {
+      if (index.hasPending(operatorId, windowId)) {
+        Long purged = index.purged.get(operatorId);
+        Path purgedPath = getBatchPath(PURGED + Path.SEPARATOR + operatorId + '-' + Long.toHexString(windowId));
+        if (purged == null) {
+          fileContext.create(purgedPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+              Options.CreateOpts.CreateParent.createParent()).close();
+        } else {
+          fileContext.rename(getBatchPath(PURGED + Path.SEPARATOR + operatorId + '-' + Long.toHexString(purged)),
+              purgedPath, Options.Rename.OVERWRITE);
+        }
+        index.purged.put(operatorId, windowId);
+      }
+      names = index.purge(operatorId);
+    }
+
+    for (String name : names) {
+      logger.debug("Deleting batch {}", name);
+      fileContext.delete(getBatchPath(name), false);
+    }
+  }
+
+  private Path getBatchPath(String name)
+  {
+    return new Path(path + Path.SEPARATOR + BATCHES + Path.SEPARATOR + name);
+  }
+
+  /**
+   * @return index of the batches, brought up to date with the batch directory
+   */
+  private BatchIndex getIndex() throws IOException
+  {
+    BatchIndex index = this.index;
+    if (index == null) {
+      synchronized (indexes) {
+        index = indexes.get(path);
+        if (index == null) {
+          index = new BatchIndex();
+          indexes.put(path, index);
+        }
+      }
+      this.index = index;
+    }
+
+    Path batchesPath = new Path(path + Path.SEPARATOR + BATCHES);
+    synchronized (index) {
+      long modificationTime;
+      try {
+        modificationTime = fileContext.getFileStatus(batchesPath).getModificationTime();
+      } catch (FileNotFoundException ex) {
+        return index;
+      }
+      /* the modification time has a granularity, list again what might have changed within it after the listing */
+      if (modificationTime != index.modificationTime || index.listingMillis - modificationTime < 1000) {
+        index.listingMillis = System.currentTimeMillis();
+        Set<String> names = new HashSet<>();
+        RemoteIterator<FileStatus> iterator = fileContext.listStatus(batchesPath);
+        while (iterator.hasNext()) {
+          FileStatus status = iterator.next();
+          String name = status.getPath().getName();
+          if (name.equals(PURGED) && index.modificationTime == -1) {
+            readPurged(index, status.getPath());
+          } else if (!name.startsWith("_") && !name.startsWith(".")) {
+            names.add(name);
+            if (!index.batches.containsKey(name)) {
+              index.batches.put(name, readIndex(status));
+            }
+          }
+        }
+        index.batches.keySet().retainAll(names);
+        index.modificationTime = modificationTime;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Reads the latest window deleted for each operator, they are kept in memory once read.
+   */
+  private void readPurged(BatchIndex index, Path purgedPath) throws IOException
+  {
+    RemoteIterator<FileStatus> iterator = fileContext.listStatus(purgedPath);
+    while (iterator.hasNext()) {
+      String name = iterator.next().getPath().getName();
+      int separator = name.indexOf('-');
+      if (separator > 0 && !name.startsWith(".")) {
+        int operatorId = Integer.parseInt(name.substring(0, separator));
+        long windowId = parseWindowId(name.substring(separator + 1));
+        Long purged = index.purged.get(operatorId);
+        if (purged == null || purged < windowId) {
+          index.purged.put(operatorId, windowId);
+        }
+      }
+    }
+  }
+
+  private static long parseWindowId(String window)
+  {
+    return STATELESS_CHECKPOINT_WINDOW_ID.equals(window) ? Stateless.WINDOW_ID : Long.parseLong(window, 16);
+  }
+
+  /**
+   * Forgets the indexes read in this JVM for the agents created from now on, as if the application master was
+   * restarted.
+   */
+  @VisibleForTesting
+  static void resetIndexes()
+  {
+    indexes.clear();
+  }
+
+  /**
+   * Tells whether the writer of the batches or the index of the path are still held by an agent.
+   */
+  @VisibleForTesting
+  static boolean isShared(String path)
+  {
+    return writers.containsKey(path) || indexes.containsKey(path);
+  }
+
+  /**
+   * Reads the index at the end of the batch file.
+   *
+   * @return offset and length of the checkpoints by operator id
+   */
+  private Map<Integer, long[]> readIndex(FileStatus status) throws IOException
+  {
+    try (FSDataInputStream stream = fileContext.open(status.getPath())) {
+      stream.seek(status.getLen() - 12);
+      long indexOffset = stream.readLong();
+      if (stream.readInt() != MAGIC) {
+        throw new IOException("Not a checkpoint batch " + status.getPath());
+      }
+
+      stream.seek(indexOffset);
+      DataInputStream in = new DataInputStream(stream);
+      int count = in.readInt();
+      Map<Integer, long[]> entries = new HashMap<>();
+      for (int i = 0; i < count; i++) {
+        int operatorId = in.readInt();
+        entries.put(operatorId, new long[] {in.readLong(), in.readLong()});
+      }
+      return entries;
+    }
+  }
+
+  /**
+   * @return maximum time in milliseconds a batch waits for more operators to join it
+   */
+  public int getBatchLingerMillis()
+  {
+    return batchLingerMillis;
+  }
+
+  public void setBatchLingerMillis(int batchLingerMillis)
+  {
+    this.batchLingerMillis = batchLingerMillis;
+  }
+
+  @Override
+  public Object readResolve() throws ObjectStreamException
+  {
+    BatchedFSStorageAgent agent = new BatchedFSStorageAgent(this.path, null);
+    agent.setSyncCheckpoint(isSyncCheckpoint());
+    agent.setBatchLingerMillis(batchLingerMillis);
+    return agent;
+  }
+
+  /**
+   * Checkpoints of a window being collected into a batch.
+   */
+  private static class Batch
+  {
+    final long windowId;
+    final long startNanos = System.nanoTime();
+    /**
+     * Operators which saved the checkpoint of the window, along with the thread which saved it, but did not flush it.
+     */
+    final Map<Integer, Thread> saved = new HashMap<>();
+    final Map<Integer, File> operators = new LinkedHashMap<>();
+    /**
+     * Set once the batch is written, along with the failure to write it if any.
+     */
+    boolean written;
+    IOException failure;
+
+    Batch(long windowId)
+    {
+      this.windowId = windowId;
+    }
+  }
+
+  /**
+   * Collects the checkpoints of the operators of the container saving to the same path into batches.
+   */
+  private static class BatchWriter
+  {
+    private final Map<Long, Batch> batches = new HashMap<>();
+    /**
+     * Operators which joined the recent batches, a batch with all of them is written without waiting any longer.
+     */
+    private final Set<Integer> members = new HashSet<>();
+
+    /**
+     * Records the checkpoint saved by the calling thread and drops the batches which expired without any operator
+     * flushing to them, the operators which saved to them flush to a batch of their own if at all.
+     */
+    synchronized void saved(int operatorId, long windowId, long lingerNanos)
+    {
+      long nanos = System.nanoTime();
+      Iterator<Batch> iterator = batches.values().iterator();
+      while (iterator.hasNext()) {
+        Batch expired = iterator.next();
+        if (expired.operators.isEmpty() && nanos - expired.startNanos > lingerNanos) {
+          iterator.remove();
+        }
+      }
+
+      Batch batch = batches.get(windowId);
+      if (batch == null) {
+        batch = new Batch(windowId);
+        batches.put(windowId, batch);
+      }
+      batch.saved.put(operatorId, Thread.currentThread());
+    }
+
+    /**
+     * Adds the checkpoint to the batch of its window and waits for the batch to be written.
+     *
+     * @return false if the checkpoint was flushed by the thread which saved it and has to be written on its own
+     */
+    boolean flushed(BatchedFSStorageAgent agent, int operatorId, long windowId) throws IOException
+    {
+      Batch batch;
+      synchronized (this) {
+        batch = batches.get(windowId);
+        Thread saver = batch == null ? null : batch.saved.remove(operatorId);
+        if (saver == null || saver == Thread.currentThread()) {
+          if (batch != null && batch.saved.isEmpty() && batch.operators.isEmpty()) {
+            batches.remove(windowId);
+          }
+          notifyAll();
+          return false;
+        }
+
+        batch.operators.put(operatorId, agent.getLocalFile(operatorId, windowId));
+        members.add(operatorId);
+        notifyAll();
+        if (!await(batch, TimeUnit.MILLISECONDS.toNanos(agent.batchLingerMillis))) {
+          if (batch.failure != null) {
+            throw batch.failure;
+          }
+          return true;
+        }
+      }
+
+      IOException failure = null;
+      try {
+        agent.write(batch);
+      } catch (IOException ex) {
+        failure = ex;
+      }
+      synchronized (this) {
+        batch.failure = failure;
+        batch.written = true;
+        notifyAll();
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return true;
+    }
+
+    /**
+     * Waits till the batch is ready to be written or is written by another operator. Once the linger passed, the
+     * batch is written without the operators which saved a checkpoint for it but did not flush it yet.
+     *
+     * @return true if the caller has to write the batch
+     */
+    private boolean await(Batch batch, long lingerNanos) throws IOException
+    {
+      try {
+        while (batches.get(batch.windowId) == batch) {
+          long waitNanos = batch.startNanos + lingerNanos - System.nanoTime();
+          if (waitNanos <= 0 || batch.saved.isEmpty() && batch.operators.keySet().containsAll(members)) {
+            batches.remove(batch.windowId);
+            if (waitNanos <= 0) {
+              if (!batch.saved.isEmpty()) {
+                logger.debug("Writing batch of window {} without operators {}", batch.windowId, batch.saved.keySet());
+              }
+              members.retainAll(batch.operators.keySet());
+            }
+            return true;
+          }
+          TimeUnit.NANOSECONDS.timedWait(this, Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(10)));
+        }
+        while (!batch.written) {
+          wait();
+        }
+        return false;
+      } catch (InterruptedException ex) {
+        throw new IOException(ex);
+      }
+    }
+  }
+
+  /**
+   * Index of the batches of the application path, the offset and length of the checkpoints in them by operator id,
+   * along with the latest window deleted for each operator.
+   */
+  private static class BatchIndex
+  {
+    final Map<String, Map<Integer, long[]>> batches = new HashMap<>();
+    final Map<Integer, Long> purged = new HashMap<>();
+    long modificationTime = -1;
+    long listingMillis;
+
+    static long getWindowId(String name)
+    {
+      return parseWindowId(name.substring(0, name.indexOf('-')));
+    }
+
+    /**
+     * @return whether the checkpoint of the window is deleted
+     */
+    synchronized boolean covers(int operatorId, long windowId)
+    {
+      Long window = purged.get(operatorId);
+      return window != null && window >= windowId;
+    }
+
+    /**
+     * @return whether a batch has a checkpoint of the operator for the window or an earlier one which is not deleted
+     */
+    synchronized boolean hasPending(int operatorId, long windowId)
+    {
+      for (Map.Entry<String, Map<Integer, long[]>> batch : batches.entrySet()) {
+        if (batch.getValue().containsKey(operatorId)) {
+          long window = getWindowId(batch.getKey());
+          if (window <= windowId && !covers(operatorId, window)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * @return name of the batch with the checkpoint, null if none of the batches has it
+     */
+    synchronized String find(int operatorId, long windowId)
+    {
+      String prefix = Long.toHexString(windowId) + '-';
+      for (Map.Entry<String, Map<Integer, long[]>> batch : batches.entrySet()) {
+        if (batch.getKey().startsWith(prefix) && batch.getValue().containsKey(operatorId)) {
+          return batch.getKey();
+        }
+      }
+      return null;
+    }
+
+    /**
+     * @return window ids of the checkpoints of the operator which are not deleted, null if none of the batches has a
+     * checkpoint of it
+     */
+    synchronized long[] getWindowIds(int operatorId)
+    {
+      Set<Long> windowIds = null;
+      for (Map.Entry<String, Map<Integer, long[]>> batch : batches.entrySet()) {
+        if (batch.getValue().containsKey(operatorId)) {
+          if (windowIds == null) {
+            windowIds = new HashSet<>();
+          }
+          long windowId = getWindowId(batch.getKey());
+          if (!covers(operatorId, windowId)) {
+            windowIds.add(windowId);
+          }
+        }
+      }
+      return windowIds == null ? null : Longs.toArray(windowIds);
+    }
+
+    /**
+     * Removes the batches with the checkpoints of the operator which are deleted for all the operators in them.
+     *
+     * @return names of the removed batches
+     */
+    synchronized List<String> purge(int operatorId)
+    {
+      List<String> names = new ArrayList<>();
+      Iterator<Map.Entry<String, Map<Integer, long[]>>> iterator = batches.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, Map<Integer, long[]>> batch = iterator.next();
+        if (batch.getValue().containsKey(operatorId)) {
+          long windowId = getWindowId(batch.getKey());
+          boolean deleted = true;
+          for (Integer id : batch.getValue().keySet()) {
+            if (!covers(id, windowId)) {
+              deleted = false;
+              break;
+            }
+          }
+          if (deleted) {
+            names.add(batch.getKey());
+            iterator.remove();
+          }
+        }
+      }
+      return names;
+    }
+  }
+
+  private static final long serialVersionUID = 201705031200L;
+  private static final Logger logger = LoggerFactory.getLogger(BatchedFSStorageAgent.class);
+}
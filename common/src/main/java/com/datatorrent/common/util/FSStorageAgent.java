@@ -62,7 +62,23 @@ public class FSStorageAgent implements StorageAgent, Serializable
   protected static final String STATELESS_CHECKPOINT_WINDOW_ID = Long.toHexString(Stateless.WINDOW_ID);
   public final String path;
   protected final transient FileContext fileContext;
+  /**
+   * @deprecated the state is serialized with a Kryo instance per thread, see {@link #getKryo()}
+   */
+  @Deprecated
   protected static final transient Kryo kryo;
+  /**
+   * Kryo is not thread safe, each thread gets an instance of its own so that the operators of a container can save and
+   * load their state concurrently.
+   */
+  private static final ThreadLocal<Kryo> kryos = new ThreadLocal<Kryo>()
+  {
+    @Override
+    protected Kryo initialValue()
+    {
+      return new Kryo();
+    }
+  };
 
   static {
     kryo = new Kryo();
@@ -170,7 +186,7 @@ public class FSStorageAgent implements StorageAgent, Serializable
     while (fileStatusRemoteIterator.hasNext()) {
       FileStatus fileStatus = fileStatusRemoteIterator.next();
       String name = fileStatus.getPath().getName();
-      if (name.equals(TMP_FILE)) {
+      if (name.equals(TMP_FILE) || fileStatus.isDirectory()) {
         continue;
       }
       lwindows.add(STATELESS_CHECKPOINT_WINDOW_ID.equals(name) ? Stateless.WINDOW_ID : Long.parseLong(name, 16));
@@ -182,23 +198,28 @@ public class FSStorageAgent implements StorageAgent, Serializable
     return windowIds;
   }
 
+  /**
+   * @return Kryo instance of the calling thread
+   */
+  protected static Kryo getKryo()
+  {
+    return kryos.get();
+  }
+
   public static void store(OutputStream stream, Object operator)
   {
-    synchronized (kryo) {
-      Output output = new Output(4096, Integer.MAX_VALUE);
-      output.setOutputStream(stream);
-      kryo.writeClassAndObject(output, operator);
-      output.flush();
-    }
+    Output output = new Output(4096, Integer.MAX_VALUE);
+    output.setOutputStream(stream);
+    getKryo().writeClassAndObject(output, operator);
+    output.flush();
   }
 
   public static Object retrieve(InputStream stream)
   {
-    synchronized (kryo) {
-      kryo.setClassLoader(Thread.currentThread().getContextClassLoader());
-      Input input = new Input(stream);
-      return kryo.readClassAndObject(input);
-    }
+    Kryo threadKryo = getKryo();
+    threadKryo.setClassLoader(Thread.currentThread().getContextClassLoader());
+    Input input = new Input(stream);
+    return threadKryo.readClassAndObject(input);
   }
 
   public Object readResolve() throws ObjectStreamException
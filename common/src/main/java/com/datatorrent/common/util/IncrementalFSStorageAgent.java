@@ -0,0 +1,486 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+import com.datatorrent.api.annotation.Stateless;
+
+/**
+ * Storage agent which saves a full image of the operator state only once in a while and in between saves the
+ * differences from it. The state is serialized the same way as by {@link FSStorageAgent}, but only the parts of it
+ * which are not found in the last full image of the operator are written.
+ *
+ * The serialized state is cut into chunks at content defined boundaries, so that a change in the state leaves the
+ * chunks before and after it intact even if it shifts them. A checkpoint consists of the full image it refers to,
+ * which is kept in the {@link #BASES} directory of the operator, and of the checkpoint file listing the ranges of the
+ * full image to copy and the bytes of the chunks which are new. A checkpoint is always stored as the difference from
+ * the full image and not from the previous checkpoint, so that loading it never reads more than two files. A new full
+ * image is saved once {@link #getMaxDeltaCount()} checkpoints refer to the last one, once the new bytes of a
+ * checkpoint make up more than half of it or if the last full image is not known to the container, for example after
+ * it was restarted. The full images no longer referred to by any of the checkpoints are deleted along with the
+ * checkpoints.
+ *
+ * @since 3.7.0
+ */
+public class IncrementalFSStorageAgent extends FSStorageAgent
+{
+  /**
+   * Directory of an operator in which the full images are kept.
+   */
+  public static final String BASES = "_bases";
+  private static final int MAGIC = 0x44454c54;
+  private static final byte END = 0;
+  private static final byte COPY = 1;
+  private static final byte LITERAL = 2;
+  private static final int MIN_CHUNK_SIZE = 2 * 1024;
+  private static final int MAX_CHUNK_SIZE = 64 * 1024;
+  /**
+   * A chunk ends where the top 13 bits of the rolling hash are 0, on average 8K past the minimum chunk size.
+   */
+  private static final long BOUNDARY_MASK = -1L << (64 - 13);
+  private static final long[] GEAR = new long[256];
+
+  static {
+    Random random = new Random(0x5eed);
+    for (int i = GEAR.length; i-- > 0;) {
+      GEAR[i] = random.nextLong();
+    }
+  }
+
+  private int maxDeltaCount = 30;
+  /**
+   * Last full image saved by this agent for each operator, removed when the agent deletes the image so that saving
+   * does not have to look it up in the file system.
+   */
+  private final transient ConcurrentMap<Integer, Base> bases = new ConcurrentHashMap<>();
+
+  @SuppressWarnings("unused")
+  private IncrementalFSStorageAgent()
+  {
+    super();
+  }
+
+  public IncrementalFSStorageAgent(String path, Configuration conf)
+  {
+    super(path, conf);
+  }
+
+  @Override
+  public void save(Object object, int operatorId, long windowId) throws IOException
+  {
+    Base base = bases.get(operatorId);
+    if (base == null || base.windowId >= windowId || base.deltaCount >= maxDeltaCount
+        || base.literalBytes > base.length / 2) {
+      base = saveBase(object, operatorId, windowId);
+      bases.put(operatorId, base);
+    } else {
+      base.deltaCount++;
+    }
+    saveDelta(object, operatorId, windowId, base);
+  }
+
+  /**
+   * Saves the full image of the object and indexes its chunks.
+   */
+  private Base saveBase(Object object, int operatorId, long windowId) throws IOException
+  {
+    final Base base = new Base(windowId);
+    Path tmpPath = getBasePath(operatorId, TMP_FILE);
+    try (final OutputStream stream = fileContext.create(tmpPath, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+        Options.CreateOpts.CreateParent.createParent())) {
+      ChunkingOutputStream chunker = new ChunkingOutputStream()
+      {
+        @Override
+        void chunk(byte[] buffer, int length, ByteBuffer digest) throws IOException
+        {
+          stream.write(buffer, 0, length);
+          if (!base.chunks.containsKey(digest)) {
+            base.chunks.put(digest, base.length);
+          }
+          base.length += length;
+        }
+      };
+      store(chunker, object);
+      chunker.close();
+    }
+    fileContext.rename(tmpPath, getBasePath(operatorId, windowId), Options.Rename.OVERWRITE);
+    logger.debug("Saved base {}: {} {} bytes", operatorId, Long.toHexString(windowId), base.length);
+    return base;
+  }
+
+  /**
+   * Saves the object as the difference from the full image, right after the image was saved it is a single copy of
+   * all of it.
+   */
+  private void saveDelta(Object object, int operatorId, long windowId, final Base base) throws IOException
+  {
+    String window = Long.toHexString(windowId);
+    Path tmpPath = new Path(path + Path.SEPARATOR + operatorId + Path.SEPARATOR + TMP_FILE);
+    final DeltaWriter writer;
+    try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(fileContext.create(tmpPath,
+        EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE), Options.CreateOpts.CreateParent.createParent())))) {
+      stream.writeInt(MAGIC);
+      stream.writeLong(base.windowId);
+      writer = new DeltaWriter(stream);
+      if (base.deltaCount == 0) {
+        writer.copy(0, base.length);
+      } else {
+        ChunkingOutputStream chunker = new ChunkingOutputStream()
+        {
+          @Override
+          void chunk(byte[] buffer, int length, ByteBuffer digest) throws IOException
+          {
+            Long offset = base.chunks.get(digest);
+            if (offset == null) {
+              writer.literal(buffer, length);
+            } else {
+              writer.copy(offset, length);
+            }
+          }
+        };
+        store(chunker, object);
+        chunker.close();
+      }
+      writer.close();
+    }
+    fileContext.rename(tmpPath, new Path(path + Path.SEPARATOR + operatorId + Path.SEPARATOR + window),
+        Options.Rename.OVERWRITE);
+    base.literalBytes = writer.literalBytes;
+    logger.debug("Saving {}: {} with {} new bytes", operatorId, window, writer.literalBytes);
+  }
+
+  @Override
+  public Object load(int operatorId, long windowId) throws IOException
+  {
+    Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + Long.toHexString(windowId));
+    logger.debug("Loading: {}", lPath);
+
+    try (DataInputStream delta = new DataInputStream(new BufferedInputStream(fileContext.open(lPath)))) {
+      if (delta.readInt() != MAGIC) {
+        throw new IOException("Not an incremental checkpoint " + lPath);
+      }
+      try (FSDataInputStream base = fileContext.open(getBasePath(operatorId, delta.readLong()))) {
+        return retrieve(new PatchInputStream(delta, base));
+      }
+    }
+  }
+
+  /**
+   * Deletes the checkpoint along with the full images older than the one the oldest remaining checkpoint refers to.
+   */
+  @Override
+  public void delete(int operatorId, long windowId) throws IOException
+  {
+    super.delete(operatorId, windowId);
+
+    long oldest = Long.MAX_VALUE;
+    for (long window : getWindowIds(operatorId)) {
+      oldest = Math.min(oldest, window);
+    }
+
+    long oldestBase = Long.MAX_VALUE;
+    if (oldest != Long.MAX_VALUE) {
+      Path lPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + Long.toHexString(oldest));
+      try (DataInputStream stream = new DataInputStream(fileContext.open(lPath))) {
+        if (stream.readInt() != MAGIC) {
+          return;
+        }
+        oldestBase = stream.readLong();
+      } catch (FileNotFoundException ex) {
+        /* deleted concurrently, the deletion of the checkpoint will take care of the images */
+        return;
+      }
+    }
+
+    Path basesPath = new Path(path + Path.SEPARATOR + String.valueOf(operatorId) + Path.SEPARATOR + BASES);
+    List<Long> windowIds = new ArrayList<>();
+    try {
+      RemoteIterator<FileStatus> iterator = fileContext.listStatus(basesPath);
+      while (iterator.hasNext()) {
+        String name = iterator.next().getPath().getName();
+        if (!name.equals(TMP_FILE)) {
+          windowIds.add(STATELESS_CHECKPOINT_WINDOW_ID.equals(name) ? Stateless.WINDOW_ID : Long.parseLong(name, 16));
+        }
+      }
+    } catch (FileNotFoundException ex) {
+      return;
+    }
+
+    /* the newest image is kept in any case, a checkpoint referring to it may be on its way */
+    Collections.sort(windowIds);
+    final Base base = bases.get(operatorId);
+    for (int i = 0; i < windowIds.size() - 1 && windowIds.get(i) < oldestBase; i++) {
+      logger.debug("Deleting base {}: {}", operatorId, Long.toHexString(windowIds.get(i)));
+      if (base != null && base.windowId == windowIds.get(i)) {
+        bases.remove(operatorId, base);
+      }
+      fileContext.delete(getBasePath(operatorId, windowIds.get(i)), false);
+    }
+  }
+
+  private Path getBasePath(int operatorId, long windowId)
+  {
+    return getBasePath(operatorId, Long.toHexString(windowId));
+  }
+
+  private Path getBasePath(int operatorId, String name)
+  {
+    return new Path(path + Path.SEPARATOR + operatorId + Path.SEPARATOR + BASES + Path.SEPARATOR + name);
+  }
+
+  /**
+   * @return maximum number of checkpoints saved as the difference from the same full image
+   */
+  public int getMaxDeltaCount()
+  {
+    return maxDeltaCount;
+  }
+
+  public void setMaxDeltaCount(int maxDeltaCount)
+  {
+    this.maxDeltaCount = maxDeltaCount;
+  }
+
+  @Override
+  public Object readResolve() throws ObjectStreamException
+  {
+    IncrementalFSStorageAgent agent = new IncrementalFSStorageAgent(this.path, null);
+    agent.setMaxDeltaCount(maxDeltaCount);
+    return agent;
+  }
+
+  /**
+   * Last full image saved for an operator, the offsets of its chunks by their digest.
+   */
+  private static class Base
+  {
+    final long windowId;
+    final Map<ByteBuffer, Long> chunks = new HashMap<>();
+    long length;
+    int deltaCount;
+    long literalBytes;
+
+    Base(long windowId)
+    {
+      this.windowId = windowId;
+    }
+  }
+
+  /**
+   * Writes the operations of a checkpoint file, adjacent copies are merged into one.
+   */
+  private static class DeltaWriter
+  {
+    private final DataOutputStream stream;
+    private long copyOffset;
+    private long copyLength;
+    long literalBytes;
+
+    DeltaWriter(DataOutputStream stream)
+    {
+      this.stream = stream;
+    }
+
+    void copy(long offset, long length) throws IOException
+    {
+      if (copyLength > 0 && copyOffset + copyLength == offset) {
+        copyLength += length;
+      } else {
+        flushCopy();
+        copyOffset = offset;
+        copyLength = length;
+      }
+    }
+
+    void literal(byte[] buffer, int length) throws IOException
+    {
+      flushCopy();
+      stream.writeByte(LITERAL);
+      stream.writeInt(length);
+      stream.write(buffer, 0, length);
+      literalBytes += length;
+    }
+
+    private void flushCopy() throws IOException
+    {
+      if (copyLength > 0) {
+        stream.writeByte(COPY);
+        stream.writeLong(copyOffset);
+        stream.writeLong(copyLength);
+        copyLength = 0;
+      }
+    }
+
+    void close() throws IOException
+    {
+      flushCopy();
+      stream.writeByte(END);
+    }
+  }
+
+  /**
+   * Cuts the bytes written to it into chunks where a rolling hash of the last bytes hits the boundary mask.
+   */
+  private abstract static class ChunkingOutputStream extends OutputStream
+  {
+    private final byte[] buffer = new byte[MAX_CHUNK_SIZE];
+    private final MessageDigest digest;
+    private int size;
+    private long hash;
+
+    ChunkingOutputStream()
+    {
+      try {
+        digest = MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+
+    abstract void chunk(byte[] buffer, int length, ByteBuffer digest) throws IOException;
+
+    @Override
+    public void write(int b) throws IOException
+    {
+      append((byte)b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+      for (int i = off, end = off + len; i < end; i++) {
+        append(b[i]);
+      }
+    }
+
+    private void append(byte b) throws IOException
+    {
+      buffer[size++] = b;
+      hash = (hash << 1) + GEAR[b & 0xff];
+      if (size == MAX_CHUNK_SIZE || (size >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0)) {
+        flushChunk();
+      }
+    }
+
+    private void flushChunk() throws IOException
+    {
+      digest.update(buffer, 0, size);
+      chunk(buffer, size, ByteBuffer.wrap(digest.digest()));
+      size = 0;
+      hash = 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      if (size > 0) {
+        flushChunk();
+      }
+    }
+  }
+
+  /**
+   * Replays the copies from the full image and the new bytes of a checkpoint file.
+   */
+  private static class PatchInputStream extends InputStream
+  {
+    private final DataInputStream delta;
+    private final FSDataInputStream base;
+    private byte op = -1;
+    private long position;
+    private long remaining;
+
+    PatchInputStream(DataInputStream delta, FSDataInputStream base)
+    {
+      this.delta = delta;
+      this.base = base;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+      while (remaining == 0) {
+        if (op == END) {
+          return -1;
+        }
+        op = delta.readByte();
+        if (op == COPY) {
+          position = delta.readLong();
+          remaining = delta.readLong();
+        } else if (op == LITERAL) {
+          remaining = delta.readInt();
+        } else if (op != END) {
+          throw new IOException("Corrupt incremental checkpoint, unknown operation " + op);
+        }
+      }
+
+      int count = (int)Math.min(len, remaining);
+      if (op == COPY) {
+        base.readFully(position, b, off, count);
+        position += count;
+      } else {
+        delta.readFully(b, off, count);
+      }
+      remaining -= count;
+      return count;
+    }
+  }
+
+  private static final long serialVersionUID = 201705011200L;
+  private static final Logger logger = LoggerFactory.getLogger(IncrementalFSStorageAgent.class);
+}
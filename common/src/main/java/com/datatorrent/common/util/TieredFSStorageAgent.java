@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+
+import com.datatorrent.api.annotation.Stateless;
+
+/**
+ * Asynchronous storage agent which keeps the latest checkpoints of the operators on the local disk in addition to the
+ * DFS, so that an operator restarted on the same node loads its state from the local disk. The checkpoint is added
+ * to the local tier once it is copied to the DFS, by linking the file the checkpoint was saved to locally. Loading
+ * falls back to the DFS if the checkpoint is not found or cannot be read on the local disk.
+ *
+ * By default the local tier is kept in the first of the local directories YARN provides to the application, which
+ * are shared by its containers on a node and kept until the application finishes. Checkpoints saved synchronously go
+ * to the DFS only.
+ *
+ * @since 3.7.0
+ */
+public class TieredFSStorageAgent extends AsyncFSStorageAgent
+{
+  /**
+   * Environment variable with the local directories of the application in a YARN container.
+   */
+  private static final String LOCAL_DIRS = "LOCAL_DIRS";
+  private String localCachePath;
+  private int localCacheCount = 2;
+  private transient volatile File cacheDir;
+
+  @SuppressWarnings("unused")
+  private TieredFSStorageAgent()
+  {
+    super();
+  }
+
+  public TieredFSStorageAgent(String path, Configuration conf)
+  {
+    super(path, conf);
+  }
+
+  @Override
+  public void copyToHDFS(int operatorId, long windowId) throws IOException
+  {
+    File directory = new File(getCacheDir(), String.valueOf(operatorId));
+    File tmpFile = new File(directory, TMP_FILE);
+    boolean cached = false;
+    if (directory.isDirectory() || directory.mkdirs()) {
+      /* the file saved locally is deleted once it is copied, keep a link to it */
+      File srcFile = getLocalFile(operatorId, windowId);
+      try {
+        Files.deleteIfExists(tmpFile.toPath());
+        Files.createLink(tmpFile.toPath(), srcFile.toPath());
+        cached = true;
+      } catch (IOException | UnsupportedOperationException ex) {
+        logger.debug("Not caching {} {} locally", operatorId, windowId, ex);
+      }
+    }
+
+    try {
+      super.copyToHDFS(operatorId, windowId);
+    } catch (IOException | RuntimeException ex) {
+      if (cached) {
+        FileUtil.fullyDelete(tmpFile);
+      }
+      throw ex;
+    }
+
+    if (cached) {
+      Files.move(tmpFile.toPath(), new File(directory, Long.toHexString(windowId)).toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      evict(directory);
+    }
+  }
+
+  /**
+   * Deletes all but the latest {@link #getLocalCacheCount()} checkpoints of the operator from the local tier.
+   */
+  private void evict(File directory)
+  {
+    String[] names = directory.list();
+    if (names == null) {
+      return;
+    }
+
+    List<Long> windowIds = new ArrayList<>();
+    for (String name : names) {
+      if (!name.equals(TMP_FILE)) {
+        windowIds.add(STATELESS_CHECKPOINT_WINDOW_ID.equals(name) ? Stateless.WINDOW_ID : Long.parseLong(name, 16));
+      }
+    }
+
+    Collections.sort(windowIds);
+    for (int i = 0; i < windowIds.size() - localCacheCount; i++) {
+      FileUtil.fullyDelete(new File(directory, Long.toHexString(windowIds.get(i))));
+    }
+  }
+
+  @Override
+  public Object load(int operatorId, long windowId) throws IOException
+  {
+    File file = new File(new File(getCacheDir(), String.valueOf(operatorId)), Long.toHexString(windowId));
+    if (file.exists()) {
+      logger.debug("Loading: {}", file);
+      try (InputStream stream = new FileInputStream(file)) {
+        return retrieve(stream);
+      } catch (Exception ex) {
+        logger.warn("Loading {} from the DFS, the local copy {} cannot be read", windowId, file, ex);
+      }
+    }
+    return super.load(operatorId, windowId);
+  }
+
+  private File getCacheDir()
+  {
+    if (cacheDir == null) {
+      String root = localCachePath;
+      if (root == null) {
+        String localDirs = System.getenv(LOCAL_DIRS);
+        root = localDirs == null ? System.getProperty("java.io.tmpdir") : localDirs.split(",")[0];
+      }
+      cacheDir = new File(root, "checkpoints-" + Integer.toHexString(path.hashCode()));
+    }
+    return cacheDir;
+  }
+
+  /**
+   * @return local directory under which the checkpoints are kept, null for the default
+   */
+  public String getLocalCachePath()
+  {
+    return localCachePath;
+  }
+
+  public void setLocalCachePath(String localCachePath)
+  {
+    this.localCachePath = localCachePath;
+  }
+
+  /**
+   * @return number of the latest checkpoints of an operator kept on the local disk
+   */
+  public int getLocalCacheCount()
+  {
+    return localCacheCount;
+  }
+
+  public void setLocalCacheCount(int localCacheCount)
+  {
+    this.localCacheCount = localCacheCount;
+  }
+
+  @Override
+  public Object readResolve() throws ObjectStreamException
+  {
+    TieredFSStorageAgent agent = new TieredFSStorageAgent(this.path, null);
+    agent.setSyncCheckpoint(isSyncCheckpoint());
+    agent.setLocalCachePath(localCachePath);
+    agent.setLocalCacheCount(localCacheCount);
+    return agent;
+  }
+
+  private static final long serialVersionUID = 201705021200L;
+  private static final Logger logger = LoggerFactory.getLogger(TieredFSStorageAgent.class);
+}
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.collect.Maps;
+
+import com.datatorrent.api.annotation.Stateless;
+
+public class BatchedFSStorageAgentTest
+{
+  private static class TestMeta extends TestWatcher
+  {
+    String applicationPath;
+    BatchedFSStorageAgent storageAgent;
+
+    @Override
+    protected void starting(Description description)
+    {
+      super.starting(description);
+      applicationPath = "target/" + description.getClassName() + "/" + description.getMethodName();
+      try {
+        FileUtils.forceMkdir(new File(applicationPath));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      storageAgent = new BatchedFSStorageAgent(applicationPath, null);
+    }
+
+    @Override
+    protected void finished(Description description)
+    {
+      try {
+        FileUtils.deleteDirectory(new File("target/" + description.getClassName()));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  @Rule
+  public TestMeta testMeta = new TestMeta();
+
+  /**
+   * Saves the checkpoints of the operators on the calling thread and flushes them concurrently, as the checkpoints of
+   * the operators of a container are.
+   */
+  private void checkpoint(final long windowId, int... operatorIds) throws Exception
+  {
+    final BatchedFSStorageAgent storageAgent = testMeta.storageAgent;
+    List<Callable<Void>> flushes = new ArrayList<>();
+    for (final int operatorId : operatorIds) {
+      Map<Integer, String> data = Maps.newHashMap();
+      data.put(operatorId, "operator " + operatorId + " window " + windowId);
+      storageAgent.save(data, operatorId, windowId);
+      flushes.add(new Callable<Void>()
+      {
+        @Override
+        public Void call() throws Exception
+        {
+          storageAgent.flush(operatorId, windowId);
+          return null;
+        }
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(flushes.size());
+    try {
+      for (Future<Void> future : executor.invokeAll(flushes)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * @return the batches, without the checksum files of the local file system and the directory of deleted windows
+   */
+  private String[] listBatches()
+  {
+    String[] names = new File(testMeta.applicationPath, BatchedFSStorageAgent.BATCHES).list(new FilenameFilter()
+    {
+      @Override
+      public boolean accept(File dir, String name)
+      {
+        return !name.startsWith(".") && !name.equals(BatchedFSStorageAgent.PURGED);
+      }
+    });
+    return names == null ? new String[0] : names;
+  }
+
+  @Test
+  public void testBatch() throws Exception
+  {
+    final BatchedFSStorageAgent storageAgent = testMeta.storageAgent;
+    final long windowId = 5;
+    checkpoint(windowId, 1, 2, 3);
+    Assert.assertEquals("batches", 1, listBatches().length);
+    Assert.assertFalse("no file of the operator", new File(testMeta.applicationPath + "/2/5").exists());
+
+    /* flushed by the saving thread, written on its own */
+    storageAgent.save("stateless", 4, windowId);
+    storageAgent.flush(4, windowId);
+    Assert.assertEquals("batches", 2, listBatches().length);
+
+    for (int operatorId = 1; operatorId <= 4; operatorId++) {
+      Assert.assertArrayEquals("window ids", new long[] {windowId}, storageAgent.getWindowIds(operatorId));
+    }
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded = (Map<Integer, String>)storageAgent.load(2, windowId);
+    Assert.assertEquals("data of operator 2", "operator 2 window 5", decoded.get(2));
+    Assert.assertEquals("data of operator 4", "stateless", storageAgent.load(4, windowId));
+
+    storageAgent.delete(4, windowId);
+    Assert.assertEquals("batches", 1, listBatches().length);
+    storageAgent.delete(1, windowId);
+    storageAgent.delete(2, windowId);
+    Assert.assertEquals("batch kept", 1, listBatches().length);
+    storageAgent.delete(3, windowId);
+    Assert.assertEquals("batch deleted", 0, listBatches().length);
+  }
+
+  @Test
+  public void testUnflushedOperator() throws Exception
+  {
+    final BatchedFSStorageAgent storageAgent = testMeta.storageAgent;
+    storageAgent.setBatchLingerMillis(100);
+    final long windowId = 7;
+    storageAgent.save("operator 1", 1, windowId);
+    storageAgent.save("operator 2", 2, windowId);
+
+    /* operator 2 saved but its node is torn down before the flush, operator 1 is not held up by it */
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> flush = executor.submit(new Callable<Void>()
+      {
+        @Override
+        public Void call() throws Exception
+        {
+          storageAgent.flush(1, windowId);
+          return null;
+        }
+      });
+      flush.get(10, TimeUnit.SECONDS);
+      Assert.assertEquals("batches", 1, listBatches().length);
+      Assert.assertArrayEquals("window ids", new long[] {windowId}, storageAgent.getWindowIds(1));
+
+      /* a late flush writes a batch of its own */
+      executor.submit(new Callable<Void>()
+      {
+        @Override
+        public Void call() throws Exception
+        {
+          storageAgent.flush(2, windowId);
+          return null;
+        }
+      }).get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdown();
+    }
+    Assert.assertEquals("batches", 2, listBatches().length);
+    Assert.assertEquals("data of operator 2", "operator 2", storageAgent.load(2, windowId));
+  }
+
+  @Test
+  public void testDeleteAfterRestart() throws Exception
+  {
+    BatchedFSStorageAgent storageAgent = testMeta.storageAgent;
+    checkpoint(Stateless.WINDOW_ID, 1, 2);
+    checkpoint(1, 1, 2);
+    checkpoint(2, 1, 2);
+    Assert.assertEquals("batches", 3, listBatches().length);
+
+    storageAgent.delete(1, Stateless.WINDOW_ID);
+    storageAgent.delete(1, 1);
+    Assert.assertArrayEquals("window ids", new long[] {2}, storageAgent.getWindowIds(1));
+    Assert.assertEquals("batches", 3, listBatches().length);
+
+    /* the deleted windows are not lost with the application master */
+    BatchedFSStorageAgent.resetIndexes();
+    storageAgent = new BatchedFSStorageAgent(testMeta.applicationPath, null);
+    Assert.assertArrayEquals("window ids", new long[] {2}, storageAgent.getWindowIds(1));
+    long[] windowIds = storageAgent.getWindowIds(2);
+    Arrays.sort(windowIds);
+    Assert.assertArrayEquals("window ids", new long[] {Stateless.WINDOW_ID, 1, 2}, windowIds);
+
+    storageAgent.delete(2, 1);
+    Assert.assertEquals("batches", 1, listBatches().length);
+    Assert.assertArrayEquals("window ids", new long[] {2}, storageAgent.getWindowIds(2));
+  }
+
+  @Test
+  public void testSharedStateDroppedWithAgents() throws Exception
+  {
+    checkpoint(1, 1, 2);
+    Assert.assertArrayEquals("window ids", new long[] {1}, testMeta.storageAgent.getWindowIds(1));
+    Assert.assertTrue("shared", BatchedFSStorageAgent.isShared(testMeta.applicationPath));
+
+    BatchedFSStorageAgent storageAgent = new BatchedFSStorageAgent(testMeta.applicationPath, null);
+    testMeta.storageAgent = null;
+    System.gc();
+    Assert.assertArrayEquals("window ids", new long[] {1}, storageAgent.getWindowIds(2));
+    Assert.assertTrue("shared", BatchedFSStorageAgent.isShared(testMeta.applicationPath));
+
+    storageAgent = null;
+    long deadline = System.currentTimeMillis() + 10000;
+    while (BatchedFSStorageAgent.isShared(testMeta.applicationPath) && System.currentTimeMillis() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    Assert.assertFalse("shared", BatchedFSStorageAgent.isShared(testMeta.applicationPath));
+  }
+
+}
@@ -20,7 +20,13 @@ package com.datatorrent.common.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -131,4 +137,39 @@ public class FSStorageAgentTest
     Assert.assertFalse("operator 1 window 1", fileContext.util().exists(new Path(appPath + "/" + 1 + "/" + 1)));
   }
 
+  @Test
+  public void testConcurrentSaveAndLoad() throws Exception
+  {
+    final int operators = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(operators);
+    try {
+      List<Future<Map<Integer, String>>> futures = new ArrayList<>();
+      for (int i = 0; i < operators; i++) {
+        final int operatorId = i;
+        futures.add(executor.submit(new Callable<Map<Integer, String>>()
+        {
+          @Override
+          @SuppressWarnings("unchecked")
+          public Map<Integer, String> call() throws Exception
+          {
+            Map<Integer, String> data = Maps.newHashMap();
+            for (int j = 0; j < 1000; j++) {
+              data.put(j, operatorId + "-" + j);
+            }
+            testMeta.storageAgent.save(data, operatorId, 1);
+            return (Map<Integer, String>)testMeta.storageAgent.load(operatorId, 1);
+          }
+        }));
+      }
+
+      for (int i = 0; i < operators; i++) {
+        Map<Integer, String> decoded = futures.get(i).get();
+        Assert.assertEquals("size of " + i, 1000, decoded.size());
+        Assert.assertEquals("data of " + i, i + "-999", decoded.get(999));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
 }
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.collect.Maps;
+
+import com.datatorrent.api.annotation.Stateless;
+
+public class IncrementalFSStorageAgentTest
+{
+  private static class TestMeta extends TestWatcher
+  {
+    String applicationPath;
+    IncrementalFSStorageAgent storageAgent;
+
+    @Override
+    protected void starting(Description description)
+    {
+      super.starting(description);
+      applicationPath = "target/" + description.getClassName() + "/" + description.getMethodName();
+      try {
+        FileUtils.forceMkdir(new File("target/" + description.getClassName()));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      storageAgent = new IncrementalFSStorageAgent(applicationPath, null);
+      storageAgent.setMaxDeltaCount(3);
+    }
+
+    @Override
+    protected void finished(Description description)
+    {
+      try {
+        FileUtils.deleteDirectory(new File("target/" + description.getClassName()));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  @Rule
+  public TestMeta testMeta = new TestMeta();
+
+  /**
+   * @return names of the full images, without the checksum files of the local file system
+   */
+  private static String[] listImages(File bases)
+  {
+    return bases.list(new FilenameFilter()
+    {
+      @Override
+      public boolean accept(File dir, String name)
+      {
+        return !name.startsWith(".");
+      }
+    });
+  }
+
+  private Map<Integer, String> saveWindows(int windows) throws IOException
+  {
+    Map<Integer, String> data = Maps.newTreeMap();
+    for (int i = 0; i < 100000; i++) {
+      data.put(i, "value of " + i);
+    }
+
+    for (long windowId = 1; windowId <= windows; windowId++) {
+      data.put((int)windowId * 1000, "value of window " + windowId);
+      testMeta.storageAgent.save(data, 1, windowId);
+    }
+    return data;
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException
+  {
+    Map<Integer, String> data = saveWindows(3);
+
+    File operatorDir = new File(testMeta.applicationPath, "1");
+    File base = new File(new File(operatorDir, IncrementalFSStorageAgent.BASES), "1");
+    Assert.assertTrue("delta smaller than image", new File(operatorDir, "3").length() < base.length() / 4);
+    Assert.assertEquals("window ids", 3, testMeta.storageAgent.getWindowIds(1).length);
+
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded = (Map<Integer, String>)testMeta.storageAgent.load(1, 3);
+    Assert.assertEquals("data of window 3", data, decoded);
+
+    data.put(3000, "value of 3000");
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded2 = (Map<Integer, String>)testMeta.storageAgent.load(1, 2);
+    Assert.assertEquals("data of window 2", data, decoded2);
+  }
+
+  @Test
+  public void testDeleteBases() throws IOException
+  {
+    Map<Integer, String> data = saveWindows(6);
+    File bases = new File(new File(testMeta.applicationPath, "1"), IncrementalFSStorageAgent.BASES);
+    Assert.assertEquals("images", 2, listImages(bases).length);
+
+    for (long windowId = 1; windowId < 5; windowId++) {
+      Assert.assertTrue("image 1 kept", new File(bases, "1").exists());
+      testMeta.storageAgent.delete(1, windowId);
+    }
+    Assert.assertFalse("image 1 deleted", new File(bases, "1").exists());
+    Assert.assertTrue("image 5 kept", new File(bases, "5").exists());
+
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded = (Map<Integer, String>)testMeta.storageAgent.load(1, 6);
+    Assert.assertEquals("data of window 6", data, decoded);
+  }
+
+  /**
+   * The agent no longer saves differences from a full image it deleted, even when another agent wrote the newer one.
+   */
+  @Test
+  public void testSaveAfterBaseDeleted() throws IOException
+  {
+    Map<Integer, String> data = saveWindows(2);
+    IncrementalFSStorageAgent other = new IncrementalFSStorageAgent(testMeta.applicationPath, null);
+    other.save(data, 1, 3);
+    File bases = new File(new File(testMeta.applicationPath, "1"), IncrementalFSStorageAgent.BASES);
+    Assert.assertTrue("image 3", new File(bases, "3").exists());
+
+    testMeta.storageAgent.delete(1, 1);
+    testMeta.storageAgent.delete(1, 2);
+    Assert.assertFalse("image 1 deleted", new File(bases, "1").exists());
+
+    data.put(4000, "value of window 4");
+    testMeta.storageAgent.save(data, 1, 4);
+    Assert.assertTrue("image 4", new File(bases, "4").exists());
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded = (Map<Integer, String>)testMeta.storageAgent.load(1, 4);
+    Assert.assertEquals("data of window 4", data, decoded);
+  }
+
+  @Test
+  public void testStatelessWindow() throws IOException
+  {
+    /* the initial checkpoint of the operators is saved at the stateless window id */
+    testMeta.storageAgent.save("initial", 1, Stateless.WINDOW_ID);
+    Map<Integer, String> data = saveWindows(4);
+    File bases = new File(new File(testMeta.applicationPath, "1"), IncrementalFSStorageAgent.BASES);
+    File initial = new File(bases, Long.toHexString(Stateless.WINDOW_ID));
+    Assert.assertTrue("initial image", initial.exists());
+    Assert.assertEquals("initial checkpoint", "initial", testMeta.storageAgent.load(1, Stateless.WINDOW_ID));
+
+    /* window 1 is saved as the difference from the initial image */
+    testMeta.storageAgent.delete(1, Stateless.WINDOW_ID);
+    Assert.assertTrue("initial image kept", initial.exists());
+    testMeta.storageAgent.delete(1, 1);
+    Assert.assertFalse("initial image deleted", initial.exists());
+
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded = (Map<Integer, String>)testMeta.storageAgent.load(1, 4);
+    Assert.assertEquals("data of window 4", data, decoded);
+  }
+
+}
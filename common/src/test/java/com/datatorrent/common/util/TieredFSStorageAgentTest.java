@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.common.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.collect.Maps;
+
+import com.datatorrent.api.annotation.Stateless;
+
+public class TieredFSStorageAgentTest
+{
+  private static class TestMeta extends TestWatcher
+  {
+    String applicationPath;
+    String cachePath;
+    TieredFSStorageAgent storageAgent;
+
+    @Override
+    protected void starting(Description description)
+    {
+      super.starting(description);
+      String basePath = "target/" + description.getClassName() + "/" + description.getMethodName();
+      applicationPath = basePath + "/app";
+      cachePath = basePath + "/cache";
+      try {
+        FileUtils.forceMkdir(new File(basePath));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      storageAgent = new TieredFSStorageAgent(applicationPath, null);
+      storageAgent.setLocalCachePath(cachePath);
+    }
+
+    @Override
+    protected void finished(Description description)
+    {
+      try {
+        FileUtils.deleteDirectory(new File("target/" + description.getClassName()));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+
+  @Rule
+  public TestMeta testMeta = new TestMeta();
+
+  @Test
+  public void testLoadFromLocalTier() throws IOException
+  {
+    Map<Integer, String> data = Maps.newHashMap();
+    for (int windowId = 1; windowId <= 3; windowId++) {
+      data.put(windowId, "window " + windowId);
+      testMeta.storageAgent.save(data, 1, windowId);
+      testMeta.storageAgent.flush(1, windowId);
+    }
+
+    File[] cacheDirs = new File(testMeta.cachePath).listFiles();
+    Assert.assertEquals("cache directories", 1, cacheDirs.length);
+    File operatorDir = new File(cacheDirs[0], "1");
+    Assert.assertFalse("window 1 evicted", new File(operatorDir, "1").exists());
+    Assert.assertTrue("window 3 cached", new File(operatorDir, "3").exists());
+
+    /* the local tier is used even if the DFS copy is gone */
+    Assert.assertTrue("DFS copy deleted", new File(testMeta.applicationPath + "/1/3").delete());
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded = (Map<Integer, String>)testMeta.storageAgent.load(1, 3);
+    Assert.assertEquals("data of window 3", data, decoded);
+
+    data.remove(3);
+    data.remove(2);
+    @SuppressWarnings("unchecked")
+    Map<Integer, String> decoded1 = (Map<Integer, String>)testMeta.storageAgent.load(1, 1);
+    Assert.assertEquals("data of window 1 from the DFS", data, decoded1);
+  }
+
+  @Test
+  public void testStatelessWindow() throws IOException
+  {
+    /* the initial checkpoint of the operators is saved at the stateless window id */
+    testMeta.storageAgent.save("initial", 1, Stateless.WINDOW_ID);
+    testMeta.storageAgent.flush(1, Stateless.WINDOW_ID);
+    Assert.assertEquals("initial checkpoint", "initial", testMeta.storageAgent.load(1, Stateless.WINDOW_ID));
+
+    for (int windowId = 1; windowId <= 2; windowId++) {
+      testMeta.storageAgent.save("window " + windowId, 1, windowId);
+      testMeta.storageAgent.flush(1, windowId);
+    }
+
+    File operatorDir = new File(new File(testMeta.cachePath).listFiles()[0], "1");
+    Assert.assertFalse("initial checkpoint evicted",
+        new File(operatorDir, Long.toHexString(Stateless.WINDOW_ID)).exists());
+    Assert.assertTrue("window 1 cached", new File(operatorDir, "1").exists());
+    Assert.assertEquals("initial checkpoint from the DFS", "initial",
+        testMeta.storageAgent.load(1, Stateless.WINDOW_ID));
+  }
+
+}
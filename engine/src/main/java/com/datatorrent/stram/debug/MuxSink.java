@@ -24,6 +24,7 @@ import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 
 /**
@@ -31,7 +32,7 @@ import com.datatorrent.api.Sink;
  *
  * @since 0.3.2
  */
-public class MuxSink implements Sink<Object>
+public class MuxSink implements BatchSink<Object>
 {
   Sink<Object>[] sinks;
   private int count;
@@ -56,6 +57,22 @@ public class MuxSink implements Sink<Object>
     }
   }
 
+  @Override
+  public void putAll(Object[] tuples, int from, int to)
+  {
+    count += to - from;
+    for (int i = sinks.length; i-- > 0;) {
+      final Sink<Object> sink = sinks[i];
+      if (sink instanceof BatchSink) {
+        ((BatchSink<Object>)sink).putAll(tuples, from, to);
+      } else {
+        for (int j = from; j < to; j++) {
+          sink.put(tuples[j]);
+        }
+      }
+    }
+  }
+
   public void add(Sink<Object>... s)
   {
     int i = sinks.length;
@@ -18,7 +18,10 @@
  */
 package com.datatorrent.stram.debug;
 
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
+import com.datatorrent.stram.engine.DataSignal;
+import com.datatorrent.stram.engine.SignallingReservoir;
 import com.datatorrent.stram.engine.SweepableReservoir;
 import com.datatorrent.stram.tuple.Tuple;
 
@@ -27,7 +30,7 @@ import com.datatorrent.stram.tuple.Tuple;
  *
  * @since 0.3.2
  */
-public class TappedReservoir extends MuxSink implements SweepableReservoir
+public class TappedReservoir extends MuxSink implements SignallingReservoir
 {
   public final SweepableReservoir reservoir;
   private Sink<Object> sink;
@@ -62,6 +65,14 @@ public class TappedReservoir extends MuxSink implements SweepableReservoir
     return reservoir.getCount(reset);
   }
 
+  @Override
+  public void setDataSignal(DataSignal signal)
+  {
+    if (reservoir instanceof SignallingReservoir) {
+      ((SignallingReservoir)reservoir).setDataSignal(signal);
+    }
+  }
+
   @Override
   public int size(final boolean dataTupleAware)
   {
@@ -81,6 +92,19 @@ public class TappedReservoir extends MuxSink implements SweepableReservoir
     sink.put(tuple);
   }
 
+  @Override
+  public void putAll(Object[] tuples, int from, int to)
+  {
+    super.putAll(tuples, from, to);
+    if (sink instanceof BatchSink) {
+      ((BatchSink<Object>)sink).putAll(tuples, from, to);
+    } else {
+      for (int i = from; i < to; i++) {
+        sink.put(tuples[i]);
+      }
+    }
+  }
+
   @Override
   public Object remove()
   {
@@ -19,11 +19,15 @@
 package com.datatorrent.stram.engine;
 
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -33,6 +37,7 @@ import org.jctools.queues.SpscArrayQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 import com.datatorrent.netlet.util.CircularBuffer;
 import com.datatorrent.netlet.util.UnsafeBlockingQueue;
@@ -47,11 +52,15 @@ import static java.lang.Thread.sleep;
  *
  * @since 3.4.0
  */
-public abstract class AbstractReservoir implements SweepableReservoir, BlockingQueue<Object>
+public abstract class AbstractReservoir implements SignallingReservoir, BlockingQueue<Object>
 {
   private static final Logger logger = LoggerFactory.getLogger(AbstractReservoir.class);
   static final String reservoirClassNameProperty = "com.datatorrent.stram.engine.Reservoir";
   private static final int SPSC_ARRAY_BLOCKING_QUEUE_CAPACITY_THRESHOLD = 64 * 1024;
+  /**
+   * Maximum number of data tuples handed over to a {@link BatchSink} in a single call.
+   */
+  private static final int BATCH_SIZE = 64;
 
   /**
    * Reservoir factory. Constructs concrete implementation of {@link AbstractReservoir} based on
@@ -73,6 +82,8 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
       return new SpscArrayQueueReservoir(id, capacity);
     } else if (reservoirClassName.equals(SpscArrayBlockingQueueReservoir.class.getName())) {
       return new SpscArrayBlockingQueueReservoir(id, capacity);
+    } else if (reservoirClassName.equals(SpscBatchReservoir.class.getName())) {
+      return new SpscBatchReservoir(id, capacity);
     } else if (reservoirClassName.equals(CircularBufferReservoir.class.getName())) {
       return new CircularBufferReservoir(id, capacity);
     } else if (reservoirClassName.equals(ArrayBlockingQueueReservoir.class.getName())) {
@@ -90,6 +101,12 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
 
   private Sink<Object> sink;
   private String id;
+  private Object[] batch;
+  private volatile DataSignal signal;
+  /**
+   * written before the data signal is raised, see {@link #signal()}.
+   */
+  private volatile boolean fence;
   protected int count;
 
   protected AbstractReservoir(final String id)
@@ -151,6 +168,65 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     return sink;
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void setDataSignal(DataSignal signal)
+  {
+    this.signal = signal;
+  }
+
+  /**
+   * Raises the data signal, if any, after a tuple was added. Only the SPSC reservoirs signal. They publish the tuple
+   * with an ordered store, which may be delayed past the read of the pending flag of the signal, so a volatile store
+   * to a field of the reservoir fences the two as {@link DataSignal#signal()} requires.
+   */
+  protected void signal()
+  {
+    final DataSignal signal = this.signal;
+    if (signal != null) {
+      fence = true;
+      signal.signal();
+    }
+  }
+
+  /**
+   * Adds the objects objects[from] to objects[to - 1] to the reservoir in that order, waiting for space as needed.
+   *
+   * @param objects array holding the objects
+   * @param from index of the first object, inclusive
+   * @param to index of the last object, exclusive
+   * @throws InterruptedException if interrupted while waiting for space
+   */
+  public void putAll(Object[] objects, int from, int to) throws InterruptedException
+  {
+    for (int i = from; i < to; i++) {
+      put(objects[i]);
+    }
+  }
+
+  /**
+   * @return array to collect the data tuples handed over to a {@link BatchSink} in
+   */
+  protected Object[] getBatch()
+  {
+    if (batch == null) {
+      batch = new Object[BATCH_SIZE];
+    }
+    return batch;
+  }
+
+  /**
+   * Hands the first size data tuples of the batch over to the sink and releases them.
+   */
+  protected void flush(BatchSink<Object> sink, Object[] batch, int size)
+  {
+    count += size;
+    sink.putAll(batch, 0, size);
+    Arrays.fill(batch, 0, size, null);
+  }
+
   @Override
   public String toString()
   {
@@ -180,6 +256,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
       Object o;
       final SpscArrayQueue<Object> queue = this.queue;
       final Sink<Object> sink = getSink();
+      if (sink instanceof BatchSink) {
+        return sweep((BatchSink<Object>)sink);
+      }
       while ((o = queue.peek()) != null) {
         if (o instanceof Tuple) {
           return (Tuple)o;
@@ -190,10 +269,34 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
       return null;
     }
 
+    private Tuple sweep(BatchSink<Object> sink)
+    {
+      Object o;
+      final SpscArrayQueue<Object> queue = this.queue;
+      final Object[] batch = getBatch();
+      int size = 0;
+      while ((o = queue.peek()) != null) {
+        if (o instanceof Tuple) {
+          break;
+        }
+        batch[size++] = queue.poll();
+        if (size == batch.length) {
+          flush(sink, batch, size);
+          size = 0;
+        }
+      }
+      if (size > 0) {
+        flush(sink, batch, size);
+      }
+      return (Tuple)o;
+    }
+
     @Override
     public boolean add(Object o)
     {
-      return queue.add(o);
+      final boolean added = queue.add(o);
+      signal();
+      return added;
     }
 
     @Override
@@ -236,7 +339,11 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
     @Override
     public boolean offer(Object o)
     {
-      return queue.offer(o);
+      if (queue.offer(o)) {
+        signal();
+        return true;
+      }
+      return false;
     }
 
     @Override
@@ -248,6 +355,7 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
         sleep(spinMillis);
         spinMillis = Math.min(maxSpinMillis, spinMillis + 1);
       }
+      signal();
     }
 
     @Override
@@ -405,6 +513,9 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
       final Sink<Object> sink = getSink();
       lock.lock();
       try {
+        if (sink instanceof BatchSink) {
+          return sweep((BatchSink<Object>)sink, queue);
+        }
         while ((o = queue.peek()) != null) {
           if (o instanceof Tuple) {
             return (Tuple)o;
@@ -422,6 +533,27 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
       }
     }
 
+    /**
+     * Drains the data tuples a batch at a time, signalling a blocked producer once per batch.
+     */
+    private Tuple sweep(BatchSink<Object> sink, SpscArrayQueue<Object> queue)
+    {
+      Object o = null;
+      final Object[] batch = getBatch();
+      do {
+        int size = 0;
+        while (size < batch.length && (o = queue.peek()) != null && !(o instanceof Tuple)) {
+          batch[size++] = queue.poll();
+        }
+        if (size == 0) {
+          break;
+        }
+        notFull.signal();
+        flush(sink, batch, size);
+      } while (o != null && !(o instanceof Tuple) && !lock.hasQueuedThreads());
+      return o instanceof Tuple ? (Tuple)o : null;
+    }
+
     @Override
     public void put(Object o) throws InterruptedException
     {
@@ -437,6 +569,7 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
           lock.unlock();
         }
       }
+      signal();
     }
 
     @Override
@@ -459,6 +592,432 @@ public abstract class AbstractReservoir implements SweepableReservoir, BlockingQ
 
   }
 
+  /**
+   * <p>SpscBatchReservoir</p>
+   * {@link SweepableReservoir} implementation that extends AbstractReservoir with a single producer single consumer
+   * ring buffer of its own. The producer records the position of every control tuple as it adds it, so the consumer
+   * knows where the data tuples end without looking at each of them. The data tuples are handed over to the sink
+   * straight out of the ring a batch at a time, and the consumer position is published and a producer blocked on the
+   * full reservoir is signalled once per batch rather than once per tuple.
+   */
+  private static class SpscBatchReservoir extends AbstractReservoir
+  {
+    private final Object[] buffer;
+    private final long[] controlPositions;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong controlTail = new AtomicLong();
+    private final AtomicLong controlHead = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private volatile boolean producerWaiting;
+    private final int maxSpinMillis = 10;
+    /*
+     * producer side, the tail and the control tail it publishes and the head it last saw.
+     */
+    private long producerIndex;
+    private long producerControlIndex;
+    private long cachedHead;
+    /*
+     * consumer side, the head and the control head it owns and the tail and the control tail it last saw.
+     */
+    private long consumerIndex;
+    private long consumerControlIndex;
+    private long cachedTail;
+    private long cachedControlTail;
+
+    private SpscBatchReservoir(final String id, final int capacity)
+    {
+      super(id);
+      final int size = capacity < 2 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+      buffer = new Object[size];
+      controlPositions = new long[size];
+      mask = size - 1;
+    }
+
+    @Override
+    public Tuple sweep()
+    {
+      final Object[] buffer = this.buffer;
+      final Sink<Object> sink = getSink();
+      long head = consumerIndex;
+      while (true) {
+        if (head == cachedTail && head == (cachedTail = tail.get())) {
+          return null;
+        }
+
+        long limit = cachedTail;
+        if (consumerControlIndex < cachedControlTail || consumerControlIndex < (cachedControlTail = controlTail.get())) {
+          final long control = controlPositions[(int)consumerControlIndex & mask];
+          if (control < limit) {
+            limit = control;
+          }
+        }
+        if (head == limit) {
+          return (Tuple)buffer[(int)head & mask];
+        }
+
+        final int from = (int)head & mask;
+        final int to = from + (int)Math.min(Math.min(limit - head, BATCH_SIZE), buffer.length - from);
+        if (sink instanceof BatchSink) {
+          ((BatchSink<Object>)sink).putAll(buffer, from, to);
+        } else {
+          for (int i = from; i < to; i++) {
+            sink.put(buffer[i]);
+          }
+        }
+        Arrays.fill(buffer, from, to, null);
+        count += to - from;
+        head += to - from;
+        release(head);
+      }
+    }
+
+    /**
+     * Publishes the new head and wakes up the producer if it waits for space. The volatile write of the head and the
+     * read of the waiting flag pair with the write of the flag and the read of the head by the producer.
+     */
+    private void release(long head)
+    {
+      consumerIndex = head;
+      this.head.set(head);
+      if (producerWaiting) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+          notFull.signal();
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+
+    @Override
+    public boolean offer(Object o)
+    {
+      if (o == null) {
+        throw new NullPointerException();
+      }
+
+      final long tail = producerIndex;
+      if (tail - cachedHead >= buffer.length && tail - (cachedHead = head.get()) >= buffer.length) {
+        return false;
+      }
+
+      buffer[(int)tail & mask] = o;
+      if (o instanceof Tuple) {
+        controlPositions[(int)producerControlIndex & mask] = tail;
+        controlTail.lazySet(++producerControlIndex);
+      }
+      producerIndex = tail + 1;
+      this.tail.lazySet(tail + 1);
+      signal();
+      return true;
+    }
+
+    @Override
+    public boolean add(Object o)
+    {
+      if (offer(o)) {
+        return true;
+      }
+      throw new IllegalStateException("Reservoir full");
+    }
+
+    @Override
+    public void put(Object o) throws InterruptedException
+    {
+      if (!offer(o)) {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+          producerWaiting = true;
+          while (!offer(o)) {
+            notFull.await();
+          }
+        } finally {
+          producerWaiting = false;
+          lock.unlock();
+        }
+      }
+    }
+
+    @Override
+    public Object poll()
+    {
+      final long head = consumerIndex;
+      if (head == cachedTail && head == (cachedTail = tail.get())) {
+        return null;
+      }
+
+      final int index = (int)head & mask;
+      final Object o = buffer[index];
+      buffer[index] = null;
+      if (o instanceof Tuple) {
+        controlHead.lazySet(++consumerControlIndex);
+      }
+      release(head + 1);
+      return o;
+    }
+
+    @Override
+    public boolean offer(Object o, long timeout, TimeUnit unit) throws InterruptedException
+    {
+      if (offer(o)) {
+        return true;
+      }
+
+      long nanos = unit.toNanos(timeout);
+      final ReentrantLock lock = this.lock;
+      lock.lockInterruptibly();
+      try {
+        producerWaiting = true;
+        while (!offer(o)) {
+          if (nanos <= 0) {
+            return false;
+          }
+          nanos = notFull.awaitNanos(nanos);
+        }
+        return true;
+      } finally {
+        producerWaiting = false;
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public Object take() throws InterruptedException
+    {
+      long spinMillis = 0;
+      Object o;
+      while ((o = poll()) == null) {
+        sleep(spinMillis);
+        spinMillis = Math.min(maxSpinMillis, spinMillis + 1);
+      }
+      return o;
+    }
+
+    @Override
+    public Object poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+      final long deadline = System.nanoTime() + unit.toNanos(timeout);
+      long spinMillis = 0;
+      Object o;
+      while ((o = poll()) == null) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (millis <= 0) {
+          return null;
+        }
+        sleep(Math.min(spinMillis, millis));
+        spinMillis = Math.min(maxSpinMillis, spinMillis + 1);
+      }
+      return o;
+    }
+
+    @Override
+    public Object remove()
+    {
+      final Object o = poll();
+      if (o == null) {
+        throw new NoSuchElementException();
+      }
+      return o;
+    }
+
+    @Override
+    public Object peek()
+    {
+      final long head = consumerIndex;
+      if (head == cachedTail && head == (cachedTail = tail.get())) {
+        return null;
+      }
+      return buffer[(int)head & mask];
+    }
+
+    @Override
+    public Object element()
+    {
+      final Object o = peek();
+      if (o == null) {
+        throw new NoSuchElementException();
+      }
+      return o;
+    }
+
+    @Override
+    public int size(final boolean dataTupleAware)
+    {
+      if (dataTupleAware) {
+        final long controlHead = this.controlHead.get();
+        final long head = this.head.get();
+        return (int)Math.max(0, tail.get() - head - (controlTail.get() - controlHead));
+      }
+      return size();
+    }
+
+    @Override
+    public int size()
+    {
+      return (int)(tail.get() - head.get());
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+      return tail.get() == head.get();
+    }
+
+    @Override
+    public int capacity()
+    {
+      return buffer.length;
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+      return buffer.length - size();
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Object> container)
+    {
+      return drainTo(container, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super Object> collection, int maxElements)
+    {
+      int drained = 0;
+      Object o;
+      while (drained < maxElements && (o = poll()) != null) {
+        collection.add(o);
+        drained++;
+      }
+      return drained;
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+      return o != null && remove(Collections.singleton(o), true, true);
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+      return Arrays.asList(toArray()).contains(o);
+    }
+
+    @Override
+    public Iterator<Object> iterator()
+    {
+      return Arrays.asList(toArray()).iterator();
+    }
+
+    /**
+     * @return snapshot of the tuples in the reservoir, consistent only when called by the consumer
+     */
+    @Override
+    public Object[] toArray()
+    {
+      final long head = this.head.get();
+      final Object[] array = new Object[(int)(tail.get() - head)];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = buffer[(int)(head + i) & mask];
+      }
+      return array;
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a)
+    {
+      return Arrays.asList(toArray()).toArray(a);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c)
+    {
+      return Arrays.asList(toArray()).containsAll(c);
+    }
+
+    @Override
+    public boolean addAll(Collection<?> c)
+    {
+      for (Object o : c) {
+        add(o);
+      }
+      return !c.isEmpty();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c)
+    {
+      return remove(c, true, false);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c)
+    {
+      return remove(c, false, false);
+    }
+
+    /**
+     * Removes the tuples that are, or are not, in the collection, the first one only if asked to. The tuples ahead
+     * of the removed ones are moved towards the tail along with their control positions, so only the slots between
+     * the old and the new head are released and the producer is never raced. Only the consumer may call it.
+     */
+    private boolean remove(Collection<?> c, boolean contained, boolean first)
+    {
+      final Object[] buffer = this.buffer;
+      final long head = consumerIndex;
+      final long tail = this.tail.get();
+      /*
+       * the control tail is published before the tail, skip the control tuples that are not in the snapshot yet.
+       */
+      long control = controlTail.get();
+      while (control > consumerControlIndex && controlPositions[(int)(control - 1) & mask] >= tail) {
+        control--;
+      }
+
+      boolean removed = false;
+      long to = tail;
+      for (long i = tail; i-- > head; ) {
+        final Object o = buffer[(int)i & mask];
+        if (!(removed && first) && c.contains(o) == contained) {
+          removed = true;
+        } else {
+          buffer[(int)--to & mask] = o;
+          if (o instanceof Tuple) {
+            controlPositions[(int)--control & mask] = to;
+          }
+        }
+      }
+      if (!removed) {
+        return false;
+      }
+
+      for (long i = head; i < to; i++) {
+        buffer[(int)i & mask] = null;
+      }
+      cachedTail = tail;
+      consumerControlIndex = control;
+      controlHead.lazySet(control);
+      release(to);
+      return true;
+    }
+
+    @Override
+    public void clear()
+    {
+      while (poll() != null) {
+        // discard
+      }
+    }
+
+  }
+
   /**
    * <p>ArrayBlockingQueueReservoir</p>
    * {@link SweepableReservoir} implementation that extends AbstractReservoir and delegates {@link BlockingQueue}
@@ -43,7 +43,7 @@ public class BufferServerStatsSubscriber
 {
   // key: streamId, value: byte counter stream
   private HashMap<String, ByteCounterStream> inputStreams = new HashMap<>();
-  private HashMap<String, List<ByteCounterStream>> outputStreams = new HashMap<>();
+  private HashMap<String, List<Stream>> outputStreams = new HashMap<>();
 
   @Handler
   public void handleStreamActivation(StreamActivationEvent sae)
@@ -51,15 +51,15 @@ public class BufferServerStatsSubscriber
     ComponentContextPair<Stream, StreamContext> stream = sae.getStream();
     String portId = stream.context.getPortId();
     String sinkId = stream.context.getSinkId();
-    if (stream.component instanceof ByteCounterStream) {
+    if (stream.component instanceof ByteCounterStream || stream.component instanceof StallCounterStream) {
       if (sinkId.startsWith("tcp:")) {
-        List<ByteCounterStream> portStreams = outputStreams.get(portId);
+        List<Stream> portStreams = outputStreams.get(portId);
         if (portStreams == null) {
           portStreams = new ArrayList<>();
           outputStreams.put(portId, portStreams);
         }
-        portStreams.add((ByteCounterStream)stream.component);
-      } else {
+        portStreams.add(stream.component);
+      } else if (stream.component instanceof ByteCounterStream) {
         inputStreams.put(portId, (ByteCounterStream)stream.component);
       }
     }
@@ -71,9 +71,9 @@ public class BufferServerStatsSubscriber
     ComponentContextPair<Stream, StreamContext> stream = sde.getStream();
     String portId = stream.context.getPortId();
     String sinkId = stream.context.getSinkId();
-    if (stream.component instanceof ByteCounterStream) {
+    if (stream.component instanceof ByteCounterStream || stream.component instanceof StallCounterStream) {
       if (sinkId.startsWith("tcp:")) {
-        List<ByteCounterStream> portStreams = outputStreams.get(portId);
+        List<Stream> portStreams = outputStreams.get(portId);
         if (portStreams != null) {
           portStreams.remove(stream);
           if (portStreams.size() == 0) {
@@ -104,11 +104,17 @@ public class BufferServerStatsSubscriber
 
         if (os.outputPorts != null) {
           for (PortStats ps : os.outputPorts) {
-            List<ByteCounterStream> portStreams = outputStreams.get(ps.id);
-            if (outputStreams != null) {
+            List<Stream> portStreams = outputStreams.get(ps.id);
+            if (portStreams != null) {
               ps.bufferServerBytes = 0;
-              for (ByteCounterStream stream : portStreams) {
-                ps.bufferServerBytes = stream.getByteCount(true);
+              ps.bufferServerStallNanos = 0;
+              for (Stream stream : portStreams) {
+                if (stream instanceof ByteCounterStream) {
+                  ps.bufferServerBytes = ((ByteCounterStream)stream).getByteCount(true);
+                }
+                if (stream instanceof StallCounterStream) {
+                  ps.bufferServerStallNanos += ((StallCounterStream)stream).getStallNanos(true);
+                }
               }
             }
           }
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Signal shared by the reservoirs feeding a node and the node thread, so that the thread can park while none of its
+ * reservoirs has data and be woken up by the reservoir that receives the next tuple.
+ *
+ * The producers raise the pending flag and unpark the node thread only while it is armed, the node thread arms itself
+ * and checks the pending flag before it parks. The pending flag is cleared only when the node thread ran out of data,
+ * so the producers write it only on that transition and merely read it while the node thread is busy. That read
+ * must not be reordered with the store which published the tuple, else the producer may see the flag of the previous
+ * wake-up while the node thread, having cleared it, does not see the tuple yet. A producer which publishes with an
+ * ordered store, as the SPSC queues do, thus issues a volatile store of its own before it signals. Then either the
+ * node thread sees the tuple or the producer sees the cleared flag and the armed thread, a wake-up is not lost. The
+ * park is still bounded by a timeout as not all the reservoirs signal.
+ *
+ * @since 3.7.0
+ */
+public class DataSignal
+{
+  private final Thread owner;
+  private volatile boolean armed;
+  private volatile boolean pending;
+
+  /**
+   * @param owner the thread waiting for the data, the node thread
+   */
+  public DataSignal(Thread owner)
+  {
+    this.owner = owner;
+  }
+
+  /**
+   * Called by a reservoir after it added a tuple, unparks the owner if it is waiting. Only the first call after the
+   * owner cleared the signal writes to it. The tuple must have been published with a volatile store, or followed by
+   * one, before the call.
+   */
+  public void signal()
+  {
+    if (!pending) {
+      pending = true;
+      if (armed) {
+        LockSupport.unpark(owner);
+      }
+    }
+  }
+
+  /**
+   * Parks the owner until a reservoir signals or the timeout elapses, returns right away if a reservoir signalled
+   * since the last call. Must be called by the owner only.
+   *
+   * @param nanos the maximum time to wait
+   */
+  public void await(long nanos)
+  {
+    armed = true;
+    if (!pending) {
+      LockSupport.parkNanos(this, nanos);
+    }
+    armed = false;
+    pending = false;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "{owner=" + owner.getName() + ", armed=" + armed + ", pending=" + pending + '}';
+  }
+}
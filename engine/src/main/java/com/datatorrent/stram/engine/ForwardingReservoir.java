@@ -24,7 +24,7 @@ import com.datatorrent.stram.tuple.Tuple;
 /**
  * @since 3.4.0
  */
-public class ForwardingReservoir implements SweepableReservoir
+public class ForwardingReservoir implements SignallingReservoir
 {
   public static ForwardingReservoir newReservoir(final String id, final int capacity)
   {
@@ -50,6 +50,12 @@ public class ForwardingReservoir implements SweepableReservoir
     return reservoir.getCount(reset);
   }
 
+  @Override
+  public void setDataSignal(DataSignal signal)
+  {
+    reservoir.setDataSignal(signal);
+  }
+
   public String getId()
   {
     return reservoir.getId();
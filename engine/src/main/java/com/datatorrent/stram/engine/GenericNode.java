@@ -53,6 +53,7 @@ import com.datatorrent.stram.debug.TappedReservoir;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 import com.datatorrent.stram.plan.logical.Operators;
 import com.datatorrent.stram.tuple.CustomControlTuple;
+import com.datatorrent.stram.tuple.EndWindowTuple;
 import com.datatorrent.stram.tuple.ResetWindowTuple;
 import com.datatorrent.stram.tuple.Tuple;
 
@@ -74,6 +75,16 @@ public class GenericNode extends Node<Operator>
   protected final HashMap<String, SweepableReservoir> inputs = new HashMap<>();
   protected ArrayList<DeferredInputConnection> deferredInputConnections = new ArrayList<>();
   protected Map<SweepableReservoir,Sink> reservoirPortMap = Maps.newHashMap();
+  /**
+   * Index of each input port into {@link #inputPortWindows}, assigned when the port is first connected and kept while
+   * the reservoirs of the port are replaced.
+   */
+  protected final HashMap<String, Integer> inputPortIndexes = new HashMap<>();
+  /**
+   * The window bookkeeping of the input ports indexed by port, allocated when the ports are connected and reused for
+   * every window.
+   */
+  protected InputPortWindow[] inputPortWindows = new InputPortWindow[0];
 
   @Override
   @SuppressWarnings("unchecked")
@@ -134,6 +145,12 @@ public class GenericNode extends Node<Operator>
       throw new IllegalArgumentException("Port '" + port + "' does not exist on operator '" + operator + "'");
     }
 
+    if (!inputPortIndexes.containsKey(port)) {
+      inputPortIndexes.put(port, inputPortWindows.length);
+      inputPortWindows = Arrays.copyOf(inputPortWindows, inputPortWindows.length + 1);
+      inputPortWindows[inputPortWindows.length - 1] = new InputPortWindow(port);
+    }
+
     if (inputs.containsKey(port)) {
       deferredInputConnections.add(new DeferredInputConnection(port, reservoir));
     } else {
@@ -205,6 +222,17 @@ public class GenericNode extends Node<Operator>
   boolean insideWindow;
   boolean doCheckpoint;
   long lastCheckpointWindowId = Stateless.WINDOW_ID;
+  private NodeScheduler scheduler;
+
+  /**
+   * Makes the node take turns with the other nodes of the container, it has to be set before the node runs.
+   *
+   * @param scheduler scheduler of the container, null for the node to process tuples whenever they are available
+   */
+  public void setScheduler(NodeScheduler scheduler)
+  {
+    this.scheduler = scheduler;
+  }
 
   @Override
   public void activate()
@@ -233,8 +261,17 @@ public class GenericNode extends Node<Operator>
   {
     doCheckpoint = false;
 
-    final long maxSpinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
-    long spinMillis = 0;
+    final Idler idler = Idler.newIdler(context);
+    final DataSignal signal = idler.getSignal();
+    if (signal != null) {
+      for (SweepableReservoir reservoir : inputs.values()) {
+        setDataSignal(reservoir, signal);
+      }
+      for (DeferredInputConnection dic : deferredInputConnections) {
+        setDataSignal(dic.reservoir, signal);
+      }
+    }
+    final NodeScheduler.Turn turn = NodeScheduler.newTurn(scheduler);
     final boolean handleIdleTime = operator instanceof IdleTimeHandler;
     int totalQueues = inputs.size();
     int regularQueues = totalQueues;
@@ -256,10 +293,9 @@ public class GenericNode extends Node<Operator>
 
     TupleTracker tracker;
     LinkedList<TupleTracker> resetTupleTracker = new LinkedList<>();
-    Map<SweepableReservoir, LinkedHashSet<CustomControlTuple>> immediateDeliveryTuples = Maps.newHashMap();
-    Map<SweepableReservoir,LinkedHashSet<CustomControlTuple>> endWindowDeliveryTuples = Maps.newHashMap();
 
     try {
+      turn.begin();
       do {
         Iterator<Map.Entry<String, SweepableReservoir>> buffers = activeQueues.iterator();
       activequeue:
@@ -268,7 +304,7 @@ public class GenericNode extends Node<Operator>
           SweepableReservoir activePort = activePortEntry.getValue();
           Tuple t = activePort.sweep();
           if (t != null) {
-            spinMillis = 0;
+            idler.reset();
             boolean delay = (operator instanceof Operator.DelayOperator);
             long windowAhead = 0;
             if (delay) {
@@ -296,13 +332,13 @@ public class GenericNode extends Node<Operator>
                       // Buffer server code strips out the base seconds from BEGIN_WINDOW and END_WINDOW tuples for
                       // serialization optimization.  That's why we need a reset window here to tell the buffer
                       // server we are having a new baseSeconds now.
-                      Tuple resetWindowTuple = new ResetWindowTuple(windowAhead);
+                      Tuple resetWindowTuple = ResetWindowTuple.valueOf(windowAhead);
                       for (int s = sinks.length; s-- > 0; ) {
                         sinks[s].put(resetWindowTuple);
                       }
                     }
                     controlTupleCount++;
-                    t.setWindowId(windowAhead);
+                    t = Tuple.valueOf(MessageType.BEGIN_WINDOW, windowAhead);
                   }
                   for (int s = sinks.length; s-- > 0; ) {
                     sinks[s].put(t);
@@ -358,11 +394,11 @@ public class GenericNode extends Node<Operator>
                 buffers.remove();
                 if (t.getWindowId() == currentWindowId) {
                   activePort.remove();
-                  endWindowDequeueTimes.put(activePort, System.currentTimeMillis());
+                  getInputPortWindow(activePortEntry.getKey()).endWindowDequeueTime = System.currentTimeMillis();
                   if (++receivedEndWindow == totalQueues) {
                     assert (activeQueues.isEmpty());
                     if (delay) {
-                      t.setWindowId(windowAhead);
+                      t = EndWindowTuple.valueOf(windowAhead);
                     }
 
                     /* Emit control tuples here */
@@ -371,12 +407,15 @@ public class GenericNode extends Node<Operator>
                     }
 
 
-                    for (Entry<SweepableReservoir,LinkedHashSet<CustomControlTuple>> portSet: endWindowDeliveryTuples.entrySet()) {
-                      Sink activeSink = reservoirPortMap.get(portSet.getKey());
+                    for (InputPortWindow portWindow : inputPortWindows) {
+                      if (portWindow.endWindowDeliveryTuples.isEmpty()) {
+                        continue;
+                      }
+                      Sink activeSink = reservoirPortMap.get(inputs.get(portWindow.port));
                       // activeSink may not be null
                       if (activeSink instanceof ControlAwareDefaultInputPort) {
                         ControlTupleEnabledSink sink = (ControlTupleEnabledSink)activeSink;
-                        for (CustomControlTuple cct : portSet.getValue()) {
+                        for (CustomControlTuple cct : portWindow.endWindowDeliveryTuples) {
                           if (!sink.putControl((ControlTuple)cct.getUserObject())) {
                             // operator cannot handle control tuple; forward to sinks
                             forwardToSinks(delay, cct);
@@ -384,14 +423,17 @@ public class GenericNode extends Node<Operator>
                         }
                       } else {
                         // Not a ControlAwarePort. Operator cannot handle a custom control tuple.
-                        for (CustomControlTuple cct : portSet.getValue()) {
+                        for (CustomControlTuple cct : portWindow.endWindowDeliveryTuples) {
                           forwardToSinks(delay, cct);
                         }
                       }
                     }
 
-                    immediateDeliveryTuples.clear();
-                    endWindowDeliveryTuples.clear();
+                    /* keep the sets of the ports for the next window */
+                    for (InputPortWindow portWindow : inputPortWindows) {
+                      portWindow.immediateDeliveryTuples.clear();
+                      portWindow.endWindowDeliveryTuples.clear();
+                    }
 
                     /* Now call endWindow() */
                     processEndWindow(t);
@@ -409,10 +451,11 @@ public class GenericNode extends Node<Operator>
                 CustomControlTuple cct = (CustomControlTuple)t;
                 ControlTuple udct = (ControlTuple)cct.getUserObject();
                 boolean forward = false;
+                InputPortWindow portWindow = getInputPortWindow(activePortEntry.getKey());
 
                 // Handle Immediate Delivery Control Tuples
                 if (udct.getDeliveryType().equals(ControlTuple.DeliveryType.IMMEDIATE)) {
-                  if (!isDuplicate(immediateDeliveryTuples.get(activePort), cct)) {
+                  if (!isDuplicate(portWindow.immediateDeliveryTuples, cct)) {
                     // Forward immediately
                     if (reservoirPortMap.isEmpty()) {
                       populateReservoirInputPortMap();
@@ -433,18 +476,12 @@ public class GenericNode extends Node<Operator>
                       forwardToSinks(delay, cct);
                     }
                     // Add to set
-                    if (!immediateDeliveryTuples.containsKey(activePort)) {
-                      immediateDeliveryTuples.put(activePort, new LinkedHashSet<CustomControlTuple>());
-                    }
-                    immediateDeliveryTuples.get(activePort).add(cct);
+                    portWindow.immediateDeliveryTuples.add(cct);
                   }
                 } else {
                   // Buffer EndWindow Delivery Control Tuples
-                  if (!endWindowDeliveryTuples.containsKey(activePort)) {
-                    endWindowDeliveryTuples.put(activePort, new LinkedHashSet<CustomControlTuple>());
-                  }
-                  if (!isDuplicate(endWindowDeliveryTuples.get(activePort), cct)) {
-                    endWindowDeliveryTuples.get(activePort).add(cct);
+                  if (!isDuplicate(portWindow.endWindowDeliveryTuples, cct)) {
+                    portWindow.endWindowDeliveryTuples.add(cct);
                   }
                 }
                 break;
@@ -676,7 +713,7 @@ public class GenericNode extends Node<Operator>
           for (Map.Entry<String, SweepableReservoir> cb : activeQueues) {
             need2sleep = cb.getValue().isEmpty();
             if (!need2sleep) {
-              spinMillis = 0;
+              idler.reset();
               break;
             }
           }
@@ -684,10 +721,14 @@ public class GenericNode extends Node<Operator>
           if (need2sleep) {
             if (handleIdleTime && insideWindow) {
               ((IdleTimeHandler)operator).handleIdleTime();
+              turn.yieldIfDue();
             } else {
-              Thread.sleep(spinMillis);
-              spinMillis = Math.min(maxSpinMillis, spinMillis + 1);
+              turn.end();
+              idler.idle();
+              turn.begin();
             }
+          } else {
+            turn.yieldIfDue();
           }
         }
       } while (alive);
@@ -714,6 +755,8 @@ public class GenericNode extends Node<Operator>
       } else {
         logger.debug("Ignoring InterruptedException after shutdown", cause);
       }
+    } finally {
+      turn.end();
     }
 
     /**
@@ -767,6 +810,11 @@ public class GenericNode extends Node<Operator>
     }
   }
 
+  protected InputPortWindow getInputPortWindow(String port)
+  {
+    return inputPortWindows[inputPortIndexes.get(port)];
+  }
+
   protected boolean isDuplicate(LinkedHashSet<CustomControlTuple> set, CustomControlTuple t)
   {
     if (set == null || set.isEmpty()) {
@@ -782,8 +830,8 @@ public class GenericNode extends Node<Operator>
 
   private void fabricateFirstWindow(Operator.DelayOperator delayOperator, long windowAhead)
   {
-    Tuple beginWindowTuple = new Tuple(MessageType.BEGIN_WINDOW, windowAhead);
-    Tuple endWindowTuple = new Tuple(MessageType.END_WINDOW, windowAhead);
+    Tuple beginWindowTuple = Tuple.valueOf(MessageType.BEGIN_WINDOW, windowAhead);
+    Tuple endWindowTuple = EndWindowTuple.valueOf(windowAhead);
     for (Sink<Object> sink : outputs.values()) {
       sink.put(beginWindowTuple);
     }
@@ -802,9 +850,10 @@ public class GenericNode extends Node<Operator>
   private void fixEndWindowDequeueTimesBeforeDeactivate()
   {
     long endWindowDequeueTime = System.currentTimeMillis();
-    for (SweepableReservoir sr : inputs.values()) {
-      if (endWindowDequeueTimes.get(sr) == null) {
-        endWindowDequeueTimes.put(sr, endWindowDequeueTime);
+    for (String port : inputs.keySet()) {
+      InputPortWindow portWindow = getInputPortWindow(port);
+      if (portWindow.endWindowDequeueTime == 0) {
+        portWindow.endWindowDequeueTime = endWindowDequeueTime;
       }
     }
   }
@@ -818,7 +867,7 @@ public class GenericNode extends Node<Operator>
       ContainerStats.OperatorStats.PortStats portStats = new ContainerStats.OperatorStats.PortStats(e.getKey());
       portStats.queueSize = ar.size(DATA_TUPLE_AWARE);
       portStats.tupleCount = ar.getCount(true);
-      portStats.endWindowTimestamp = endWindowDequeueTimes.get(e.getValue());
+      portStats.endWindowTimestamp = getInputPortWindow(e.getKey()).endWindowDequeueTime;
       ipstats.add(portStats);
     }
     stats.inputPorts = ipstats;
@@ -838,5 +887,25 @@ public class GenericNode extends Node<Operator>
 
   }
 
+  /**
+   * The bookkeeping of an input port for the current window.
+   */
+  protected static class InputPortWindow
+  {
+    final String port;
+    final LinkedHashSet<CustomControlTuple> immediateDeliveryTuples = new LinkedHashSet<>();
+    final LinkedHashSet<CustomControlTuple> endWindowDeliveryTuples = new LinkedHashSet<>();
+    /**
+     * Time the last end window tuple was dequeued from the port, 0 until then.
+     */
+    long endWindowDequeueTime;
+
+    InputPortWindow(String port)
+    {
+      this.port = port;
+    }
+
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(GenericNode.class);
 }
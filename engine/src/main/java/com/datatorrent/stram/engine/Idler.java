@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.datatorrent.api.Context;
+import com.datatorrent.api.Context.IdleStrategy;
+
+/**
+ * Implements the {@link IdleStrategy} an operator thread follows while it has no work to do. The node calls
+ * {@link #idle()} after each round that found no work and {@link #reset()} as soon as it finds some, so that the next
+ * idle period starts over with the shortest wait.
+ *
+ * @since 3.7.0
+ */
+public abstract class Idler
+{
+  /**
+   * Number of idle rounds spent spinning before a strategy backs off further.
+   */
+  static final int SPINS = 100;
+  /**
+   * Number of idle rounds spent yielding before a strategy starts parking.
+   */
+  static final int YIELDS = 100;
+
+  /**
+   * Waits according to the strategy, the wait grows with the number of calls since the last {@link #reset()}.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  public abstract void idle() throws InterruptedException;
+
+  /**
+   * Notes that work was found, the next {@link #idle()} waits the shortest period again.
+   */
+  public abstract void reset();
+
+  /**
+   * @return the signal the reservoirs feeding the thread should raise when they receive data or null if the idler
+   * does not wait for it
+   */
+  public DataSignal getSignal()
+  {
+    return null;
+  }
+
+  /**
+   * Creates the idler configured for the operator with {@link Context.OperatorContext#IDLE_STRATEGY}.
+   *
+   * @param context operator context
+   * @return new idler for the calling thread, it must be the operator thread
+   */
+  public static Idler newIdler(OperatorContext context)
+  {
+    return newIdler(context.getValue(Context.OperatorContext.IDLE_STRATEGY),
+        context.getValue(Context.OperatorContext.SPIN_MILLIS));
+  }
+
+  /**
+   * @param strategy idle strategy
+   * @param maxSpinMillis longest period in milliseconds the thread sleeps or parks
+   * @return new idler for the calling thread, it must be the operator thread
+   */
+  public static Idler newIdler(IdleStrategy strategy, int maxSpinMillis)
+  {
+    switch (strategy) {
+      case BUSY_SPIN:
+        return new BusySpinIdler();
+      case SPIN_YIELD:
+        return new SpinYieldIdler();
+      case PARK:
+        return new ParkIdler(TimeUnit.MILLISECONDS.toNanos(maxSpinMillis));
+      case WAKE_ON_DATA:
+        return new WakeOnDataIdler(new DataSignal(Thread.currentThread()), TimeUnit.MILLISECONDS.toNanos(maxSpinMillis));
+      case SLEEP:
+      default:
+        return new SleepIdler(maxSpinMillis);
+    }
+  }
+
+  /**
+   * Sleeps for a period ramping up from 0 to the maximum in 1 millisecond steps.
+   */
+  private static class SleepIdler extends Idler
+  {
+    private final long maxSpinMillis;
+    private long spinMillis;
+
+    private SleepIdler(long maxSpinMillis)
+    {
+      this.maxSpinMillis = maxSpinMillis;
+    }
+
+    @Override
+    public void idle() throws InterruptedException
+    {
+      Thread.sleep(spinMillis);
+      spinMillis = Math.min(maxSpinMillis, spinMillis + 1);
+    }
+
+    @Override
+    public void reset()
+    {
+      spinMillis = 0;
+    }
+  }
+
+  /**
+   * Returns right away, the thread keeps polling.
+   */
+  private static class BusySpinIdler extends Idler
+  {
+    @Override
+    public void idle() throws InterruptedException
+    {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+
+    @Override
+    public void reset()
+    {
+    }
+  }
+
+  /**
+   * Spins for {@link #SPINS} rounds, then yields the processor on every round.
+   */
+  private static class SpinYieldIdler extends Idler
+  {
+    private int rounds;
+
+    @Override
+    public void idle() throws InterruptedException
+    {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (rounds < SPINS) {
+        rounds++;
+      } else {
+        Thread.yield();
+      }
+    }
+
+    @Override
+    public void reset()
+    {
+      rounds = 0;
+    }
+  }
+
+  /**
+   * Spins for {@link #SPINS} rounds, yields for {@link #YIELDS} rounds, then parks for a period doubling from
+   * 1 microsecond up to the maximum.
+   */
+  private static class ParkIdler extends Idler
+  {
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private final long maxParkNanos;
+    private long parkNanos;
+    private int rounds;
+
+    private ParkIdler(long maxParkNanos)
+    {
+      this.maxParkNanos = Math.max(MIN_PARK_NANOS, maxParkNanos);
+      this.parkNanos = MIN_PARK_NANOS;
+    }
+
+    @Override
+    public void idle() throws InterruptedException
+    {
+      if (rounds < SPINS) {
+        rounds++;
+      } else if (rounds < SPINS + YIELDS) {
+        rounds++;
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(this, parkNanos);
+        parkNanos = Math.min(maxParkNanos, parkNanos << 1);
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+
+    @Override
+    public void reset()
+    {
+      rounds = 0;
+      parkNanos = MIN_PARK_NANOS;
+    }
+  }
+
+  /**
+   * Spins for {@link #SPINS} rounds, yields for {@link #YIELDS} rounds, then parks until one of the reservoirs raises
+   * the signal, at most for the maximum period.
+   */
+  private static class WakeOnDataIdler extends Idler
+  {
+    private final DataSignal signal;
+    private final long maxParkNanos;
+    private int rounds;
+
+    private WakeOnDataIdler(DataSignal signal, long maxParkNanos)
+    {
+      this.signal = signal;
+      this.maxParkNanos = Math.max(ParkIdler.MIN_PARK_NANOS, maxParkNanos);
+    }
+
+    @Override
+    public void idle() throws InterruptedException
+    {
+      if (rounds < SPINS) {
+        rounds++;
+      } else if (rounds < SPINS + YIELDS) {
+        rounds++;
+        Thread.yield();
+      } else {
+        signal.await(maxParkNanos);
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+    }
+
+    @Override
+    public void reset()
+    {
+      rounds = 0;
+    }
+
+    @Override
+    public DataSignal getSignal()
+    {
+      return signal;
+    }
+  }
+}
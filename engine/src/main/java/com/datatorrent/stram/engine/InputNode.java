@@ -67,8 +67,14 @@ public class InputNode extends Node<InputOperator>
   @SuppressWarnings(value = {"SleepWhileInLoop", "BroadCatchBlock", "TooBroadCatch"})
   public final void run()
   {
-    long maxSpinMillis = context.getValue(OperatorContext.SPIN_MILLIS);
-    long spinMillis = 0;
+    final Idler idler = Idler.newIdler(context);
+    final DataSignal signal = idler.getSignal();
+    if (signal != null) {
+      setDataSignal(controlTuples, signal);
+      for (SweepableReservoir reservoir : deferredInputConnections) {
+        setDataSignal(reservoir, signal);
+      }
+    }
     final boolean handleIdleTime = operator instanceof IdleTimeHandler;
 
     boolean insideApplicationWindow = applicationWindowCount != 0;
@@ -98,11 +104,10 @@ public class InputNode extends Node<InputOperator>
               if (handleIdleTime) {
                 ((IdleTimeHandler)operator).handleIdleTime();
               } else {
-                Thread.sleep(spinMillis);
-                spinMillis = Math.min(spinMillis + 1, maxSpinMillis);
+                idler.idle();
               }
             } else {
-              spinMillis = 0;
+              idler.reset();
             }
           } else {
             Thread.sleep(0);
@@ -118,7 +118,6 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
   protected long endWindowEmitTime;
   protected long lastSampleCpuTime;
   protected ThreadMXBean tmb;
-  protected HashMap<SweepableReservoir, Long> endWindowDequeueTimes; // end window dequeue time for input ports
   protected Checkpoint checkpoint;
   public int applicationWindowCount;
   public int checkpointWindowCount;
@@ -147,7 +146,6 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     descriptor = new PortMappingDescriptor();
     Operators.describe(operator, descriptor);
 
-    endWindowDequeueTimes = new HashMap<>();
     tmb = ManagementFactory.getThreadMXBean();
     commandResponse = new LinkedBlockingQueue<>();
 
@@ -371,7 +369,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     /*
      * since we are going away, we should let all the downstream operators know that.
      */
-    EndStreamTuple est = new EndStreamTuple(currentWindowId);
+    EndStreamTuple est = EndStreamTuple.valueOf(currentWindowId);
     for (final Sink<Object> output : outputs.values()) {
       output.put(est);
     }
@@ -382,7 +380,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
   {
     long windowId = (operator instanceof Operator.DelayOperator) ?
         WindowGenerator.getAheadWindowId(currentWindowId, firstWindowMillis, windowWidthMillis, 1) : currentWindowId;
-    EndWindowTuple ewt = new EndWindowTuple(windowId);
+    EndWindowTuple ewt = EndWindowTuple.valueOf(windowId);
     for (int s = sinks.length; s-- > 0; ) {
       sinks[s].put(ewt);
     }
@@ -518,7 +516,14 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
         try {
           checkpointStats = new Stats.CheckpointStats();
           checkpointStats.checkpointStartTime = System.currentTimeMillis();
-          ba.save(operator, id, windowId);
+          /* the snapshot of the operator state is saved on the background thread along with the flush */
+          Object snapshot = null;
+          if (ba instanceof AsyncStorageAgent && !((AsyncStorageAgent)ba).isSyncCheckpoint()
+              && PROCESSING_MODE != ProcessingMode.EXACTLY_ONCE && operator instanceof Operator.SnapshotProvider) {
+            snapshot = ((Operator.SnapshotProvider)operator).snapshot(windowId);
+          } else {
+            ba.save(operator, id, windowId);
+          }
           if (ba instanceof AsyncStorageAgent) {
             AsyncStorageAgent asyncStorageAgent = (AsyncStorageAgent)ba;
             if (!asyncStorageAgent.isSyncCheckpoint()) {
@@ -532,6 +537,7 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
                 checkpointHandler.operatorId = id;
                 checkpointHandler.windowId = windowId;
                 checkpointHandler.stats = checkpointStats;
+                checkpointHandler.snapshot = snapshot;
                 FutureTask<Stats.CheckpointStats> futureTask = new FutureTask<>(checkpointHandler);
                 taskQueue.add(new Pair<>(futureTask, checkpointWindowInfo));
                 executorService.submit(futureTask);
@@ -565,6 +571,19 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     }
   }
 
+  /**
+   * Let the reservoir wake up the node thread waiting on the signal when it receives data, if it supports it.
+   *
+   * @param reservoir reservoir feeding one of the input ports
+   * @param signal signal of the node thread
+   */
+  protected static void setDataSignal(SweepableReservoir reservoir, DataSignal signal)
+  {
+    if (reservoir instanceof SignallingReservoir) {
+      ((SignallingReservoir)reservoir).setDataSignal(signal);
+    }
+  }
+
   protected void calculateNextCheckpointWindow()
   {
     if (PROCESSING_MODE != ProcessingMode.EXACTLY_ONCE) {
@@ -684,11 +703,26 @@ public abstract class Node<OPERATOR extends Operator> implements Component<Opera
     public int operatorId;
     public long windowId;
     public Stats.CheckpointStats stats;
+    public Object snapshot;
 
     @Override
     public Stats.CheckpointStats call() throws Exception
     {
-      agent.flush(id, windowId);
+      try {
+        if (snapshot != null) {
+          agent.save(snapshot, operatorId, windowId);
+        }
+        agent.flush(operatorId, windowId);
+      } catch (IOException ie) {
+        try {
+          logger.warn("Rolling back checkpoint {} for Operator {} due to the exception {}",
+              Codec.getStringWindowId(windowId), operator, ie);
+          agent.delete(operatorId, windowId);
+        } catch (IOException ex) {
+          logger.warn("Error while rolling back checkpoint", ex);
+        }
+        throw ie;
+      }
       stats.checkpointTime = System.currentTimeMillis() - stats.checkpointStartTime;
       return stats;
     }
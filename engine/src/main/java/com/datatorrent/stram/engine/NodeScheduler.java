@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.datatorrent.api.Context;
+
+/**
+ * Lets the nodes of a container take turns on a fixed number of workers, see
+ * {@link Context.DAGContext#NODE_SCHEDULER_WORKERS}. A node needs a worker to process tuples. It gives the worker up
+ * while it idles for lack of tuples and after it used up its time slice while other nodes wait for a worker, in
+ * which case it waits for its next turn behind them. Nodes hand over their worker only between two rounds over their
+ * input ports, so the windows are processed exactly as they are without the scheduler.
+ *
+ * A node also gives its worker up while it is blocked on a full downstream reservoir or on the full send queue of a
+ * buffer server publisher, see {@link #suspendTurn()}, so the nodes which drain them always get a worker and no more
+ * than the configured number of nodes process tuples at any time.
+ *
+ * @since 3.7.0
+ */
+public class NodeScheduler
+{
+  /**
+   * turn of the node running on the current thread, if the node is scheduled.
+   */
+  private static final ThreadLocal<ScheduledTurn> currentTurn = new ThreadLocal<>();
+  private final Semaphore workers;
+  private final long quantumNanos;
+
+  /**
+   * @param workers number of nodes processing tuples at the same time
+   * @param quantumMillis time slice of a node in milliseconds
+   */
+  public NodeScheduler(int workers, int quantumMillis)
+  {
+    this.workers = new Semaphore(workers, true);
+    this.quantumNanos = TimeUnit.MILLISECONDS.toNanos(quantumMillis);
+  }
+
+  /**
+   * Creates the scheduler configured for the container with {@link Context.DAGContext#NODE_SCHEDULER_WORKERS}.
+   *
+   * @param context container context
+   * @return new scheduler or null if the nodes are not scheduled
+   */
+  public static NodeScheduler newScheduler(Context context)
+  {
+    int workers = context.getValue(Context.DAGContext.NODE_SCHEDULER_WORKERS);
+    if (workers == 0) {
+      return null;
+    }
+    if (workers < 0) {
+      workers = Runtime.getRuntime().availableProcessors();
+    }
+    return new NodeScheduler(workers, context.getValue(Context.DAGContext.NODE_SCHEDULER_QUANTUM_MILLIS));
+  }
+
+  /**
+   * @param scheduler scheduler of the container, may be null
+   * @return new turn for the calling node thread, it does not wait for anything if the scheduler is null
+   */
+  public static Turn newTurn(NodeScheduler scheduler)
+  {
+    return scheduler == null ? UNSCHEDULED : scheduler.new ScheduledTurn();
+  }
+
+  /**
+   * Gives up the worker held by the node running on the calling thread, to be called before the node blocks on back
+   * pressure. The node has to {@link Turn#begin()} the returned turn once it can go on.
+   *
+   * @return the suspended turn or null if the calling thread holds no worker
+   */
+  public static Turn suspendTurn()
+  {
+    final ScheduledTurn turn = currentTurn.get();
+    if (turn == null || !turn.held) {
+      return null;
+    }
+    turn.end();
+    return turn;
+  }
+
+  /**
+   * Keeps track of the worker held by a node thread.
+   */
+  public static class Turn
+  {
+    /**
+     * Waits for a worker.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void begin() throws InterruptedException
+    {
+    }
+
+    /**
+     * Gives up the worker, the node is going to idle or is done.
+     */
+    public void end()
+    {
+    }
+
+    /**
+     * Gives up the worker and waits for the next turn if the time slice is used up and other nodes wait for a worker.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void yieldIfDue() throws InterruptedException
+    {
+    }
+
+    @VisibleForTesting
+    boolean isHeld()
+    {
+      return false;
+    }
+  }
+
+  private static final Turn UNSCHEDULED = new Turn();
+
+  private class ScheduledTurn extends Turn
+  {
+    private boolean held;
+    private long start;
+
+    @Override
+    public void begin() throws InterruptedException
+    {
+      currentTurn.set(this);
+      workers.acquire();
+      held = true;
+      start = System.nanoTime();
+    }
+
+    @Override
+    public void end()
+    {
+      if (held) {
+        held = false;
+        workers.release();
+      }
+    }
+
+    @Override
+    public void yieldIfDue() throws InterruptedException
+    {
+      if (held && System.nanoTime() - start >= quantumNanos && workers.hasQueuedThreads()) {
+        end();
+        begin();
+      }
+    }
+
+    @Override
+    boolean isHeld()
+    {
+      return held;
+    }
+  }
+
+}
@@ -69,6 +69,27 @@ public class OiONode extends GenericNode
 
     private LinkedHashSet<CustomControlTuple> immediateDeliveryControlTuples = Sets.newLinkedHashSet();
     private LinkedHashSet<CustomControlTuple> endWindowControlTuples = Sets.newLinkedHashSet();
+    private InputPortWindow portWindow;
+
+    /**
+     * Records the end window dequeue time in the window bookkeeping of the port the reservoir is connected to, which
+     * is looked up once.
+     */
+    private void setEndWindowDequeueTime(long time)
+    {
+      if (portWindow == null) {
+        for (Entry<String, SweepableReservoir> e : inputs.entrySet()) {
+          if (e.getValue() == reservoir) {
+            portWindow = getInputPortWindow(e.getKey());
+            break;
+          }
+        }
+        if (portWindow == null) {
+          return;
+        }
+      }
+      portWindow.endWindowDequeueTime = time;
+    }
 
     @Override
     public void put(Tuple t)
@@ -91,7 +112,7 @@ public class OiONode extends GenericNode
           break;
 
         case END_WINDOW:
-          endWindowDequeueTimes.put(reservoir, System.currentTimeMillis());
+          setEndWindowDequeueTime(System.currentTimeMillis());
           if (--expectingEndWindows == 0) {
 
             /* process custom control tuples here */
@@ -190,7 +211,7 @@ public class OiONode extends GenericNode
               if (insideWindow) {
                 applicationWindowCount = APPLICATION_WINDOW_COUNT - 1;
                 expectingEndWindows = 0;
-                endWindowDequeueTimes.put(reservoir, System.currentTimeMillis());
+                setEndWindowDequeueTime(System.currentTimeMillis());
                 processEndWindow(null);
               }
               emitEndStream();
@@ -70,7 +70,11 @@ import com.datatorrent.api.StreamingApplication;
 import com.datatorrent.api.StringCodec;
 import com.datatorrent.api.annotation.Stateless;
 import com.datatorrent.bufferserver.server.Server;
+import com.datatorrent.bufferserver.storage.CompressingStorage;
+import com.datatorrent.bufferserver.storage.DeflateBlockCodec;
 import com.datatorrent.bufferserver.storage.DiskStorage;
+import com.datatorrent.bufferserver.storage.SegmentedDiskStorage;
+import com.datatorrent.bufferserver.storage.Storage;
 import com.datatorrent.bufferserver.util.Codec;
 import com.datatorrent.common.util.ScheduledThreadPoolExecutor;
 import com.datatorrent.netlet.DefaultEventLoop;
@@ -158,6 +162,7 @@ public class StreamingContainer extends YarnContainerMain
   protected Server bufferServer;
   private int checkpointWindowCount;
   private boolean fastPublisherSubscriber;
+  private NodeScheduler nodeScheduler;
   private StreamingContainerContext containerContext;
   private List<StramToNodeRequest> nodeRequests;
   private final HashMap<String, Object> singletons;
@@ -201,6 +206,7 @@ public class StreamingContainer extends YarnContainerMain
     checkpointWindowCount = ctx.getValue(Context.DAGContext.CHECKPOINT_WINDOW_COUNT);
 
     fastPublisherSubscriber = ctx.getValue(LogicalPlan.FAST_PUBLISHER_SUBSCRIBER);
+    nodeScheduler = NodeScheduler.newScheduler(ctx);
 
     Map<Class<?>, Class<? extends StringCodec<?>>> codecs = ctx.getValue(Context.DAGContext.STRING_CODECS);
     StringCodecs.loadConverters(codecs);
@@ -227,7 +233,12 @@ public class StreamingContainer extends YarnContainerMain
         bufferServer = new Server(eventloop, 0, blocksize * 1024 * 1024, blockCount);
         bufferServer.setAuthToken(ctx.getValue(StreamingContainerContext.BUFFER_SERVER_TOKEN));
         if (ctx.getValue(Context.DAGContext.BUFFER_SPOOLING)) {
-          bufferServer.setSpoolStorage(new DiskStorage());
+          Storage storage = ctx.getValue(Context.DAGContext.BUFFER_SPOOLING_SEGMENTED) ? new SegmentedDiskStorage()
+              : new DiskStorage();
+          if (ctx.getValue(Context.DAGContext.BUFFER_SPOOLING_COMPRESSED)) {
+            storage = new CompressingStorage(storage, new DeflateBlockCodec());
+          }
+          bufferServer.setSpoolStorage(storage);
         }
         bufferServerAddress = NetUtils.getConnectAddress(bufferServer.run());
         logger.debug("Buffer server started: {}", bufferServerAddress);
@@ -1094,6 +1105,11 @@ public class StreamingContainer extends YarnContainerMain
     long smallestCheckpointedWindowId = Long.MAX_VALUE;
     //a simple map which maps the oio node to it's the node which owns the thread.
     Map<Integer, Integer> oioNodes = new ConcurrentHashMap<>();
+    /*
+     * the partition aware sinks of a source port with the same codec configuration share the codec instance,
+     * that lets the mux stream compute the partition of a tuple once for all of them.
+     */
+    Map<String, StreamCodec<Object>> partitionCodecs = new HashMap<>();
 
     /*
      * Hook up all the downstream ports. There are 2 places where we deal with more than 1
@@ -1164,6 +1180,8 @@ public class StreamingContainer extends YarnContainerMain
             context.setSourceId(connIdentifier);
             context.setSinkId(sinkIdentifier);
             context.setFinishedWindowId(checkpoint.windowId);
+            context.put(PortContext.BUFFER_SERVER_CREDIT_MB, getValue(PortContext.BUFFER_SERVER_CREDIT_MB, nidi, ndi));
+            context.put(PortContext.BUFFER_SERVER_WEIGHT, getValue(PortContext.BUFFER_SERVER_WEIGHT, nidi, ndi));
 
             BufferServerSubscriber subscriber = fastPublisherSubscriber
                 ? new FastSubscriber("tcp://".concat(nidi.bufferServerHost).concat(":").concat(String.valueOf(nidi.bufferServerPort)).concat("/").concat(connIdentifier), queueCapacity)
@@ -1251,7 +1269,9 @@ public class StreamingContainer extends YarnContainerMain
                * generally speaking we do not have partitions on the inline streams so the control should not
                * come here but if it comes, then we are ready to handle it using the partition aware streams.
                */
-              PartitionAwareSink<Object> pas = new PartitionAwareSink<>(streamCodec == null ? nonSerializingStreamCodec : (StreamCodec<Object>)streamCodec, nidi.partitionKeys, nidi.partitionMask, stream);
+              String connIdentifier = sourceIdentifier + Component.CONCAT_SEPARATOR + streamCodecIdentifier;
+              StreamCodec<Object> partitionCodec = getPartitionCodec(partitionCodecs, connIdentifier, streamCodec);
+              PartitionAwareSink<Object> pas = new PartitionAwareSink<>(partitionCodec, nidi.partitionKeys, nidi.partitionMask, stream);
               ((Stream.MultiSinkCapableStream)pair.component).setSink(sinkIdentifier, pas);
             }
 
@@ -1498,6 +1518,9 @@ public class StreamingContainer extends YarnContainerMain
           }
         }
       };
+      if (node instanceof GenericNode) {
+        ((GenericNode)node).setScheduler(nodeScheduler);
+      }
       node.context.setThread(thread);
       List<Integer> oioNodeIdList = oioGroups.get(ndi.id);
       if (oioNodeIdList != null) {
@@ -1642,7 +1665,29 @@ public class StreamingContainer extends YarnContainerMain
     LoggerUtil.changeLoggersLevel(request.getTargetChanges());
   }
 
-  private final StreamCodec<Object> nonSerializingStreamCodec = new StreamCodec<Object>()
+  /**
+   * Returns the codec instance shared by the partition aware sinks of a connection. The sinks are deployed with a codec
+   * instance each, sharing the first one lets the mux stream of the source port compute the partition of a tuple once
+   * for all of them.
+   *
+   * @param partitionCodecs codecs of the connections deployed so far, keyed by the connection identifier
+   * @param connIdentifier identifier of the source port and the codec configuration of the connection
+   * @param streamCodec codec deployed with the sink, null if none
+   * @return codec the partition aware sink of the connection is to use
+   */
+  @SuppressWarnings("unchecked")
+  static StreamCodec<Object> getPartitionCodec(Map<String, StreamCodec<Object>> partitionCodecs, String connIdentifier,
+      StreamCodec<?> streamCodec)
+  {
+    StreamCodec<Object> partitionCodec = partitionCodecs.get(connIdentifier);
+    if (partitionCodec == null) {
+      partitionCodec = streamCodec == null ? nonSerializingStreamCodec : (StreamCodec<Object>)streamCodec;
+      partitionCodecs.put(connIdentifier, partitionCodec);
+    }
+    return partitionCodec;
+  }
+
+  private static final StreamCodec<Object> nonSerializingStreamCodec = new StreamCodec<Object>()
   {
     @Override
     public Object fromByteArray(Slice fragment)
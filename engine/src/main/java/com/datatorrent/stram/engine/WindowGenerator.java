@@ -90,8 +90,8 @@ public class WindowGenerator extends MuxReservoir implements Stream, Runnable
     baseSeconds = (resetWindowMillis / 1000) << 32;
     //logger.info("generating reset -> begin {}", Codec.getStringWindowId(baseSeconds));
 
-    queue.put(new ResetWindowTuple(baseSeconds | windowWidthMillis));
-    queue.put(new Tuple(MessageType.BEGIN_WINDOW, baseSeconds | windowId));
+    queue.put(ResetWindowTuple.valueOf(baseSeconds | windowWidthMillis));
+    queue.put(Tuple.valueOf(MessageType.BEGIN_WINDOW, baseSeconds | windowId));
   }
 
   /**
@@ -100,9 +100,9 @@ public class WindowGenerator extends MuxReservoir implements Stream, Runnable
    */
   private void endCurrentBeginNewWindow() throws InterruptedException
   {
-    queue.put(new EndWindowTuple(baseSeconds | windowId));
+    queue.put(EndWindowTuple.valueOf(baseSeconds | windowId));
     if (++checkPointWindowCount == checkpointCount) {
-      queue.put(new Tuple(MessageType.CHECKPOINT, baseSeconds | windowId));
+      queue.put(Tuple.valueOf(MessageType.CHECKPOINT, baseSeconds | windowId));
       checkPointWindowCount = 0;
     }
 
@@ -111,7 +111,7 @@ public class WindowGenerator extends MuxReservoir implements Stream, Runnable
       run();
     } else {
       advanceWindow();
-      queue.put(new Tuple(MessageType.BEGIN_WINDOW, baseSeconds | windowId));
+      queue.put(Tuple.valueOf(MessageType.BEGIN_WINDOW, baseSeconds | windowId));
     }
   }
 
@@ -32,7 +32,7 @@ import com.datatorrent.stram.tuple.Tuple;
  *
  * @since 0.3.2
  */
-public class WindowIdActivatedReservoir implements SweepableReservoir
+public class WindowIdActivatedReservoir implements SignallingReservoir
 {
   private Sink<Object> sink;
   private final String identifier;
@@ -61,6 +61,14 @@ public class WindowIdActivatedReservoir implements SweepableReservoir
     return reservoir.isEmpty();
   }
 
+  @Override
+  public void setDataSignal(DataSignal signal)
+  {
+    if (reservoir instanceof SignallingReservoir) {
+      ((SignallingReservoir)reservoir).setDataSignal(signal);
+    }
+  }
+
   @Override
   public Object remove()
   {
@@ -92,7 +100,7 @@ public class WindowIdActivatedReservoir implements SweepableReservoir
     while ((t = reservoir.sweep()) != null) {
       if (t.getType() == MessageType.BEGIN_WINDOW && t.getWindowId() > windowId) {
         reservoir.setSink(sink);
-        return (est = new EndStreamTuple(windowId));
+        return (est = EndStreamTuple.valueOf(windowId));
       }
       reservoir.remove();
     }
@@ -18,7 +18,11 @@
  */
 package com.datatorrent.stram.stream;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
@@ -29,24 +33,24 @@ import org.apache.apex.api.operator.ControlTuple;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.bufferserver.client.Publisher;
 import com.datatorrent.bufferserver.packet.BeginWindowTuple;
-import com.datatorrent.bufferserver.packet.DataTuple;
 import com.datatorrent.bufferserver.packet.EndStreamTuple;
 import com.datatorrent.bufferserver.packet.EndWindowTuple;
 import com.datatorrent.bufferserver.packet.MessageType;
-import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.packet.ResetWindowTuple;
 import com.datatorrent.bufferserver.packet.WindowIdTuple;
 import com.datatorrent.bufferserver.util.Codec;
 import com.datatorrent.netlet.EventLoop;
+import com.datatorrent.netlet.Listener;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt;
 import com.datatorrent.stram.codec.StatefulStreamCodec;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
 import com.datatorrent.stram.engine.ByteCounterStream;
+import com.datatorrent.stram.engine.StallCounterStream;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.tuple.CustomControlTuple;
 import com.datatorrent.stram.tuple.Tuple;
 
-import static java.lang.Thread.sleep;
-
 /**
  * Implements tuple flow of node to then buffer server in a logical stream<p>
  * <br>
@@ -57,10 +61,23 @@ import static java.lang.Thread.sleep;
  *
  * @since 0.3.2
  */
-public class BufferServerPublisher extends Publisher implements ByteCounterStream
+public class BufferServerPublisher extends Publisher implements ByteCounterStream, StallCounterStream
 {
+  /**
+   * size of the arrays the payload tuples are framed into, frames larger than half of it get an array of their own.
+   */
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private byte[] chunk = new byte[CHUNK_SIZE];
+  private int chunkOffset;
+  /**
+   * chunks the publisher filled and the event loop has not written yet, and chunks written and ready for reuse.
+   */
+  private final ConcurrentLinkedQueue<byte[]> filledChunks = new ConcurrentLinkedQueue<>();
+  private final ConcurrentLinkedQueue<byte[]> freeChunks = new ConcurrentLinkedQueue<>();
   private StreamCodec<Object> serde;
   private final AtomicLong publishedByteCount;
+  private final WritabilitySignal writability = new WritabilitySignal();
+  private final WriteListener writeListener = new WriteListener();
   private EventLoop eventloop;
   private int count;
   private StatefulStreamCodec<Object> statefulSerde;
@@ -76,7 +93,6 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
    * @param payload
    */
   @Override
-  @SuppressWarnings("SleepWhileInLoop")
   public void put(Object payload)
   {
     count++;
@@ -110,13 +126,7 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
             if (dsp.state != null) {
               array = com.datatorrent.bufferserver.packet.CustomControlTuple
                   .getSerializedTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
-              try {
-                while (!write(array)) {
-                  sleep(5);
-                }
-              } catch (InterruptedException ie) {
-                throw new RuntimeException(ie);
-              }
+              queue(array);
             }
             array = com.datatorrent.bufferserver.packet.CustomControlTuple
                 .getSerializedTuple(MessageType.CUSTOM_CONTROL_VALUE, dsp.data);
@@ -137,39 +147,134 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
       }
     } else {
       if (statefulSerde == null) {
-        array = PayloadTuple.getSerializedTuple(serde.getPartition(payload), serde.toByteArray(payload));
+        publish(MessageType.PAYLOAD_VALUE, serde.getPartition(payload), serde.toByteArray(payload));
       } else {
         DataStatePair dsp = statefulSerde.toDataStatePair(payload);
         /*
          * if there is any state write that for the subscriber before we write the data.
          */
         if (dsp.state != null) {
-          array = DataTuple.getSerializedTuple(MessageType.CODEC_STATE_VALUE, dsp.state);
-          try {
-            while (!write(array)) {
-              sleep(5);
-            }
-          } catch (InterruptedException ie) {
-            throw new RuntimeException(ie);
-          }
+          publish(MessageType.CODEC_STATE_VALUE, 0, dsp.state);
         }
         /*
          * Now that the state if any has been sent, we can proceed with the actual data we want to send.
          */
-        array = PayloadTuple.getSerializedTuple(statefulSerde.getPartition(payload), dsp.data);
+        publish(MessageType.PAYLOAD_VALUE, statefulSerde.getPartition(payload), dsp.data);
       }
+      return;
     }
 
-    try {
-      while (!write(array)) {
-        sleep(5);
+    queue(array);
+    publishedByteCount.addAndGet(array.length);
+  }
+
+  /**
+   * Writes the serialized tuple, waiting for the event loop to drain the send queue while it is full.
+   *
+   * @param array serialized tuple
+   */
+  private void queue(byte[] array)
+  {
+    if (!write(array)) {
+      final long start = writability.register();
+      try {
+        while (!write(array)) {
+          writability.await();
+        }
+      } finally {
+        writability.unregister(start);
       }
-      publishedByteCount.addAndGet(array.length);
-    } catch (InterruptedException ie) {
-      throw new RuntimeException(ie);
     }
   }
 
+  /**
+   * Frames a data tuple in place: the length as VarInt, the type, the partition of a payload tuple and the data are
+   * written into the current chunk and the frame is queued with the client as is. The client keeps a reference to
+   * the frame until the event loop copies it into the write buffer, so a full chunk is handed to the event loop,
+   * which returns it for reuse once the send queue is drained, see {@link #recycleChunks(ArrayList)}.
+   *
+   * @param type {@link MessageType#PAYLOAD_VALUE} or {@link MessageType#CODEC_STATE_VALUE}
+   * @param partition partition of the payload tuple, ignored for the codec state
+   * @param data serialized tuple
+   */
+  private void publish(byte type, int partition, Slice data)
+  {
+    final int size = (type == MessageType.PAYLOAD_VALUE ? 5 : 1) + data.length;
+    final int frameSize = VarInt.getSize(size) + size;
+    byte[] array = chunk;
+    int offset = chunkOffset;
+    if (frameSize > array.length - offset) {
+      if (frameSize > CHUNK_SIZE / 2) {
+        array = new byte[frameSize];
+      } else {
+        filledChunks.add(chunk);
+        array = freeChunks.poll();
+        if (array == null) {
+          array = new byte[CHUNK_SIZE];
+        }
+        chunk = array;
+      }
+      offset = 0;
+    }
+
+    int position = VarInt.write(size, array, offset);
+    array[position++] = type;
+    if (type == MessageType.PAYLOAD_VALUE) {
+      array[position++] = (byte)(partition >> 24);
+      array[position++] = (byte)(partition >> 16);
+      array[position++] = (byte)(partition >> 8);
+      array[position++] = (byte)partition;
+    }
+    System.arraycopy(data.buffer, data.offset, array, position, data.length);
+
+    if (!send(array, offset, frameSize)) {
+      final long start = writability.register();
+      try {
+        while (!send(array, offset, frameSize)) {
+          writability.await();
+        }
+      } finally {
+        writability.unregister(start);
+      }
+    }
+    if (array == chunk) {
+      chunkOffset = offset + frameSize;
+    }
+    publishedByteCount.addAndGet(frameSize);
+  }
+
+  /**
+   * Returns the chunks filled before the send queue was found drained for reuse, called by the event loop after it
+   * wrote. A chunk is handed over only after all its frames were queued, so once the queue is drained afterwards, the
+   * frames are copied into the write buffer of the client and the chunk is no longer referenced.
+   *
+   * @param written chunks taken from the publisher by earlier writes, owned by the event loop
+   */
+  private void recycleChunks(ArrayList<byte[]> written)
+  {
+    byte[] filled;
+    while ((filled = filledChunks.poll()) != null) {
+      written.add(filled);
+    }
+    if (!written.isEmpty() && isSendQueueDrained()) {
+      freeChunks.addAll(written);
+      written.clear();
+    }
+  }
+
+  /**
+   * Tells whether the client copied all queued frames into its write buffer, to be called by the event loop after it
+   * wrote. The client of netlet drops the interest in writing only once its write found the send queue empty, and
+   * {@link #send(byte[], int, int)} registers the interest again before it returns, so a frame queued before the
+   * call keeps the interest set until it is written. BufferServerPublisherTest checks this contract of netlet.
+   *
+   * @return true if no frame queued before the call is left in the send queue
+   */
+  boolean isSendQueueDrained()
+  {
+    return isWriteSuspended();
+  }
+
   @Override
   public boolean putControl(ControlTuple payload)
   {
@@ -198,9 +303,77 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
   public void deactivate()
   {
     setToken(null);
+    detachWriteListener();
     eventloop.disconnect(this);
   }
 
+  @Override
+  public void registered(SelectionKey key)
+  {
+    super.registered(key);
+    attachWriteListener();
+  }
+
+  @Override
+  public void connected()
+  {
+    super.connected();
+    attachWriteListener();
+  }
+
+  /**
+   * The client disconnects itself from the event loop on an exception, so the publisher is attached back to the key
+   * first for the event loop to find it.
+   *
+   * @param exception
+   * @param eventloop
+   */
+  @Override
+  public void handleException(Exception exception, EventLoop eventloop)
+  {
+    detachWriteListener();
+    super.handleException(exception, eventloop);
+  }
+
+  @Override
+  public void disconnected()
+  {
+    detachWriteListener();
+    super.disconnected();
+  }
+
+  @Override
+  public void unregistered(SelectionKey key)
+  {
+    detachWriteListener();
+    super.unregistered(key);
+  }
+
+  /**
+   * Attaches the {@link WriteListener} to the selection key in place of the publisher. The event loop attaches the
+   * publisher on registration when the connection is established right away and once it is established otherwise.
+   */
+  private void attachWriteListener()
+  {
+    final SelectionKey key = this.key;
+    if (key.attachment() == this) {
+      key.attach(writeListener);
+    }
+  }
+
+  /**
+   * Attaches the publisher back to the selection key. The event loop finds the key to disconnect by its attachment,
+   * so every path to {@link EventLoop#disconnect} goes through here: {@link #deactivate()}, an exception on the event
+   * loop and the end of the stream.
+   */
+  private void detachWriteListener()
+  {
+    final SelectionKey key = this.key;
+    if (key != null && key.attachment() == writeListener) {
+      key.attach(this);
+    }
+  }
+
   @Override
   public void onMessage(byte[] buffer, int offset, int size)
   {
@@ -236,6 +409,12 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
     return publishedByteCount.get();
   }
 
+  @Override
+  public long getStallNanos(boolean reset)
+  {
+    return writability.getStallNanos(reset);
+  }
+
   @Override
   public int getCount(boolean reset)
   {
@@ -248,5 +427,66 @@ public class BufferServerPublisher extends Publisher implements ByteCounterStrea
     }
   }
 
+  /**
+   * Listener of the event loop for the publisher. The client of netlet drains its send queue in a final method, this
+   * listener calls it and then signals the writability, so that a publisher waiting for room in the send queue
+   * resumes as soon as the event loop wrote to the socket. The publisher attaches itself back to the key before the
+   * connection is torn down, see {@link #detachWriteListener()}.
+   */
+  private class WriteListener implements Listener.ClientListener
+  {
+    private final ArrayList<byte[]> writtenChunks = new ArrayList<>();
+
+    @Override
+    public void read() throws IOException
+    {
+      BufferServerPublisher.this.read();
+    }
+
+    @Override
+    public void write() throws IOException
+    {
+      BufferServerPublisher.this.write();
+      writability.signal();
+      recycleChunks(writtenChunks);
+    }
+
+    @Override
+    public void connected()
+    {
+      BufferServerPublisher.this.connected();
+    }
+
+    @Override
+    public void disconnected()
+    {
+      BufferServerPublisher.this.disconnected();
+    }
+
+    @Override
+    public void handleException(Exception exception, EventLoop eventloop)
+    {
+      BufferServerPublisher.this.handleException(exception, eventloop);
+    }
+
+    @Override
+    public void registered(SelectionKey key)
+    {
+      BufferServerPublisher.this.registered(key);
+    }
+
+    @Override
+    public void unregistered(SelectionKey key)
+    {
+      BufferServerPublisher.this.unregistered(key);
+    }
+
+    @Override
+    public String toString()
+    {
+      return BufferServerPublisher.this.toString();
+    }
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(BufferServerPublisher.class);
 }
@@ -22,6 +22,7 @@ import java.net.InetSocketAddress;
 import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
@@ -29,9 +30,11 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.apex.api.operator.ControlTuple;
 
+import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.bufferserver.client.Subscriber;
+import com.datatorrent.bufferserver.packet.TupleDecoder;
 import com.datatorrent.bufferserver.util.Codec;
 import com.datatorrent.netlet.EventLoop;
 import com.datatorrent.netlet.util.CircularBuffer;
@@ -39,6 +42,8 @@ import com.datatorrent.netlet.util.Slice;
 import com.datatorrent.stram.codec.StatefulStreamCodec;
 import com.datatorrent.stram.codec.StatefulStreamCodec.DataStatePair;
 import com.datatorrent.stram.engine.ByteCounterStream;
+import com.datatorrent.stram.engine.DataSignal;
+import com.datatorrent.stram.engine.SignallingReservoir;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.engine.SweepableReservoir;
 import com.datatorrent.stram.engine.WindowGenerator;
@@ -100,7 +105,40 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     eventloop.connect(address.isUnresolved() ? new InetSocketAddress(address.getHostName(), address.getPort()) : address, this);
 
     logger.debug("Registering subscriber: id={} upstreamId={} streamLogicalName={} windowId={} mask={} partitions={} server={}", new Object[] {context.getSinkId(), context.getSourceId(), context.getId(), Codec.getStringWindowId(context.getFinishedWindowId()), context.getPartitionMask(), context.getPartitions(), context.getBufferServerAddress()});
-    activate(null, context.getId() + '/' + context.getSinkId(), context.getSourceId(), context.getPartitionMask(), context.getPartitions(), context.getFinishedWindowId(), freeFragments.capacity());
+    final int weight = getWeight(context);
+    activate(null, getType(context, weight), context.getSourceId(), context.getPartitionMask(), context.getPartitions(), context.getFinishedWindowId(), freeFragments.capacity(), getCredit(context), weight);
+  }
+
+  /**
+   * The subscribers of a port with a weight share the group of the upstream partition and partition keys they read, so
+   * the buffer server divides the payload tuples among them. Any other subscriber has a group of its own.
+   */
+  static String getType(StreamContext context, int weight)
+  {
+    if (weight <= 0) {
+      return context.getId() + '/' + context.getSinkId();
+    }
+    StringBuilder type = new StringBuilder(context.getId()).append('/').append(context.getSourceId()).append('/')
+        .append(context.getPortId());
+    if (context.getPartitionMask() != 0) {
+      type.append('/').append(context.getPartitionMask()).append(new TreeSet<>(context.getPartitions()));
+    }
+    return type.toString();
+  }
+
+  static int getWeight(StreamContext context)
+  {
+    Integer weight = context.get(PortContext.BUFFER_SERVER_WEIGHT);
+    return weight == null || weight <= 0 ? 0 : weight;
+  }
+
+  /**
+   * The credit in bytes the buffer server may hold in memory for this subscriber, 0 if the port has none.
+   */
+  static int getCredit(StreamContext context)
+  {
+    Integer creditMB = context.get(PortContext.BUFFER_SERVER_CREDIT_MB);
+    return creditMB == null || creditMB <= 0 ? 0 : (int)Math.min(Integer.MAX_VALUE, creditMB * 1024L * 1024L);
   }
 
   @Override
@@ -127,6 +165,11 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
         offeredFragments.add(f);
       }
     }
+
+    final BufferReservoir[] reservoirs = this.reservoirs;
+    for (int i = reservoirs.length; i-- > 0;) {
+      reservoirs[i].signal();
+    }
   }
 
   @Override
@@ -239,11 +282,16 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     return readByteCount.get();
   }
 
-  class BufferReservoir extends CircularBuffer<Object> implements SweepableReservoir
+  class BufferReservoir extends CircularBuffer<Object> implements SignallingReservoir
   {
     protected boolean skipObject = false;
     private Sink<Object> sink;
+    private volatile DataSignal signal;
     int count;
+    /**
+     * decoder reused for all the fragments, the data slices it hands over to the codec are new for every fragment.
+     */
+    private final TupleDecoder decoder = new TupleDecoder();
 
     BufferReservoir(int capacity)
     {
@@ -275,6 +323,26 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
       }
     }
 
+    /**
+     * The fragments are decoded by the node thread in {@link #sweep()}, so the node thread is signalled as soon as a
+     * fragment is received from the buffer server rather than when the decoded tuple is added to the reservoir. The
+     * fragment is published with the volatile store of the tail of the fragment buffer, which fences it from the read
+     * of the pending flag of the signal.
+     */
+    @Override
+    public void setDataSignal(DataSignal signal)
+    {
+      this.signal = signal;
+    }
+
+    void signal()
+    {
+      final DataSignal signal = this.signal;
+      if (signal != null) {
+        signal.signal();
+      }
+    }
+
     @Override
     public Tuple sweep()
     {
@@ -314,7 +382,7 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
 
         while (min-- > 0) {
           Slice fm = polledFragments.pollUnsafe();
-          com.datatorrent.bufferserver.packet.Tuple data = com.datatorrent.bufferserver.packet.Tuple.getTuple(fm.buffer, fm.offset, fm.length);
+          final TupleDecoder data = decoder.wrap(fm.buffer, fm.offset, fm.length);
           Object o;
           switch (data.getType()) {
             case NO_MESSAGE:
@@ -332,35 +400,35 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
                 freeFragments.offer(fm);
                 continue;
               }
-              o = new ResetWindowTuple(baseSeconds | data.getWindowWidth());
+              o = ResetWindowTuple.valueOf(baseSeconds | data.getWindowWidth());
               break;
 
             case PAYLOAD:
-              o = processPayload(data);
+              o = processPayload(data.getData());
               break;
 
             case CHECKPOINT:
               if (statefulSerde != null) {
                 statefulSerde.resetState();
               }
-              o = new CheckpointTuple(baseSeconds | data.getWindowId());
+              o = CheckpointTuple.valueOf(baseSeconds | data.getWindowId());
               break;
 
             case END_WINDOW:
               //logger.debug("received {}", data);
-              o = new EndWindowTuple(baseSeconds | (lastWindowId = data.getWindowId()));
+              o = EndWindowTuple.valueOf(baseSeconds | (lastWindowId = data.getWindowId()));
               break;
 
             case CUSTOM_CONTROL:
-              o = processPayload(data);
+              o = processPayload(data.getData());
               break;
 
             case END_STREAM:
-              o = new EndStreamTuple(baseSeconds | data.getWindowId());
+              o = EndStreamTuple.valueOf(baseSeconds | data.getWindowId());
               break;
 
             case BEGIN_WINDOW:
-              o = new Tuple(data.getType(), baseSeconds | data.getWindowId());
+              o = Tuple.valueOf(data.getType(), baseSeconds | data.getWindowId());
               break;
 
             default:
@@ -381,13 +449,13 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
       return null;
     }
 
-    protected Object processPayload(com.datatorrent.bufferserver.packet.Tuple data)
+    protected Object processPayload(Slice data)
     {
       Object o;
       if (statefulSerde == null) {
-        o = serde.fromByteArray(data.getData());
+        o = serde.fromByteArray(data);
       } else {
-        dsp.data = data.getData();
+        dsp.data = data;
         o = statefulSerde.fromDataStatePair(dsp);
       }
       return o;
@@ -418,9 +486,9 @@ public class BufferServerSubscriber extends Subscriber implements ByteCounterStr
     }
 
     @Override
-    protected Object processPayload(com.datatorrent.bufferserver.packet.Tuple data)
+    protected Object processPayload(Slice data)
     {
-      Object o = wrapperStreamCodec.fromByteArray(data.getData());
+      Object o = wrapperStreamCodec.fromByteArray(data);
       if (!wrapperStreamCodec.shouldCaptureEvent(o)) {
         skipObject = true;
       }
@@ -44,13 +44,11 @@ import com.datatorrent.bufferserver.packet.WindowIdTuple;
 import com.datatorrent.netlet.EventLoop;
 import com.datatorrent.netlet.Listener;
 import com.datatorrent.netlet.Listener.ClientListener;
-import com.datatorrent.stram.engine.Stream;
+import com.datatorrent.stram.engine.StallCounterStream;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.tuple.CustomControlTuple;
 import com.datatorrent.stram.tuple.Tuple;
 
-import static java.lang.Thread.sleep;
-
 /**
  * <p>FastPublisher class.</p>
  *
@@ -58,13 +56,13 @@ import static java.lang.Thread.sleep;
  *
  * @since 0.3.2
  */
-public class FastPublisher extends Kryo implements ClientListener, Stream
+public class FastPublisher extends Kryo implements ClientListener, StallCounterStream
 {
   public static final int BUFFER_CAPACITY = 8 * 1024;
   private SelectionKey key;
   private EventLoop eventloop;
   private int count;
-  private long spinMillis;
+  private final WritabilitySignal writability = new WritabilitySignal();
   protected final int lastIndex;
   protected final ByteBuffer[] readBuffers;
   protected ByteBuffer readBuffer;
@@ -145,6 +143,7 @@ public class FastPublisher extends Kryo implements ClientListener, Stream
         } else {
           readIndex++;
         }
+        writability.signal();
       }
       readBuffer = readBuffers[readIndex];
     } while (true);
@@ -171,7 +170,6 @@ public class FastPublisher extends Kryo implements ClientListener, Stream
   @Override
   public void setup(StreamContext context)
   {
-    spinMillis = 5; // somehow get it context.getValue(PortContext.SPIN_MILLIS, 5);
   }
 
   @Override
@@ -492,7 +490,6 @@ public class FastPublisher extends Kryo implements ClientListener, Stream
     return true;
   }
 
-  @SuppressWarnings("SleepWhileInLoop")
   public void advanceWriteBuffer()
   {
     if (writeIndex == lastIndex) {
@@ -501,16 +498,25 @@ public class FastPublisher extends Kryo implements ClientListener, Stream
       writeIndex++;
     }
 
-    try {
-      while (writeIndex == readIndex) {
-        sleep(spinMillis);
+    if (writeIndex == readIndex) {
+      final long start = writability.register();
+      try {
+        while (writeIndex == readIndex) {
+          writability.await();
+        }
+      } finally {
+        writability.unregister(start);
       }
-
-      writeBuffer = writeBuffers[writeIndex];
-      writeBuffer.clear();
-    } catch (InterruptedException ie) {
-      throw new RuntimeException(ie);
     }
+
+    writeBuffer = writeBuffers[writeIndex];
+    writeBuffer.clear();
+  }
+
+  @Override
+  public long getStallNanos(boolean reset)
+  {
+    return writability.getStallNanos(reset);
   }
 
   @Override
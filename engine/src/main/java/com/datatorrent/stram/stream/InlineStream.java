@@ -23,7 +23,9 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.apex.api.operator.ControlTuple;
 
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.stram.engine.AbstractReservoir;
+import com.datatorrent.stram.engine.NodeScheduler;
 import com.datatorrent.stram.engine.Stream;
 import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.engine.SweepableReservoir;
@@ -37,7 +39,7 @@ import com.datatorrent.stram.tuple.Tuple;
  *
  * @since 0.3.2
  */
-public class InlineStream implements Stream
+public class InlineStream implements Stream, BatchSink<Object>
 {
   private int count;
   private AbstractReservoir reservoir;
@@ -91,7 +93,7 @@ public class InlineStream implements Stream
   public void put(Object tuple)
   {
     try {
-      reservoir.put(tuple);
+      queue(tuple);
       if (!(tuple instanceof Tuple)) {
         count++;
       }
@@ -101,6 +103,40 @@ public class InlineStream implements Stream
     }
   }
 
+  /**
+   * Queues the batch with the reservoir, the tuples remain visible to the consumer one by one.
+   */
+  @Override
+  public void putAll(Object[] tuples, int from, int to)
+  {
+    try {
+      for (int i = from; i < to; i++) {
+        queue(tuples[i]);
+        if (!(tuples[i] instanceof Tuple)) {
+          count++;
+        }
+      }
+    } catch (InterruptedException ie) {
+      logger.debug("Interrupted", ie);
+      throw new RuntimeException(ie);
+    }
+  }
+
+  /**
+   * Adds the tuple to the reservoir. While the reservoir is full, the upstream node gives up its worker, so that the
+   * downstream node can get one to drain the reservoir, see {@link NodeScheduler#suspendTurn()}.
+   */
+  private void queue(Object tuple) throws InterruptedException
+  {
+    if (!reservoir.offer(tuple)) {
+      final NodeScheduler.Turn turn = NodeScheduler.suspendTurn();
+      reservoir.put(tuple);
+      if (turn != null) {
+        turn.begin();
+      }
+    }
+  }
+
   @Override
   public boolean putControl(ControlTuple payload)
   {
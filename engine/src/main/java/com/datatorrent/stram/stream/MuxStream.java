@@ -20,12 +20,14 @@ package com.datatorrent.stram.stream;
 
 import java.lang.reflect.Array;
 import java.util.HashMap;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.apex.api.operator.ControlTuple;
 
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 import com.datatorrent.stram.engine.Stream;
 import com.datatorrent.stram.engine.StreamContext;
@@ -36,7 +38,7 @@ import com.datatorrent.stram.tuple.CustomControlTuple;
  *
  * @since 0.3.2
  */
-public class MuxStream implements Stream.MultiSinkCapableStream
+public class MuxStream implements Stream.MultiSinkCapableStream, BatchSink<Object>
 {
   public static final String MULTI_SINK_ID_CONCAT_SEPARATOR = ", ";
   private HashMap<String, Sink<Object>> outputs = new HashMap<>();
@@ -69,14 +71,10 @@ public class MuxStream implements Stream.MultiSinkCapableStream
   @Override
   public void activate(StreamContext context)
   {
+    List<Sink<Object>> routed = PartitionRouter.route(outputs.values());
     @SuppressWarnings("unchecked")
-    Sink<Object>[] newSinks = (Sink<Object>[])Array.newInstance(Sink.class, outputs.size());
-
-    int i = 0;
-    for (final Sink<Object> s: outputs.values()) {
-      newSinks[i++] = s;
-    }
-    sinks = newSinks;
+    Sink<Object>[] newSinks = (Sink<Object>[])Array.newInstance(Sink.class, routed.size());
+    sinks = routed.toArray(newSinks);
   }
 
   /**
@@ -122,6 +120,30 @@ public class MuxStream implements Stream.MultiSinkCapableStream
     }
   }
 
+  /**
+   * Hands the batch to each of the sinks in turn, in a single call to the sinks that accept batches.
+   *
+   * @param payloads
+   * @param from
+   * @param to
+   */
+  @Override
+  public void putAll(Object[] payloads, int from, int to)
+  {
+    count += to - from;
+    final Sink<Object>[] sinks = this.sinks;
+    for (int i = sinks.length; i-- > 0;) {
+      final Sink<Object> sink = sinks[i];
+      if (sink instanceof BatchSink) {
+        ((BatchSink<Object>)sink).putAll(payloads, from, to);
+      } else {
+        for (int j = from; j < to; j++) {
+          sink.put(payloads[j]);
+        }
+      }
+    }
+  }
+
   @Override
   public boolean putControl(ControlTuple payload)
   {
@@ -18,8 +18,10 @@
  */
 package com.datatorrent.stram.stream;
 
+import java.util.Arrays;
 import java.util.Set;
 
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.stram.tuple.Tuple;
@@ -30,13 +32,21 @@ import com.datatorrent.stram.tuple.Tuple;
  * @param <T>
  * @since 0.3.2
  */
-public class PartitionAwareSink<T> implements Sink<T>
+public class PartitionAwareSink<T> implements BatchSink<T>
 {
+  private static final int INITIAL_BATCH_SIZE = 64;
+  /**
+   * widest mask for which the partitions are looked up in a table, the set is consulted for the wider ones.
+   */
+  static final int MAX_TABLE_MASK = 0xffff;
   private final StreamCodec<T> serde;
   private final Set<Integer> partitions;
+  private final boolean[] table;
   private final int mask;
   private volatile Sink<T> output;
   private int count;
+  private T[] staged;
+  private int stagedCount;
 
   /**
    *
@@ -49,6 +59,16 @@ public class PartitionAwareSink<T> implements Sink<T>
   {
     this.serde = serde;
     this.partitions = partitions;
+    if (mask >= 0 && mask <= MAX_TABLE_MASK) {
+      table = new boolean[mask + 1];
+      for (int partition : partitions) {
+        if ((partition & mask) == partition) {
+          table[partition] = true;
+        }
+      }
+    } else {
+      table = null;
+    }
     this.output = output;
     this.mask = mask;
   }
@@ -60,18 +80,112 @@ public class PartitionAwareSink<T> implements Sink<T>
   @Override
   public void put(T payload)
   {
-    if (payload instanceof Tuple) {
-      count++;
-      output.put(payload);
-    } else if (canSendToOutput(payload)) {
-      count++;
-      output.put(payload);
+    if (payload instanceof Tuple || canSendToOutput(payload)) {
+      deliver(payload);
+    }
+  }
+
+  /**
+   * Collects the tuples of the batch which belong to the partitions into a batch of its own and hands that over to
+   * the output. The array of the caller is left untouched.
+   *
+   * @param payloads
+   * @param from
+   * @param to
+   */
+  @Override
+  public void putAll(T[] payloads, int from, int to)
+  {
+    for (int i = from; i < to; i++) {
+      final T payload = payloads[i];
+      if (payload instanceof Tuple || canSendToOutput(payload)) {
+        stage(payload);
+      }
     }
+    flush();
   }
 
   protected boolean canSendToOutput(T payload)
   {
-    return partitions.contains(serde.getPartition(payload) & mask);
+    return accepts(serde.getPartition(payload) & mask);
+  }
+
+  StreamCodec<T> getStreamCodec()
+  {
+    return serde;
+  }
+
+  int getMask()
+  {
+    return mask;
+  }
+
+  Set<Integer> getPartitions()
+  {
+    return partitions;
+  }
+
+  /**
+   * @param partition partition of a tuple, already masked
+   * @return whether tuples of the partition go to this sink
+   */
+  boolean accepts(int partition)
+  {
+    return table == null ? partitions.contains(partition) : table[partition];
+  }
+
+  /**
+   * Hands the tuple over to the output without looking at its partition.
+   *
+   * @param payload
+   */
+  void deliver(T payload)
+  {
+    count++;
+    output.put(payload);
+  }
+
+  /**
+   * Adds the tuple to the batch which is handed over to the output with the next {@link #flush()}.
+   *
+   * @param payload
+   */
+  @SuppressWarnings("unchecked")
+  void stage(T payload)
+  {
+    T[] staged = this.staged;
+    if (staged == null) {
+      this.staged = staged = (T[])new Object[INITIAL_BATCH_SIZE];
+    } else if (stagedCount == staged.length) {
+      this.staged = staged = Arrays.copyOf(staged, staged.length << 1);
+    }
+    staged[stagedCount++] = payload;
+  }
+
+  /**
+   * Hands the tuples staged since the last flush over to the output, in a single call if it accepts batches.
+   */
+  @SuppressWarnings("unchecked")
+  void flush()
+  {
+    final int size = stagedCount;
+    if (size > 0) {
+      final T[] staged = this.staged;
+      count += size;
+      final Sink<T> output = this.output;
+      try {
+        if (output instanceof BatchSink) {
+          ((BatchSink<T>)output).putAll(staged, 0, size);
+        } else {
+          for (int i = 0; i < size; i++) {
+            output.put(staged[i]);
+          }
+        }
+      } finally {
+        stagedCount = 0;
+        Arrays.fill(staged, 0, size, null);
+      }
+    }
   }
 
   @Override
@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.datatorrent.api.BatchSink;
+import com.datatorrent.api.Sink;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * Routes the tuples of an output port to the {@link PartitionAwareSink}s which share the codec and the mask. The
+ * partition of a tuple is computed only once no matter how many of the sinks there are and it is looked up in a
+ * table of the sinks accepting it instead of each of the sinks testing the tuple on its own. The table is indexed by
+ * the partition up to {@link PartitionAwareSink#MAX_TABLE_MASK}, the routes of the partitions of a wider mask are kept
+ * in a map.
+ *
+ * @since 3.7.0
+ */
+class PartitionRouter implements BatchSink<Object>
+{
+  private final StreamCodec<Object> serde;
+  private final int mask;
+  private final PartitionAwareSink<Object>[] sinks;
+  private final PartitionAwareSink<Object>[][] routes;
+  private final Map<Integer, PartitionAwareSink<Object>[]> routeMap;
+  private final PartitionAwareSink<Object>[] noRoute;
+  private int count;
+
+  @SuppressWarnings("unchecked")
+  PartitionRouter(List<PartitionAwareSink<Object>> sinks)
+  {
+    this.sinks = sinks.toArray(new PartitionAwareSink[sinks.size()]);
+    serde = this.sinks[0].getStreamCodec();
+    mask = this.sinks[0].getMask();
+
+    noRoute = new PartitionAwareSink[0];
+    if (mask >= 0 && mask <= PartitionAwareSink.MAX_TABLE_MASK) {
+      routes = new PartitionAwareSink[mask + 1][];
+      routeMap = null;
+      for (int partition = 0; partition <= mask; partition++) {
+        routes[partition] = getRoute(partition);
+      }
+    } else {
+      routes = null;
+      routeMap = new HashMap<>();
+      for (PartitionAwareSink<Object> sink : this.sinks) {
+        for (int partition : sink.getPartitions()) {
+          if ((partition & mask) == partition && !routeMap.containsKey(partition)) {
+            routeMap.put(partition, getRoute(partition));
+          }
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private PartitionAwareSink<Object>[] getRoute(int partition)
+  {
+    List<PartitionAwareSink<Object>> route = new ArrayList<>();
+    for (PartitionAwareSink<Object> sink : sinks) {
+      if (sink.accepts(partition)) {
+        route.add(sink);
+      }
+    }
+    return route.toArray(new PartitionAwareSink[route.size()]);
+  }
+
+  /**
+   * @param partition partition of a tuple, already masked
+   * @return sinks accepting the tuples of the partition
+   */
+  private PartitionAwareSink<Object>[] lookup(int partition)
+  {
+    if (routes != null) {
+      return routes[partition];
+    }
+    PartitionAwareSink<Object>[] route = routeMap.get(partition);
+    return route == null ? noRoute : route;
+  }
+
+  @Override
+  public void put(Object payload)
+  {
+    count++;
+    if (payload instanceof Tuple) {
+      for (PartitionAwareSink<Object> sink : sinks) {
+        sink.deliver(payload);
+      }
+    } else {
+      for (PartitionAwareSink<Object> sink : lookup(serde.getPartition(payload) & mask)) {
+        sink.deliver(payload);
+      }
+    }
+  }
+
+  /**
+   * Splits the batch into a batch per sink and hands each of them over to its sink.
+   *
+   * @param payloads
+   * @param from
+   * @param to
+   */
+  @Override
+  public void putAll(Object[] payloads, int from, int to)
+  {
+    count += to - from;
+    for (int i = from; i < to; i++) {
+      final Object payload = payloads[i];
+      if (payload instanceof Tuple) {
+        for (PartitionAwareSink<Object> sink : sinks) {
+          sink.stage(payload);
+        }
+      } else {
+        for (PartitionAwareSink<Object> sink : lookup(serde.getPartition(payload) & mask)) {
+          sink.stage(payload);
+        }
+      }
+    }
+
+    for (PartitionAwareSink<Object> sink : sinks) {
+      sink.flush();
+    }
+  }
+
+  @Override
+  public int getCount(boolean reset)
+  {
+    try {
+      return count;
+    } finally {
+      if (reset) {
+        count = 0;
+      }
+    }
+  }
+
+  /**
+   * Replaces the {@link PartitionAwareSink}s which share the codec instance and the mask with a router for them.
+   * Subclasses of {@link PartitionAwareSink} may filter tuples on more than the partition and are left as they are.
+   *
+   * @param sinks sinks of an output port
+   * @return sinks to which the tuples of the output port are to be handed over
+   */
+  static List<Sink<Object>> route(Collection<Sink<Object>> sinks)
+  {
+    List<Sink<Object>> routed = new ArrayList<>(sinks.size());
+    List<List<PartitionAwareSink<Object>>> groups = new ArrayList<>();
+    for (Sink<Object> sink : sinks) {
+      if (sink.getClass() == PartitionAwareSink.class) {
+        group((PartitionAwareSink<Object>)sink, groups);
+      } else {
+        routed.add(sink);
+      }
+    }
+
+    for (List<PartitionAwareSink<Object>> group : groups) {
+      if (group.size() == 1) {
+        routed.add(group.get(0));
+      } else {
+        routed.add(new PartitionRouter(group));
+      }
+    }
+    return routed;
+  }
+
+  private static void group(PartitionAwareSink<Object> sink, List<List<PartitionAwareSink<Object>>> groups)
+  {
+    for (List<PartitionAwareSink<Object>> group : groups) {
+      PartitionAwareSink<Object> member = group.get(0);
+      if (member.getStreamCodec() == sink.getStreamCodec() && member.getMask() == sink.getMask()) {
+        group.add(sink);
+        return;
+      }
+    }
+
+    List<PartitionAwareSink<Object>> group = new ArrayList<>();
+    group.add(sink);
+    groups.add(group);
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.datatorrent.stram.engine.NodeScheduler;
+
+/**
+ * Lets a publishing thread wait until the event loop made room for more data<p>
+ * <br>
+ * A publisher that could not queue its data registers itself with {@link #register()}, retries and {@link #await()}s
+ * between the retries until it succeeds, and then calls {@link #unregister(long)}. A wait is bounded and the bound
+ * doubles from {@link #MIN_WAIT_NANOS} up to {@link #MAX_WAIT_NANOS} while the stall lasts, so a publisher re-checks
+ * the room in the send queue on its own should a signal not come. The event loop calls {@link #signal()} to end the
+ * wait early after it wrote queued data to the socket: FastPublisher when its write() frees a buffer and
+ * BufferServerPublisher through the listener it attaches in its own place to the selection key. Since the publisher
+ * registers before it retries, a signal raised between the failed attempt and the wait is not lost. The time spent
+ * between registering and unregistering is accumulated as the stall time of the publisher.<p>
+ * <br>
+ * The node publishing on the registering thread gives up its worker until it unregisters, see
+ * {@link NodeScheduler#suspendTurn()}. The send queue may drain only once a downstream node in the same container
+ * gets a worker, as the buffer server stops reading from the publisher while the subscriber of that node is full.
+ *
+ * @since 3.7.0
+ */
+class WritabilitySignal
+{
+  /**
+   * bound on the first wait of a stall.
+   */
+  static final long MIN_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+  /**
+   * bound on a single wait, the interval the publishers used to sleep between retries.
+   */
+  static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+  private final AtomicLong stallNanos = new AtomicLong();
+  private volatile Thread waiter;
+  private long waitNanos;
+  private NodeScheduler.Turn turn;
+
+  void signal()
+  {
+    final Thread thread = waiter;
+    if (thread != null) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * @return the time the stall started, to be passed to {@link #unregister(long)}
+   */
+  long register()
+  {
+    waiter = Thread.currentThread();
+    waitNanos = MIN_WAIT_NANOS;
+    turn = NodeScheduler.suspendTurn();
+    return System.nanoTime();
+  }
+
+  void await()
+  {
+    LockSupport.parkNanos(this, waitNanos);
+    if (Thread.interrupted()) {
+      waiter = null;
+      throw new RuntimeException(new InterruptedException());
+    }
+    waitNanos = Math.min(waitNanos << 1, MAX_WAIT_NANOS);
+  }
+
+  void unregister(long start)
+  {
+    waiter = null;
+    stallNanos.addAndGet(System.nanoTime() - start);
+    final NodeScheduler.Turn suspended = turn;
+    if (suspended != null) {
+      turn = null;
+      try {
+        suspended.begin();
+      } catch (InterruptedException ex) {
+        throw new RuntimeException(ex);
+      }
+    }
+  }
+
+  long getStallNanos(boolean reset)
+  {
+    return reset ? stallNanos.getAndSet(0) : stallNanos.get();
+  }
+
+}
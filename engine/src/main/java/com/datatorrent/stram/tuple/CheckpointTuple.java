@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.tuple;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import com.datatorrent.bufferserver.packet.MessageType;
 
 /**
@@ -27,9 +29,27 @@ import com.datatorrent.bufferserver.packet.MessageType;
  */
 public class CheckpointTuple extends Tuple
 {
+  private static final AtomicReferenceArray<CheckpointTuple> cache = new AtomicReferenceArray<>(CACHE_SIZE);
+
   public CheckpointTuple(long windowId)
   {
     super(MessageType.CHECKPOINT, windowId);
   }
+
+  /**
+   * @param windowId window id of the tuple
+   * @return the tuple for the window, shared with the other ports and operators of the container
+   * @see Tuple#valueOf(MessageType, long)
+   */
+  public static CheckpointTuple valueOf(long windowId)
+  {
+    final int index = (int)windowId & (CACHE_SIZE - 1);
+    CheckpointTuple tuple = cache.get(index);
+    if (tuple == null || tuple.windowId != windowId) {
+      tuple = new CheckpointTuple(windowId);
+      cache.set(index, tuple);
+    }
+    return tuple;
+  }
 }
 
@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.tuple;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import com.datatorrent.bufferserver.packet.MessageType;
 
 /**
@@ -31,9 +33,27 @@ import com.datatorrent.bufferserver.packet.MessageType;
  */
 public class EndStreamTuple extends Tuple
 {
+  private static final AtomicReferenceArray<EndStreamTuple> cache = new AtomicReferenceArray<>(CACHE_SIZE);
+
   public EndStreamTuple(long windowId)
   {
     super(MessageType.END_STREAM, windowId);
   }
 
+  /**
+   * @param windowId window id of the tuple
+   * @return the tuple for the window, shared with the other ports and operators of the container
+   * @see Tuple#valueOf(MessageType, long)
+   */
+  public static EndStreamTuple valueOf(long windowId)
+  {
+    final int index = (int)windowId & (CACHE_SIZE - 1);
+    EndStreamTuple tuple = cache.get(index);
+    if (tuple == null || tuple.windowId != windowId) {
+      tuple = new EndStreamTuple(windowId);
+      cache.set(index, tuple);
+    }
+    return tuple;
+  }
+
 }
@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.tuple;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import com.datatorrent.bufferserver.packet.MessageType;
 
 /**
@@ -31,8 +33,26 @@ import com.datatorrent.bufferserver.packet.MessageType;
  */
 public class EndWindowTuple extends Tuple
 {
+  private static final AtomicReferenceArray<EndWindowTuple> cache = new AtomicReferenceArray<>(CACHE_SIZE);
+
   public EndWindowTuple(long windowId)
   {
     super(MessageType.END_WINDOW, windowId);
   }
+
+  /**
+   * @param windowId window id of the tuple
+   * @return the tuple for the window, shared with the other ports and operators of the container
+   * @see Tuple#valueOf(MessageType, long)
+   */
+  public static EndWindowTuple valueOf(long windowId)
+  {
+    final int index = (int)windowId & (CACHE_SIZE - 1);
+    EndWindowTuple tuple = cache.get(index);
+    if (tuple == null || tuple.windowId != windowId) {
+      tuple = new EndWindowTuple(windowId);
+      cache.set(index, tuple);
+    }
+    return tuple;
+  }
 }
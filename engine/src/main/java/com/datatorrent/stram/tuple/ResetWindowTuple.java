@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.tuple;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import com.datatorrent.bufferserver.packet.MessageType;
 
 /**
@@ -29,11 +31,29 @@ import com.datatorrent.bufferserver.packet.MessageType;
  */
 public class ResetWindowTuple extends Tuple
 {
+  private static final AtomicReferenceArray<ResetWindowTuple> cache = new AtomicReferenceArray<>(CACHE_SIZE);
+
   public ResetWindowTuple(long windowId)
   {
     super(MessageType.RESET_WINDOW, windowId);
   }
 
+  /**
+   * @param windowId window id of the tuple
+   * @return the tuple for the window, shared with the other ports and operators of the container
+   * @see Tuple#valueOf(MessageType, long)
+   */
+  public static ResetWindowTuple valueOf(long windowId)
+  {
+    final int index = (int)windowId & (CACHE_SIZE - 1);
+    ResetWindowTuple tuple = cache.get(index);
+    if (tuple == null || tuple.windowId != windowId) {
+      tuple = new ResetWindowTuple(windowId);
+      cache.set(index, tuple);
+    }
+    return tuple;
+  }
+
   @Override
   public final long getWindowId()
   {
@@ -18,6 +18,8 @@
  */
 package com.datatorrent.stram.tuple;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 import com.datatorrent.bufferserver.packet.MessageType;
 import com.datatorrent.bufferserver.util.Codec;
 
@@ -35,6 +37,13 @@ import com.datatorrent.bufferserver.util.Codec;
  */
 public class Tuple
 {
+  /**
+   * Number of the most recent window control tuples of each type kept for reuse, a power of 2. The caches publish the
+   * tuples safely to the other threads of the container.
+   */
+  protected static final int CACHE_SIZE = 256;
+  private static final AtomicReferenceArray<Tuple> cache = new AtomicReferenceArray<>(MessageType.values().length *
+      CACHE_SIZE);
   protected long windowId;
   private final MessageType type;
 
@@ -44,6 +53,26 @@ public class Tuple
     this.windowId = windowId;
   }
 
+  /**
+   * Returns the tuple of the given type for the window. The window control tuples are not changed once created, so the
+   * most recent ones are shared by all the ports and the operators in the container rather than allocated for each of
+   * them.
+   *
+   * @param type type of the tuple
+   * @param windowId window id of the tuple
+   * @return the tuple, possibly shared
+   */
+  public static Tuple valueOf(MessageType type, long windowId)
+  {
+    final int index = type.ordinal() * CACHE_SIZE + ((int)windowId & (CACHE_SIZE - 1));
+    Tuple tuple = cache.get(index);
+    if (tuple == null || tuple.windowId != windowId) {
+      tuple = new Tuple(type, windowId);
+      cache.set(index, tuple);
+    }
+    return tuple;
+  }
+
   /**
    * @return the windowId
    */
@@ -52,6 +81,13 @@ public class Tuple
     return windowId;
   }
 
+  /**
+   * @param windowId the windowId
+   * @deprecated the tuples returned by {@link #valueOf(MessageType, long)} and the valueOf methods of the subclasses
+   * are shared by the ports and the operators of the container, changing the window id of such a tuple changes it for
+   * all of them. Use the tuple of the other window instead.
+   */
+  @Deprecated
   public void setWindowId(long windowId)
   {
     this.windowId = windowId;
@@ -18,8 +18,12 @@
  */
 package com.datatorrent.stram.engine;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -34,6 +38,7 @@ import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.api.BatchSink;
 import com.datatorrent.api.Sink;
 import com.datatorrent.netlet.util.CircularBuffer;
 import com.datatorrent.stram.tuple.Tuple;
@@ -60,6 +65,7 @@ public class AbstractReservoirTest
   private static final String capacityPropertyName = "com.datatorrent.stram.engine.AbstractReservoirTest.capacity";
   private static final int COUNT = Integer.getInteger(countPropertyName, 10000000);
   private static final int CAPACITY = Integer.getInteger(capacityPropertyName, QUEUE_CAPACITY.defaultValue);
+  private static final String SPSC_BATCH_RESERVOIR = "com.datatorrent.stram.engine.AbstractReservoir$SpscBatchReservoir";
 
   @Rule
   public ExpectedException exception = ExpectedException.none();
@@ -89,6 +95,7 @@ public class AbstractReservoirTest
         {null, NoSuchElementException.class},
         {"com.datatorrent.stram.engine.AbstractReservoir$SpscArrayQueueReservoir", NoSuchElementException.class},
         {"com.datatorrent.stram.engine.AbstractReservoir$SpscArrayBlockingQueueReservoir", NoSuchElementException.class},
+        {"com.datatorrent.stram.engine.AbstractReservoir$SpscBatchReservoir", NoSuchElementException.class},
         {"com.datatorrent.stram.engine.AbstractReservoir$ArrayBlockingQueueReservoir", NoSuchElementException.class},
         {"com.datatorrent.stram.engine.AbstractReservoir$CircularBufferReservoir", IllegalStateException.class}
     };
@@ -128,6 +135,7 @@ public class AbstractReservoirTest
         {null, 2500},
         {"com.datatorrent.stram.engine.AbstractReservoir$SpscArrayQueueReservoir", 10000},
         {"com.datatorrent.stram.engine.AbstractReservoir$SpscArrayBlockingQueueReservoir", 2500},
+        {"com.datatorrent.stram.engine.AbstractReservoir$SpscBatchReservoir", 10000},
         {"com.datatorrent.stram.engine.AbstractReservoir$ArrayBlockingQueueReservoir", 10000},
         {"com.datatorrent.stram.engine.AbstractReservoir$CircularBufferReservoir", 100000}
     };
@@ -212,6 +220,264 @@ public class AbstractReservoirTest
     reservoir.remove();
   }
 
+  @SuppressWarnings("unused")
+  private Object batchTestParameters()
+  {
+    return new Object[][] {
+        {newReservoir("com.datatorrent.stram.engine.AbstractReservoir$SpscArrayQueueReservoir", 256)},
+        {newReservoir("com.datatorrent.stram.engine.AbstractReservoir$SpscArrayBlockingQueueReservoir", 256)},
+        {newReservoir("com.datatorrent.stram.engine.AbstractReservoir$SpscBatchReservoir", 256)}
+    };
+  }
+
+  @Test
+  @Parameters(method = "batchTestParameters")
+  public void testPutAllAndSweepBatch(final AbstractReservoir reservoir) throws InterruptedException
+  {
+    final int[] batches = new int[1];
+    final BatchSink<Object> sink = new BatchSink<Object>()
+    {
+      private int count;
+
+      @Override
+      public void put(Object tuple)
+      {
+        assertEquals(count++, tuple);
+      }
+
+      @Override
+      public void putAll(Object[] tuples, int from, int to)
+      {
+        batches[0]++;
+        for (int i = from; i < to; i++) {
+          put(tuples[i]);
+        }
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return count;
+      }
+    };
+    setSink(reservoir, sink);
+
+    final Object[] objects = new Object[200];
+    for (int i = 0; i < objects.length; i++) {
+      objects[i] = i;
+    }
+    final Tuple t = new Tuple(BEGIN_WINDOW, 0L);
+    reservoir.putAll(objects, 0, 150);
+    reservoir.put(t);
+    reservoir.putAll(objects, 150, 200);
+
+    assertEquals(t, reservoir.sweep());
+    assertEquals(150, reservoir.getCount(false));
+    assertEquals(150, sink.getCount(false));
+    assertTrue(batches[0] > 1);
+    assertEquals(t, reservoir.remove());
+    assertNull(reservoir.sweep());
+    assertEquals(200, reservoir.getCount(false));
+    assertEquals(200, sink.getCount(false));
+    assertTrue(reservoir.isEmpty());
+  }
+
+  /**
+   * Sink collecting the data tuples, and the size of each batch, handed over to it.
+   */
+  private static class CollectingBatchSink implements BatchSink<Object>
+  {
+    private final List<Object> tuples = new ArrayList<>();
+    private final List<Integer> batches = new ArrayList<>();
+
+    @Override
+    public void put(Object tuple)
+    {
+      tuples.add(tuple);
+    }
+
+    @Override
+    public void putAll(Object[] tuples, int from, int to)
+    {
+      batches.add(to - from);
+      this.tuples.addAll(Arrays.asList(tuples).subList(from, to));
+    }
+
+    @Override
+    public int getCount(boolean reset)
+    {
+      return tuples.size();
+    }
+  }
+
+  @Test
+  public void testBatchReservoirWrapAround() throws InterruptedException
+  {
+    final AbstractReservoir reservoir = newReservoir(SPSC_BATCH_RESERVOIR, 8);
+    final CollectingBatchSink sink = new CollectingBatchSink();
+    setSink(reservoir, sink);
+
+    /*
+     * the reservoir advances by a varying number of slots each round, so the control tuple lands on every slot of the
+     * ring including the last and the first one and the data tuples ahead of it wrap around the edge.
+     */
+    int next = 0;
+    for (int round = 0; round < 32; round++) {
+      final int count = round % 6 + 1;
+      final Tuple t = new Tuple(BEGIN_WINDOW, round);
+      final int first = next;
+      for (int i = 0; i < count; i++) {
+        reservoir.put(next++);
+      }
+      reservoir.put(t);
+      reservoir.put(next++);
+      assertEquals(count + 2, reservoir.size(false));
+      assertEquals(count + 1, reservoir.size(true));
+
+      assertEquals(t, reservoir.sweep());
+      assertEquals(first + count, sink.tuples.size());
+      assertEquals(1, reservoir.size(true));
+      assertEquals(t, reservoir.remove());
+      assertEquals(1, reservoir.size(true));
+      assertNull(reservoir.sweep());
+      assertTrue(reservoir.isEmpty());
+      assertEquals(0, reservoir.size(true));
+    }
+    for (int i = 0; i < next; i++) {
+      assertEquals(i, sink.tuples.get(i));
+    }
+    assertTrue(sink.batches.size() > 32 * 2);
+  }
+
+  @Test
+  public void testBatchReservoirWakesBlockedProducer() throws InterruptedException
+  {
+    final AbstractReservoir reservoir = newReservoir(SPSC_BATCH_RESERVOIR, 4);
+    final CollectingBatchSink sink = new CollectingBatchSink();
+    setSink(reservoir, sink);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(reservoir.offer(i));
+    }
+    assertFalse(reservoir.offer(4, 10, TimeUnit.MILLISECONDS));
+
+    final Thread producer = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        try {
+          reservoir.put(4);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    producer.start();
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (producer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+      sleep(1);
+    }
+    assertEquals(Thread.State.WAITING, producer.getState());
+
+    assertNull(reservoir.sweep());
+    producer.join(10000);
+    assertFalse(producer.isAlive());
+    assertNull(reservoir.sweep());
+    assertEquals(Arrays.<Object>asList(0, 1, 2, 3, 4), sink.tuples);
+  }
+
+  @Test
+  public void testBatchReservoirPutAll() throws InterruptedException
+  {
+    final AbstractReservoir reservoir = newReservoir(SPSC_BATCH_RESERVOIR, 256);
+    final CollectingBatchSink sink = new CollectingBatchSink();
+    setSink(reservoir, sink);
+
+    final int count = 100000;
+    final Thread producer = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        final Object[] objects = new Object[1000];
+        try {
+          for (int i = 0; i < count; i += objects.length) {
+            for (int j = 0; j < objects.length; j++) {
+              objects[j] = i + j;
+            }
+            reservoir.putAll(objects, 0, objects.length);
+            reservoir.put(new Tuple(BEGIN_WINDOW, i));
+          }
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    producer.start();
+
+    int windows = 0;
+    final long deadline = System.currentTimeMillis() + 30000;
+    while (windows < count / 1000 && System.currentTimeMillis() < deadline) {
+      final Tuple t = reservoir.sweep();
+      if (t == null) {
+        sleep(0);
+      } else {
+        assertEquals(windows++ * 1000, t.getWindowId());
+        assertEquals(windows * 1000, sink.tuples.size());
+        assertEquals(t, reservoir.remove());
+      }
+    }
+    producer.join(10000);
+    assertFalse(producer.isAlive());
+    assertTrue(reservoir.isEmpty());
+    assertEquals(count, sink.tuples.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, sink.tuples.get(i));
+    }
+    for (int size : sink.batches) {
+      assertTrue(size > 0 && size <= 64);
+    }
+  }
+
+  @Test
+  public void testBatchReservoirBlockingQueue() throws InterruptedException
+  {
+    final AbstractReservoir reservoir = newReservoir(SPSC_BATCH_RESERVOIR, 8);
+    final CollectingBatchSink sink = new CollectingBatchSink();
+    setSink(reservoir, sink);
+    assertNull(reservoir.poll(10, TimeUnit.MILLISECONDS));
+
+    /*
+     * start off the edge of the ring so that the removals move the tuples across it.
+     */
+    for (int i = 0; i < 5; i++) {
+      reservoir.put(i);
+      assertEquals(i, reservoir.take());
+    }
+    final Tuple t1 = new Tuple(BEGIN_WINDOW, 1L);
+    final Tuple t2 = new Tuple(BEGIN_WINDOW, 2L);
+    for (Object o : new Object[] {0, t1, 1, 2, 3, t2, 4, 5}) {
+      assertTrue(reservoir.offer(o, 10, TimeUnit.MILLISECONDS));
+    }
+    assertTrue(reservoir.remove((Object)2));
+    assertFalse(reservoir.remove((Object)6));
+    assertTrue(reservoir.removeAll(Arrays.asList(0, 5)));
+    assertTrue(reservoir.retainAll(Arrays.asList(t1, t2, 1, 4)));
+    assertFalse(reservoir.retainAll(Arrays.asList(t1, t2, 1, 4)));
+    assertEquals(4, reservoir.size(false));
+    assertEquals(2, reservoir.size(true));
+    assertEquals(4, reservoir.remainingCapacity());
+
+    assertEquals(t1, reservoir.sweep());
+    assertEquals(t1, reservoir.remove());
+    assertEquals(t2, reservoir.sweep());
+    assertEquals(Arrays.<Object>asList(1), sink.tuples);
+    assertEquals(t2, reservoir.poll(10, TimeUnit.MILLISECONDS));
+    assertEquals(4, reservoir.take());
+    assertTrue(reservoir.isEmpty());
+    assertEquals(0, reservoir.size(true));
+  }
+
   @Test
   @Parameters(method = "defaultTestParameters")
   public void testFullReservoir(final AbstractReservoir reservoir, final Class<? extends Throwable> type)
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.Sink;
+
+/**
+ * Stresses the handshake of the data signal: the producer adds a tuple just as the node thread ran out of data and is
+ * about to park, a lost wake-up would leave the node thread parked for the whole timeout.
+ */
+public class DataSignalTest
+{
+  private static final int TUPLES = 20000;
+  private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  @Test
+  public void testHandshake() throws Exception
+  {
+    for (String reservoirClass : new String[] {"SpscArrayQueueReservoir", "SpscArrayBlockingQueueReservoir",
+        "SpscBatchReservoir"}) {
+      String reservoirClassName = System.setProperty(AbstractReservoir.reservoirClassNameProperty,
+          AbstractReservoir.class.getName() + '$' + reservoirClass);
+      final AbstractReservoir reservoir;
+      try {
+        reservoir = AbstractReservoir.newReservoir(reservoirClass, 1024);
+      } finally {
+        if (reservoirClassName == null) {
+          System.clearProperty(AbstractReservoir.reservoirClassNameProperty);
+        } else {
+          System.setProperty(AbstractReservoir.reservoirClassNameProperty, reservoirClassName);
+        }
+      }
+      Assert.assertEquals("reservoir", reservoirClass, reservoir.getClass().getSimpleName());
+      handshake(reservoir);
+    }
+  }
+
+  private void handshake(final AbstractReservoir reservoir) throws Exception
+  {
+    final AtomicInteger received = new AtomicInteger();
+    reservoir.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        received.incrementAndGet();
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return received.get();
+      }
+    });
+
+    final long[] maxWaitNanos = new long[1];
+    Thread node = new Thread("node")
+    {
+      @Override
+      public void run()
+      {
+        DataSignal signal = new DataSignal(this);
+        reservoir.setDataSignal(signal);
+        while (received.get() < TUPLES) {
+          int count = received.get();
+          reservoir.sweep();
+          if (received.get() == count) {
+            long start = System.nanoTime();
+            signal.await(TIMEOUT_NANOS);
+            maxWaitNanos[0] = Math.max(maxWaitNanos[0], System.nanoTime() - start);
+          }
+        }
+      }
+    };
+    node.start();
+
+    long endTime = System.nanoTime() + 6 * TIMEOUT_NANOS;
+    for (int i = 0; i < TUPLES; i++) {
+      /* hand over the next tuple only once the node thread consumed the previous one and runs out of data */
+      while (received.get() < i) {
+        if (System.nanoTime() - endTime > 0) {
+          Assert.fail(reservoir.getClass().getSimpleName() + " node thread stuck at " + received.get());
+        }
+        Thread.yield();
+      }
+      reservoir.add(i);
+    }
+    node.join(TimeUnit.NANOSECONDS.toMillis(6 * TIMEOUT_NANOS));
+    Assert.assertFalse("node thread done", node.isAlive());
+    Assert.assertEquals("received", TUPLES, received.get());
+    Assert.assertTrue(reservoir.getClass().getSimpleName() + " wait " + maxWaitNanos[0],
+        maxWaitNanos[0] < TIMEOUT_NANOS / 2);
+  }
+
+}
@@ -25,7 +25,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 import org.junit.Assert;
 import org.junit.Rule;
@@ -55,6 +57,7 @@ import com.datatorrent.bufferserver.packet.MessageType;
 import com.datatorrent.bufferserver.packet.PayloadTuple;
 import com.datatorrent.bufferserver.server.Server;
 import com.datatorrent.common.util.AsyncFSStorageAgent;
+import com.datatorrent.common.util.DefaultDelayOperator;
 import com.datatorrent.common.util.ScheduledExecutorService;
 import com.datatorrent.common.util.ScheduledThreadPoolExecutor;
 import com.datatorrent.netlet.DefaultEventLoop;
@@ -657,6 +660,131 @@ public class GenericNodeTest
     Assert.assertTrue("Number of Custom control tuples", expected == 4);
   }
 
+  /**
+   * A delay operator emits the window control tuples of the window ahead. The tuples it receives are shared with the
+   * other consumers of the stream, so they have to keep their window id.
+   */
+  @Test
+  public void testDelayOperatorWindowAhead() throws InterruptedException
+  {
+    final GenericNode gn = new GenericNode(new DefaultDelayOperator<>(), new com.datatorrent.stram.engine.OperatorContext(
+        0, "operator", new DefaultAttributeMap(), null));
+    gn.setId(1);
+    AbstractReservoir reservoir = AbstractReservoir.newReservoir("inputRes", 1024);
+    gn.connectInputPort("input", reservoir);
+    TestSink testSink = new TestSink();
+    gn.connectOutputPort("output", testSink);
+    gn.firstWindowMillis = 0;
+    gn.windowWidthMillis = 100;
+
+    Thread t = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        gn.activate();
+        gn.run();
+        gn.deactivate();
+      }
+    };
+    t.start();
+
+    final long windowId = 0x1L;
+    final long windowAhead = WindowGenerator.getAheadWindowId(windowId, gn.firstWindowMillis, gn.windowWidthMillis, 1);
+    Tuple beginWindow = Tuple.valueOf(MessageType.BEGIN_WINDOW, windowId);
+    Tuple endWindow = EndWindowTuple.valueOf(windowId);
+    reservoir.add(beginWindow);
+    reservoir.add("tuple");
+    reservoir.add(endWindow);
+
+    long endTime = System.currentTimeMillis() + 10000;
+    while (!testSink.collectedTuples.contains(EndWindowTuple.valueOf(windowAhead))
+        && System.currentTimeMillis() < endTime) {
+      Thread.sleep(10);
+    }
+    gn.shutdown();
+    t.join();
+
+    Assert.assertEquals("received begin window", windowId, beginWindow.getWindowId());
+    Assert.assertEquals("received end window", windowId, endWindow.getWindowId());
+    List<Object> expected = new ArrayList<>();
+    expected.add(Tuple.valueOf(MessageType.BEGIN_WINDOW, windowAhead));
+    expected.add("tuple");
+    expected.add(EndWindowTuple.valueOf(windowAhead));
+    Assert.assertEquals("emitted", expected, testSink.collectedTuples.subList(testSink.getResultCount() - 3,
+        testSink.getResultCount()));
+  }
+
+  /**
+   * The node parks on the data signal for up to a minute, each tuple added to the empty reservoir has to wake it
+   * right away rather than when the park times out.
+   */
+  @Test
+  public void testWakeOnData() throws InterruptedException
+  {
+    final long boundMillis = 60000;
+    DefaultAttributeMap attributes = new DefaultAttributeMap();
+    attributes.put(OperatorContext.IDLE_STRATEGY, Context.IdleStrategy.WAKE_ON_DATA);
+    attributes.put(OperatorContext.SPIN_MILLIS, (int)boundMillis);
+    final GenericNode gn = new GenericNode(new GenericOperator(), new com.datatorrent.stram.engine.OperatorContext(0,
+        "operator", attributes, null));
+    gn.setId(1);
+    /* only the default SPSC reservoirs signal, another test may have selected a different reservoir */
+    String reservoirClassName = System.clearProperty(AbstractReservoir.reservoirClassNameProperty);
+    AbstractReservoir reservoir1;
+    try {
+      reservoir1 = AbstractReservoir.newReservoir("ip1Res", 1024);
+    } finally {
+      if (reservoirClassName != null) {
+        System.setProperty(AbstractReservoir.reservoirClassNameProperty, reservoirClassName);
+      }
+    }
+    gn.connectInputPort("ip1", reservoir1);
+    TestSink testSink = new TestSink();
+    gn.connectOutputPort("op", testSink);
+    gn.firstWindowMillis = 0;
+    gn.windowWidthMillis = 100;
+
+    Thread t = new Thread()
+    {
+      @Override
+      public void run()
+      {
+        gn.activate();
+        gn.run();
+        gn.deactivate();
+      }
+    };
+    t.start();
+
+    Object[] tuples = {new Tuple(MessageType.BEGIN_WINDOW, 0x1L), "tuple", new Tuple(MessageType.END_WINDOW, 0x1L)};
+    for (int i = 0; i < tuples.length; i++) {
+      awaitParked(t);
+      long start = System.nanoTime();
+      reservoir1.add(tuples[i]);
+      while (testSink.getResultCount() == i && System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(boundMillis)) {
+        Thread.sleep(1);
+      }
+      long wakeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      Assert.assertEquals("tuples processed", i + 1, testSink.getResultCount());
+      Assert.assertTrue("tuple " + i + " woken after " + wakeMillis + "ms", wakeMillis < boundMillis / 10);
+    }
+
+    gn.shutdown();
+    t.interrupt();
+    t.join();
+  }
+
+  @SuppressWarnings("SleepWhileInLoop")
+  private static void awaitParked(Thread thread) throws InterruptedException
+  {
+    long endTime = System.currentTimeMillis() + 10000;
+    while (!(LockSupport.getBlocker(thread) instanceof DataSignal)) {
+      Assert.assertTrue("node parked", System.currentTimeMillis() < endTime);
+      Thread.sleep(1);
+    }
+  }
+
   @Test
   public void testControlTuplesDeliveryOiONode() throws InterruptedException
   {
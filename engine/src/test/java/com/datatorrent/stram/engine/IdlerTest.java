@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap;
+import com.datatorrent.api.Context.IdleStrategy;
+
+/**
+ *
+ */
+public class IdlerTest
+{
+  @Test
+  public void testStrategySelection()
+  {
+    Assert.assertEquals("default", "SleepIdler", newIdler(null).getClass().getSimpleName());
+    Assert.assertEquals("SleepIdler", newIdler(IdleStrategy.SLEEP).getClass().getSimpleName());
+    Assert.assertEquals("BusySpinIdler", newIdler(IdleStrategy.BUSY_SPIN).getClass().getSimpleName());
+    Assert.assertEquals("SpinYieldIdler", newIdler(IdleStrategy.SPIN_YIELD).getClass().getSimpleName());
+    Assert.assertEquals("ParkIdler", newIdler(IdleStrategy.PARK).getClass().getSimpleName());
+    Assert.assertEquals("WakeOnDataIdler", newIdler(IdleStrategy.WAKE_ON_DATA).getClass().getSimpleName());
+
+    for (IdleStrategy strategy : IdleStrategy.values()) {
+      Idler idler = newIdler(strategy);
+      if (strategy == IdleStrategy.WAKE_ON_DATA) {
+        Assert.assertNotNull("signal of " + strategy, idler.getSignal());
+      } else {
+        Assert.assertNull("signal of " + strategy, idler.getSignal());
+      }
+    }
+  }
+
+  /**
+   * Each strategy returns within about SPIN_MILLIS per call, also once it is past spinning and yielding.
+   */
+  @Test
+  public void testIdleReturns() throws InterruptedException
+  {
+    final int rounds = 2 * (Idler.SPINS + Idler.YIELDS);
+    for (IdleStrategy strategy : IdleStrategy.values()) {
+      Idler idler = newIdler(strategy);
+      long start = System.nanoTime();
+      for (int i = 0; i < rounds; i++) {
+        idler.idle();
+      }
+      idler.reset();
+      idler.idle();
+      long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      Assert.assertTrue(strategy + " took " + millis + "ms", millis < 10 * (rounds + 1));
+    }
+  }
+
+  @Test
+  public void testInterrupted()
+  {
+    for (IdleStrategy strategy : IdleStrategy.values()) {
+      Idler idler = newIdler(strategy);
+      Thread.currentThread().interrupt();
+      try {
+        idler.idle();
+        Assert.fail(strategy + " ignored the interrupt");
+      } catch (InterruptedException ex) {
+        Assert.assertFalse("interrupt status is cleared", Thread.currentThread().isInterrupted());
+      } finally {
+        Thread.interrupted();
+      }
+    }
+  }
+
+  private static Idler newIdler(IdleStrategy strategy)
+  {
+    DefaultAttributeMap attributes = new DefaultAttributeMap();
+    if (strategy != null) {
+      attributes.put(OperatorContext.IDLE_STRATEGY, strategy);
+    }
+    attributes.put(OperatorContext.SPIN_MILLIS, 1);
+    return Idler.newIdler(new OperatorContext(0, "operator", attributes, null));
+  }
+
+}
@@ -0,0 +1,463 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.engine;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap;
+import com.datatorrent.api.DefaultInputPort;
+import com.datatorrent.api.DefaultOutputPort;
+import com.datatorrent.api.Operator;
+import com.datatorrent.api.Sink;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.server.Server;
+import com.datatorrent.common.util.BaseOperator;
+import com.datatorrent.netlet.DefaultEventLoop;
+import com.datatorrent.stram.codec.DefaultStatefulStreamCodec;
+import com.datatorrent.stram.engine.GenericNodeTest.GenericOperator;
+import com.datatorrent.stram.stream.BufferServerPublisher;
+import com.datatorrent.stram.stream.BufferServerSubscriber;
+import com.datatorrent.stram.stream.InlineStream;
+import com.datatorrent.stram.tuple.EndStreamTuple;
+import com.datatorrent.stram.tuple.EndWindowTuple;
+import com.datatorrent.stram.tuple.ResetWindowTuple;
+import com.datatorrent.stram.tuple.Tuple;
+
+public class NodeSchedulerTest
+{
+  @Test
+  public void testYieldHonorsWaitingNodes() throws InterruptedException
+  {
+    final NodeScheduler scheduler = new NodeScheduler(1, 1);
+    final NodeScheduler.Turn holder = NodeScheduler.newTurn(scheduler);
+    holder.begin();
+    Assert.assertTrue(holder.isHeld());
+    Thread.sleep(2);
+    holder.yieldIfDue();
+    Assert.assertTrue("node keeps the worker nobody waits for", holder.isHeld());
+
+    final List<String> turns = Collections.synchronizedList(new ArrayList<String>());
+    final NodeScheduler.Turn waiting = NodeScheduler.newTurn(scheduler);
+    final Thread thread = new Thread("waiting")
+    {
+      @Override
+      public void run()
+      {
+        try {
+          waiting.begin();
+          turns.add("waiting");
+          waiting.end();
+        } catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+    };
+    thread.start();
+    awaitState(thread, Thread.State.WAITING);
+    Assert.assertFalse("node waits for the held worker", waiting.isHeld());
+
+    holder.yieldIfDue();
+    turns.add("holder");
+    thread.join();
+    Assert.assertTrue(holder.isHeld());
+    Assert.assertEquals("waiting node got the worker first", Arrays.asList("waiting", "holder"), turns);
+    holder.end();
+  }
+
+  @Test
+  public void testSuspendTurnOnBackPressure() throws InterruptedException
+  {
+    final NodeScheduler scheduler = new NodeScheduler(1, 10);
+    final NodeScheduler.Turn holder = NodeScheduler.newTurn(scheduler);
+    holder.begin();
+
+    /* the holder is about to block on a full downstream reservoir, which only the other node drains */
+    final NodeScheduler.Turn suspended = NodeScheduler.suspendTurn();
+    Assert.assertSame("turn of the calling thread", holder, suspended);
+    Assert.assertFalse("worker given up", holder.isHeld());
+    Assert.assertNull("no worker left to give up", NodeScheduler.suspendTurn());
+
+    final CountDownLatch drained = new CountDownLatch(1);
+    new Thread("downstream")
+    {
+      @Override
+      public void run()
+      {
+        final NodeScheduler.Turn turn = NodeScheduler.newTurn(scheduler);
+        try {
+          turn.begin();
+          drained.countDown();
+          turn.end();
+        } catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+      }
+    }.start();
+    Assert.assertTrue("downstream node gets the worker", drained.await(10, TimeUnit.SECONDS));
+
+    suspended.begin();
+    Assert.assertTrue(holder.isHeld());
+    holder.end();
+    Assert.assertNull("unscheduled thread", NodeScheduler.suspendTurn());
+  }
+
+  /**
+   * Runs a chain of nodes with small reservoirs between them on a single worker. The nodes upstream block on the
+   * full reservoirs, so the chain makes progress only because they give up the worker meanwhile. The windows have to
+   * come out exactly as they went in.
+   */
+  @Test
+  public void testFewerWorkersThanNodes() throws InterruptedException
+  {
+    final int nodeCount = 4;
+    Operator[] operators = new Operator[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      operators[i] = new GenericOperator();
+    }
+    List<Object> expected = newWindows(20, 50);
+    List<Object> output = runChain(new NodeScheduler(1, 1), operators, expected);
+    assertWindows(expected, output);
+  }
+
+  /**
+   * Runs a chain of many more nodes than workers under sustained load, no more nodes than workers may process tuples
+   * at any time.
+   */
+  @Test
+  public void testConcurrencyBoundedByWorkers() throws InterruptedException
+  {
+    final int nodeCount = 12;
+    final int workers = 2;
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicInteger maxActive = new AtomicInteger();
+    Operator[] operators = new Operator[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      operators[i] = new BusyOperator(active, maxActive);
+    }
+    List<Object> expected = newWindows(20, 200);
+    List<Object> output = runChain(new NodeScheduler(workers, 1), operators, expected);
+    assertWindows(expected, output);
+    Assert.assertTrue("processed concurrently " + maxActive.get(), maxActive.get() > 0);
+    Assert.assertTrue("processed concurrently " + maxActive.get(), maxActive.get() <= workers);
+  }
+
+  /**
+   * Runs two nodes connected through the buffer server on a single worker. The upstream node emits a burst that does
+   * not fit into the buffer server and the socket buffers, so once the subscriber of the downstream node is full, the
+   * buffer server stops reading from the publisher, which has to give up the worker while it waits for room in its
+   * send queue so that the downstream node can drain the subscriber.
+   */
+  @Test
+  public void testBufferServerBackPressure() throws Exception
+  {
+    final DefaultEventLoop eventloop = DefaultEventLoop.createEventLoop("NodeSchedulerTest");
+    eventloop.start();
+    final Server server = new Server(eventloop, 0, 64 * 1024, 2);
+    final InetSocketAddress address = server.run();
+    final BufferServerPublisher publisher = new BufferServerPublisher("upstream.op", 16);
+    final StreamContext publisherContext = newStreamContext(address, eventloop);
+    final BufferServerSubscriber subscriber = new BufferServerSubscriber("downstream", 16);
+    final StreamContext subscriberContext = newStreamContext(address, eventloop);
+    subscriberContext.setFinishedWindowId(-1);
+    try {
+      publisher.setup(publisherContext);
+      subscriber.setup(subscriberContext);
+      final NodeScheduler scheduler = new NodeScheduler(1, 1);
+      final InlineStream head = new InlineStream(16);
+      final BurstOperator burstOperator = new BurstOperator(128 * 1024);
+      final GenericNode upstream = newNode(scheduler, burstOperator, 0, head.getReservoir());
+      upstream.connectOutputPort("op", publisher);
+      final GenericNode downstream = newNode(scheduler, new TrimOperator(), 1, subscriber.acquireReservoir("ip1", 16));
+      final List<Object> output = Collections.synchronizedList(new ArrayList<>());
+      downstream.connectOutputPort("op", newSink(output));
+      subscriber.activate(subscriberContext);
+      publisher.activate(publisherContext);
+
+      final List<Object> input = new ArrayList<>();
+      input.add(new ResetWindowTuple(100));
+      input.addAll(newWindows(1, 1));
+      final List<Object> expected = new ArrayList<>();
+      for (Object tuple : input) {
+        if (tuple instanceof Integer) {
+          expected.addAll(burstOperator.burst(tuple));
+        } else {
+          expected.add(tuple);
+        }
+      }
+      runNodes(head, input, upstream, downstream);
+      assertWindows(expected, output);
+    } finally {
+      publisher.deactivate();
+      subscriber.deactivate();
+      publisher.teardown();
+      subscriber.teardown();
+      server.stop();
+      eventloop.stop();
+    }
+  }
+
+  private static StreamContext newStreamContext(InetSocketAddress address, DefaultEventLoop eventloop)
+  {
+    final StreamContext context = new StreamContext("stream");
+    context.setSourceId("upstream.op");
+    context.setSinkId("downstream.ip1");
+    context.setBufferServerAddress(InetSocketAddress.createUnresolved("localhost", address.getPort()));
+    context.put(StreamContext.CODEC, new DefaultStatefulStreamCodec<>());
+    context.put(StreamContext.EVENT_LOOP, eventloop);
+    return context;
+  }
+
+  /**
+   * Operator which works on each tuple for a while before it emits it, keeping track of how many of its kind work at
+   * the same time.
+   */
+  public static class BusyOperator extends BaseOperator
+  {
+    private final transient AtomicInteger active;
+    private final transient AtomicInteger maxActive;
+
+    public final transient DefaultInputPort<Object> ip1 = new DefaultInputPort<Object>()
+    {
+      @Override
+      public void process(Object tuple)
+      {
+        int concurrency = active.incrementAndGet();
+        int max;
+        while (concurrency > (max = maxActive.get()) && !maxActive.compareAndSet(max, concurrency)) {
+          /* retry */
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(20);
+        while (System.nanoTime() < deadline) {
+          /* work */
+        }
+        active.decrementAndGet();
+        op.emit(tuple);
+      }
+    };
+
+    public final transient DefaultOutputPort<Object> op = new DefaultOutputPort<>();
+
+    BusyOperator(AtomicInteger active, AtomicInteger maxActive)
+    {
+      this.active = active;
+      this.maxActive = maxActive;
+    }
+  }
+
+  /**
+   * Emits a burst of tuples for each tuple it receives, each padded to {@link #PADDING} characters.
+   */
+  public static class BurstOperator extends BaseOperator
+  {
+    static final int PADDING = 1024;
+    private final transient int size;
+    private final transient String padding;
+
+    public final transient DefaultInputPort<Object> ip1 = new DefaultInputPort<Object>()
+    {
+      @Override
+      public void process(Object tuple)
+      {
+        for (int i = 0; i < size; i++) {
+          op.emit(tuple + "." + i + padding);
+        }
+      }
+    };
+
+    public final transient DefaultOutputPort<Object> op = new DefaultOutputPort<>();
+
+    BurstOperator(int size)
+    {
+      this.size = size;
+      final char[] chars = new char[PADDING];
+      Arrays.fill(chars, ' ');
+      padding = new String(chars);
+    }
+
+    /**
+     * @return the tuples emitted for the tuple without their padding
+     */
+    List<Object> burst(Object tuple)
+    {
+      final List<Object> tuples = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        tuples.add(tuple + "." + i);
+      }
+      return tuples;
+    }
+  }
+
+  /**
+   * Strips the padding off the tuples of {@link BurstOperator}, so that they are cheap to keep.
+   */
+  public static class TrimOperator extends BaseOperator
+  {
+    public final transient DefaultInputPort<Object> ip1 = new DefaultInputPort<Object>()
+    {
+      @Override
+      public void process(Object tuple)
+      {
+        op.emit(tuple instanceof String ? ((String)tuple).trim() : tuple);
+      }
+    };
+
+    public final transient DefaultOutputPort<Object> op = new DefaultOutputPort<>();
+  }
+
+  private static List<Object> newWindows(int windowCount, int tuplesPerWindow)
+  {
+    List<Object> windows = new ArrayList<>();
+    for (int windowId = 1; windowId <= windowCount; windowId++) {
+      windows.add(new Tuple(MessageType.BEGIN_WINDOW, windowId));
+      for (int i = 0; i < tuplesPerWindow; i++) {
+        windows.add(windowId * tuplesPerWindow + i);
+      }
+      windows.add(new EndWindowTuple(windowId));
+    }
+    windows.add(new EndStreamTuple(windowCount));
+    return windows;
+  }
+
+  /**
+   * Connects the operators to a chain of nodes with small reservoirs between them, feeds the input to the first node
+   * and waits for all nodes to terminate.
+   *
+   * @return tuples emitted by the last node
+   */
+  private static List<Object> runChain(NodeScheduler scheduler, Operator[] operators, List<Object> input)
+      throws InterruptedException
+  {
+    final List<Object> output = Collections.synchronizedList(new ArrayList<>());
+    InlineStream head = new InlineStream(16);
+    SweepableReservoir reservoir = head.getReservoir();
+    GenericNode[] nodes = new GenericNode[operators.length];
+    for (int i = 0; i < operators.length; i++) {
+      nodes[i] = newNode(scheduler, operators[i], i, reservoir);
+      if (i < operators.length - 1) {
+        InlineStream stream = new InlineStream(16);
+        nodes[i].connectOutputPort("op", stream);
+        reservoir = stream.getReservoir();
+      } else {
+        nodes[i].connectOutputPort("op", newSink(output));
+      }
+    }
+    runNodes(head, input, nodes);
+    return output;
+  }
+
+  private static GenericNode newNode(NodeScheduler scheduler, Operator operator, int id, SweepableReservoir reservoir)
+  {
+    final GenericNode node = new GenericNode(operator, new OperatorContext(id, "operator" + id,
+        new DefaultAttributeMap(), null));
+    node.setId(id);
+    node.setScheduler(scheduler);
+    node.firstWindowMillis = 0;
+    node.windowWidthMillis = 100;
+    node.connectInputPort("ip1", reservoir);
+    return node;
+  }
+
+  private static Sink<Object> newSink(final List<Object> output)
+  {
+    return new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        output.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    };
+  }
+
+  /**
+   * Runs the nodes on threads of their own, feeds the input to the first node and waits for all nodes to terminate.
+   */
+  private static void runNodes(InlineStream head, List<Object> input, GenericNode... nodes) throws InterruptedException
+  {
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < nodes.length; i++) {
+      final GenericNode node = nodes[i];
+      Thread thread = new Thread("node" + i)
+      {
+        @Override
+        public void run()
+        {
+          node.activate();
+          node.run();
+          node.deactivate();
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+
+    for (Object tuple : input) {
+      head.put(tuple);
+    }
+
+    for (Thread thread : threads) {
+      thread.join(30000);
+      Assert.assertEquals("node terminated " + thread, Thread.State.TERMINATED, thread.getState());
+    }
+  }
+
+  private static void assertWindows(List<Object> expected, List<Object> output)
+  {
+    Assert.assertEquals("tuples", expected.size(), output.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Object e = expected.get(i);
+      Object o = output.get(i);
+      if (e instanceof Tuple) {
+        Assert.assertTrue("control tuple at " + i + " " + o, o instanceof Tuple);
+        Assert.assertEquals("type at " + i, ((Tuple)e).getType(), ((Tuple)o).getType());
+        if (((Tuple)e).getType() != MessageType.END_STREAM) {
+          Assert.assertEquals("window at " + i, ((Tuple)e).getWindowId(), ((Tuple)o).getWindowId());
+        }
+      } else {
+        Assert.assertEquals("tuple at " + i, e, o);
+      }
+    }
+  }
+
+  private static void awaitState(Thread thread, Thread.State state) throws InterruptedException
+  {
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (thread.getState() != state && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    Assert.assertEquals(state, thread.getState());
+  }
+
+}
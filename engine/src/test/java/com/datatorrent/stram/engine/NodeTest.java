@@ -20,14 +20,18 @@ package com.datatorrent.stram.engine;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
 
 import org.apache.hadoop.conf.Configuration;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Sets;
 
 import com.datatorrent.api.Attribute.AttributeMap.DefaultAttributeMap;
@@ -38,9 +42,11 @@ import com.datatorrent.api.Operator.CheckpointNotificationListener;
 import com.datatorrent.api.Operator.ProcessingMode;
 import com.datatorrent.api.StorageAgent;
 import com.datatorrent.api.annotation.Stateless;
+import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.FSStorageAgent;
 import com.datatorrent.common.util.ScheduledThreadPoolExecutor;
 import com.datatorrent.stram.StramLocalCluster;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
 import com.datatorrent.stram.engine.GenericNodeTest.GenericOperator;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
 
@@ -49,6 +55,9 @@ import com.datatorrent.stram.plan.logical.LogicalPlan;
  */
 public class NodeTest
 {
+  @Rule
+  public GenericNodeTest.FSTestWatcher testMeta = new GenericNodeTest.FSTestWatcher();
+
   static class TestGenericOperator implements Operator
   {
     static int beginWindows;
@@ -268,6 +277,147 @@ public class NodeTest
     node.deactivate();
   }
 
+  public static class SnapshotOperator extends TestGenericOperator implements Operator.SnapshotProvider
+  {
+    int value;
+
+    @Override
+    public Object snapshot(long windowId)
+    {
+      SnapshotOperator snapshot = new SnapshotOperator();
+      snapshot.value = value;
+      return snapshot;
+    }
+
+  }
+
+  public static class SnapshotStorageAgent extends AsyncFSStorageAgent
+  {
+    private static final long serialVersionUID = 201610170000L;
+
+    volatile boolean fail;
+    volatile Thread saveThread;
+    final Set<Long> deletedWindows = Collections.synchronizedSet(new HashSet<Long>());
+
+    public SnapshotStorageAgent(String localBasePath, String path, Configuration conf)
+    {
+      super(localBasePath, path, conf);
+    }
+
+    @Override
+    public void save(Object object, int operatorId, long windowId) throws IOException
+    {
+      saveThread = Thread.currentThread();
+      if (fail) {
+        throw new IOException("Failed to save " + windowId);
+      }
+      super.save(object, operatorId, windowId);
+    }
+
+    @Override
+    public void delete(int operatorId, long windowId) throws IOException
+    {
+      deletedWindows.add(windowId);
+      super.delete(operatorId, windowId);
+    }
+
+  }
+
+  private static Node<SnapshotOperator> createSnapshotNode(SnapshotOperator operator, StorageAgent storageAgent)
+  {
+    DefaultAttributeMap attributeMap = new DefaultAttributeMap();
+    attributeMap.put(OperatorContext.STORAGE_AGENT, storageAgent);
+    Node<SnapshotOperator> node = new Node<SnapshotOperator>(operator,
+        new com.datatorrent.stram.engine.OperatorContext(0, "operator", attributeMap, null))
+    {
+      @Override
+      public void connectInputPort(String port, SweepableReservoir reservoir)
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
+      @Override
+      public void run()
+      {
+        throw new UnsupportedOperationException("Not supported yet.");
+      }
+
+    };
+    node.setId(1);
+    return node;
+  }
+
+  /**
+   * Reports the stats until the checkpoint saved in the background is reported.
+   */
+  @SuppressWarnings("SleepWhileInLoop")
+  private static ContainerStats.OperatorStats reportCheckpoint(Node<?> node, long windowId) throws InterruptedException
+  {
+    long endTime = System.currentTimeMillis() + 10000;
+    do {
+      ContainerStats.OperatorStats stats = new ContainerStats.OperatorStats();
+      node.reportStats(stats, windowId);
+      if (stats.checkpoint != null) {
+        return stats;
+      }
+      Thread.sleep(10);
+    } while (System.currentTimeMillis() < endTime);
+
+    Assert.fail("Checkpoint " + windowId + " was not reported");
+    return null;
+  }
+
+  @Test
+  public void testSnapshotCheckpointing() throws Exception
+  {
+    SnapshotStorageAgent storageAgent = new SnapshotStorageAgent(testMeta.getDir() + "/local", testMeta.getDir(),
+        new Configuration());
+    SnapshotOperator operator = new SnapshotOperator();
+    operator.value = 1;
+    Node<SnapshotOperator> node = createSnapshotNode(operator, storageAgent);
+    node.activate();
+
+    node.checkpoint(10);
+    /* the operator moves on while its snapshot is saved */
+    operator.value = 2;
+
+    ContainerStats.OperatorStats stats = reportCheckpoint(node, 11);
+    Assert.assertEquals("checkpoint window", 10, stats.checkpoint.getWindowId());
+    Assert.assertNotNull("save thread", storageAgent.saveThread);
+    Assert.assertNotSame("saved on the background thread", Thread.currentThread(), storageAgent.saveThread);
+
+    Object loaded = storageAgent.load(1, 10);
+    Assert.assertTrue("loaded as the operator", loaded instanceof SnapshotOperator);
+    Assert.assertNotSame("loaded instance", operator, loaded);
+    Assert.assertEquals("state at the checkpoint", 1, ((SnapshotOperator)loaded).value);
+
+    node.deactivate();
+    node.teardown();
+  }
+
+  @Test
+  public void testSnapshotCheckpointFailure() throws Exception
+  {
+    SnapshotStorageAgent storageAgent = new SnapshotStorageAgent(testMeta.getDir() + "/local", testMeta.getDir(),
+        new Configuration());
+    storageAgent.fail = true;
+    Node<SnapshotOperator> node = createSnapshotNode(new SnapshotOperator(), storageAgent);
+    node.activate();
+
+    node.checkpoint(10);
+    try {
+      reportCheckpoint(node, 11);
+      Assert.fail("Failed checkpoint was reported");
+    } catch (RuntimeException ex) {
+      Assert.assertTrue("cause " + ex, Throwables.getRootCause(ex) instanceof IOException);
+    }
+    Assert.assertNotSame("saved on the background thread", Thread.currentThread(), storageAgent.saveThread);
+    Assert.assertTrue("rolled back", storageAgent.deletedWindows.contains(10L));
+
+    node.deactivate();
+    node.teardown();
+  }
+
   @SuppressWarnings("SleepWhileInLoop")
   public static void testDoubleCheckpointHandling(ProcessingMode processingMode, boolean trueGenericFalseInput, String path)
       throws Exception
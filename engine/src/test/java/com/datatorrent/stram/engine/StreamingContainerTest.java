@@ -20,8 +20,11 @@ package com.datatorrent.stram.engine;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -37,11 +40,16 @@ import com.datatorrent.api.DefaultInputPort;
 import com.datatorrent.api.DefaultOutputPort;
 import com.datatorrent.api.InputOperator;
 import com.datatorrent.api.Operator.CheckpointListener;
+import com.datatorrent.api.StreamCodec;
 import com.datatorrent.api.annotation.InputPortFieldAnnotation;
 import com.datatorrent.common.util.AsyncFSStorageAgent;
 import com.datatorrent.common.util.BaseOperator;
 import com.datatorrent.stram.StramLocalCluster;
 import com.datatorrent.stram.plan.logical.LogicalPlan;
+import com.datatorrent.stram.stream.MuxStream;
+import com.datatorrent.stram.stream.PartitionAwareSink;
+import com.datatorrent.stram.stream.PartitionRouterTest.CollectingSink;
+import com.datatorrent.stram.stream.PartitionRouterTest.CountingCodec;
 
 /**
  *
@@ -69,6 +77,43 @@ public class StreamingContainerTest
     Assert.assertTrue("No Committed Windows", committedWindowIds.contains(opName));
   }
 
+  /**
+   * The partition aware sinks of a source port are deployed with a codec instance each, they have to end up sharing
+   * one so that the mux stream of the port computes the partition of a tuple once for all of them.
+   */
+  @Test
+  public void testSharedPartitionCodec()
+  {
+    Map<String, StreamCodec<Object>> partitionCodecs = new HashMap<>();
+    CountingCodec codec = new CountingCodec();
+    CountingCodec sameConfiguration = new CountingCodec();
+    CountingCodec otherPort = new CountingCodec();
+    Assert.assertSame(codec, StreamingContainer.getPartitionCodec(partitionCodecs, "1.out.1", codec));
+    Assert.assertSame(codec, StreamingContainer.getPartitionCodec(partitionCodecs, "1.out.1", sameConfiguration));
+    Assert.assertSame(otherPort, StreamingContainer.getPartitionCodec(partitionCodecs, "2.out.1", otherPort));
+    StreamCodec<Object> defaultCodec = StreamingContainer.getPartitionCodec(partitionCodecs, "3.out.1", null);
+    Assert.assertNotNull(defaultCodec);
+    Assert.assertSame(defaultCodec, StreamingContainer.getPartitionCodec(partitionCodecs, "3.out.1", null));
+
+    MuxStream mux = new MuxStream();
+    CollectingSink[] outputs = {new CollectingSink(), new CollectingSink(), new CollectingSink()};
+    mux.setSink("2.in", new PartitionAwareSink<>(StreamingContainer.getPartitionCodec(partitionCodecs, "1.out.1",
+        new CountingCodec()), new HashSet<>(Arrays.asList(0)), 3, outputs[0]));
+    mux.setSink("3.in", new PartitionAwareSink<>(StreamingContainer.getPartitionCodec(partitionCodecs, "1.out.1",
+        new CountingCodec()), new HashSet<>(Arrays.asList(1, 2)), 3, outputs[1]));
+    mux.setSink("4.in", new PartitionAwareSink<>(StreamingContainer.getPartitionCodec(partitionCodecs, "1.out.1",
+        new CountingCodec()), new HashSet<>(Arrays.asList(3)), 3, outputs[2]));
+    mux.activate(null);
+    for (int i = 0; i < 100; i++) {
+      mux.put(i);
+    }
+
+    Assert.assertEquals("partitions computed", 100, codec.partitionCount);
+    Assert.assertEquals(25, outputs[0].tuples.size());
+    Assert.assertEquals(50, outputs[1].tuples.size());
+    Assert.assertEquals(25, outputs[2].tuples.size());
+  }
+
   @Test
   public void testOiOCommitted() throws IOException, ClassNotFoundException
   {
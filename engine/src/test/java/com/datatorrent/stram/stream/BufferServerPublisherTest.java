@@ -0,0 +1,426 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.Stats.OperatorStats;
+import com.datatorrent.api.Stats.OperatorStats.PortStats;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.bufferserver.util.VarInt;
+import com.datatorrent.netlet.DefaultEventLoop;
+import com.datatorrent.netlet.Listener;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.netlet.util.VarInt.MutableInt;
+import com.datatorrent.stram.ComponentContextPair;
+import com.datatorrent.stram.api.ContainerEvent.ContainerStatsEvent;
+import com.datatorrent.stram.api.ContainerEvent.StreamActivationEvent;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.ContainerStats;
+import com.datatorrent.stram.api.StreamingContainerUmbilicalProtocol.OperatorHeartbeat;
+import com.datatorrent.stram.engine.BufferServerStatsSubscriber;
+import com.datatorrent.stram.engine.Stream;
+import com.datatorrent.stram.engine.StreamContext;
+
+public class BufferServerPublisherTest
+{
+  /**
+   * Publisher with a send queue the test fills and drains instead of the event loop.
+   */
+  static class TestPublisher extends BufferServerPublisher
+  {
+    volatile boolean full;
+    volatile int sent;
+    volatile long sentBytes;
+
+    TestPublisher()
+    {
+      super("testpublisher", 1024);
+    }
+
+    @Override
+    public boolean send(byte[] array, int offset, int size)
+    {
+      if (full) {
+        return false;
+      }
+      sent++;
+      sentBytes += size;
+      return true;
+    }
+
+    SelectionKey getKey()
+    {
+      return key;
+    }
+  }
+
+  @Test
+  public void testStallOnFullSendQueue() throws Exception
+  {
+    final TestPublisher publisher = new TestPublisher();
+    publisher.setup(new StreamContext("stream"));
+    publisher.put("first");
+    Assert.assertEquals("sent", 1, publisher.sent);
+    Assert.assertEquals("no stall", 0, publisher.getStallNanos(false));
+
+    publisher.full = true;
+    final CountDownLatch published = new CountDownLatch(1);
+    Thread operator = new Thread("operator")
+    {
+      @Override
+      public void run()
+      {
+        publisher.put("second");
+        published.countDown();
+      }
+    };
+    operator.start();
+
+    Assert.assertFalse("parked while the send queue is full", published.await(100, TimeUnit.MILLISECONDS));
+    Assert.assertEquals("operator thread parked", Thread.State.TIMED_WAITING, operator.getState());
+
+    long drained = System.nanoTime();
+    publisher.full = false;
+    Assert.assertTrue("woken once the send queue is drained", published.await(1, TimeUnit.SECONDS));
+    Assert.assertTrue("woken within the bound", System.nanoTime() - drained
+        < WritabilitySignal.MAX_WAIT_NANOS + TimeUnit.MILLISECONDS.toNanos(100));
+    operator.join();
+    Assert.assertEquals("sent", 2, publisher.sent);
+
+    long stallNanos = publisher.getStallNanos(true);
+    Assert.assertTrue("stall " + stallNanos, stallNanos >= TimeUnit.MILLISECONDS.toNanos(100));
+    Assert.assertEquals("stall reset", 0, publisher.getStallNanos(false));
+  }
+
+  /**
+   * The write of the event loop signals the operator thread waiting for room in the send queue, so it resumes right
+   * away rather than once its bounded park ends.
+   */
+  @Test
+  public void testSignalOnWrite() throws Exception
+  {
+    try (Selector selector = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress("localhost", 0));
+      try (SocketChannel channel = SocketChannel.open(server.getLocalAddress())) {
+        channel.configureBlocking(false);
+        final TestPublisher publisher = new TestPublisher();
+        publisher.setup(new StreamContext("stream"));
+        SelectionKey key = channel.register(selector, 0, publisher);
+        publisher.registered(key);
+        Assert.assertNotSame("listener attached", publisher, key.attachment());
+        final Listener.ClientListener listener = (Listener.ClientListener)key.attachment();
+
+        long[] resumeNanos = new long[11];
+        for (int i = 0; i < resumeNanos.length; i++) {
+          publisher.full = true;
+          final CountDownLatch published = new CountDownLatch(1);
+          Thread operator = new Thread("operator")
+          {
+            @Override
+            public void run()
+            {
+              publisher.put("tuple");
+              published.countDown();
+            }
+          };
+          operator.start();
+          /* long enough for the bound of the park to reach its maximum */
+          Thread.sleep(20);
+
+          long start = System.nanoTime();
+          publisher.full = false;
+          listener.write();
+          Assert.assertTrue("resumed", published.await(1, TimeUnit.SECONDS));
+          resumeNanos[i] = System.nanoTime() - start;
+          operator.join();
+        }
+        Arrays.sort(resumeNanos);
+        Assert.assertTrue("resumed after " + Arrays.toString(resumeNanos),
+            resumeNanos[resumeNanos.length / 2] < WritabilitySignal.MAX_WAIT_NANOS / 4);
+      }
+    }
+  }
+
+  /**
+   * The event loop tears the connection down when the buffer server drops it, on the end of the stream, on a reset
+   * connection and on an exception while the connection is still open, although the write listener is attached to the
+   * key in place of the publisher.
+   */
+  @Test
+  public void testDisconnectOnDroppedConnection() throws Exception
+  {
+    DefaultEventLoop eventloop = DefaultEventLoop.createEventLoop("PublisherTestEventLoop");
+    eventloop.start();
+    try (ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress("localhost", 0));
+      for (String drop : new String[] {"end of stream", "reset", "exception"}) {
+        final TestPublisher publisher = new TestPublisher();
+        publisher.setup(new StreamContext("stream"));
+        eventloop.connect((InetSocketAddress)server.getLocalAddress(), publisher);
+        try (SocketChannel accepted = server.accept()) {
+          long deadline = System.currentTimeMillis() + 10000;
+          while (!(publisher.isConnected() && publisher.getKey().attachment() != publisher)
+              && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+          }
+          Assert.assertTrue("connected", publisher.isConnected());
+          SelectionKey key = publisher.getKey();
+          Assert.assertNotSame("listener attached", publisher, key.attachment());
+
+          switch (drop) {
+            case "reset":
+              accepted.socket().setSoLinger(true, 0);
+              accepted.close();
+              break;
+            case "exception":
+              ((Listener.ClientListener)key.attachment()).handleException(new IOException(drop), eventloop);
+              break;
+            default:
+              accepted.close();
+          }
+          while (key.isValid() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+          }
+          Assert.assertFalse("key cancelled on " + drop, key.isValid());
+          Assert.assertFalse("channel closed on " + drop, key.channel().isOpen());
+        }
+      }
+    } finally {
+      eventloop.stop();
+    }
+  }
+
+  @Test
+  public void testPublishedByteCount()
+  {
+    final TestPublisher publisher = new TestPublisher();
+    publisher.setup(new StreamContext("stream"));
+    publisher.put("first");
+    publisher.put("second");
+    Assert.assertTrue("sent", publisher.sent >= 2);
+    Assert.assertEquals("published frames", publisher.sentBytes, publisher.getByteCount(false));
+  }
+
+  /**
+   * The chunks the payload tuples are framed into are reused once the event loop wrote their frames, and the reused
+   * chunks do not corrupt frames that are still queued.
+   */
+  @Test
+  public void testChunkReuse() throws Exception
+  {
+    try (Selector selector = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress("localhost", 0));
+      try (SocketChannel channel = SocketChannel.open(server.getLocalAddress());
+          final SocketChannel accepted = server.accept()) {
+        channel.configureBlocking(false);
+        final Set<byte[]> chunks = Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
+        final BufferServerPublisher publisher = new BufferServerPublisher("testpublisher", 1024)
+        {
+          @Override
+          public boolean send(byte[] array, int offset, int size)
+          {
+            chunks.add(array);
+            return super.send(array, offset, size);
+          }
+        };
+        StreamContext context = new StreamContext("stream");
+        context.put(StreamContext.CODEC, new ByteArrayCodec());
+        publisher.setup(context);
+        SelectionKey key = channel.register(selector, 0, publisher);
+        publisher.registered(key);
+        publisher.connected();
+        final Listener.ClientListener listener = (Listener.ClientListener)key.attachment();
+
+        final int tuples = 2000;
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        Thread reader = new Thread("reader")
+        {
+          @Override
+          public void run()
+          {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            try {
+              while (accepted.read(buffer) > 0) {
+                received.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+              }
+            } catch (IOException ex) {
+              throw new RuntimeException(ex);
+            }
+          }
+        };
+        reader.start();
+
+        for (int i = 0; i < tuples; i++) {
+          byte[] tuple = new byte[1000];
+          Arrays.fill(tuple, (byte)i);
+          publisher.put(tuple);
+          if (i % 10 == 0) {
+            listener.write();
+          }
+        }
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (received.size() < publisher.getByteCount(false) && System.currentTimeMillis() < deadline) {
+          listener.write();
+          Thread.sleep(1);
+        }
+        channel.shutdownOutput();
+        reader.join();
+
+        Assert.assertTrue("chunks " + chunks.size(), chunks.size() < 8);
+        byte[] stream = received.toByteArray();
+        Assert.assertEquals("bytes", publisher.getByteCount(false), stream.length);
+        MutableInt nextOffset = new MutableInt();
+        int offset = 0;
+        for (int i = 0; i < tuples; i++) {
+          int size = VarInt.read(stream, offset, stream.length, nextOffset);
+          offset = nextOffset.integer;
+          Assert.assertEquals("type", MessageType.PAYLOAD_VALUE, stream[offset]);
+          Assert.assertEquals("size", 1005, size);
+          for (int j = offset + 5; j < offset + size; j++) {
+            Assert.assertEquals("tuple " + i, (byte)i, stream[j]);
+          }
+          offset += size;
+        }
+        Assert.assertEquals("frames", stream.length, offset);
+      }
+    }
+  }
+
+  /**
+   * The reuse of the chunks relies on the client of netlet keeping the interest in writing while frames are left in
+   * its send queue, this fails should a netlet version change that.
+   */
+  @Test
+  public void testSendQueueDrained() throws Exception
+  {
+    try (Selector selector = Selector.open(); ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress("localhost", 0));
+      try (SocketChannel channel = SocketChannel.open(server.getLocalAddress());
+          SocketChannel accepted = server.accept()) {
+        channel.configureBlocking(false);
+        final BufferServerPublisher publisher = new BufferServerPublisher("testpublisher", 1024);
+        StreamContext context = new StreamContext("stream");
+        context.put(StreamContext.CODEC, new ByteArrayCodec());
+        publisher.setup(context);
+        SelectionKey key = channel.register(selector, 0, publisher);
+        publisher.registered(key);
+        publisher.connected();
+        final Listener.ClientListener listener = (Listener.ClientListener)key.attachment();
+        Assert.assertTrue("nothing queued", publisher.isSendQueueDrained());
+
+        publisher.put(new byte[1000]);
+        Assert.assertFalse("frame queued", publisher.isSendQueueDrained());
+        listener.write();
+        Assert.assertTrue("frame written", publisher.isSendQueueDrained());
+
+        for (int i = 0; i < 100; i++) {
+          publisher.put(new byte[1000]);
+        }
+        Assert.assertFalse("frames queued", publisher.isSendQueueDrained());
+      }
+    }
+  }
+
+  private static class ByteArrayCodec implements StreamCodec<Object>
+  {
+    @Override
+    public Object fromByteArray(Slice fragment)
+    {
+      return Arrays.copyOfRange(fragment.buffer, fragment.offset, fragment.offset + fragment.length);
+    }
+
+    @Override
+    public Slice toByteArray(Object o)
+    {
+      return new Slice((byte[])o);
+    }
+
+    @Override
+    public int getPartition(Object o)
+    {
+      return 0;
+    }
+  }
+
+  @Test
+  public void testStallStats() throws Exception
+  {
+    final TestPublisher publisher = new TestPublisher();
+    StreamContext context = new StreamContext("stream");
+    context.setPortId("output");
+    context.setSinkId("tcp://localhost:1/stream");
+    publisher.setup(context);
+
+    BufferServerStatsSubscriber subscriber = new BufferServerStatsSubscriber();
+    subscriber.handleStreamActivation(new StreamActivationEvent(
+        new ComponentContextPair<Stream, StreamContext>(publisher, context)));
+
+    publisher.full = true;
+    Thread drainer = new Thread("drainer")
+    {
+      @Override
+      public void run()
+      {
+        try {
+          Thread.sleep(20);
+        } catch (InterruptedException ex) {
+          throw new RuntimeException(ex);
+        }
+        publisher.full = false;
+      }
+    };
+    drainer.start();
+    publisher.put("tuple");
+    drainer.join();
+
+    OperatorStats operatorStats = new OperatorStats();
+    operatorStats.outputPorts = new ArrayList<>();
+    PortStats portStats = new PortStats("output");
+    operatorStats.outputPorts.add(portStats);
+    OperatorHeartbeat heartbeat = new OperatorHeartbeat();
+    heartbeat.windowStats.add(operatorStats);
+    ContainerStats containerStats = new ContainerStats("container");
+    containerStats.addNodeStats(heartbeat);
+    subscriber.handleContainerStats(new ContainerStatsEvent(containerStats));
+
+    Assert.assertTrue("stall " + portStats.bufferServerStallNanos,
+        portStats.bufferServerStallNanos >= TimeUnit.MILLISECONDS.toNanos(20));
+    Assert.assertTrue("bytes " + portStats.bufferServerBytes, portStats.bufferServerBytes > 0);
+  }
+
+}
@@ -18,8 +18,11 @@
  */
 package com.datatorrent.stram.stream;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Assert;
@@ -27,10 +30,16 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datatorrent.api.Context.PortContext;
 import com.datatorrent.api.Sink;
 import com.datatorrent.api.StreamCodec;
 import com.datatorrent.bufferserver.packet.PayloadTuple;
+import com.datatorrent.bufferserver.packet.SubscribeRequestTuple;
+import com.datatorrent.bufferserver.packet.Tuple;
+import com.datatorrent.netlet.EventLoop;
+import com.datatorrent.netlet.Listener;
 import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.engine.StreamContext;
 import com.datatorrent.stram.engine.SweepableReservoir;
 
 /**
@@ -122,5 +131,159 @@ public class BufferServerSubscriberTest
     Assert.assertEquals("10  received", 10, list.size());
   }
 
+  @Test
+  public void testCodecKeepsFragment()
+  {
+    final StreamCodec<Object> keepingSerde = new StreamCodec<Object>()
+    {
+      @Override
+      public Object fromByteArray(Slice fragment)
+      {
+        return fragment;
+      }
+
+      @Override
+      public Slice toByteArray(Object o)
+      {
+        return (Slice)o;
+      }
+
+      @Override
+      public int getPartition(Object o)
+      {
+        return 0;
+      }
+    };
+
+    final List<Object> list = new ArrayList<>();
+    BufferServerSubscriber bss = new BufferServerSubscriber("subscriber", 5)
+    {
+      {
+        serde = keepingSerde;
+      }
+    };
+    SweepableReservoir reservoir = bss.acquireReservoir("sink", 5);
+    reservoir.setSink(new Sink<Object>()
+    {
+      @Override
+      public void put(Object tuple)
+      {
+        list.add(tuple);
+      }
+
+      @Override
+      public int getCount(boolean reset)
+      {
+        return 0;
+      }
+    });
+
+    for (int i = 0; i < 3; i++) {
+      byte[] buffer = PayloadTuple.getSerializedTuple(0, new Slice(new byte[] {(byte)i}));
+      bss.onMessage(buffer, 0, buffer.length);
+    }
+    reservoir.sweep();
+    reservoir.sweep();
+
+    Assert.assertEquals("received", 3, list.size());
+    for (int i = 0; i < 3; i++) {
+      Slice slice = (Slice)list.get(i);
+      Assert.assertEquals("slice kept by the codec", i, slice.buffer[slice.offset]);
+    }
+  }
+
+  @Test
+  public void testCredit()
+  {
+    Assert.assertEquals("no credit by default", 0, getSubscribeRequest(newStreamContext()).getCredit());
+    StreamContext context = newStreamContext();
+    context.put(PortContext.BUFFER_SERVER_CREDIT_MB, 2);
+    Assert.assertEquals("credit", 2 * 1024 * 1024, getSubscribeRequest(context).getCredit());
+    context.put(PortContext.BUFFER_SERVER_CREDIT_MB, 4096);
+    Assert.assertEquals("capped credit", Integer.MAX_VALUE, getSubscribeRequest(context).getCredit());
+  }
+
+  @Test
+  public void testWeight()
+  {
+    SubscribeRequestTuple request = getSubscribeRequest(newStreamContext());
+    Assert.assertEquals("no weight by default", 0, request.getWeight());
+    Assert.assertEquals("group of its own", "stream/2.in", request.getStreamType());
+
+    StreamContext context = newStreamContext();
+    context.put(PortContext.BUFFER_SERVER_WEIGHT, 3);
+    request = getSubscribeRequest(context);
+    Assert.assertEquals("weight", 3, request.getWeight());
+    Assert.assertEquals("group of the port", "stream/1.out.1/in", request.getStreamType());
+    context.setSinkId("3.in");
+    Assert.assertEquals("partitions share the group", request.getStreamType(),
+        getSubscribeRequest(context).getStreamType());
+
+    context.setPartitions(1, Collections.singleton(1));
+    Assert.assertEquals("group of the partition keys", "stream/1.out.1/in/1[1]",
+        getSubscribeRequest(context).getStreamType());
+  }
+
+  private static StreamContext newStreamContext()
+  {
+    StreamContext context = new StreamContext("stream");
+    context.setBufferServerAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    context.put(StreamContext.EVENT_LOOP, new NoopEventLoop());
+    context.setSourceId("1.out.1");
+    context.setSinkId("2.in");
+    context.setPortId("in");
+    context.setFinishedWindowId(-1);
+    return context;
+  }
+
+  private static SubscribeRequestTuple getSubscribeRequest(StreamContext context)
+  {
+    final List<byte[]> requests = new ArrayList<>();
+    BufferServerSubscriber bss = new BufferServerSubscriber("subscriber", 5)
+    {
+      @Override
+      public boolean write(byte[] message)
+      {
+        requests.add(message);
+        return true;
+      }
+
+    };
+    bss.activate(context);
+
+    Assert.assertEquals("requests", 1, requests.size());
+    byte[] request = requests.get(0);
+    return (SubscribeRequestTuple)Tuple.getTuple(request, 0, request.length);
+  }
+
+  private static class NoopEventLoop implements EventLoop
+  {
+    @Override
+    public void connect(InetSocketAddress address, Listener.ClientListener l)
+    {
+    }
+
+    @Override
+    public void disconnect(Listener.ClientListener l)
+    {
+    }
+
+    @Override
+    public void start(String host, int port, Listener.ServerListener l)
+    {
+    }
+
+    @Override
+    public void stop(Listener.ServerListener l)
+    {
+    }
+
+    @Override
+    public void submit(Runnable r)
+    {
+    }
+
+  }
+
   private static final Logger logger = LoggerFactory.getLogger(BufferServerSubscriberTest.class);
 }
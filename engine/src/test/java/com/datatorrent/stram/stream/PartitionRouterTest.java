@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.api.Sink;
+import com.datatorrent.api.StreamCodec;
+import com.datatorrent.bufferserver.packet.MessageType;
+import com.datatorrent.netlet.util.Slice;
+import com.datatorrent.stram.tuple.Tuple;
+
+/**
+ * Tests that the partition router hands each tuple over to the same sinks as the partition aware sinks would on
+ * their own.
+ */
+public class PartitionRouterTest
+{
+  /**
+   * Codec that partitions integers by their value and counts how often it is asked for a partition.
+   */
+  public static class CountingCodec implements StreamCodec<Object>
+  {
+    public int partitionCount;
+
+    @Override
+    public Object fromByteArray(Slice fragment)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Slice toByteArray(Object o)
+    {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getPartition(Object o)
+    {
+      partitionCount++;
+      return (Integer)o;
+    }
+  }
+
+  public static class CollectingSink implements Sink<Object>
+  {
+    public final List<Object> tuples = new ArrayList<>();
+
+    @Override
+    public void put(Object tuple)
+    {
+      tuples.add(tuple);
+    }
+
+    @Override
+    public int getCount(boolean reset)
+    {
+      return tuples.size();
+    }
+  }
+
+  @Test
+  public void testRoutes()
+  {
+    final Object[] tuples = getTuples();
+    for (int mask : new int[] {0, 1, 3, 7}) {
+      for (int sinkCount : new int[] {1, 2, 3, 5}) {
+        final CountingCodec codec = new CountingCodec();
+        final List<PartitionAwareSink<Object>> expected = new ArrayList<>();
+        final List<CollectingSink> expectedOutputs = new ArrayList<>();
+        final List<PartitionAwareSink<Object>> routed = new ArrayList<>();
+        final List<CollectingSink> routedOutputs = new ArrayList<>();
+        for (int i = 0; i < sinkCount; i++) {
+          final Set<Integer> partitions = getPartitions(mask, sinkCount, i);
+          CollectingSink output = new CollectingSink();
+          expected.add(new PartitionAwareSink<Object>(codec, partitions, mask, output));
+          expectedOutputs.add(output);
+          output = new CollectingSink();
+          routed.add(new PartitionAwareSink<Object>(codec, partitions, mask, output));
+          routedOutputs.add(output);
+        }
+
+        final PartitionRouter router = new PartitionRouter(routed);
+        for (Object tuple : tuples) {
+          router.put(tuple);
+          for (PartitionAwareSink<Object> sink : expected) {
+            sink.put(tuple);
+          }
+        }
+        router.putAll(tuples, 1, tuples.length - 1);
+        for (PartitionAwareSink<Object> sink : expected) {
+          sink.putAll(tuples, 1, tuples.length - 1);
+        }
+
+        Assert.assertEquals("count", 2 * tuples.length - 2, router.getCount(false));
+        for (int i = 0; i < sinkCount; i++) {
+          Assert.assertEquals("mask " + mask + " sinks " + sinkCount + " sink " + i, expectedOutputs.get(i).tuples,
+              routedOutputs.get(i).tuples);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testWideMasks()
+  {
+    final Object[] tuples = {new Tuple(MessageType.BEGIN_WINDOW, 1), 1, -1, 0x10001, 0x7fffffff, Integer.MIN_VALUE,
+      Integer.MIN_VALUE + 1, 2, new Tuple(MessageType.END_WINDOW, 1)};
+    for (int mask : new int[] {0x10000, 0x7fffffff, -1, Integer.MIN_VALUE + 1}) {
+      final CountingCodec codec = new CountingCodec();
+      final List<Set<Integer>> partitions = new ArrayList<>();
+      partitions.add(new HashSet<>(Arrays.asList(1, -1, 0x10001 & mask)));
+      partitions.add(new HashSet<>(Arrays.asList(1, 0x7fffffff & mask, Integer.MIN_VALUE & mask)));
+      final List<PartitionAwareSink<Object>> sinks = new ArrayList<>();
+      final List<CollectingSink> outputs = new ArrayList<>();
+      for (Set<Integer> sinkPartitions : partitions) {
+        final CollectingSink output = new CollectingSink();
+        sinks.add(new PartitionAwareSink<Object>(codec, sinkPartitions, mask, output));
+        outputs.add(output);
+      }
+
+      final PartitionRouter router = new PartitionRouter(sinks);
+      for (Object tuple : tuples) {
+        router.put(tuple);
+      }
+      router.putAll(tuples, 0, tuples.length);
+
+      for (int i = 0; i < partitions.size(); i++) {
+        final List<Object> expected = new ArrayList<>();
+        for (Object tuple : tuples) {
+          if (tuple instanceof Tuple || partitions.get(i).contains((Integer)tuple & mask)) {
+            expected.add(tuple);
+          }
+        }
+        expected.addAll(new ArrayList<>(expected));
+        Assert.assertEquals("mask " + Integer.toHexString(mask) + " sink " + i, expected, outputs.get(i).tuples);
+
+        final CollectingSink output = new CollectingSink();
+        final PartitionAwareSink<Object> sink = new PartitionAwareSink<Object>(codec, partitions.get(i), mask, output);
+        for (Object tuple : tuples) {
+          sink.put(tuple);
+        }
+        sink.putAll(tuples, 0, tuples.length);
+        Assert.assertEquals("mask " + Integer.toHexString(mask) + " sink " + i, expected, output.tuples);
+      }
+    }
+  }
+
+  @Test
+  public void testPartitionComputedOnce()
+  {
+    final CountingCodec codec = new CountingCodec();
+    final List<PartitionAwareSink<Object>> sinks = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      sinks.add(new PartitionAwareSink<Object>(codec, getPartitions(3, 4, i), 3, new CollectingSink()));
+    }
+    final PartitionRouter router = new PartitionRouter(sinks);
+
+    final Object[] tuples = getTuples();
+    int payloads = 0;
+    for (Object tuple : tuples) {
+      router.put(tuple);
+      if (!(tuple instanceof Tuple)) {
+        payloads++;
+      }
+    }
+    Assert.assertEquals("partitions computed", payloads, codec.partitionCount);
+    router.putAll(tuples, 0, tuples.length);
+    Assert.assertEquals("partitions computed", 2 * payloads, codec.partitionCount);
+  }
+
+  @Test
+  public void testRoute()
+  {
+    final CountingCodec codec = new CountingCodec();
+    final Set<Integer> partitions = new HashSet<>(Arrays.asList(1));
+    final PartitionAwareSink<Object> first = new PartitionAwareSink<Object>(codec, partitions, 3, new CollectingSink());
+    final PartitionAwareSink<Object> second = new PartitionAwareSink<Object>(codec, partitions, 3, new CollectingSink());
+    final PartitionAwareSink<Object> otherMask = new PartitionAwareSink<Object>(codec, partitions, 1,
+        new CollectingSink());
+    final PartitionAwareSink<Object> otherCodec = new PartitionAwareSink<Object>(new CountingCodec(), partitions, 3,
+        new CollectingSink());
+    final PartitionAwareSink<Object> subclass = new PartitionAwareSink<Object>(codec, partitions, 3,
+        new CollectingSink())
+    {
+      @Override
+      protected boolean canSendToOutput(Object payload)
+      {
+        return super.canSendToOutput(payload) && (Integer)payload > 0;
+      }
+    };
+    final CollectingSink plain = new CollectingSink();
+
+    final List<Sink<Object>> routed = PartitionRouter.route(Arrays.<Sink<Object>>asList(first, otherMask, plain,
+        second, otherCodec, subclass));
+    Assert.assertEquals("sinks " + routed, 5, routed.size());
+    Assert.assertTrue("plain sink", routed.contains(plain));
+    Assert.assertTrue("subclass", routed.contains(subclass));
+    Assert.assertTrue("other mask", routed.contains(otherMask));
+    Assert.assertTrue("other codec", routed.contains(otherCodec));
+    Assert.assertFalse("grouped", routed.contains(first) || routed.contains(second));
+
+    Assert.assertEquals("single sink is not routed", Arrays.<Sink<Object>>asList(first),
+        PartitionRouter.route(Arrays.<Sink<Object>>asList(first)));
+  }
+
+  /**
+   * Partitions of the i-th of the sinks, the first sink also takes the partitions of the second one and a partition
+   * outside of the mask which is to be ignored.
+   */
+  private static Set<Integer> getPartitions(int mask, int sinkCount, int i)
+  {
+    final Set<Integer> partitions = new HashSet<>();
+    for (int partition = 0; partition <= mask; partition++) {
+      if (partition % sinkCount == i || (i == 0 && partition % sinkCount == 1)) {
+        partitions.add(partition);
+      }
+    }
+    if (i == 0) {
+      partitions.add(mask + 1);
+    }
+    return partitions;
+  }
+
+  private static Object[] getTuples()
+  {
+    final List<Object> tuples = new ArrayList<>();
+    tuples.add(new Tuple(MessageType.BEGIN_WINDOW, 1));
+    for (int value = -20; value < 40; value++) {
+      tuples.add(value);
+    }
+    tuples.add(new Tuple(MessageType.END_WINDOW, 1));
+    return tuples.toArray();
+  }
+
+}
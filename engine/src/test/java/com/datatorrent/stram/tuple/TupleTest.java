@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.datatorrent.stram.tuple;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.datatorrent.bufferserver.packet.MessageType;
+
+public class TupleTest
+{
+  private static final long WINDOW_ID = 0x5a00000000L | 17;
+
+  @Test
+  public void testShared()
+  {
+    Tuple beginWindow = Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID);
+    Assert.assertSame("same window", beginWindow, Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID));
+    Assert.assertEquals(MessageType.BEGIN_WINDOW, beginWindow.getType());
+    Assert.assertEquals(WINDOW_ID, beginWindow.getWindowId());
+    Assert.assertNotSame("other type", beginWindow, Tuple.valueOf(MessageType.END_WINDOW, WINDOW_ID));
+    Assert.assertNotSame("other window", beginWindow, Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID + 1));
+
+    Assert.assertSame(EndWindowTuple.valueOf(WINDOW_ID), EndWindowTuple.valueOf(WINDOW_ID));
+    Assert.assertSame(EndStreamTuple.valueOf(WINDOW_ID), EndStreamTuple.valueOf(WINDOW_ID));
+    Assert.assertSame(CheckpointTuple.valueOf(WINDOW_ID), CheckpointTuple.valueOf(WINDOW_ID));
+    Assert.assertSame(ResetWindowTuple.valueOf(WINDOW_ID), ResetWindowTuple.valueOf(WINDOW_ID));
+    Assert.assertEquals(MessageType.END_STREAM, EndStreamTuple.valueOf(WINDOW_ID).getType());
+  }
+
+  /**
+   * The caches are direct mapped: the window of the same slot 256 windows later replaces the tuple, the windows in
+   * between keep theirs.
+   */
+  @Test
+  public void testEviction()
+  {
+    Tuple beginWindow = Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID);
+    EndWindowTuple endWindow = EndWindowTuple.valueOf(WINDOW_ID);
+    for (long windowId = WINDOW_ID + 1; windowId < WINDOW_ID + Tuple.CACHE_SIZE; windowId++) {
+      Tuple.valueOf(MessageType.BEGIN_WINDOW, windowId);
+      EndWindowTuple.valueOf(windowId);
+    }
+    Assert.assertSame("kept for 256 windows", beginWindow, Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID));
+    Assert.assertSame("kept for 256 windows", endWindow, EndWindowTuple.valueOf(WINDOW_ID));
+
+    Tuple replacing = Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID + Tuple.CACHE_SIZE);
+    Assert.assertEquals(WINDOW_ID + Tuple.CACHE_SIZE, replacing.getWindowId());
+    EndWindowTuple.valueOf(WINDOW_ID + Tuple.CACHE_SIZE);
+    Assert.assertSame("window of another slot", Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID + 1),
+        Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID + 1));
+
+    Tuple recreated = Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID);
+    Assert.assertNotSame("evicted", beginWindow, recreated);
+    Assert.assertEquals(WINDOW_ID, recreated.getWindowId());
+    Assert.assertNotSame("evicted", endWindow, EndWindowTuple.valueOf(WINDOW_ID));
+  }
+
+  @Test
+  @SuppressWarnings("deprecation")
+  public void testChangedWindowId()
+  {
+    Tuple tuple = Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID);
+    tuple.setWindowId(WINDOW_ID + Tuple.CACHE_SIZE);
+    Assert.assertEquals(WINDOW_ID, Tuple.valueOf(MessageType.BEGIN_WINDOW, WINDOW_ID).getWindowId());
+  }
+
+}